@@ -87,6 +87,7 @@ public class AsyncMessageEvent<T> implements Cloneable {
         this.data = null;
         this.ip = null;
         this.timestamp = 0;
+        this.context = null;
     }
 
     @Override
@@ -16,37 +16,68 @@
 
 package com.webank.ai.fate.serving.common.async;
 
+import com.google.common.collect.Lists;
 import com.lmax.disruptor.EventHandler;
 import com.webank.ai.fate.serving.core.exceptions.AsyncMessageException;
-import com.webank.ai.fate.serving.core.utils.ThreadPoolUtil;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Consumer
+ * <p>
+ * 普通订阅方法每个事件调用一次; {@link Subscribe#batch()} 为 true 的订阅方法, 事件先在消费线程中累积,
+ * 到 endOfBatch (即 ring buffer 中已发布的事件取完) 或累积到 {@link #MAX_BATCH_SIZE} 时以 List 调用一次.
+ * 只在消费线程中访问, 无需同步
  */
 public class AsyncMessageEventHandler implements EventHandler<AsyncMessageEvent> {
 
+    static final int MAX_BATCH_SIZE = 1024;
+
     private static Logger logger = LoggerFactory.getLogger(AsyncMessageEventHandler.class);
 
     ExecutorService executorService = null;
 
+    private final Map<Method, List<AsyncMessageEvent>> pendingBatches = new LinkedHashMap<>();
+
+    private final Map<Method, Boolean> batchMethods = new HashMap<>();
+
     public AsyncMessageEventHandler() {
 
-        executorService = ThreadPoolUtil.newThreadPoolExecutor();
+        // 队列满时由消费线程执行, ring buffer 随之积压, 发布端丢弃事件而不是无限创建线程
+        int processors = Runtime.getRuntime().availableProcessors();
+        executorService = ManagedExecutors.newThreadPool("async-event", processors, processors * 2, 4096,
+                new ThreadPoolExecutor.CallerRunsPolicy());
 
     }
 
     @Override
     public void onEvent(AsyncMessageEvent event, long sequence, boolean endOfBatch) throws Exception {
+        try {
+            dispatch(event);
+        } finally {
+            if (endOfBatch) {
+                flush();
+            }
+        }
+    }
+
+    private void dispatch(AsyncMessageEvent event) {
         String eventName = event.getName();
 
-        logger.info("Async event: {}", eventName);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Async event: {}", eventName);
+        }
 
         if (StringUtils.isBlank(eventName)) {
             throw new AsyncMessageException("eventName is blank");
@@ -62,16 +93,45 @@ public class AsyncMessageEventHandler implements EventHandler<AsyncMessageEvent>
         AsyncMessageEvent another = event.clone();
 
         for (Method method : methods) {
-            executorService.submit(() -> {
-                try {
-                    Object object = AsyncSubscribeRegister.METHOD_INSTANCE_MAP.get(method);
-                    method.invoke(object, another);
-                } catch (Exception e) {
-                    logger.error("invoke event processor, {}", e.getMessage());
-                    e.printStackTrace();
+            if (isBatch(method)) {
+                List<AsyncMessageEvent> events = pendingBatches.computeIfAbsent(method, m -> Lists.newArrayList());
+                events.add(another);
+                if (events.size() >= MAX_BATCH_SIZE) {
+                    invoke(method, pendingBatches.remove(method));
                 }
-            });
+            } else {
+                invoke(method, another);
+            }
         }
     }
 
+    private void flush() {
+        if (pendingBatches.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Method, List<AsyncMessageEvent>> entry : pendingBatches.entrySet()) {
+            invoke(entry.getKey(), entry.getValue());
+        }
+        pendingBatches.clear();
+    }
+
+    private boolean isBatch(Method method) {
+        return batchMethods.computeIfAbsent(method, m -> {
+            Subscribe subscribe = m.getAnnotation(Subscribe.class);
+            return subscribe != null && subscribe.batch();
+        });
+    }
+
+    private void invoke(Method method, Object argument) {
+        executorService.submit(() -> {
+            try {
+                Object object = AsyncSubscribeRegister.METHOD_INSTANCE_MAP.get(method);
+                method.invoke(object, argument);
+            } catch (Exception e) {
+                logger.error("invoke event processor, {}", e.getMessage());
+                e.printStackTrace();
+            }
+        });
+    }
+
 }
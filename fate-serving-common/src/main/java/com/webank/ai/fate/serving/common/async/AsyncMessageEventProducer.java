@@ -16,41 +16,35 @@
 
 package com.webank.ai.fate.serving.common.async;
 
-import com.lmax.disruptor.EventTranslatorVararg;
+import com.lmax.disruptor.EventTranslatorOneArg;
 import com.lmax.disruptor.RingBuffer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
- * Producer
+ * Producer, 可被多个线程共享; 发布时复用同一个无状态的 translator, 不产生额外对象
  */
 public class AsyncMessageEventProducer {
 
-    public static final EventTranslatorVararg<AsyncMessageEvent> TRANSLATOR =
-            (event, sequence, args) -> {
-                if (args[0] instanceof AsyncMessageEvent) {
-                    AsyncMessageEvent argEvent = (AsyncMessageEvent) args[0];
-                    event.setName(argEvent.getName());
-                    event.setAction(argEvent.getAction());
-                    event.setData(argEvent.getData());
-                    event.setTimestamp(argEvent.getTimestamp());
-                    event.setContext(argEvent.getContext());
-                    if (event.getTimestamp() == 0) {
-                        event.setTimestamp(System.currentTimeMillis());
-                    }
-                }
-                event.setTimestamp(System.currentTimeMillis());
+    public static final EventTranslatorOneArg<AsyncMessageEvent, AsyncMessageEvent> TRANSLATOR =
+            (event, sequence, argEvent) -> {
+                event.setName(argEvent.getName());
+                event.setAction(argEvent.getAction());
+                event.setData(argEvent.getData());
+                event.setIp(argEvent.getIp());
+                event.setContext(argEvent.getContext());
+                event.setTimestamp(argEvent.getTimestamp() != 0 ? argEvent.getTimestamp() : System.currentTimeMillis());
             };
-    private static Logger logger = LoggerFactory.getLogger(AsyncMessageEventProducer.class);
     private final RingBuffer<AsyncMessageEvent> ringBuffer;
 
     public AsyncMessageEventProducer(RingBuffer<AsyncMessageEvent> ringBuffer) {
         this.ringBuffer = ringBuffer;
     }
 
-    public void publishEvent(Object... args) {
-        if (args != null && args.length > 0) {
-            ringBuffer.tryPublishEvent(TRANSLATOR, args);
-        }
+    /**
+     * ring buffer 已满时直接丢弃, 不阻塞调用线程
+     *
+     * @return 是否发布成功
+     */
+    public boolean publishEvent(AsyncMessageEvent event) {
+        return event != null && ringBuffer.tryPublishEvent(TRANSLATOR, event);
     }
 }
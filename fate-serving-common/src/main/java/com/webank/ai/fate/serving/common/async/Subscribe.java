@@ -26,4 +26,9 @@ public @interface Subscribe {
     String value() default "";
 
     String name() default "";
+
+    /**
+     * 为 true 时, 消费线程一次取到的连续事件合并为一个 List 调用一次订阅方法
+     */
+    boolean batch() default false;
 }
@@ -258,6 +258,16 @@ public class BaseContext<Req, Resp> implements Context<Req, Resp> {
         dataMap.put(Dict.DOWN_STREAM_BEGIN, downstreamBegin);
     }
 
+    @Override
+    public long getDeadline() {
+        return dataMap.get(Dict.DEADLINE) != null ? (long) dataMap.get(Dict.DEADLINE) : 0;
+    }
+
+    @Override
+    public void setDeadline(long deadline) {
+        dataMap.put(Dict.DEADLINE, deadline);
+    }
+
     @Override
     public long getRouteBasis() {
         return dataMap.get(Dict.ROUTE_BASIS)!=null?(long) dataMap.get(Dict.ROUTE_BASIS):0;
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.common.cache;
+
+import com.google.common.collect.Lists;
+import com.webank.ai.fate.serving.common.flow.FlowCounterManager;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 两级缓存: 进程内有界缓存 (L1) 在前, 远端缓存如 redis (L2) 在后.
+ * <p>
+ * 读: 先查 L1, 未命中再查 L2 并回填 L1; L2 也未命中时在 L1 中写入一个短期的空标记, 避免热点 miss 反复访问 L2.
+ * 读 L2 期间该 key 有并发写入或删除时不写空标记, 以免覆盖新值.
+ * 写: 立即写 L1 (覆盖空标记), L2 由单线程按提交顺序异步写入.
+ * 删除: 同步删除 L1, L2 的删除与写入进入同一个队列, 不会被排在前面的写入覆盖;
+ * L2 删除完成前该 key 的读取不回源, 以免读回旧值.
+ * 队列满时调用线程等待入队, 而不是直接写 L2, 以保证同一个 key 的写入和删除按顺序到达 L2.
+ * <p>
+ * 每一级通过 {@link FlowCounterManager} 上报指标, resource 分别为 {@link #L1_SOURCE} 和 {@link #L2_SOURCE}:
+ * passQps 为调用次数 (一次批量读取计一次), successQps 为命中的 key 数, blockQps 为未命中的 key 数,
+ * exceptionQps 为异常数, rt 为每次调用的平均耗时 (微秒)
+ */
+public class NearCache implements Cache {
+
+    public static final String L1_SOURCE = "I_cache_l1";
+    public static final String L2_SOURCE = "I_cache_l2";
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCache.class);
+    private static final int WRITE_BEHIND_QUEUE_SIZE = 4096;
+    private static final int VERSION_STRIPES = 1024;
+    /**
+     * L2 未命中时写入 L1 的空标记
+     */
+    private static final Object NEGATIVE = new Object() {
+        @Override
+        public String toString() {
+            return "";
+        }
+    };
+
+    private final Cache l1;
+    private final Cache l2;
+    private final int negativeExpireSeconds;
+    private final FlowCounterManager flowCounterManager;
+    private final ThreadPoolExecutor writeBehindExecutor;
+    /**
+     * 按 key 分段的写版本号, 每次写入或删除 L1 前递增
+     */
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    /**
+     * 已提交但 L2 尚未完成的删除, key -> 本次删除的标记
+     */
+    private final ConcurrentMap<Object, Object> pendingDeletes = new ConcurrentHashMap<>();
+
+    /**
+     * @param l1                    进程内缓存, 需要支持按条目过期, 如 {@link WindowTinyLfuCache}
+     * @param l2                    远端缓存
+     * @param negativeExpireSeconds 空标记的过期时间, 小于等于 0 表示不做空值缓存
+     * @param flowCounterManager    指标统计, 可以为 null
+     */
+    public NearCache(Cache l1, Cache l2, int negativeExpireSeconds, FlowCounterManager flowCounterManager) {
+        this.l1 = l1;
+        this.l2 = l2;
+        this.negativeExpireSeconds = negativeExpireSeconds;
+        this.flowCounterManager = flowCounterManager;
+        this.writeBehindExecutor = ManagedExecutors.newThreadPool("near-cache-write-behind", 1, 1, WRITE_BEHIND_QUEUE_SIZE,
+                NearCache::enqueue);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        bumpVersion(key);
+        pendingDeletes.remove(key);
+        l1.put(key, value);
+        writeBehind(() -> l2.put(key, value));
+    }
+
+    @Override
+    public void put(Object key, Object value, int expire) {
+        // L1 始终使用自身较短的默认过期时间, 减少与 L2 不一致的时间窗口
+        bumpVersion(key);
+        pendingDeletes.remove(key);
+        l1.put(key, value);
+        writeBehind(() -> l2.put(key, value, expire));
+    }
+
+    @Override
+    public void put(List list) {
+        for (Object object : list) {
+            DataWrapper dataWrapper = (DataWrapper) object;
+            bumpVersion(dataWrapper.getKey());
+            pendingDeletes.remove(dataWrapper.getKey());
+            l1.put(dataWrapper.getKey(), dataWrapper.getValue());
+        }
+        writeBehind(() -> l2.put(list));
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = timed(L1_SOURCE, () -> l1.get(key));
+        if (value != null) {
+            record(L1_SOURCE, 1, 0);
+            return value == NEGATIVE ? null : value;
+        }
+        record(L1_SOURCE, 0, 1);
+        if (pendingDeletes.containsKey(key)) {
+            return null;
+        }
+        long version = versions.get(stripe(key));
+        try {
+            value = timed(L2_SOURCE, () -> l2.get(key));
+        } catch (RuntimeException e) {
+            exception(L2_SOURCE);
+            throw e;
+        }
+        if (value != null) {
+            record(L2_SOURCE, 1, 0);
+            l1.put(key, value);
+        } else {
+            record(L2_SOURCE, 0, 1);
+            putNegative(key, version);
+        }
+        return value;
+    }
+
+    @Override
+    public List<DataWrapper> get(Object[] keys) {
+        List<DataWrapper> result = Lists.newArrayList();
+        List<Object> missKeys = Lists.newArrayList();
+        int l1Misses = 0;
+        long begin = System.nanoTime();
+        for (Object key : keys) {
+            Object value = l1.get(key);
+            if (value == null) {
+                l1Misses++;
+                if (!pendingDeletes.containsKey(key)) {
+                    missKeys.add(key);
+                }
+            } else if (value != NEGATIVE) {
+                result.add(new DataWrapper(key, value));
+            }
+        }
+        rt(L1_SOURCE, begin);
+        record(L1_SOURCE, keys.length - l1Misses, l1Misses);
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        long[] missVersions = new long[missKeys.size()];
+        for (int i = 0; i < missVersions.length; i++) {
+            missVersions[i] = versions.get(stripe(missKeys.get(i)));
+        }
+        List<DataWrapper> remote;
+        try {
+            remote = timed(L2_SOURCE, () -> l2.get(missKeys.toArray()));
+        } catch (RuntimeException e) {
+            exception(L2_SOURCE);
+            throw e;
+        }
+        record(L2_SOURCE, remote.size(), missKeys.size() - remote.size());
+        Map<Object, Object> found = remote.stream().collect(Collectors.toMap(DataWrapper::getKey, DataWrapper::getValue, (a, b) -> a));
+        for (int i = 0; i < missKeys.size(); i++) {
+            Object key = missKeys.get(i);
+            Object value = found.get(key);
+            if (value != null) {
+                l1.put(key, value);
+            } else {
+                putNegative(key, missVersions[i]);
+            }
+        }
+        result.addAll(remote);
+        return result;
+    }
+
+    @Override
+    public void delete(Object key) {
+        bumpVersion(key);
+        Object token = new Object();
+        pendingDeletes.put(key, token);
+        l1.delete(key);
+        boolean queued = writeBehind(() -> {
+            try {
+                l2.delete(key);
+            } finally {
+                pendingDeletes.remove(key, token);
+            }
+        });
+        if (!queued) {
+            pendingDeletes.remove(key, token);
+        }
+    }
+
+    /**
+     * @param version 读 L2 之前该 key 所在分段的版本号, 之后有写入则不写空标记
+     */
+    private void putNegative(Object key, long version) {
+        if (negativeExpireSeconds <= 0) {
+            return;
+        }
+        int stripe = stripe(key);
+        if (versions.get(stripe) != version) {
+            return;
+        }
+        l1.put(key, NEGATIVE, negativeExpireSeconds);
+        // 写空标记的同时发生了写入, 空标记可能覆盖了新值, 删除后下次读取回源即可
+        if (versions.get(stripe) != version) {
+            l1.delete(key);
+        }
+    }
+
+    private void bumpVersion(Object key) {
+        versions.incrementAndGet(stripe(key));
+    }
+
+    private static int stripe(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (VERSION_STRIPES - 1);
+    }
+
+    /**
+     * 队列满时阻塞等待入队, 保持提交顺序
+     */
+    private static void enqueue(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("near cache write behind executor is shutdown");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for the write behind queue", e);
+        }
+    }
+
+    /**
+     * @return 是否已进入写入队列
+     */
+    private boolean writeBehind(Runnable task) {
+        try {
+            writeBehindExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    exception(L2_SOURCE);
+                    logger.error("near cache write behind error", e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            exception(L2_SOURCE);
+            logger.warn("near cache write behind rejected: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private <T> T timed(String source, Supplier<T> supplier) {
+        long begin = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            rt(source, begin);
+        }
+    }
+
+    /**
+     * 调用次数与耗时一一对应, 上报的 rt 即每次调用的平均耗时; 这里只做统计, 不经过限流
+     */
+    private void rt(String source, long beginNanos) {
+        if (flowCounterManager != null) {
+            flowCounterManager.count(source, 1);
+            flowCounterManager.rt(source, (System.nanoTime() - beginNanos) / 1000);
+        }
+    }
+
+    private void record(String source, int hits, int misses) {
+        if (flowCounterManager != null) {
+            if (hits > 0) {
+                flowCounterManager.success(source, hits);
+            }
+            if (misses > 0) {
+                flowCounterManager.block(source, misses);
+            }
+        }
+    }
+
+    private void exception(String source) {
+        if (flowCounterManager != null) {
+            flowCounterManager.exception(source, 1);
+        }
+    }
+}
@@ -36,7 +36,11 @@ public class RedisCache implements Cache {
     String password;
     int maxTotal;
     int maxIdel;
-    JedisPool jedisPool;
+    /**
+     * 批量读写时每次往返包含的最大 key 数
+     */
+    int batchChunkSize = 500;
+    protected JedisPool jedisPool;
 
     synchronized public void init() {
         initStandaloneConfiguration();
@@ -63,12 +67,11 @@ public class RedisCache implements Cache {
             logger.debug("put cache key: {} value: {} expire: {}", key, value, expire);
         }
         try (Jedis jedis = jedisPool.getResource()) {
-            Pipeline redisPipeline = jedis.pipelined();
-            redisPipeline.set(key.toString(), value.toString());
             if (expire > 0) {
-                redisPipeline.expire(key.toString(), expire);
+                jedis.setex(key.toString(), expire, value.toString());
+            } else {
+                jedis.set(key.toString(), value.toString());
             }
-            redisPipeline.sync();
         }
     }
 
@@ -82,14 +85,28 @@ public class RedisCache implements Cache {
         }
     }
 
+    /**
+     * 使用 MGET 批量读取, 每 batchChunkSize 个 key 一次往返
+     */
     @Override
     public List get(Object[] keys) {
         List<DataWrapper> result = Lists.newArrayList();
-        for (Object key : keys) {
-            Object singleResult = this.get(key);
-            if (singleResult != null) {
-                DataWrapper dataWrapper = new DataWrapper(key, singleResult);
-                result.add(dataWrapper);
+        if (keys == null || keys.length == 0) {
+            return result;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (int begin = 0; begin < keys.length; begin += batchChunkSize) {
+                int end = Math.min(begin + batchChunkSize, keys.length);
+                String[] chunk = new String[end - begin];
+                for (int i = begin; i < end; i++) {
+                    chunk[i - begin] = keys[i].toString();
+                }
+                List<String> values = jedis.mget(chunk);
+                for (int i = 0; i < chunk.length; i++) {
+                    if (values.get(i) != null) {
+                        result.add(new DataWrapper(keys[begin + i], values.get(i)));
+                    }
+                }
             }
         }
         return result;
@@ -105,14 +122,35 @@ public class RedisCache implements Cache {
         }
     }
 
+    /**
+     * 以 pipeline 批量写入, 每 batchChunkSize 个 SET ... EX 命令同步一次
+     */
     @Override
     public void put(List list) {
-        for (Object object : list) {
-            DataWrapper dataWrapper = (DataWrapper) object;
-            this.put(dataWrapper.getKey(), dataWrapper.getValue());
+        if (list == null || list.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline redisPipeline = jedis.pipelined();
+            int count = 0;
+            for (Object object : list) {
+                DataWrapper dataWrapper = (DataWrapper) object;
+                set(redisPipeline, dataWrapper.getKey().toString(), dataWrapper.getValue().toString(), expireTime);
+                if (++count % batchChunkSize == 0) {
+                    redisPipeline.sync();
+                }
+            }
+            redisPipeline.sync();
         }
     }
 
+    protected void set(Pipeline redisPipeline, String key, String value, int expire) {
+        if (expire > 0) {
+            redisPipeline.setex(key, expire, value);
+        } else {
+            redisPipeline.set(key, value);
+        }
+    }
 
     public int getExpireTime() {
         return expireTime;
@@ -162,6 +200,14 @@ public class RedisCache implements Cache {
         this.maxTotal = maxTotal;
     }
 
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    public void setBatchChunkSize(int batchChunkSize) {
+        this.batchChunkSize = batchChunkSize > 0 ? batchChunkSize : 1;
+    }
+
     public int getMaxIdel() {
         return maxIdel;
     }
@@ -16,22 +16,33 @@
 
 package com.webank.ai.fate.serving.common.cache;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import redis.clients.jedis.HostAndPort;
-import redis.clients.jedis.JedisCluster;
-import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.SafeEncoder;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class RedisClusterCache extends RedisCache {
     private static final Logger logger = LoggerFactory.getLogger(RedisClusterCache.class);
 
+    private static final int SLOT_COUNT = 16384;
+
     String clusterNodes;
-    JedisCluster jedisCluster;
+    protected JedisCluster jedisCluster;
+    /**
+     * slot -> 节点 "host:port", 批量读写时按节点分组后以 pipeline 发送;
+     * 为 null 表示需要重新拉取, 遇到 MOVED/ASK 时置空
+     */
+    protected volatile String[] slotOwners;
 
     public RedisClusterCache(String clusterNodes) {
         this.clusterNodes = clusterNodes;
@@ -81,9 +92,10 @@ public class RedisClusterCache extends RedisCache {
         if (logger.isDebugEnabled()) {
             logger.debug("put cache key: {} value: {} expire: {}", key, value, expire);
         }
-        jedisCluster.set(key.toString(), value.toString());
         if (expire > 0) {
-            jedisCluster.expire(key.toString(), expire);
+            jedisCluster.setex(key.toString(), expire, value.toString());
+        } else {
+            jedisCluster.set(key.toString(), value.toString());
         }
     }
 
@@ -97,7 +109,52 @@ public class RedisClusterCache extends RedisCache {
 
     @Override
     public List get(Object[] keys) {
-        return super.get(keys);
+        List<DataWrapper> result = Lists.newArrayList();
+        if (keys == null || keys.length == 0) {
+            return result;
+        }
+        String[] stringKeys = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            stringKeys[i] = keys[i].toString();
+        }
+        Object[] values = new Object[keys.length];
+        for (Map.Entry<String, List<Integer>> entry : groupByNode(stringKeys).entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            JedisPool pool = entry.getKey() != null ? jedisCluster.getClusterNodes().get(entry.getKey()) : null;
+            if (pool == null) {
+                for (int index : indexes) {
+                    values[index] = jedisCluster.get(stringKeys[index]);
+                }
+                continue;
+            }
+            try (Jedis jedis = pool.getResource()) {
+                for (int begin = 0; begin < indexes.size(); begin += batchChunkSize) {
+                    List<Integer> chunk = indexes.subList(begin, Math.min(begin + batchChunkSize, indexes.size()));
+                    Pipeline redisPipeline = jedis.pipelined();
+                    for (int index : chunk) {
+                        redisPipeline.get(stringKeys[index]);
+                    }
+                    List<Object> replies = redisPipeline.syncAndReturnAll();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        int index = chunk.get(i);
+                        Object reply = replies.get(i);
+                        if (reply instanceof JedisDataException) {
+                            // slot 已迁移, 交给 JedisCluster 按重定向处理
+                            slotOwners = null;
+                            values[index] = jedisCluster.get(stringKeys[index]);
+                        } else {
+                            values[index] = reply;
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                result.add(new DataWrapper(keys[i], values[i]));
+            }
+        }
+        return result;
     }
 
     @Override
@@ -110,7 +167,93 @@ public class RedisClusterCache extends RedisCache {
 
     @Override
     public void put(List list) {
-        super.put(list);
+        if (list == null || list.isEmpty()) {
+            return;
+        }
+        String[] keys = new String[list.size()];
+        String[] values = new String[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            DataWrapper dataWrapper = (DataWrapper) list.get(i);
+            keys[i] = dataWrapper.getKey().toString();
+            values[i] = dataWrapper.getValue().toString();
+        }
+        for (Map.Entry<String, List<Integer>> entry : groupByNode(keys).entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            JedisPool pool = entry.getKey() != null ? jedisCluster.getClusterNodes().get(entry.getKey()) : null;
+            if (pool == null) {
+                for (int index : indexes) {
+                    put(keys[index], values[index], expireTime);
+                }
+                continue;
+            }
+            try (Jedis jedis = pool.getResource()) {
+                for (int begin = 0; begin < indexes.size(); begin += batchChunkSize) {
+                    List<Integer> chunk = indexes.subList(begin, Math.min(begin + batchChunkSize, indexes.size()));
+                    Pipeline redisPipeline = jedis.pipelined();
+                    for (int index : chunk) {
+                        set(redisPipeline, keys[index], values[index], expireTime);
+                    }
+                    List<Object> replies = redisPipeline.syncAndReturnAll();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        if (replies.get(i) instanceof JedisDataException) {
+                            slotOwners = null;
+                            int index = chunk.get(i);
+                            put(keys[index], values[index], expireTime);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 按 key 所在节点分组, 无法确定节点的 key 归入 null 分组, 由 JedisCluster 逐个处理
+     */
+    private Map<String, List<Integer>> groupByNode(String[] keys) {
+        String[] owners = slotOwners;
+        if (owners == null) {
+            owners = refreshSlotOwners();
+        }
+        Map<String, List<Integer>> groups = Maps.newHashMap();
+        for (int i = 0; i < keys.length; i++) {
+            String owner = owners != null ? owners[JedisClusterCRC16.getSlot(keys[i])] : null;
+            List<Integer> indexes = groups.get(owner);
+            if (indexes == null) {
+                indexes = Lists.newArrayList();
+                groups.put(owner, indexes);
+            }
+            indexes.add(i);
+        }
+        return groups;
+    }
+
+    private synchronized String[] refreshSlotOwners() {
+        if (slotOwners != null) {
+            return slotOwners;
+        }
+        for (JedisPool pool : jedisCluster.getClusterNodes().values()) {
+            try (Jedis jedis = pool.getResource()) {
+                String[] owners = new String[SLOT_COUNT];
+                for (Object slotInfoObject : jedis.clusterSlots()) {
+                    List<Object> slotInfo = (List<Object>) slotInfoObject;
+                    if (slotInfo.size() < 3) {
+                        continue;
+                    }
+                    List<Object> master = (List<Object>) slotInfo.get(2);
+                    String owner = SafeEncoder.encode((byte[]) master.get(0)) + ":" + master.get(1);
+                    int start = ((Long) slotInfo.get(0)).intValue();
+                    int end = ((Long) slotInfo.get(1)).intValue();
+                    for (int slot = start; slot <= end; slot++) {
+                        owners[slot] = owner;
+                    }
+                }
+                slotOwners = owners;
+                return owners;
+            } catch (Exception e) {
+                logger.warn("load redis cluster slots error, try next node", e);
+            }
+        }
+        return null;
     }
 
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.common.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 按线程分段的有损读缓冲区, 读操作只做一次 CAS 记录访问, 由持有维护锁的线程批量回放.
+ * 缓冲区满或竞争失败时直接丢弃该次记录, 只影响淘汰策略的精度, 不影响正确性
+ */
+final class StripedReadBuffer<E> {
+
+    static final int SUCCESS = 0;
+    static final int FAILED = 1;
+    static final int FULL = 2;
+
+    private static final int RING_SIZE = 16;
+    private static final int RING_MASK = RING_SIZE - 1;
+
+    private final Ring<E>[] stripes;
+    private final int stripeMask;
+
+    @SuppressWarnings("unchecked")
+    StripedReadBuffer() {
+        int count = 1;
+        while (count < Runtime.getRuntime().availableProcessors() * 2) {
+            count <<= 1;
+        }
+        stripes = new Ring[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Ring<>();
+        }
+        stripeMask = count - 1;
+    }
+
+    int offer(E e) {
+        return stripes[probe() & stripeMask].offer(e);
+    }
+
+    /**
+     * 只能在维护锁内调用
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Ring<E> ring : stripes) {
+            ring.drainTo(consumer);
+        }
+    }
+
+    private static int probe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Ring<E> {
+        final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(RING_SIZE);
+        final AtomicLong writeCounter = new AtomicLong();
+        volatile long readCounter;
+
+        int offer(E e) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            if (tail - head >= RING_SIZE) {
+                return FULL;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & RING_MASK), e);
+                return SUCCESS;
+            }
+            return FAILED;
+        }
+
+        void drainTo(Consumer<E> consumer) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            while (head < tail) {
+                int index = (int) (head & RING_MASK);
+                E e = buffer.get(index);
+                if (e == null) {
+                    // 写入方已占位但尚未发布, 下次再处理
+                    break;
+                }
+                buffer.lazySet(index, null);
+                consumer.accept(e);
+                head++;
+            }
+            readCounter = head;
+        }
+    }
+}
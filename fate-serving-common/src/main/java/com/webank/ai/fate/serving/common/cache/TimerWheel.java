@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.common.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮, 每个桶覆盖 TICK_MILLIS 毫秒, 按过期时间把条目挂到对应的桶上.
+ * 不依赖后台线程, 由缓存在维护时调用 {@link #advance} 推进, 只扫描经过的桶;
+ * 过期时间超过一圈的条目留在原桶中, 等下一圈再检查.
+ * 非线程安全, 只在缓存的维护锁内调用
+ */
+final class TimerWheel {
+
+    static final long TICK_MILLIS = 1000;
+    private static final int BUCKET_COUNT = 1024;
+    private static final int BUCKET_MASK = BUCKET_COUNT - 1;
+
+    private final WindowTinyLfuCache.Node[] buckets;
+    private long currentTick;
+
+    TimerWheel(long nowMillis) {
+        buckets = new WindowTinyLfuCache.Node[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            WindowTinyLfuCache.Node sentinel = new WindowTinyLfuCache.Node(null, null, 0, 0);
+            sentinel.timerPrev = sentinel;
+            sentinel.timerNext = sentinel;
+            buckets[i] = sentinel;
+        }
+        currentTick = nowMillis / TICK_MILLIS;
+    }
+
+    void schedule(WindowTinyLfuCache.Node node) {
+        WindowTinyLfuCache.Node sentinel = buckets[(int) ((node.expireAt / TICK_MILLIS) & BUCKET_MASK)];
+        node.timerNext = sentinel;
+        node.timerPrev = sentinel.timerPrev;
+        sentinel.timerPrev.timerNext = node;
+        sentinel.timerPrev = node;
+    }
+
+    void deschedule(WindowTinyLfuCache.Node node) {
+        if (node.timerNext != null) {
+            node.timerPrev.timerNext = node.timerNext;
+            node.timerNext.timerPrev = node.timerPrev;
+            node.timerNext = null;
+            node.timerPrev = null;
+        }
+    }
+
+    /**
+     * 推进到当前时间, 对每个已过期的条目调用 onExpire, onExpire 需负责 deschedule
+     */
+    void advance(long nowMillis, Consumer<WindowTinyLfuCache.Node> onExpire) {
+        long nowTick = nowMillis / TICK_MILLIS;
+        if (nowTick < currentTick) {
+            return;
+        }
+        long ticks = Math.min(nowTick - currentTick, BUCKET_MASK);
+        for (long tick = nowTick - ticks; tick <= nowTick; tick++) {
+            WindowTinyLfuCache.Node sentinel = buckets[(int) (tick & BUCKET_MASK)];
+            WindowTinyLfuCache.Node node = sentinel.timerNext;
+            while (node != sentinel) {
+                WindowTinyLfuCache.Node next = node.timerNext;
+                if (node.expireAt <= nowMillis) {
+                    onExpire.accept(node);
+                }
+                node = next;
+            }
+        }
+        currentTick = nowTick;
+    }
+}
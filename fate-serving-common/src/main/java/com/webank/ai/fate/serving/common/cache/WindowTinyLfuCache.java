@@ -0,0 +1,495 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.common.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界本地缓存, 采用 W-TinyLFU 淘汰策略:
+ * 新条目先进入容量约 1% 的 LRU 窗口, 被挤出窗口后与主区 (SLRU, probation + protected) 的淘汰候选
+ * 比较 {@link FrequencySketch} 估算的访问频率, 频率高者留下.
+ * <p>
+ * 读操作只访问 ConcurrentHashMap 并把访问记录写入 {@link StripedReadBuffer},
+ * 淘汰队列、频率统计和 {@link TimerWheel} 只在持有 evictionLock 的线程中批量更新.
+ * 写操作在待处理写任务超过 WRITE_BUFFER_MAX 时阻塞等待维护, 以保证容量上限.
+ * 过期条目在读取时视为不存在, 由维护时推进的时间轮回收, 不需要后台线程
+ */
+public class WindowTinyLfuCache implements Cache {
+
+    private static final Logger logger = LoggerFactory.getLogger(WindowTinyLfuCache.class);
+
+    /**
+     * 按条目数计算容量
+     */
+    public static final Weigher ENTRY_COUNT = (key, value) -> 1;
+    /**
+     * 按估算的内存字节数计算容量
+     */
+    public static final Weigher ESTIMATED_BYTES = (key, value) -> 64 + estimateBytes(key) + estimateBytes(value);
+
+    private static final int WRITE_BUFFER_MAX = 128;
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final int ADMIT_HASHDOS_THRESHOLD = 5;
+
+    static final byte QUEUE_NONE = 0;
+    static final byte QUEUE_WINDOW = 1;
+    static final byte QUEUE_PROBATION = 2;
+    static final byte QUEUE_PROTECTED = 3;
+
+    private final ConcurrentHashMap<Object, Node> data;
+    private final Weigher weigher;
+    private final int expireSeconds;
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final StripedReadBuffer<Node> readBuffer = new StripedReadBuffer<>();
+    private final ConcurrentLinkedQueue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    // 以下字段只在持有 evictionLock 时访问
+    private final FrequencySketch sketch;
+    private final TimerWheel timerWheel;
+    private final AccessOrderDeque window = new AccessOrderDeque();
+    private final AccessOrderDeque probation = new AccessOrderDeque();
+    private final AccessOrderDeque protectedDeque = new AccessOrderDeque();
+    private long weightedSize;
+    private long windowWeightedSize;
+    private long protectedWeightedSize;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param maximumSize   最大条目数
+     * @param expireSeconds 默认过期时间, 小于等于 0 表示不过期
+     */
+    public WindowTinyLfuCache(long maximumSize, int expireSeconds) {
+        this(maximumSize, ENTRY_COUNT, expireSeconds);
+    }
+
+    /**
+     * @param maximumWeight 最大总权重, 单位由 weigher 决定
+     * @param weigher       条目权重计算方式, 如 {@link #ENTRY_COUNT} 或 {@link #ESTIMATED_BYTES}
+     * @param expireSeconds 默认过期时间, 小于等于 0 表示不过期
+     */
+    public WindowTinyLfuCache(long maximumWeight, Weigher weigher, int expireSeconds) {
+        Preconditions.checkArgument(maximumWeight > 0, "maximum weight must be positive");
+        Preconditions.checkNotNull(weigher);
+        if (logger.isDebugEnabled()) {
+            logger.debug("window tiny lfu cache init, maximum {}", maximumWeight);
+        }
+        this.maximum = maximumWeight;
+        this.weigher = weigher;
+        this.expireSeconds = expireSeconds;
+        this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_RATIO));
+        this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_RATIO);
+        long expectedEntries = weigher == ENTRY_COUNT ? maximumWeight : 1024;
+        this.data = new ConcurrentHashMap<>((int) Math.min(expectedEntries, 1 << 16));
+        this.sketch = new FrequencySketch(expectedEntries);
+        this.timerWheel = new TimerWheel(System.currentTimeMillis());
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        this.put(key, value, expireSeconds);
+    }
+
+    @Override
+    public void put(Object key, Object value, int expire) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("put cache key: {} value: {} expire: {}", key, value, expire);
+        }
+        long expireAt = expire > 0 ? System.currentTimeMillis() + expire * 1000L : Long.MAX_VALUE;
+        Node node = new Node(key, value, weigher.weigh(key, value), expireAt);
+        Node prior = data.put(key, node);
+        afterWrite(() -> {
+            if (prior != null) {
+                discard(prior);
+            }
+            add(node);
+        });
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("get cache key: {}", key);
+        }
+        Node node = data.get(key);
+        if (node == null || (node.expireAt != Long.MAX_VALUE && node.expireAt <= System.currentTimeMillis())) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        if (readBuffer.offer(node) == StripedReadBuffer.FULL) {
+            tryMaintenance();
+        }
+        return node.value;
+    }
+
+    @Override
+    public List<DataWrapper> get(Object[] keys) {
+        List<DataWrapper> result = Lists.newArrayList();
+        for (Object key : keys) {
+            Object singleResult = this.get(key);
+            if (singleResult != null) {
+                result.add(new DataWrapper(key, singleResult));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void delete(Object key) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("remove cache key: {}", key);
+        }
+        Node prior = data.remove(key);
+        if (prior != null) {
+            afterWrite(() -> discard(prior));
+        }
+    }
+
+    @Override
+    public void put(List list) {
+        for (Object object : list) {
+            DataWrapper dataWrapper = (DataWrapper) object;
+            this.put(dataWrapper.getKey(), dataWrapper.getValue());
+        }
+    }
+
+    /**
+     * 立即执行一次维护: 回放访问记录和写任务, 回收过期条目, 按容量淘汰
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 当前条目数, 可能包含尚未回收的过期条目
+     */
+    public long size() {
+        return data.size();
+    }
+
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            return weightedSize;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        if (pendingWrites.incrementAndGet() > WRITE_BUFFER_MAX) {
+            // 写入速度超过维护速度时阻塞, 保证缓存不会无限增长
+            cleanUp();
+        } else {
+            tryMaintenance();
+        }
+    }
+
+    private void tryMaintenance() {
+        if (evictionLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void maintenance() {
+        readBuffer.drainTo(this::onAccess);
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            task.run();
+            pendingWrites.decrementAndGet();
+        }
+        timerWheel.advance(System.currentTimeMillis(), node -> {
+            discard(node);
+            evictionCount.increment();
+        });
+        if (weigher != ENTRY_COUNT) {
+            sketch.ensureCapacity(data.size());
+        }
+        evictFromMain(evictFromWindow());
+    }
+
+    private void add(Node node) {
+        if (node.retired) {
+            return;
+        }
+        sketch.increment(node.key);
+        node.queue = QUEUE_WINDOW;
+        window.addLast(node);
+        windowWeightedSize += node.weight;
+        weightedSize += node.weight;
+        if (node.expireAt != Long.MAX_VALUE) {
+            timerWheel.schedule(node);
+        }
+    }
+
+    private void onAccess(Node node) {
+        if (node.retired || node.queue == QUEUE_NONE) {
+            return;
+        }
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case QUEUE_WINDOW:
+                window.moveToLast(node);
+                break;
+            case QUEUE_PROBATION:
+                probation.remove(node);
+                node.queue = QUEUE_PROTECTED;
+                protectedDeque.addLast(node);
+                protectedWeightedSize += node.weight;
+                while (protectedWeightedSize > protectedMaximum) {
+                    Node demoted = protectedDeque.first;
+                    protectedDeque.remove(demoted);
+                    protectedWeightedSize -= demoted.weight;
+                    demoted.queue = QUEUE_PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case QUEUE_PROTECTED:
+                protectedDeque.moveToLast(node);
+                break;
+            default:
+        }
+    }
+
+    /**
+     * 把超出窗口容量的条目移入 probation 队尾
+     *
+     * @return 本次移入的第一个条目, 即准入候选者
+     */
+    private Node evictFromWindow() {
+        Node first = null;
+        while (windowWeightedSize > windowMaximum && window.first != null) {
+            Node node = window.first;
+            window.remove(node);
+            windowWeightedSize -= node.weight;
+            node.queue = QUEUE_PROBATION;
+            probation.addLast(node);
+            if (first == null) {
+                first = node;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * 超出容量时让候选者 (从窗口移入 probation 的条目) 与 probation 队首的受害者比较频率, 淘汰较低者
+     */
+    private void evictFromMain(Node candidate) {
+        Node victim = probation.first;
+        while (weightedSize > maximum) {
+            if (victim == null || victim == candidate) {
+                if (candidate == null) {
+                    // probation 已空, 依次从 protected 和窗口淘汰
+                    Node other = protectedDeque.first != null ? protectedDeque.first : window.first;
+                    if (other == null) {
+                        break;
+                    }
+                    evict(other);
+                    continue;
+                }
+                Node next = candidate.next;
+                evict(candidate);
+                candidate = next;
+                victim = next;
+            } else if (candidate == null) {
+                Node next = victim.next;
+                evict(victim);
+                victim = next;
+            } else if (admit(candidate.key, victim.key)) {
+                Node next = victim.next;
+                evict(victim);
+                victim = next;
+                candidate = candidate.next;
+            } else {
+                Node next = candidate.next;
+                evict(candidate);
+                candidate = next;
+            }
+        }
+    }
+
+    private boolean admit(Object candidateKey, Object victimKey) {
+        int candidateFrequency = sketch.frequency(candidateKey);
+        int victimFrequency = sketch.frequency(victimKey);
+        if (candidateFrequency > victimFrequency) {
+            return true;
+        }
+        if (candidateFrequency <= ADMIT_HASHDOS_THRESHOLD) {
+            return false;
+        }
+        // 频率相近的热点 key 以小概率准入, 避免受害者被刻意构造的冲突 key 长期保护
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private void evict(Node node) {
+        discard(node);
+        evictionCount.increment();
+    }
+
+    private void discard(Node node) {
+        if (node.retired) {
+            return;
+        }
+        node.retired = true;
+        switch (node.queue) {
+            case QUEUE_WINDOW:
+                window.remove(node);
+                windowWeightedSize -= node.weight;
+                break;
+            case QUEUE_PROBATION:
+                probation.remove(node);
+                break;
+            case QUEUE_PROTECTED:
+                protectedDeque.remove(node);
+                protectedWeightedSize -= node.weight;
+                break;
+            default:
+        }
+        if (node.queue != QUEUE_NONE) {
+            weightedSize -= node.weight;
+            node.queue = QUEUE_NONE;
+        }
+        timerWheel.deschedule(node);
+        data.remove(node.key, node);
+    }
+
+    private static int estimateBytes(Object object) {
+        if (object == null) {
+            return 0;
+        }
+        if (object instanceof String) {
+            return 40 + 2 * ((String) object).length();
+        }
+        if (object instanceof byte[]) {
+            return 16 + ((byte[]) object).length;
+        }
+        return 40 + 2 * object.toString().length();
+    }
+
+    public interface Weigher {
+        int weigh(Object key, Object value);
+    }
+
+    static final class Node {
+        final Object key;
+        final Object value;
+        final int weight;
+        final long expireAt;
+
+        // 以下字段只在持有 evictionLock 时访问
+        Node prev;
+        Node next;
+        Node timerPrev;
+        Node timerNext;
+        byte queue;
+        boolean retired;
+
+        Node(Object key, Object value, int weight, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 以 Node 自身的 prev/next 指针构成的双向链表, 队首为最久未访问的条目
+     */
+    private static final class AccessOrderDeque {
+        Node first;
+        Node last;
+
+        void addLast(Node node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+}
@@ -54,9 +54,11 @@ public class FlowCounterManager {
     Map<String, Double> sourceQpsAllowMap = new HashMap<>();
     File file = new File(DEFAULT_CONFIG_FILE);
     private ConcurrentHashMap<String, FlowCounter> passMap = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, TokenBucketLimiter> limiterMap = new ConcurrentHashMap<>();
     private ConcurrentHashMap<String, FlowCounter> successMap = new ConcurrentHashMap<>();
     private ConcurrentHashMap<String, FlowCounter> blockMap = new ConcurrentHashMap<>();
     private ConcurrentHashMap<String, FlowCounter> exceptionMap = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, FlowCounter> rtMap = new ConcurrentHashMap<>();
 
     public FlowCounterManager(String appName) {
         this(appName, false);
@@ -161,16 +163,42 @@ public class FlowCounterManager {
         this.metricReport = metricReport;
     }
 
+    /**
+     * 限流判断由 {@link TokenBucketLimiter} 原子完成, 通过后再计入 passMap 用于统计上报
+     */
     public boolean pass(String sourceName, int times) {
+        TokenBucketLimiter limiter = limiterMap.get(sourceName);
+        if (limiter == null) {
+            Double allowedQps = getAllowedQps(sourceName);
+            limiter = limiterMap.putIfAbsent(sourceName, new TokenBucketLimiter(allowedQps != null ? allowedQps : Integer.MAX_VALUE));
+            if (limiter == null) {
+                limiter = limiterMap.get(sourceName);
+            }
+        }
+        FlowCounter flowCounter = passCounter(sourceName);
+        if (!limiter.tryAcquire(times)) {
+            return false;
+        }
+        flowCounter.add(times);
+        return true;
+    }
+
+    /**
+     * 只计入 passMap 用于统计上报, 不做限流判断
+     */
+    public void count(String sourceName, int times) {
+        passCounter(sourceName).add(times);
+    }
+
+    private FlowCounter passCounter(String sourceName) {
         FlowCounter flowCounter = passMap.get(sourceName);
         if (flowCounter == null) {
-            Double allowedQps = getAllowedQps(sourceName);
-            flowCounter = passMap.putIfAbsent(sourceName, new FlowCounter(allowedQps != null ? allowedQps : Integer.MAX_VALUE));
+            flowCounter = passMap.putIfAbsent(sourceName, new FlowCounter(Integer.MAX_VALUE));
             if (flowCounter == null) {
                 flowCounter = passMap.get(sourceName);
             }
         }
-        return flowCounter.tryPass(times);
+        return flowCounter;
     }
 
     public boolean success(String sourceName, int times) {
@@ -206,6 +234,20 @@ public class FlowCounterManager {
         return flowCounter.tryPass(times);
     }
 
+    /**
+     * 累计耗时, 上报时按 pass 次数求平均作为 rt, 单位由调用方决定 (缓存各层使用微秒)
+     */
+    public void rt(String sourceName, long cost) {
+        FlowCounter flowCounter = rtMap.get(sourceName);
+        if (flowCounter == null) {
+            flowCounter = rtMap.putIfAbsent(sourceName, new FlowCounter(Integer.MAX_VALUE));
+            if (flowCounter == null) {
+                flowCounter = rtMap.get(sourceName);
+            }
+        }
+        flowCounter.add((int) Math.min(cost, Integer.MAX_VALUE));
+    }
+
     public void startReport() {
 //        init();
         executor.scheduleAtFixedRate(() -> {
@@ -216,10 +258,13 @@ public class FlowCounterManager {
                 FlowCounter successCounter = successMap.get(sourceName);
                 FlowCounter blockCounter = blockMap.get(sourceName);
                 FlowCounter exceptionCounter = exceptionMap.get(sourceName);
+                FlowCounter rtCounter = rtMap.get(sourceName);
                 MetricNode metricNode = new MetricNode();
                 metricNode.setTimestamp(current);
                 metricNode.setResource(sourceName);
-                metricNode.setPassQps(flowCounter.getSum());
+                long passSum = flowCounter.getSum();
+                metricNode.setPassQps(passSum);
+                metricNode.setRt(rtCounter != null && passSum > 0 ? rtCounter.getSum() / passSum : 0);
                 metricNode.setBlockQps(blockCounter != null ? new Double(blockCounter.getQps()).longValue() : 0);
                 metricNode.setExceptionQps(exceptionCounter != null ? new Double(exceptionCounter.getQps()).longValue() : 0);
                 metricNode.setSuccessQps(successCounter != null ? new Double(successCounter.getQps()).longValue() : 0);
@@ -322,10 +367,10 @@ public class FlowCounterManager {
 
         this.store(file, JsonUtil.object2Json(list).getBytes());
 
-        // 更新FlowCounter
-        FlowCounter flowCounter = passMap.get(sourceName);
-        if (flowCounter != null) {
-            flowCounter.setQpsAllowed(allowQps);
+        // 更新限流器
+        TokenBucketLimiter limiter = limiterMap.get(sourceName);
+        if (limiter != null) {
+            limiter.setQpsAllowed(allowQps);
         }
     }
 
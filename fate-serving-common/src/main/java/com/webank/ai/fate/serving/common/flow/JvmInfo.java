@@ -16,7 +16,13 @@
 
 package com.webank.ai.fate.serving.common.flow;
 
+import com.webank.ai.fate.serving.common.model.OneHotEncoderMetrics;
 import com.webank.ai.fate.serving.common.utils.JVMMemoryUtils;
+import com.webank.ai.fate.serving.core.adaptor.FeatureCacheMetrics;
+import com.webank.ai.fate.serving.core.bean.ChannelMetrics;
+import com.webank.ai.fate.serving.core.executor.ExecutorMetrics;
+
+import java.util.List;
 
 public class JvmInfo {
     long timestamp;
@@ -30,6 +36,10 @@ public class JvmInfo {
     long fullGcTime;
     JVMMemoryUtils.JVMMemoryUsage nonHeap;
     JVMMemoryUtils.JVMMemoryUsage survivor;
+    List<ExecutorMetrics> executors;
+    List<ChannelMetrics> channels;
+    List<FeatureCacheMetrics> featureCaches;
+    List<OneHotEncoderMetrics> oneHotEncoders;
 
     public JvmInfo() {
     }
@@ -131,6 +141,38 @@ public class JvmInfo {
         this.survivor = survivor;
     }
 
+    public List<ExecutorMetrics> getExecutors() {
+        return executors;
+    }
+
+    public void setExecutors(List<ExecutorMetrics> executors) {
+        this.executors = executors;
+    }
+
+    public List<ChannelMetrics> getChannels() {
+        return channels;
+    }
+
+    public void setChannels(List<ChannelMetrics> channels) {
+        this.channels = channels;
+    }
+
+    public List<FeatureCacheMetrics> getFeatureCaches() {
+        return featureCaches;
+    }
+
+    public void setFeatureCaches(List<FeatureCacheMetrics> featureCaches) {
+        this.featureCaches = featureCaches;
+    }
+
+    public List<OneHotEncoderMetrics> getOneHotEncoders() {
+        return oneHotEncoders;
+    }
+
+    public void setOneHotEncoders(List<OneHotEncoderMetrics> oneHotEncoders) {
+        this.oneHotEncoders = oneHotEncoders;
+    }
+
     public void reset() {
 
     }
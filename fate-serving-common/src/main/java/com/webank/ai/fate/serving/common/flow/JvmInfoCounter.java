@@ -17,9 +17,13 @@
 package com.webank.ai.fate.serving.common.flow;
 
 import com.google.common.collect.Lists;
+import com.webank.ai.fate.serving.common.model.OneHotEncoderMetrics;
 import com.webank.ai.fate.serving.common.utils.JVMGCUtils;
 import com.webank.ai.fate.serving.common.utils.JVMMemoryUtils;
 import com.webank.ai.fate.serving.common.utils.JVMThreadUtils;
+import com.webank.ai.fate.serving.core.adaptor.FeatureCache;
+import com.webank.ai.fate.serving.core.bean.GrpcConnectionPool;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,6 +65,10 @@ public class JvmInfoCounter {
                     memInfo.fullGcCount = JVMGCUtils.getFullGCCollectionCount();
                     memInfo.fullGcTime = JVMGCUtils.getFullGCCollectionTime();
                     memInfo.threadCount = JVMThreadUtils.getThreadCount();
+                    memInfo.executors = ManagedExecutors.metrics();
+                    memInfo.channels = GrpcConnectionPool.getPool().metrics();
+                    memInfo.featureCaches = FeatureCache.metrics();
+                    memInfo.oneHotEncoders = OneHotEncoderMetrics.metrics();
                     memInfo.timestamp = timestamp;
                 }
             }, 0, 1000, TimeUnit.MILLISECONDS);
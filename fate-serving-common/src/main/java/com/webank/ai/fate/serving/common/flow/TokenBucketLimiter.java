@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.common.flow;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于 GCRA (Generic Cell Rate Algorithm) 的令牌桶限流器.
+ * <p>
+ * 状态只有一个理论到达时间 (TAT, 纳秒), 每个 permit 使 TAT 后移 1 / qps 秒, 空闲时 TAT 从当前时间起算.
+ * 突发容忍度 τ 为 1 秒的 permit 数, 申请 cost 时仅当 TAT - now > τ - cost 才拒绝, 即桶容量为 1 秒配额:
+ * 空闲后可一次通过 qps 个单 permit 申请, 或一个不超过 qps 的批量申请而不挤占之后的调用, 持续速率仍为 qps.
+ * 判断与扣减在同一次 CAS 中完成, 并发下不会超发, 单次调用为 O(1)
+ */
+public class TokenBucketLimiter {
+
+    private static final double NANOS_PER_SECOND = 1e9;
+    /**
+     * 超过该值视为不限流
+     */
+    private static final double UNLIMITED_QPS = NANOS_PER_SECOND;
+
+    private final AtomicLong theoreticalArrivalTime;
+    /**
+     * 限流参数整体替换, 读到的 qps 与间隔始终来自同一次设置
+     */
+    private volatile Rate rate;
+
+    public TokenBucketLimiter(double qpsAllowed) {
+        this.theoreticalArrivalTime = new AtomicLong(nanoTime());
+        setQpsAllowed(qpsAllowed);
+    }
+
+    public boolean tryAcquire(int permits) {
+        Rate current = rate;
+        if (current.qpsAllowed >= UNLIMITED_QPS) {
+            return true;
+        }
+        if (current.qpsAllowed <= 0 || permits > current.maxPermits) {
+            return false;
+        }
+        long cost = current.intervalNanos * permits;
+        while (true) {
+            long now = nanoTime();
+            long tat = theoreticalArrivalTime.get();
+            long base = tat - now > 0 ? tat : now;
+            if (base - now > current.burstNanos - cost) {
+                return false;
+            }
+            if (theoreticalArrivalTime.compareAndSet(tat, base + cost)) {
+                return true;
+            }
+        }
+    }
+
+    public double getQpsAllowed() {
+        return rate.qpsAllowed;
+    }
+
+    public TokenBucketLimiter setQpsAllowed(double qpsAllowed) {
+        this.rate = new Rate(qpsAllowed);
+        return this;
+    }
+
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private static class Rate {
+        final double qpsAllowed;
+        final long intervalNanos;
+        /**
+         * 单次申请的 permit 上限, 为 1 秒的 permit 数, 至少为 1 个
+         */
+        final long maxPermits;
+        /**
+         * 突发容忍度 τ, 即 maxPermits 个 permit 对应的时长
+         */
+        final long burstNanos;
+
+        Rate(double qpsAllowed) {
+            this.qpsAllowed = qpsAllowed;
+            if (qpsAllowed > 0 && qpsAllowed < UNLIMITED_QPS) {
+                this.intervalNanos = Math.max(1, Math.round(NANOS_PER_SECOND / qpsAllowed));
+                this.maxPermits = Math.max(1, (long) qpsAllowed);
+            } else {
+                this.intervalNanos = 0;
+                this.maxPermits = 0;
+            }
+            this.burstNanos = intervalNanos * maxPermits;
+        }
+    }
+}
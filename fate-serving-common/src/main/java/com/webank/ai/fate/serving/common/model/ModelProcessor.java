@@ -18,7 +18,9 @@ package com.webank.ai.fate.serving.common.model;
 
 import com.webank.ai.fate.serving.core.bean.*;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 public interface ModelProcessor {
@@ -33,4 +35,16 @@ public interface ModelProcessor {
 
     public Object getComponent(String name);
 
+    /**
+     * 本地推理与各 host 的远端调用并行, 全部完成后在回调中合并, 调用线程不等待远端返回.
+     * remoteFutureMap 中的 future 需要自带超时
+     */
+    default CompletableFuture<BatchInferenceResult> guestBatchInferenceAsync(Context context, BatchInferenceRequest batchInferenceRequest, Map<String, CompletableFuture<BatchInferenceResult>> remoteFutureMap, long timeout) {
+        return CompletableFuture.completedFuture(guestBatchInference(context, batchInferenceRequest, new HashMap<String, Future>(remoteFutureMap), timeout));
+    }
+
+    default CompletableFuture<ReturnResult> guestInferenceAsync(Context context, InferenceRequest inferenceRequest, Map<String, CompletableFuture<ReturnResult>> remoteFutureMap, long timeout) {
+        return CompletableFuture.completedFuture(guestInference(context, inferenceRequest, new HashMap<String, Future>(remoteFutureMap), timeout));
+    }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.common.model;
+
+import com.google.common.collect.Lists;
+
+import java.util.*;
+
+/**
+ * onehot 组件各列 unseen / malformed / ceiled 计数的快照, 计数为模型加载以来的累计值.
+ * 组件加载成功后登记在这里 (弱引用, 模型卸载后随组件回收), 通过 {@link #metrics()} 汇总上报
+ */
+public class OneHotEncoderMetrics {
+
+    private static final Set<Source> SOURCES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    String componentName;
+    Map<String, Long> unseenCounts;
+    Map<String, Long> malformedCounts;
+    Map<String, Long> ceiledCounts;
+
+    public OneHotEncoderMetrics() {
+    }
+
+    public OneHotEncoderMetrics(String componentName, Map<String, Long> unseenCounts, Map<String, Long> malformedCounts,
+                                Map<String, Long> ceiledCounts) {
+        this.componentName = componentName;
+        this.unseenCounts = unseenCounts;
+        this.malformedCounts = malformedCounts;
+        this.ceiledCounts = ceiledCounts;
+    }
+
+    public static void register(Source source) {
+        SOURCES.add(source);
+    }
+
+    public static List<OneHotEncoderMetrics> metrics() {
+        List<Source> sources;
+        synchronized (SOURCES) {
+            sources = Lists.newArrayList(SOURCES);
+        }
+        List<OneHotEncoderMetrics> result = Lists.newArrayListWithCapacity(sources.size());
+        for (Source source : sources) {
+            result.add(source.getMetrics());
+        }
+        return result;
+    }
+
+    public String getComponentName() {
+        return componentName;
+    }
+
+    public void setComponentName(String componentName) {
+        this.componentName = componentName;
+    }
+
+    public Map<String, Long> getUnseenCounts() {
+        return unseenCounts;
+    }
+
+    public void setUnseenCounts(Map<String, Long> unseenCounts) {
+        this.unseenCounts = unseenCounts;
+    }
+
+    public Map<String, Long> getMalformedCounts() {
+        return malformedCounts;
+    }
+
+    public void setMalformedCounts(Map<String, Long> malformedCounts) {
+        this.malformedCounts = malformedCounts;
+    }
+
+    public Map<String, Long> getCeiledCounts() {
+        return ceiledCounts;
+    }
+
+    public void setCeiledCounts(Map<String, Long> ceiledCounts) {
+        this.ceiledCounts = ceiledCounts;
+    }
+
+    public interface Source {
+        OneHotEncoderMetrics getMetrics();
+    }
+}
@@ -23,6 +23,7 @@ import com.webank.ai.fate.serving.common.bean.ServingServerContext;
 import com.webank.ai.fate.serving.common.flow.FlowCounterManager;
 import com.webank.ai.fate.serving.common.model.Model;
 import com.webank.ai.fate.serving.common.utils.DisruptorUtil;
+import com.webank.ai.fate.serving.common.utils.FutureUtil;
 import com.webank.ai.fate.serving.core.bean.*;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.exceptions.ShowDownRejectException;
@@ -34,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -108,6 +110,13 @@ public abstract class AbstractServiceAdaptor<req, resp> implements ServiceAdapto
 
     protected abstract resp doService(Context context, InboundPackage<req> data, OutboundPackage<resp> outboundPackage);
 
+    /**
+     * 异步实现, 默认在调用线程同步执行 doService; 需要等待远端返回的服务应覆盖此方法, 在回调中完成结果
+     */
+    protected CompletableFuture<resp> doServiceAsync(Context context, InboundPackage<req> data, OutboundPackage<resp> outboundPackage) {
+        return CompletableFuture.completedFuture(doService(context, data, outboundPackage));
+    }
+
     /**
      * @param context
      * @param data
@@ -118,33 +127,71 @@ public abstract class AbstractServiceAdaptor<req, resp> implements ServiceAdapto
     public OutboundPackage<resp> service(Context context, InboundPackage<req> data) throws RuntimeException {
 
         OutboundPackage<resp> outboundPackage = new OutboundPackage<resp>();
-        context.preProcess();
+        if (!begin(context, data)) {
+            return this.serviceFailInner(context, data, new ShowDownRejectException());
+        }
         List<Throwable> exceptions = Lists.newArrayList();
+        resp result = null;
+        try {
+            preChain.doPreProcess(context, data, outboundPackage);
+            result = doService(context, data, outboundPackage);
+            if (logger.isDebugEnabled()) {
+                logger.debug("do service, router info: {}, service name: {}, result: {}", JsonUtil.object2Json(data.getRouterInfo()), serviceName, result);
+            }
+        } catch (Throwable e) {
+            exceptions.add(e);
+            logger.error("do service fail, cause by: {}", e.getMessage());
+        }
+        return complete(context, data, outboundPackage, result, exceptions);
+    }
+
+    /**
+     * 与 service 的前后处理一致, 区别在于 doServiceAsync 返回后调用线程即可释放, 后处理在结果完成的线程中执行
+     */
+    public CompletableFuture<OutboundPackage<resp>> serviceAsync(Context context, InboundPackage<req> data) {
+        OutboundPackage<resp> outboundPackage = new OutboundPackage<resp>();
+        if (!begin(context, data)) {
+            return CompletableFuture.completedFuture(this.serviceFailInner(context, data, new ShowDownRejectException()));
+        }
+        CompletableFuture<resp> future;
+        try {
+            preChain.doPreProcess(context, data, outboundPackage);
+            future = doServiceAsync(context, data, outboundPackage);
+        } catch (Throwable e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.handle((result, e) -> {
+            List<Throwable> exceptions = Lists.newArrayList();
+            if (e != null) {
+                Throwable cause = FutureUtil.unwrap(e);
+                exceptions.add(cause);
+                logger.error("do service fail, cause by: {}", cause.getMessage());
+            } else if (logger.isDebugEnabled()) {
+                logger.debug("do service, router info: {}, service name: {}, result: {}", JsonUtil.object2Json(data.getRouterInfo()), serviceName, result);
+            }
+            return complete(context, data, outboundPackage, result, exceptions);
+        });
+    }
+
+    private boolean begin(Context context, InboundPackage<req> data) {
+        context.preProcess();
         context.setReturnCode(StatusCode.SUCCESS);
         if (!isOpen) {
-            return this.serviceFailInner(context, data, new ShowDownRejectException());
+            return false;
         }
         if(data.getBody()!=null) {
             context.putData(Dict.INPUT_DATA, data.getBody());
         }
+        requestInHandle.addAndGet(1);
+        context.setServiceName(this.serviceName);
+        return true;
+    }
 
+    private OutboundPackage<resp> complete(Context context, InboundPackage<req> data, OutboundPackage<resp> outboundPackage, resp result, List<Throwable> exceptions) {
         try {
-            requestInHandle.addAndGet(1);
-            resp result = null;
-            context.setServiceName(this.serviceName);
-            try {
-                preChain.doPreProcess(context, data, outboundPackage);
-                result = doService(context, data, outboundPackage);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("do service, router info: {}, service name: {}, result: {}", JsonUtil.object2Json(data.getRouterInfo()), serviceName, result);
-                }
-            } catch (Throwable e) {
-                exceptions.add(e);
-                logger.error("do service fail, cause by: {}", e.getMessage());
-            }
             outboundPackage.setData(result);
             postChain.doPostProcess(context, data, outboundPackage);
-
         } catch (Throwable e) {
             exceptions.add(e);
             logger.error(e.getMessage());
@@ -102,6 +102,9 @@ public class ErrorMessageUtil {
         } else if (e instanceof OverLoadException) {
             result.put(Dict.CODE, StatusCode.OVER_LOAD_ERROR);
             result.put(Dict.MESSAGE, "OVER_LOAD");
+        } else if (e instanceof DeadlineExceededException) {
+            result.put(Dict.CODE, StatusCode.DEADLINE_EXCEEDED_ERROR);
+            result.put(Dict.MESSAGE, "DEADLINE_EXCEEDED");
         } else if (e instanceof InvalidRoleInfoException) {
             result.put(Dict.CODE, StatusCode.INVALID_ROLE_ERROR);
             result.put(Dict.MESSAGE, "ROLE_ERROR");
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.common.utils;
+
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.exceptions.DeadlineExceededException;
+import io.grpc.Deadline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求截止时间的传递.
+ * <p>
+ * 每一跳收到请求时, 用自己的时钟把上游给出的剩余时间 (grpc deadline 或 Metadata.conf.overallTimeout) 换算成本地截止时间,
+ * 再向下游发送时以当时的剩余时间作为新的预算, 因此各跳自身的耗时被逐级扣除, 也不依赖各方时钟一致.
+ * 截止时间统一为毫秒时间戳, 0 表示未设置
+ */
+public class DeadlineUtil {
+
+    /**
+     * 当前 grpc 调用上游设置的截止时间, 需要在 grpc 回调线程中获取
+     */
+    public static long grpcDeadline() {
+        Deadline deadline = io.grpc.Context.current().getDeadline();
+        if (deadline == null) {
+            return 0;
+        }
+        return System.currentTimeMillis() + deadline.timeRemaining(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param receivedAt 收到请求的时间
+     * @param budget     上游给出的剩余毫秒数, 小于等于 0 表示未设置
+     */
+    public static long fromBudget(long receivedAt, long budget) {
+        return budget > 0 ? receivedAt + budget : 0;
+    }
+
+    public static long earliest(long deadline, long other) {
+        if (deadline <= 0) {
+            return other;
+        }
+        if (other <= 0) {
+            return deadline;
+        }
+        return Math.min(deadline, other);
+    }
+
+    /**
+     * 以 timeout 为上限收紧截止时间, 返回剩余毫秒数, 可能小于等于 0
+     */
+    public static long limit(Context context, long timeout) {
+        context.setDeadline(earliest(context.getDeadline(), System.currentTimeMillis() + timeout));
+        return context.getRemainingTime();
+    }
+
+    /**
+     * 截止时间已过时抛出异常, 避免为调用方已放弃的请求继续做特征获取、推理等工作
+     *
+     * @param stage 即将执行的阶段, 用于日志
+     */
+    public static void check(Context context, String stage) {
+        if (context.getDeadline() > 0 && context.getRemainingTime() <= 0) {
+            throw new DeadlineExceededException("deadline exceeded " + (-context.getRemainingTime()) + " ms before " + stage);
+        }
+    }
+}
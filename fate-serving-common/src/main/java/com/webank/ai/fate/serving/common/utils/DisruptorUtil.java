@@ -16,42 +16,82 @@
 
 package com.webank.ai.fate.serving.common.utils;
 
-import com.lmax.disruptor.BlockingWaitStrategy;
-import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.*;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 import com.lmax.disruptor.util.DaemonThreadFactory;
 import com.webank.ai.fate.serving.common.async.*;
+import com.webank.ai.fate.serving.core.bean.MetaInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class DisruptorUtil {
 
+    private static final int DEFAULT_RING_BUFFER_SIZE = 8192;
+    private static final String DEFAULT_WAIT_STRATEGY = "sleeping";
+
     private static Logger logger = LoggerFactory.getLogger(DisruptorUtil.class);
 
     private static Disruptor<AsyncMessageEvent> disruptor = null;
 
+    private static AsyncMessageEventProducer producer = null;
+
     static {
-        // Construct the Disruptor, use single event publisher
-        disruptor = new Disruptor(AsyncMessageEvent.FACTORY, 2048, DaemonThreadFactory.INSTANCE,
-                ProducerType.SINGLE, new BlockingWaitStrategy());
+        int ringBufferSize = ringBufferSize(MetaInfo.PROPERTY_ASYNC_EVENT_RINGBUFFER_SIZE);
+        String waitStrategy = MetaInfo.PROPERTY_ASYNC_EVENT_WAIT_STRATEGY != null ? MetaInfo.PROPERTY_ASYNC_EVENT_WAIT_STRATEGY : DEFAULT_WAIT_STRATEGY;
+
+        // Construct the Disruptor, events are published from request threads concurrently
+        disruptor = new Disruptor(AsyncMessageEvent.FACTORY, ringBufferSize, DaemonThreadFactory.INSTANCE,
+                ProducerType.MULTI, waitStrategy(waitStrategy));
 
         // Connect the handler
         disruptor.handleEventsWith(new AsyncMessageEventHandler()).then(new ClearingEventHandler());
 
-//        disruptor.handleEventsWithWorkerPool()
-
         // exception handler
         disruptor.setDefaultExceptionHandler(new DisruptorExceptionHandler());
 
         // Start the Disruptor, starts all threads running
         disruptor.start();
 
-        logger.info("disruptor initialized");
+        producer = new AsyncMessageEventProducer(disruptor.getRingBuffer());
+
+        logger.info("disruptor initialized, ring buffer size {}, wait strategy {}", ringBufferSize, waitStrategy);
+    }
+
+    /**
+     * 向上取整为 2 的幂
+     */
+    static int ringBufferSize(Integer configured) {
+        int size = configured != null && configured > 0 ? configured : DEFAULT_RING_BUFFER_SIZE;
+        if (size >= 1 << 30) {
+            return 1 << 30;
+        }
+        return size <= 2 ? 2 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * blocking: 消费线程空闲时不占 CPU, 但每次发布都要加锁唤醒;
+     * sleeping: 发布无额外开销, 消费线程自旋后短暂 park, 适合多生产者;
+     * yielding / busyspin: 延迟最低, 会占满一个 CPU
+     */
+    static WaitStrategy waitStrategy(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "blocking":
+                return new BlockingWaitStrategy();
+            case "yielding":
+                return new YieldingWaitStrategy();
+            case "busyspin":
+                return new BusySpinWaitStrategy();
+            case "sleeping":
+                return new SleepingWaitStrategy();
+            default:
+                logger.warn("unknown wait strategy {}, use {}", name, DEFAULT_WAIT_STRATEGY);
+                return new SleepingWaitStrategy();
+        }
     }
 
     /**
-     * event producer
+     * event producer, 可在任意线程并发调用, ring buffer 满时丢弃事件
      * args[0] event name, e.g. interface name, use to @Subscribe value
      * args[1] event action
      * args[2] data params
@@ -59,9 +99,23 @@ public class DisruptorUtil {
      * @param args
      */
     public static void producer(AsyncMessageEvent... args) {
-        RingBuffer<AsyncMessageEvent> ringBuffer = disruptor.getRingBuffer();
-        AsyncMessageEventProducer producer = new AsyncMessageEventProducer(ringBuffer);
-        producer.publishEvent(args);
+        for (AsyncMessageEvent event : args) {
+            producer(event);
+        }
+    }
+
+    /**
+     * @return 是否发布成功
+     */
+    public static boolean producer(AsyncMessageEvent event) {
+        if (event == null) {
+            return false;
+        }
+        boolean published = producer.publishEvent(event);
+        if (!published) {
+            logger.warn("async event {} dropped, ring buffer is full", event.getName());
+        }
+        return published;
     }
 
     public void shutdown() {
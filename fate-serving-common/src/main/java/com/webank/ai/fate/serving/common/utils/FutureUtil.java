@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.common.utils;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
+
+import java.util.concurrent.*;
+
+/**
+ * ListenableFuture 与 CompletableFuture 之间的转换, 以及不占用线程的超时
+ */
+public class FutureUtil {
+
+    private static final ScheduledThreadPoolExecutor TIMEOUT_SCHEDULER;
+
+    static {
+        TIMEOUT_SCHEDULER = new ScheduledThreadPoolExecutor(1, ManagedExecutors.namedThreadFactory("future-timeout", true));
+        // 绝大多数请求在超时前完成, 取消的超时任务立即移出队列
+        TIMEOUT_SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 转换为 CompletableFuture, 在 timeout 毫秒内未完成时以 TimeoutException 结束并取消原 future.
+     * 回调在完成原 future 的线程上执行
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> future, long timeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (timeout > 0 && !future.isDone()) {
+            ScheduledFuture<?> timeoutTask = TIMEOUT_SCHEDULER.schedule(() -> {
+                if (result.completeExceptionally(new TimeoutException("timeout after " + timeout + " ms"))) {
+                    future.cancel(true);
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+            result.whenComplete((r, e) -> timeoutTask.cancel(false));
+        }
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    /**
+     * 去掉 CompletableFuture 组合过程中包装的 CompletionException / ExecutionException
+     */
+    public static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
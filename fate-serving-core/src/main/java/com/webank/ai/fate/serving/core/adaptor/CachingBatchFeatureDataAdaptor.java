@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.adaptor;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.webank.ai.fate.serving.core.bean.BatchHostFeatureAdaptorResult;
+import com.webank.ai.fate.serving.core.bean.BatchHostFederatedParams;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.constant.StatusCode;
+import com.webank.ai.fate.serving.core.exceptions.HostGetFeatureErrorException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 带缓存的 {@link BatchFeatureDataAdaptor}, 以每条数据的 sendToRemoteFeatureData 为 key 缓存成功的结果, 见 {@link FeatureCache}.
+ * 一批中未命中的数据合并为一次 adaptor 调用; 异步刷新按 key 重新构造请求数据, 不引用本次请求的对象
+ */
+public class CachingBatchFeatureDataAdaptor implements BatchFeatureDataAdaptor {
+
+    private final BatchFeatureDataAdaptor delegate;
+    private final FeatureCache<Map<String, Object>, BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult> featureCache;
+
+    public CachingBatchFeatureDataAdaptor(BatchFeatureDataAdaptor delegate, int maxSize, int ttlSeconds, int refreshSeconds) {
+        this.delegate = delegate;
+        this.featureCache = new FeatureCache<>("batch-" + delegate.getClass().getSimpleName(), maxSize, ttlSeconds, refreshSeconds,
+                result -> StatusCode.SUCCESS == result.getRetcode() && result.getFeatures() != null);
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public List<ParamDescriptor> desc() {
+        return delegate.desc();
+    }
+
+    @Override
+    public BatchHostFeatureAdaptorResult getFeatures(Context context, List<BatchHostFederatedParams.SingleInferenceData> featureIdList) {
+        Map<Map<String, Object>, BatchHostFederatedParams.SingleInferenceData> keyDataMap = Maps.newLinkedHashMap();
+        List<Map<String, Object>> keys = Lists.newArrayListWithCapacity(featureIdList.size());
+        for (BatchHostFederatedParams.SingleInferenceData data : featureIdList) {
+            Map<String, Object> key = data.getSendToRemoteFeatureData() != null
+                    ? new HashMap<>(data.getSendToRemoteFeatureData()) : Collections.emptyMap();
+            keys.add(key);
+            keyDataMap.putIfAbsent(key, data);
+        }
+        Map<Map<String, Object>, BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult> values =
+                featureCache.getAll(keyDataMap.keySet(), missKeys -> load(context, missKeys, keyDataMap), () -> {
+                    Context refreshContext = CachingSingleFeatureDataAdaptor.newRefreshContext(context);
+                    return staleKeys -> load(refreshContext, staleKeys, newKeyDataMap(staleKeys));
+                });
+
+        BatchHostFeatureAdaptorResult result = new BatchHostFeatureAdaptorResult();
+        result.setRetcode(StatusCode.SUCCESS);
+        for (int i = 0; i < featureIdList.size(); i++) {
+            BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult value = values.get(keys.get(i));
+            if (value != null) {
+                int index = featureIdList.get(i).getIndex();
+                result.getIndexResultMap().put(index, copy(value, index));
+            }
+        }
+        return result;
+    }
+
+    public BatchFeatureDataAdaptor getDelegate() {
+        return delegate;
+    }
+
+    public FeatureCache<Map<String, Object>, BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult> getFeatureCache() {
+        return featureCache;
+    }
+
+    private Map<Map<String, Object>, BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult> load(Context context,
+            List<Map<String, Object>> missKeys, Map<Map<String, Object>, BatchHostFederatedParams.SingleInferenceData> keyDataMap) {
+        List<BatchHostFederatedParams.SingleInferenceData> missList = Lists.newArrayListWithCapacity(missKeys.size());
+        for (Map<String, Object> key : missKeys) {
+            missList.add(keyDataMap.get(key));
+        }
+        BatchHostFeatureAdaptorResult batchResult = delegate.getFeatures(context, missList);
+        if (batchResult == null) {
+            throw new HostGetFeatureErrorException("adaptor return null");
+        }
+        if (StatusCode.SUCCESS != batchResult.getRetcode()) {
+            throw new HostGetFeatureErrorException(batchResult.getRetcode(), "adaptor return error");
+        }
+        Map<Map<String, Object>, BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult> values = Maps.newHashMapWithExpectedSize(missKeys.size());
+        for (Map<String, Object> key : missKeys) {
+            BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult value = batchResult.getIndexResultMap().get(keyDataMap.get(key).getIndex());
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    private static Map<Map<String, Object>, BatchHostFederatedParams.SingleInferenceData> newKeyDataMap(List<Map<String, Object>> keys) {
+        Map<Map<String, Object>, BatchHostFederatedParams.SingleInferenceData> keyDataMap = Maps.newHashMapWithExpectedSize(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            BatchHostFederatedParams.SingleInferenceData data = new BatchHostFederatedParams.SingleInferenceData();
+            data.setIndex(i);
+            data.setSendToRemoteFeatureData(new HashMap<>(keys.get(i)));
+            keyDataMap.put(keys.get(i), data);
+        }
+        return keyDataMap;
+    }
+
+    private static BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult copy(
+            BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult value, int index) {
+        BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult copy = new BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult();
+        copy.setIndex(index);
+        copy.setRetcode(value.getRetcode());
+        copy.setMsg(value.getMsg());
+        copy.setFeatures(value.getFeatures() != null ? new HashMap<>(value.getFeatures()) : null);
+        return copy;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.adaptor;
+
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.bean.ReturnResult;
+import com.webank.ai.fate.serving.core.constant.StatusCode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 带缓存的 {@link SingleFeatureDataAdaptor}, 以 featureIds 为 key 缓存成功的结果, 见 {@link FeatureCache}.
+ * 每次返回结果的副本, 调用方可以修改. 异步刷新使用单独的 context 和 key 副本, 不引用本次请求的对象
+ */
+public class CachingSingleFeatureDataAdaptor implements SingleFeatureDataAdaptor {
+
+    private final SingleFeatureDataAdaptor delegate;
+    private final FeatureCache<Map<String, Object>, ReturnResult> featureCache;
+
+    public CachingSingleFeatureDataAdaptor(SingleFeatureDataAdaptor delegate, int maxSize, int ttlSeconds, int refreshSeconds) {
+        this.delegate = delegate;
+        this.featureCache = new FeatureCache<>("single-" + delegate.getClass().getSimpleName(), maxSize, ttlSeconds, refreshSeconds,
+                result -> StatusCode.SUCCESS == result.getRetcode() && result.getData() != null);
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public ReturnResult getData(Context context, Map<String, Object> featureIds) {
+        if (featureIds == null) {
+            return delegate.getData(context, null);
+        }
+        ReturnResult result = featureCache.get(new HashMap<>(featureIds), key -> delegate.getData(context, new HashMap<>(key)),
+                () -> {
+                    Context refreshContext = newRefreshContext(context);
+                    return key -> delegate.getData(refreshContext, new HashMap<>(key));
+                });
+        return result != null ? copy(result) : null;
+    }
+
+    /**
+     * 刷新在请求结束后执行, 使用请求 context 的副本并去掉请求的截止时间
+     */
+    static Context newRefreshContext(Context context) {
+        if (context == null) {
+            return null;
+        }
+        Context refreshContext = context.subContext();
+        refreshContext.setDeadline(0);
+        return refreshContext;
+    }
+
+    public SingleFeatureDataAdaptor getDelegate() {
+        return delegate;
+    }
+
+    public FeatureCache<Map<String, Object>, ReturnResult> getFeatureCache() {
+        return featureCache;
+    }
+
+    private static ReturnResult copy(ReturnResult result) {
+        ReturnResult copy = ReturnResult.build(result.getRetcode(), result.getRetmsg(),
+                result.getData() != null ? new HashMap<>(result.getData()) : null);
+        copy.setCaseid(result.getCaseid());
+        copy.setFlag(result.getFlag());
+        return copy;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.adaptor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 特征缓存, 供 adaptor 的缓存装饰器使用.
+ * <p>
+ * 有界并按写入时间过期; 同一个 key 的并发未命中只调用一次 loader (singleflight), 其余调用等待其结果;
+ * refreshSeconds 大于 0 时, 命中超过该时间的条目会触发一次异步刷新 (refresh-ahead), 本次仍返回旧值;
+ * 刷新时在请求线程中调用一次 refresher 取得刷新用的 loader, 该 loader 在刷新线程中执行, 不应引用请求级的对象.
+ * 只缓存 cacheable 判断为 true 的结果, 失败的结果不缓存.
+ * 创建的缓存登记在这里, 通过 {@link #metrics()} 获取命中率和加载耗时
+ */
+public class FeatureCache<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeatureCache.class);
+    private static final ConcurrentMap<String, FeatureCache<?, ?>> CACHES = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Cache<K, Entry<V>> cache;
+    private final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final Predicate<V> cacheable;
+    private final long refreshNanos;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder totalLoadMicros = new LongAdder();
+
+    public FeatureCache(String name, int maxSize, int ttlSeconds, int refreshSeconds, Predicate<V> cacheable) {
+        this.name = name;
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+        this.cacheable = cacheable;
+        this.refreshNanos = refreshSeconds > 0 && refreshSeconds < ttlSeconds ? TimeUnit.SECONDS.toNanos(refreshSeconds) : 0;
+        CACHES.put(name, this);
+    }
+
+    public static List<FeatureCacheMetrics> metrics() {
+        List<FeatureCacheMetrics> result = Lists.newArrayList();
+        for (FeatureCache<?, ?> featureCache : CACHES.values()) {
+            result.add(featureCache.getMetrics());
+        }
+        return result;
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        return get(key, loader, () -> loader);
+    }
+
+    public V get(K key, Function<K, V> loader, Supplier<Function<K, V>> refresher) {
+        requestCount.increment();
+        Entry<V> entry = cache.getIfPresent(key);
+        if (entry != null) {
+            hitCount.increment();
+            if (needRefresh(entry) && entry.refreshing.compareAndSet(false, true)) {
+                Function<K, V> refreshLoader = refresher.get();
+                refresh(() -> load(key, refreshLoader));
+            }
+            return entry.value;
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            waitCount.increment();
+            return await(existing);
+        }
+        try {
+            // 抢到加载权之前可能刚有其他线程加载完成
+            entry = cache.getIfPresent(key);
+            V value = entry != null ? entry.value : load(key, loader);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 批量查询, 未命中的 key 合并为一次 loader 调用; 已由其他调用加载中的 key 等待其结果.
+     * loader 返回的 map 中没有的 key 视为无结果, 不出现在返回值中
+     */
+    public Map<K, V> getAll(Collection<K> keys, Function<List<K>, Map<K, V>> loader) {
+        return getAll(keys, loader, () -> loader);
+    }
+
+    public Map<K, V> getAll(Collection<K> keys, Function<List<K>, Map<K, V>> loader, Supplier<Function<List<K>, Map<K, V>>> refresher) {
+        Map<K, V> result = Maps.newHashMapWithExpectedSize(keys.size());
+        List<K> stale = Lists.newArrayList();
+        Map<K, CompletableFuture<V>> owned = Maps.newHashMap();
+        Map<K, CompletableFuture<V>> waiting = Maps.newHashMap();
+        for (K key : keys) {
+            if (result.containsKey(key) || owned.containsKey(key) || waiting.containsKey(key)) {
+                continue;
+            }
+            requestCount.increment();
+            Entry<V> entry = cache.getIfPresent(key);
+            if (entry != null) {
+                hitCount.increment();
+                if (needRefresh(entry) && entry.refreshing.compareAndSet(false, true)) {
+                    stale.add(key);
+                }
+                result.put(key, entry.value);
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = loading.putIfAbsent(key, future);
+            if (existing != null) {
+                waitCount.increment();
+                waiting.put(key, existing);
+                continue;
+            }
+            entry = cache.getIfPresent(key);
+            if (entry != null) {
+                future.complete(entry.value);
+                loading.remove(key, future);
+                result.put(key, entry.value);
+            } else {
+                owned.put(key, future);
+            }
+        }
+        if (!stale.isEmpty()) {
+            Function<List<K>, Map<K, V>> refreshLoader = refresher.get();
+            refresh(() -> loadAll(stale, refreshLoader));
+        }
+        if (!owned.isEmpty()) {
+            try {
+                Map<K, V> loaded = loadAll(Lists.newArrayList(owned.keySet()), loader);
+                owned.forEach((key, future) -> {
+                    V value = loaded.get(key);
+                    if (value != null) {
+                        result.put(key, value);
+                    }
+                    future.complete(value);
+                });
+            } catch (RuntimeException e) {
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach(loading::remove);
+            }
+        }
+        waiting.forEach((key, future) -> {
+            V value = await(future);
+            if (value != null) {
+                result.put(key, value);
+            }
+        });
+        return result;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public FeatureCacheMetrics getMetrics() {
+        FeatureCacheMetrics metrics = new FeatureCacheMetrics();
+        metrics.name = name;
+        metrics.size = cache.size();
+        metrics.requestCount = requestCount.sum();
+        metrics.hitCount = hitCount.sum();
+        metrics.waitCount = waitCount.sum();
+        metrics.loadCount = loadCount.sum();
+        metrics.loadFailureCount = loadFailureCount.sum();
+        metrics.refreshCount = refreshCount.sum();
+        metrics.totalLoadMicros = totalLoadMicros.sum();
+        return metrics;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private V load(K key, Function<K, V> loader) {
+        long begin = System.nanoTime();
+        loadCount.increment();
+        try {
+            V value = loader.apply(key);
+            if (value != null && cacheable.test(value)) {
+                cache.put(key, new Entry<>(value));
+            }
+            return value;
+        } catch (RuntimeException e) {
+            loadFailureCount.increment();
+            throw e;
+        } finally {
+            totalLoadMicros.add((System.nanoTime() - begin) / 1000);
+        }
+    }
+
+    private Map<K, V> loadAll(List<K> keys, Function<List<K>, Map<K, V>> loader) {
+        long begin = System.nanoTime();
+        loadCount.increment();
+        try {
+            Map<K, V> values = loader.apply(keys);
+            values.forEach((key, value) -> {
+                if (value != null && cacheable.test(value)) {
+                    cache.put(key, new Entry<>(value));
+                }
+            });
+            return values;
+        } catch (RuntimeException e) {
+            loadFailureCount.increment();
+            throw e;
+        } finally {
+            totalLoadMicros.add((System.nanoTime() - begin) / 1000);
+        }
+    }
+
+    private boolean needRefresh(Entry<V> entry) {
+        return refreshNanos > 0 && !entry.refreshing.get() && System.nanoTime() - entry.loadNanos > refreshNanos;
+    }
+
+    private void refresh(Runnable task) {
+        refreshCount.increment();
+        try {
+            RefreshExecutorHolder.EXECUTOR.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.warn("feature cache {} refresh error {}", name, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 刷新是尽力而为的, 放弃本次刷新, 条目到期后同步加载
+            logger.warn("feature cache {} refresh rejected", name);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long loadNanos = System.nanoTime();
+        final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+
+    private static class RefreshExecutorHolder {
+        static final ExecutorService EXECUTOR = ManagedExecutors.newThreadPool("feature-cache-refresh", 1, 4, 1024,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
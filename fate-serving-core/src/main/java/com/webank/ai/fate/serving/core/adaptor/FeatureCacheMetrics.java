@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.adaptor;
+
+/**
+ * 特征缓存指标快照, 计数类字段为启动以来的累计值.
+ * waitCount 为等待其他调用加载结果的次数 (被合并的未命中)
+ */
+public class FeatureCacheMetrics {
+    String name;
+    long size;
+    long requestCount;
+    long hitCount;
+    long waitCount;
+    long loadCount;
+    long loadFailureCount;
+    long refreshCount;
+    long totalLoadMicros;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public void setRequestCount(long requestCount) {
+        this.requestCount = requestCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public void setHitCount(long hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    public long getWaitCount() {
+        return waitCount;
+    }
+
+    public void setWaitCount(long waitCount) {
+        this.waitCount = waitCount;
+    }
+
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    public void setLoadCount(long loadCount) {
+        this.loadCount = loadCount;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public void setLoadFailureCount(long loadFailureCount) {
+        this.loadFailureCount = loadFailureCount;
+    }
+
+    public long getRefreshCount() {
+        return refreshCount;
+    }
+
+    public void setRefreshCount(long refreshCount) {
+        this.refreshCount = refreshCount;
+    }
+
+    public long getTotalLoadMicros() {
+        return totalLoadMicros;
+    }
+
+    public void setTotalLoadMicros(long totalLoadMicros) {
+        this.totalLoadMicros = totalLoadMicros;
+    }
+
+    public double getHitRate() {
+        return requestCount > 0 ? (double) hitCount / requestCount : 0;
+    }
+
+    public long getAvgLoadMicros() {
+        return loadCount > 0 ? totalLoadMicros / loadCount : 0;
+    }
+}
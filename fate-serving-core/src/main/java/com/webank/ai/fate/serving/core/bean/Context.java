@@ -102,6 +102,21 @@ public interface Context<Req, Resp> {
 
     public void setDownstreamBegin(long downstreamBegin);
 
+    /**
+     * 请求的截止时间 (毫秒时间戳), 0 表示未设置
+     */
+    public long getDeadline();
+
+    public void setDeadline(long deadline);
+
+    /**
+     * 距截止时间的剩余毫秒数, 未设置截止时间时返回 Long.MAX_VALUE
+     */
+    public default long getRemainingTime() {
+        long deadline = getDeadline();
+        return deadline > 0 ? deadline - System.currentTimeMillis() : Long.MAX_VALUE;
+    }
+
     public long getRouteBasis();
 
     public void setRouteBasis(long routeBasis);
@@ -50,6 +50,7 @@ public class Dict {
     public static final String DOWN_STREAM_COST = "downstreamCost";
     public static final String DOWN_STREAM_BEGIN = "downstreamBegin";
     public static final String ROUTE_BASIS = "routeBasis";
+    public static final String DEADLINE = "deadline";
     public static final String SOURCE_IP = "sourceIp";
     public static final String PROPERTY_SERVING_CORE_POOL_SIZE = "serving.core.pool.size";
     public static final String SERVING_MAX_POOL_ZIE = "serving.max.pool.size";
@@ -59,7 +60,6 @@ public class Dict {
     public static final String PROPERTY_BATCH_INFERENCE_RPC_TIMEOUT = "batch.inference.rpc.timeout";
     public static final String PROPERTY_FEATURE_SINGLE_ADAPTOR = "feature.single.adaptor";
     public static final String PROPERTY_BATCH_SPLIT_SIZE = "batch.split.size";
-    public static final String PROPERTY_LR_SPLIT_SIZE = "lr.split.size";
 
 
     /**
@@ -78,9 +78,20 @@ public class Dict {
     public static final String PROPERTY_REDIS_PASSWORD = "redis.password";
     public static final String PROPERTY_REDIS_EXPIRE = "redis.expire";
     public static final String PROPERTY_REDIS_CLUSTER_NODES = "redis.cluster.nodes";
+    public static final String PROPERTY_REDIS_BATCH_CHUNK_SIZE = "redis.batch.chunk.size";
     public static final String PROPERTY_LOCAL_CACHE_MAXSIZE = "local.cache.maxsize";
     public static final String PROPERTY_LOCAL_CACHE_EXPIRE = "local.cache.expire";
     public static final String PROPERTY_LOCAL_CACHE_INTERVAL = "local.cache.interval";
+    public static final String PROPERTY_LOCAL_CACHE_MAXBYTES = "local.cache.maxbytes";
+    public static final String PROPERTY_LOCAL_CACHE_NEGATIVE_EXPIRE = "local.cache.negative.expire";
+    public static final String PROPERTY_ASYNC_EVENT_RINGBUFFER_SIZE = "async.event.ringbuffer.size";
+    public static final String PROPERTY_ASYNC_EVENT_WAIT_STRATEGY = "async.event.wait.strategy";
+    public static final String PROPERTY_INFERENCE_POOL_CORE_SIZE = "inference.pool.core.size";
+    public static final String PROPERTY_INFERENCE_POOL_MAX_SIZE = "inference.pool.max.size";
+    public static final String PROPERTY_INFERENCE_POOL_QUEUE_SIZE = "inference.pool.queue.size";
+    public static final String PROPERTY_INFERENCE_USE_VIRTUAL_THREAD = "inference.use.virtual.thread";
+    public static final String PROPERTY_GRPC_CHANNEL_MAX_STREAMS = "grpc.channel.max.streams";
+    public static final String PROPERTY_GRPC_CHANNEL_MAX_SIZE = "grpc.channel.max.size";
     public static final String PROPERTY_FATEFLOW_LOAD_URL = "fateflow.load.url";
     public static final String PROPERTY_FATEFLOW_BIND_URL = "fateflow.bind.url";
     public static final String PROPERTY_GRPC_TIMEOUT = "grpc.timeout";
@@ -149,7 +160,14 @@ public class Dict {
     public static final String PROPERTY_PROXY_ASYNC_MAXSIZE = "proxy.async.maxsize";
     public static final String PROPERTY_PROXY_GRPC_BATCH_INFERENCE_TIMEOUT = "proxy.grpc.batch.inference.timeout";
     public static final String PROPERTY_MODEL_CACHE_PATH = "model.cache.path";
-    public static final String PROPERTY_LR_USE_PARALLEL="lr.use.parallel";
+    public static final String PROPERTY_MODEL_RESTORE_THREADS = "model.restore.threads";
+    public static final String PROPERTY_MODEL_RESTORE_PRIORITY = "model.restore.priority";
+    public static final String PROPERTY_FEATURE_CACHE_ENABLE = "feature.cache.enable";
+    public static final String PROPERTY_FEATURE_CACHE_MAX_SIZE = "feature.cache.max.size";
+    public static final String PROPERTY_FEATURE_CACHE_TTL_SECONDS = "feature.cache.ttl.seconds";
+    public static final String PROPERTY_FEATURE_CACHE_REFRESH_SECONDS = "feature.cache.refresh.seconds";
+    public static final String PROPERTY_BATCH_COLUMNAR_ENABLE = "batch.columnar.enable";
+    public static final String PROPERTY_BATCH_INFERENCE_BODY_CODEC = "batch.inference.body.codec";
 
     public static final String ACTION_TYPE_ASYNC_EXECUTE = "ASYNC_EXECUTE";
 
@@ -254,8 +272,13 @@ public class Dict {
     public static final String REMOTE_INFERENCE_DATA = "remoteInferenceData";
 
     public static final String SBT_TREE_NODE_ID_ARRAY = "sbtTreeNodeIdArray";
+    public static final String SBT_HOST_ROUTE_BITS = "sbtHostRouteBits";
+    public static final String SBT_HOST_ROUTE_SIZE = "sbtHostRouteSize";
 
     public static final String REMOTE_METHOD_BATCH = "batch";
+    public static final String BODY_CODEC = "bodyCodec";
+    public static final String BODY_CODEC_JSON = "json";
+    public static final String BODY_CODEC_PROTOBUF = "protobuf";
     public static final String MODEL_NAME_SPACE = "modelNameSpace";
     public static final String MODEL_TABLE_NAME = "modelTableName";
     public static final String REGISTER_ENVIRONMENT = "online";
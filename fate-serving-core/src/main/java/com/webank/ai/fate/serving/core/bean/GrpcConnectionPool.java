@@ -16,11 +16,21 @@
 
 package com.webank.ai.fate.serving.core.bean;
 
-import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.webank.ai.fate.serving.core.rpc.grpc.EndpointStatsInterceptor;
 import com.webank.ai.fate.serving.core.rpc.router.RouterInfo;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
 import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
 import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
 import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.shaded.io.grpc.netty.NegotiationType;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
@@ -32,90 +42,80 @@ import org.slf4j.LoggerFactory;
 import javax.net.ssl.SSLException;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
-// gRPC 连接 池
+/**
+ * gRPC 连接池, 每个地址 (ip:port) 维护一组 channel.
+ * <p>
+ * 每个 channel 通过拦截器统计活跃流数, 获取 channel 时选择活跃流最少的一个 (无锁, 只读 volatile 数组).
+ * 后台定时检查: 按上个周期的峰值并发流数和单个 channel 的最大并发流数 (应与服务端 HTTP/2 max-concurrent-streams 一致)
+ * 计算需要的 channel 数, 扩容一次到位, 缩容每次一个. 处于 TRANSIENT_FAILURE 的 channel 由 grpc 按退避自行重连,
+ * 持续故障超过 {@link #DEFAULT_TRANSIENT_FAILURE_REPLACE_MILLIS} 才替换为新 channel, SHUTDOWN 的 channel 直接替换.
+ * 移出连接池的 channel 延迟一个周期后 shutdown, 已发出的请求不受影响
+ */
 public class GrpcConnectionPool {
 
     private static final Logger logger = LoggerFactory.getLogger(GrpcConnectionPool.class);
 
-    static private GrpcConnectionPool pool = new GrpcConnectionPool();
-
-    public ConcurrentHashMap<String, ChannelResource> poolMap = new ConcurrentHashMap<String, ChannelResource>();
-    Random r = new Random();
-    // 可用计算资源，cpu核心线程数
-    private int maxTotalPerAddress = Runtime.getRuntime().availableProcessors();
-    private long defaultLoadFactor = 10;
+    public static final int DEFAULT_MAX_STREAMS_PER_CHANNEL = 100;
+    public static final int DEFAULT_MAX_CHANNELS_PER_ADDRESS = 32;
+    /**
+     * 峰值流数超过 channel 数 * 最大并发流数 * 该比例时扩容
+     */
+    private static final double GROW_UTILIZATION = 0.8;
+    /**
+     * 去掉一个 channel 后利用率仍低于该比例时缩容, 与扩容阈值之间留出间隔避免来回抖动
+     */
+    private static final double SHRINK_UTILIZATION = 0.5;
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
     /**
-     * 计时器线程池
-     * 1个线程可以重复使用，不创建新的线程
+     * channel 连续处于 TRANSIENT_FAILURE 超过该时间后替换, 避免对不可用的地址每个周期新建连接
      */
-    private ScheduledExecutorService scheduledExecutorService = new ScheduledThreadPoolExecutor(1);
+    public static final long DEFAULT_TRANSIENT_FAILURE_REPLACE_MILLIS = 30000;
 
-    private GrpcConnectionPool() {
+    static private GrpcConnectionPool pool = new GrpcConnectionPool(CHECK_INTERVAL_MILLIS);
 
+    public ConcurrentHashMap<String, ChannelResource> poolMap = new ConcurrentHashMap<String, ChannelResource>();
+    private final AtomicLong channelIdGenerator = new AtomicLong();
+    private final long checkIntervalMillis;
+    /**
+     * 计时器线程池, 负责连接池的检查和 channel 的延迟关闭
+     */
+    private final ScheduledExecutorService scheduledExecutorService = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "grpc-connection-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    protected GrpcConnectionPool(long checkIntervalMillis) {
+        this.checkIntervalMillis = checkIntervalMillis;
+        scheduledExecutorService.scheduleWithFixedDelay(() -> poolMap.forEach((k, v) -> {
+            try {
+                check(v);
+            } catch (Exception e) {
+                logger.error("channel {} check status error", k, e);
+            }
+        }), checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
 
-        /**
-         * scheduleAtFixedRate:以固定的频率来执行某个任务
-         * 用处：定时任务
-         * 四个参数
-         *	1:任务----run()方法
-         *	2:第一个任务多久执行---1000：1000毫秒后执行
-         *	3:每隔多长时间执行这个任务---10000--每隔10000毫秒，任务重复执行
-         *	4:时间单位是多少--TimeUnit.MILLISECONDS--指定时间单位毫秒
-         */
-        scheduledExecutorService.scheduleAtFixedRate(
-                    new Runnable() {
-                        @Override
-                        public void run() {
-
-                            poolMap.forEach((k, v) -> {
-                                try {
-                                    //logger.info("grpc pool {} channel size {} req count {}", k, v.getChannels().size(), v.getRequestCount().get() - v.getPreCheckCount());
-
-                                    if (needAddChannel(v)) {
-                                        // 添加channel
-                                        String[] ipPort = k.split(":");
-                                        String ip = ipPort[0];
-                                        int port = Integer.parseInt(ipPort[1]);
-                                        // 创建managed channel
-                                        ManagedChannel managedChannel = createManagedChannel(ip, port, v.getNettyServerInfo());
-                                        v.getChannels().add(managedChannel);
-                                    }
-                                    v.getChannels().forEach(e -> {
-                                        // 检查状态
-                                        try {
-                                            ConnectivityState state = e.getState(true);
-                                            if (state.equals(ConnectivityState.TRANSIENT_FAILURE) || state.equals(ConnectivityState.SHUTDOWN)) {
-                                                fireChannelError(k, state);
-                                            }
-                                        } catch (Exception ex) {
-                                            ex.printStackTrace();
-                                            logger.error("channel {} check status error", k);
-                                        }
-
-                                    });
-                                } catch (Exception e) {
-                                    logger.error("channel {} check status error", k);
-                                }
-                            });
-                        }
-                    },
-                    1000,
-                    10000,
-                    TimeUnit.MILLISECONDS);
+    static public GrpcConnectionPool getPool() {
+        return pool;
+    }
 
+    protected int getMaxStreamsPerChannel() {
+        return MetaInfo.PROPERTY_GRPC_CHANNEL_MAX_STREAMS != null ? MetaInfo.PROPERTY_GRPC_CHANNEL_MAX_STREAMS : DEFAULT_MAX_STREAMS_PER_CHANNEL;
+    }
 
+    protected int getMaxChannelsPerAddress() {
+        return MetaInfo.PROPERTY_GRPC_CHANNEL_MAX_SIZE != null ? MetaInfo.PROPERTY_GRPC_CHANNEL_MAX_SIZE : DEFAULT_MAX_CHANNELS_PER_ADDRESS;
     }
 
-    static public GrpcConnectionPool getPool() {
-        return pool;
+    protected long getTransientFailureReplaceMillis() {
+        return DEFAULT_TRANSIENT_FAILURE_REPLACE_MILLIS;
     }
 
     /**
@@ -124,41 +124,76 @@ public class GrpcConnectionPool {
      * @param status
      */
     private void fireChannelError(String k, ConnectivityState status) {
-        logger.error("grpc channel {} status is {}", k, status);
+        logger.error("grpc channel {} status is {}, replace it", k, status);
     }
 
     /**
-     * 判断是否需要添加channel
+     * 检查一个地址的 channel: 替换故障 channel, 并按峰值并发流数扩缩容
      * @param channelResource
-     * @return
      */
-    private boolean needAddChannel(ChannelResource channelResource) {
-        long requestCount = channelResource.getRequestCount().longValue();
-        long preCount = channelResource.getPreCheckCount();
-        long latestTimestamp = channelResource.getLatestChecktimestamp();
-
-        int channelSize = channelResource.getChannels().size();
+    private void check(ChannelResource channelResource) {
+        int maxStreams = Math.max(1, getMaxStreamsPerChannel());
+        int maxChannels = Math.max(1, getMaxChannelsPerAddress());
+        long replaceMillis = getTransientFailureReplaceMillis();
         long now = System.currentTimeMillis();
-        // 请求数量-之前的请求数量  除以 通道大小*时间 = 每个通道每秒需要多处理的请求数
-        long loadFactor = ((requestCount - preCount) * 1000) / (channelSize * (now - latestTimestamp));
-        channelResource.setLatestChecktimestamp(now);
-        channelResource.setPreCheckCount(requestCount);
-        if (channelSize > maxTotalPerAddress) {
-            // channel大小>可用计算资源
-            return false;
-        }
-        if (latestTimestamp == 0) {
-            return false;
-        }
-        if (channelSize > 0) {
+        // 取上个周期的峰值, 并以当前活跃数开始新周期
+        int peakStreams = channelResource.peakStreams.getAndSet(channelResource.activeStreams.get());
+
+        synchronized (channelResource) {
+            List<PooledChannel> channels = new ArrayList<>(Arrays.asList(channelResource.channels));
+            List<PooledChannel> retired = new ArrayList<>();
+            for (int i = 0; i < channels.size(); i++) {
+                PooledChannel channel = channels.get(i);
+                ConnectivityState state = channel.getChannel().getState(false);
+                boolean replace;
+                if (state == ConnectivityState.TRANSIENT_FAILURE) {
+                    // 重连时会短暂处于 CONNECTING, 恢复到 READY 才重新计时
+                    if (channel.failingSince == 0) {
+                        channel.failingSince = now;
+                    }
+                    replace = now - channel.failingSince >= replaceMillis;
+                } else {
+                    if (state == ConnectivityState.READY) {
+                        channel.failingSince = 0;
+                    }
+                    replace = state == ConnectivityState.SHUTDOWN;
+                }
+                if (replace) {
+                    fireChannelError(channelResource.address, state);
+                    channels.set(i, newPooledChannel(channelResource));
+                    retired.add(channel);
+                }
+            }
 
-            if (loadFactor > defaultLoadFactor) {
-                return true;
-            } else {
-                return false;
+            int size = channels.size();
+            int target = (int) Math.ceil(peakStreams / (maxStreams * GROW_UTILIZATION));
+            target = Math.min(maxChannels, Math.max(1, target));
+            if (target > size) {
+                for (int i = size; i < target; i++) {
+                    channels.add(newPooledChannel(channelResource));
+                }
+                logger.info("grpc pool {} peak streams {} grow channels {} -> {}", channelResource.address, peakStreams, size, target);
+            } else if (size > maxChannels || (size > 1 && peakStreams < (size - 1) * maxStreams * SHRINK_UTILIZATION)) {
+                PooledChannel idlest = channels.get(0);
+                for (PooledChannel channel : channels) {
+                    if (channel.activeStreams.get() < idlest.activeStreams.get()) {
+                        idlest = channel;
+                    }
+                }
+                channels.remove(idlest);
+                retired.add(idlest);
+                logger.info("grpc pool {} peak streams {} shrink channels {} -> {}", channelResource.address, peakStreams, size, size - 1);
+            }
+
+            if (!retired.isEmpty() || channels.size() != size) {
+                channelResource.channels = channels.toArray(new PooledChannel[0]);
+            }
+            // 刚被选中还未发出请求的调用仍可能使用旧 channel, 延迟关闭
+            for (PooledChannel channel : retired) {
+                scheduledExecutorService.schedule(() -> {
+                    channel.getChannel().shutdown();
+                }, checkIntervalMillis, TimeUnit.MILLISECONDS);
             }
-        } else {
-            return true;
         }
     }
 
@@ -188,10 +223,9 @@ public class GrpcConnectionPool {
     private ManagedChannel getAManagedChannel(String key, NettyServerInfo nettyServerInfo) {
         ChannelResource channelResource = poolMap.get(key);
         if (channelResource == null) {
-            return createInner(key, nettyServerInfo);
-        } else {
-            return getRandomManagedChannel(channelResource);
+            channelResource = createInner(key, nettyServerInfo);
         }
+        return channelResource.select();
     }
 
     public ManagedChannel getManagedChannel(String ip,int port, NettyServerInfo nettyServerInfo) {
@@ -204,22 +238,24 @@ public class GrpcConnectionPool {
         return this.getManagedChannel(key);
     }
 
-
     /**
-     * 随机获取 managed channel
-     * @param channelResource
-     * @return
+     * 各 channel 的指标快照
      */
-    private ManagedChannel getRandomManagedChannel(ChannelResource channelResource) {
-        List<ManagedChannel> list = channelResource.getChannels();
-        Preconditions.checkArgument(list != null && list.size() > 0);
-        // 生成一个随机int值，范围[0,list.size())
-        int index = r.nextInt(list.size());
-        ManagedChannel result = list.get(index);
-        // 请求数加1并返回值
-        channelResource.getRequestCount().addAndGet(1);
+    public List<ChannelMetrics> metrics() {
+        List<ChannelMetrics> result = Lists.newArrayList();
+        poolMap.forEach((k, v) -> {
+            for (PooledChannel channel : v.channels) {
+                ChannelMetrics metrics = new ChannelMetrics();
+                metrics.setAddress(k);
+                metrics.setId(channel.id);
+                metrics.setState(channel.getChannel().getState(false).name());
+                metrics.setActiveStreams(channel.activeStreams.get());
+                metrics.setCallCount(channel.callCount.get());
+                metrics.setCreateTimestamp(channel.createTimestamp);
+                result.add(metrics);
+            }
+        });
         return result;
-
     }
 
     /**
@@ -228,31 +264,21 @@ public class GrpcConnectionPool {
      * @param nettyServerInfo
      * @return
      */
-    private synchronized ManagedChannel createInner(String key, NettyServerInfo nettyServerInfo) {
+    private synchronized ChannelResource createInner(String key, NettyServerInfo nettyServerInfo) {
         // 获取key的channel资源
         ChannelResource channelResource = poolMap.get(key);
         if (channelResource == null) {
-            // 资源为null
-            String[] ipPort = key.split(":");
-            String ip = ipPort[0];
-            int port = Integer.parseInt(ipPort[1]);
-            // 创建通道
-            ManagedChannel managedChannel = createManagedChannel(ip, port, nettyServerInfo);
-            List<ManagedChannel> managedChannelList = new ArrayList<ManagedChannel>();
-            managedChannelList.add(managedChannel);
-            // 新建channel资源
             channelResource = new ChannelResource(key, nettyServerInfo);
-            // 讲managedChannel列表 放入channel资源中
-            channelResource.setChannels(managedChannelList);
-            // 请求数加1并返回值
-            channelResource.getRequestCount().addAndGet(1);
-            // 将key 的 channel资源放入poolMap中
+            channelResource.channels = new PooledChannel[]{newPooledChannel(channelResource)};
             poolMap.put(key, channelResource);
-            return managedChannel;
-        } else {
-            return getRandomManagedChannel(channelResource);
         }
+        return channelResource;
+    }
 
+    private PooledChannel newPooledChannel(ChannelResource channelResource) {
+        PooledChannel pooledChannel = new PooledChannel(channelIdGenerator.incrementAndGet(), channelResource);
+        pooledChannel.channel = createManagedChannel(channelResource.ip, channelResource.port, channelResource.nettyServerInfo, pooledChannel);
+        return pooledChannel;
     }
 
     /**
@@ -263,40 +289,16 @@ public class GrpcConnectionPool {
      * @return
      */
     public synchronized ManagedChannel createManagedChannel(String ip, int port, NettyServerInfo nettyServerInfo) {
+        return createManagedChannel(ip, port, nettyServerInfo, new ClientInterceptor[0]);
+    }
+
+    private ManagedChannel createManagedChannel(String ip, int port, NettyServerInfo nettyServerInfo, ClientInterceptor... interceptors) {
         try {
             logger.info("create channel ip {} port {} server info {}",ip,port,nettyServerInfo);
-
-            NettyChannelBuilder channelBuilder = NettyChannelBuilder
-                    .forAddress(ip, port)
-                    .keepAliveTime(60, TimeUnit.SECONDS)
-                    .keepAliveTimeout(60, TimeUnit.SECONDS)
-                    .keepAliveWithoutCalls(true)
-                    .idleTimeout(60, TimeUnit.SECONDS)
-                    .perRpcBufferLimit(128 << 20)
-                    .flowControlWindow(32 << 20)
-                    .maxInboundMessageSize(32 << 20)
-                    .enableRetry()
-                    .retryBufferSize(16 << 20)
-                    .maxRetryAttempts(20);
-
-            if (nettyServerInfo != null && nettyServerInfo.getNegotiationType() == NegotiationType.TLS
-                    && StringUtils.isNotBlank(nettyServerInfo.getCertChainFilePath())
-                    && StringUtils.isNotBlank(nettyServerInfo.getPrivateKeyFilePath())
-                    && StringUtils.isNotBlank(nettyServerInfo.getTrustCertCollectionFilePath())) {
-                SslContextBuilder sslContextBuilder = GrpcSslContexts.forClient()
-                        .keyManager(new File(nettyServerInfo.getCertChainFilePath()), new File(nettyServerInfo.getPrivateKeyFilePath()))
-                        .trustManager(new File(nettyServerInfo.getTrustCertCollectionFilePath()))
-                        .sessionTimeout(3600 << 4)
-                        .sessionCacheSize(65536);
-                channelBuilder.sslContext(sslContextBuilder.build()).useTransportSecurity();
-
-                logger.info("running in secure mode for endpoint {}:{}, client crt path: {}, client key path: {}, ca crt path: {}.",
-                        ip, port, nettyServerInfo.getCertChainFilePath(), nettyServerInfo.getPrivateKeyFilePath(),
-                        nettyServerInfo.getTrustCertCollectionFilePath());
-            } else {
-                channelBuilder.usePlaintext();
-            }
-            return channelBuilder.build();
+            return newChannelBuilder(ip, port, nettyServerInfo)
+                    .intercept(new EndpointStatsInterceptor(ip + ":" + port))
+                    .intercept(interceptors)
+                    .build();
         }
         catch (Exception e) {
             logger.error("create channel error : " ,e);
@@ -304,65 +306,146 @@ public class GrpcConnectionPool {
         return null;
     }
 
+    protected ManagedChannelBuilder<?> newChannelBuilder(String ip, int port, NettyServerInfo nettyServerInfo) throws SSLException {
+        NettyChannelBuilder channelBuilder = NettyChannelBuilder
+                .forAddress(ip, port)
+                .keepAliveTime(60, TimeUnit.SECONDS)
+                .keepAliveTimeout(60, TimeUnit.SECONDS)
+                .keepAliveWithoutCalls(true)
+                .idleTimeout(60, TimeUnit.SECONDS)
+                .perRpcBufferLimit(128 << 20)
+                .flowControlWindow(32 << 20)
+                .maxInboundMessageSize(32 << 20)
+                .enableRetry()
+                .retryBufferSize(16 << 20)
+                .maxRetryAttempts(20);
+
+        if (nettyServerInfo != null && nettyServerInfo.getNegotiationType() == NegotiationType.TLS
+                && StringUtils.isNotBlank(nettyServerInfo.getCertChainFilePath())
+                && StringUtils.isNotBlank(nettyServerInfo.getPrivateKeyFilePath())
+                && StringUtils.isNotBlank(nettyServerInfo.getTrustCertCollectionFilePath())) {
+            SslContextBuilder sslContextBuilder = GrpcSslContexts.forClient()
+                    .keyManager(new File(nettyServerInfo.getCertChainFilePath()), new File(nettyServerInfo.getPrivateKeyFilePath()))
+                    .trustManager(new File(nettyServerInfo.getTrustCertCollectionFilePath()))
+                    .sessionTimeout(3600 << 4)
+                    .sessionCacheSize(65536);
+            channelBuilder.sslContext(sslContextBuilder.build()).useTransportSecurity();
+
+            logger.info("running in secure mode for endpoint {}:{}, client crt path: {}, client key path: {}, ca crt path: {}.",
+                    ip, port, nettyServerInfo.getCertChainFilePath(), nettyServerInfo.getPrivateKeyFilePath(),
+                    nettyServerInfo.getTrustCertCollectionFilePath());
+        } else {
+            channelBuilder.usePlaintext();
+        }
+        return channelBuilder;
+    }
+
     /**
      * channel 资源池
      */
     class ChannelResource {
         // ip + port
-        String address;
-        // channel 列表
-        List<ManagedChannel> channels = Lists.newArrayList();
-        // 请求数量
-        // atomiclong 可以理解是加了synchronized的long
-        AtomicLong requestCount = new AtomicLong(0);
-        long latestChecktimestamp = 0;
-        long preCheckCount = 0;
-        NettyServerInfo nettyServerInfo;
-
-        public ChannelResource(String address) {
-            this(address, null);
-        }
-
-        public NettyServerInfo getNettyServerInfo() {
-            return nettyServerInfo;
-        }
-
-        public  ChannelResource(String address, NettyServerInfo nettyServerInfo) {
+        final String address;
+        final String ip;
+        final int port;
+        final NettyServerInfo nettyServerInfo;
+        // channel 列表, 修改时整体替换
+        volatile PooledChannel[] channels = new PooledChannel[0];
+        // 该地址所有 channel 的活跃流数
+        final AtomicInteger activeStreams = new AtomicInteger();
+        // 本检查周期内的峰值活跃流数
+        final AtomicInteger peakStreams = new AtomicInteger();
+
+        public ChannelResource(String address, NettyServerInfo nettyServerInfo) {
             this.address = address;
             this.nettyServerInfo = nettyServerInfo;
+            String[] ipPort = address.split(":");
+            this.ip = ipPort[0];
+            this.port = Integer.parseInt(ipPort[1]);
         }
 
-        public List<ManagedChannel> getChannels() {
-            return channels;
-        }
-
-        public void setChannels(List<ManagedChannel> channels) {
-            this.channels = channels;
+        public NettyServerInfo getNettyServerInfo() {
+            return nettyServerInfo;
         }
 
-        public AtomicLong getRequestCount() {
-            return requestCount;
+        /**
+         * 选择活跃流最少的 channel, 从随机位置开始比较, 相同时不总是落到同一个
+         */
+        ManagedChannel select() {
+            PooledChannel[] current = channels;
+            int size = current.length;
+            int start = size > 1 ? ThreadLocalRandom.current().nextInt(size) : 0;
+            PooledChannel best = current[start];
+            int bestActive = best.activeStreams.get();
+            for (int i = 1; i < size && bestActive > 0; i++) {
+                PooledChannel channel = current[(start + i) % size];
+                int active = channel.activeStreams.get();
+                if (active < bestActive) {
+                    best = channel;
+                    bestActive = active;
+                }
+            }
+            return best.getChannel();
         }
+    }
 
-        public void setRequestCount(AtomicLong requestCount) {
-            this.requestCount = requestCount;
+    /**
+     * 连接池中的 channel, 同时作为拦截器统计活跃流数
+     */
+    class PooledChannel implements ClientInterceptor {
+        final long id;
+        final ChannelResource resource;
+        final long createTimestamp = System.currentTimeMillis();
+        final AtomicInteger activeStreams = new AtomicInteger();
+        final AtomicLong callCount = new AtomicLong();
+        volatile ManagedChannel channel;
+        // 首次检查到 TRANSIENT_FAILURE 的时间, 0 表示未处于故障, 只在检查线程中读写
+        long failingSince;
+
+        PooledChannel(long id, ChannelResource resource) {
+            this.id = id;
+            this.resource = resource;
         }
 
-        public long getLatestChecktimestamp() {
-            return latestChecktimestamp;
+        ManagedChannel getChannel() {
+            return channel;
         }
 
-        public void setLatestChecktimestamp(long latestChecktimestamp) {
-            this.latestChecktimestamp = latestChecktimestamp;
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+            return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata headers) {
+                    streamStarted();
+                    try {
+                        super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                            @Override
+                            public void onClose(Status status, Metadata trailers) {
+                                streamClosed();
+                                super.onClose(status, trailers);
+                            }
+                        }, headers);
+                    } catch (RuntimeException e) {
+                        streamClosed();
+                        throw e;
+                    }
+                }
+            };
         }
 
-        public long getPreCheckCount() {
-            return preCheckCount;
+        private void streamStarted() {
+            callCount.incrementAndGet();
+            activeStreams.incrementAndGet();
+            int active = resource.activeStreams.incrementAndGet();
+            if (active > resource.peakStreams.get()) {
+                resource.peakStreams.accumulateAndGet(active, Math::max);
+            }
         }
 
-        public void setPreCheckCount(long preCheckCount) {
-            this.preCheckCount = preCheckCount;
+        private void streamClosed() {
+            activeStreams.decrementAndGet();
+            resource.activeStreams.decrementAndGet();
         }
     }
 
-}
\ No newline at end of file
+}
@@ -24,7 +24,15 @@ import java.util.List;
 import java.util.Map;
 // 元信息
 public class MetaInfo {
-    public static final long CURRENT_VERSION = 204;
+    public static final long CURRENT_VERSION = 205;
+    /**
+     * 从该版本开始, SecureBoost host 端以 bitset 形式返回路由表
+     */
+    public static final long SBT_ROUTE_BITSET_VERSION = 205;
+    /**
+     * 从该版本开始, host 端可以解析 protobuf 编码的批量推理请求
+     */
+    public static final long BATCH_PROTOBUF_BODY_VERSION = 205;
     public static List<AdaptorDescriptor.ParamDescriptor> inferenceParamDescriptorList;
     public static List<AdaptorDescriptor.ParamDescriptor> batchInferenceParamDescriptorList;
     public static Boolean PROPERTY_REMOTE_MODEL_INFERENCE_RESULT_CACHE_SWITCH;
@@ -51,12 +59,22 @@ public class MetaInfo {
     public static Integer PROPERTY_REDIS_MAX_IDLE;
     public static Integer PROPERTY_REDIS_EXPIRE; // 属性_redis缓存_过期时间
     public static String PROPERTY_REDIS_CLUSTER_NODES;
+    public static Integer PROPERTY_REDIS_BATCH_CHUNK_SIZE;
     public static String PROPERTY_CACHE_TYPE; //属性_缓存_类型
     public static Integer PROPERTY_LOCAL_CACHE_MAXSIZE;
     public static Integer PROPERTY_LOCAL_CACHE_EXPIRE;// 属性_本地_缓存_过期时间
     public static Integer PROPERTY_LOCAL_CACHE_INTERVAL;
+    public static Long PROPERTY_LOCAL_CACHE_MAXBYTES;
+    public static Integer PROPERTY_LOCAL_CACHE_NEGATIVE_EXPIRE;
+    public static Integer PROPERTY_ASYNC_EVENT_RINGBUFFER_SIZE;
+    public static String PROPERTY_ASYNC_EVENT_WAIT_STRATEGY;
+    public static Integer PROPERTY_INFERENCE_POOL_CORE_SIZE;
+    public static Integer PROPERTY_INFERENCE_POOL_MAX_SIZE;
+    public static Integer PROPERTY_INFERENCE_POOL_QUEUE_SIZE;
+    public static Boolean PROPERTY_INFERENCE_USE_VIRTUAL_THREAD;
+    public static Integer PROPERTY_GRPC_CHANNEL_MAX_STREAMS;
+    public static Integer PROPERTY_GRPC_CHANNEL_MAX_SIZE;
     public static Integer PROPERTY_BATCH_SPLIT_SIZE;
-    public static Integer PROPERTY_LR_SPLIT_SIZE;
     public static String PROPERTY_SERVICE_ROLE_NAME;
     public static String PROPERTY_MODEL_TRANSFER_URL;
     public static Integer PROPERTY_COORDINATOR;
@@ -78,6 +96,13 @@ public class MetaInfo {
     public static Integer PROPERTY_PROXY_ASYNC_MAXSIZE;
     public static Integer PROPERTY_PROXY_GRPC_BATCH_INFERENCE_TIMEOUT;
     public static String PROPERTY_MODEL_CACHE_PATH;
+    public static Integer PROPERTY_MODEL_RESTORE_THREADS;
+    public static String PROPERTY_MODEL_RESTORE_PRIORITY;
+    public static Boolean PROPERTY_FEATURE_CACHE_ENABLE;
+    public static Integer PROPERTY_FEATURE_CACHE_MAX_SIZE;
+    public static Integer PROPERTY_FEATURE_CACHE_TTL_SECONDS;
+    public static Integer PROPERTY_FEATURE_CACHE_REFRESH_SECONDS;
+    public static Boolean PROPERTY_BATCH_COLUMNAR_ENABLE;
     public static String PROPERTY_FATEFLOW_LOAD_URL;
     public static String PROPERTY_FATEFLOW_BIND_URL;
     public static Integer PROPERTY_GRPC_TIMEOUT; // 属性_gRPC_超时
@@ -87,7 +112,7 @@ public class MetaInfo {
     public static String PROPERTY_ROOT_PATH;
     public static Boolean PROPERTY_PRINT_INPUT_DATA;
     public static Boolean PROPERTY_PRINT_OUTPUT_DATA;
-    public static Boolean PROPERTY_LR_USE_PARALLEL;
+    public static String PROPERTY_BATCH_INFERENCE_BODY_CODEC;
     public static Boolean PROPERTY_AUTH_OPEN;
     public static String PROPERTY_PROXY_GRPC_INTER_NEGOTIATIONTYPE;
     public static String PROPERTY_PROXY_GRPC_INTER_CA_FILE;// 属性_代理_GRPC_内部_CA_文件
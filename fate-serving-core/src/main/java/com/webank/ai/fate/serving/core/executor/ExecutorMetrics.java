@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.executor;
+
+/**
+ * 线程池指标快照, 计数类字段为启动以来的累计值
+ */
+public class ExecutorMetrics {
+    String name;
+    String type;
+    int poolSize;
+    int maxPoolSize;
+    int activeCount;
+    int queueSize;
+    int queueCapacity;
+    long taskCount;
+    long rejectedCount;
+    long totalWaitMicros;
+    long maxWaitMicros;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public void setActiveCount(int activeCount) {
+        this.activeCount = activeCount;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 已开始执行的任务数
+     */
+    public long getTaskCount() {
+        return taskCount;
+    }
+
+    public void setTaskCount(long taskCount) {
+        this.taskCount = taskCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public void setRejectedCount(long rejectedCount) {
+        this.rejectedCount = rejectedCount;
+    }
+
+    public long getTotalWaitMicros() {
+        return totalWaitMicros;
+    }
+
+    public void setTotalWaitMicros(long totalWaitMicros) {
+        this.totalWaitMicros = totalWaitMicros;
+    }
+
+    public long getMaxWaitMicros() {
+        return maxWaitMicros;
+    }
+
+    public void setMaxWaitMicros(long maxWaitMicros) {
+        this.maxWaitMicros = maxWaitMicros;
+    }
+
+    /**
+     * 平均排队时间 (微秒)
+     */
+    public long getAvgWaitMicros() {
+        return taskCount > 0 ? totalWaitMicros / taskCount : 0;
+    }
+
+    @Override
+    public String toString() {
+        return name + "[" + type + "] pool " + poolSize + "/" + maxPoolSize + " active " + activeCount
+                + " queue " + queueSize + "/" + queueCapacity + " tasks " + taskCount
+                + " rejected " + rejectedCount + " avgWait " + getAvgWaitMicros() + "us maxWait " + maxWaitMicros + "us";
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.executor;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 由 {@link ManagedExecutors} 创建并登记的线程池
+ */
+public interface ManagedExecutor extends ExecutorService {
+
+    String getName();
+
+    ExecutorMetrics metrics();
+}
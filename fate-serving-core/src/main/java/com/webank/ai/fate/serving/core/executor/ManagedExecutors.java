@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.executor;
+
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程池的统一创建入口.
+ * <p>
+ * 所有线程池都有名称、线程数上限和队列上限, 拒绝策略由调用方显式指定; 创建的线程池登记在这里,
+ * 通过 {@link #metrics()} 获取各线程池的队列深度、活跃线程数和排队时间.
+ * 处理请求的线程池可以选择使用虚拟线程 (需要 JDK 21+, 否则退回普通线程池)
+ */
+public class ManagedExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(ManagedExecutors.class);
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = 60000;
+    private static final ConcurrentMap<String, ManagedExecutor> EXECUTORS = new ConcurrentHashMap<>();
+
+    public static ManagedThreadPoolExecutor newThreadPool(String name, int coreSize, int maxSize, int queueSize,
+                                                          RejectedExecutionHandler handler) {
+        ManagedThreadPoolExecutor executor = new ManagedThreadPoolExecutor(name, coreSize, maxSize, DEFAULT_KEEP_ALIVE_MILLIS,
+                queueSize, namedThreadFactory(name, true), handler);
+        register(executor);
+        return executor;
+    }
+
+    public static ManagedForkJoinPool newForkJoinPool(String name, int parallelism) {
+        ManagedForkJoinPool pool = new ManagedForkJoinPool(name, parallelism);
+        register(pool);
+        return pool;
+    }
+
+    /**
+     * 处理请求的线程池, 队列满时拒绝.
+     * useVirtualThread 为 true 且 JDK 支持时, 每个请求一个虚拟线程, 同时执行的请求数不超过 maxSize + queueSize
+     */
+    public static ManagedExecutor newRequestExecutor(String name, int coreSize, int maxSize, int queueSize, boolean useVirtualThread) {
+        if (useVirtualThread) {
+            ExecutorService delegate = newVirtualThreadPerTaskExecutor(name);
+            if (delegate != null) {
+                VirtualThreadExecutor executor = new VirtualThreadExecutor(name, delegate, maxSize + Math.max(queueSize, 0));
+                register(executor);
+                return executor;
+            }
+            logger.warn("virtual thread is not supported by this jvm, executor {} use platform threads", name);
+        }
+        return newThreadPool(name, coreSize, maxSize, queueSize, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreads.SUPPORTED;
+    }
+
+    public static List<ExecutorMetrics> metrics() {
+        List<ExecutorMetrics> result = Lists.newArrayList();
+        for (ManagedExecutor executor : EXECUTORS.values()) {
+            result.add(executor.metrics());
+        }
+        return result;
+    }
+
+    public static ThreadFactory namedThreadFactory(String name, boolean daemon) {
+        AtomicInteger threadNum = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNum.getAndIncrement());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+    static void register(ManagedExecutor executor) {
+        ManagedExecutor previous = EXECUTORS.put(executor.getName(), executor);
+        if (previous != null && previous != executor) {
+            logger.warn("executor {} is registered again, metrics of the previous one are no longer reported", executor.getName());
+        }
+    }
+
+    static void unregister(ManagedExecutor executor) {
+        EXECUTORS.remove(executor.getName(), executor);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String name) {
+        if (!VirtualThreads.SUPPORTED) {
+            return null;
+        }
+        try {
+            return VirtualThreads.newExecutor(name);
+        } catch (Exception e) {
+            logger.warn("create virtual thread executor {} error, {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 编译目标为 java 8, 虚拟线程相关 api 通过反射调用, 首次使用时探测
+     */
+    private static class VirtualThreads {
+        static Method ofVirtual;
+        static Method builderName;
+        static Method builderFactory;
+        static Method newThreadPerTaskExecutor;
+        static final boolean SUPPORTED = probe();
+
+        private static boolean probe() {
+            try {
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builderName = builderClass.getMethod("name", String.class, long.class);
+                builderFactory = builderClass.getMethod("factory");
+                newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                // jdk 19/20 中虚拟线程为预览特性, 未开启时调用会抛出异常
+                newExecutor("probe").shutdown();
+                return true;
+            } catch (Throwable e) {
+                return false;
+            }
+        }
+
+        static ExecutorService newExecutor(String name) throws Exception {
+            Object builder = builderName.invoke(ofVirtual.invoke(null), name + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderFactory.invoke(builder);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+        }
+    }
+}
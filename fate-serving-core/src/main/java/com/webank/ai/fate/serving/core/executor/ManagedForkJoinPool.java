@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.executor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * 带名称和指标的 ForkJoinPool, 供 RecursiveTask 类的并行计算使用
+ */
+public class ManagedForkJoinPool extends ForkJoinPool implements ManagedExecutor {
+
+    private final String name;
+
+    ManagedForkJoinPool(String name, int parallelism) {
+        super(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ExecutorMetrics metrics() {
+        ExecutorMetrics metrics = new ExecutorMetrics();
+        metrics.setName(name);
+        metrics.setType("forkJoin");
+        metrics.setPoolSize(getPoolSize());
+        metrics.setMaxPoolSize(getParallelism());
+        metrics.setActiveCount(getActiveThreadCount());
+        metrics.setQueueSize((int) Math.min(Integer.MAX_VALUE, getQueuedSubmissionCount() + getQueuedTaskCount()));
+        return metrics;
+    }
+}
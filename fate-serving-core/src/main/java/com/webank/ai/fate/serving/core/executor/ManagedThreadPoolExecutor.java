@@ -0,0 +1,74 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.executor;
+
+import java.util.concurrent.*;
+
+/**
+ * 有界线程池: 队列有容量上限, 拒绝策略显式指定, 并记录排队时间和拒绝次数
+ */
+public class ManagedThreadPoolExecutor extends ThreadPoolExecutor implements ManagedExecutor {
+
+    private final String name;
+    private final int queueCapacity;
+    private final TaskStats stats = new TaskStats();
+
+    ManagedThreadPoolExecutor(String name, int coreSize, int maxSize, long keepAliveMillis, int queueCapacity,
+                              ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(coreSize, maxSize, keepAliveMillis, TimeUnit.MILLISECONDS,
+                queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>(), threadFactory);
+        this.name = name;
+        this.queueCapacity = Math.max(queueCapacity, 0);
+        setRejectedExecutionHandler((r, executor) -> {
+            stats.rejected();
+            handler.rejectedExecution(r, executor);
+        });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(stats.wrap(command));
+    }
+
+    @Override
+    protected void terminated() {
+        super.terminated();
+        ManagedExecutors.unregister(this);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ExecutorMetrics metrics() {
+        ExecutorMetrics metrics = new ExecutorMetrics();
+        metrics.setName(name);
+        metrics.setType("threadPool");
+        metrics.setPoolSize(getPoolSize());
+        metrics.setMaxPoolSize(getMaximumPoolSize());
+        metrics.setActiveCount(getActiveCount());
+        metrics.setQueueSize(getQueue().size());
+        metrics.setQueueCapacity(queueCapacity);
+        stats.fill(metrics);
+        return metrics;
+    }
+}
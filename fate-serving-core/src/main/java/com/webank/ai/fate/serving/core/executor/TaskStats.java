@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.executor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录任务从提交到开始执行的等待时间和拒绝次数
+ */
+class TaskStats {
+    private final LongAdder taskCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    Runnable wrap(Runnable task) {
+        long submitNanos = System.nanoTime();
+        return () -> {
+            long wait = System.nanoTime() - submitNanos;
+            taskCount.increment();
+            totalWaitNanos.add(wait);
+            if (wait > maxWaitNanos.get()) {
+                maxWaitNanos.accumulateAndGet(wait, Math::max);
+            }
+            task.run();
+        };
+    }
+
+    void rejected() {
+        rejectedCount.increment();
+    }
+
+    void fill(ExecutorMetrics metrics) {
+        metrics.setTaskCount(taskCount.sum());
+        metrics.setTotalWaitMicros(totalWaitNanos.sum() / 1000);
+        metrics.setMaxWaitMicros(maxWaitNanos.get() / 1000);
+        metrics.setRejectedCount(rejectedCount.sum());
+    }
+}
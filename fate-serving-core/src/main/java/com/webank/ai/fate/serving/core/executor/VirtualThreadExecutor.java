@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.executor;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个任务一个虚拟线程 (JDK 21+), 用信号量限制同时执行的任务数, 超出时直接拒绝, 保持与有界线程池相同的背压语义
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService implements ManagedExecutor {
+
+    private final String name;
+    private final ExecutorService delegate;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final AtomicInteger active = new AtomicInteger();
+    private final TaskStats stats = new TaskStats();
+
+    VirtualThreadExecutor(String name, ExecutorService delegate, int maxConcurrency) {
+        this.name = name;
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        if (!permits.tryAcquire()) {
+            stats.rejected();
+            throw new RejectedExecutionException("executor " + name + " is full, max concurrency " + maxConcurrency);
+        }
+        Runnable task = stats.wrap(command);
+        try {
+            delegate.execute(() -> {
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            stats.rejected();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+        ManagedExecutors.unregister(this);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        ManagedExecutors.unregister(this);
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ExecutorMetrics metrics() {
+        ExecutorMetrics metrics = new ExecutorMetrics();
+        metrics.setName(name);
+        metrics.setType("virtualThread");
+        int activeCount = active.get();
+        metrics.setPoolSize(activeCount);
+        metrics.setMaxPoolSize(maxConcurrency);
+        metrics.setActiveCount(activeCount);
+        // 已获得许可但虚拟线程尚未开始执行的任务
+        metrics.setQueueSize(Math.max(0, maxConcurrency - permits.availablePermits() - activeCount));
+        stats.fill(metrics);
+        return metrics;
+    }
+}
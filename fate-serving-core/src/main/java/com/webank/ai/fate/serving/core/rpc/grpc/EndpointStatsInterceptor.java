@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.core.rpc.grpc;
+
+import com.webank.ai.fate.serving.core.rpc.router.EndpointStats;
+import io.grpc.*;
+
+/**
+ * 为某个地址的 channel 采集在途请求数和延迟, 见 {@link EndpointStats}.
+ * 每次调用重新获取统计对象, 地址从路由中删除又加回后与负载均衡看到的是同一个对象
+ */
+public class EndpointStatsInterceptor implements ClientInterceptor {
+
+    private final String address;
+
+    public EndpointStatsInterceptor(String address) {
+        this.address = address;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                EndpointStats stats = EndpointStats.get(address);
+                long begin = stats.begin();
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            stats.end(begin, status.isOk());
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                } catch (RuntimeException e) {
+                    stats.end(begin, false);
+                    throw e;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.core.rpc.router;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个下游地址 (ip:port) 的调用统计, 由 gRPC 客户端拦截器采集, 供负载均衡使用.
+ * <p>
+ * inFlight 为当前未返回的请求数; 延迟使用 peak EWMA: 新样本大于当前值时直接取新样本,
+ * 否则按距上次采样的时间指数衰减, 时间常数为 {@link #DECAY_NANOS}
+ */
+public class EndpointStats {
+
+    /**
+     * EWMA 衰减的时间常数
+     */
+    public static final long DECAY_NANOS = 10_000_000_000L;
+    /**
+     * 失败请求按至少该耗时计入, 避免快速失败的地址吸引更多流量
+     */
+    public static final long FAILURE_PENALTY_NANOS = 1_000_000_000L;
+
+    private static final ConcurrentMap<String, EndpointStats> STATS = new ConcurrentHashMap<>();
+
+    private final String address;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile long ewmaNanos;
+    private long lastObserveNanos;
+
+    private EndpointStats(String address) {
+        this.address = address;
+    }
+
+    public static EndpointStats get(String address) {
+        EndpointStats stats = STATS.get(address);
+        if (stats == null) {
+            stats = STATS.computeIfAbsent(address, EndpointStats::new);
+        }
+        return stats;
+    }
+
+    public static EndpointStats get(String host, int port) {
+        return get(host + ":" + port);
+    }
+
+    /**
+     * 地址从路由中删除后清理统计, 之后再使用该地址时重新开始统计
+     */
+    public static void remove(String address) {
+        STATS.remove(address);
+    }
+
+    /**
+     * 请求发出时调用
+     *
+     * @return 开始时间, 传给 {@link #end(long, boolean)}
+     */
+    public long begin() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void end(long beginNanos, boolean success) {
+        end(beginNanos, System.nanoTime(), success);
+    }
+
+    /**
+     * @param endNanos 结束时间, 与 beginNanos 使用同一时钟
+     */
+    public void end(long beginNanos, long endNanos, boolean success) {
+        inFlight.decrementAndGet();
+        long rtt = endNanos - beginNanos;
+        observe(success ? rtt : Math.max(rtt, FAILURE_PENALTY_NANOS), endNanos);
+    }
+
+    synchronized void observe(long rttNanos, long now) {
+        long current = ewmaNanos;
+        if (current == 0 || rttNanos > current) {
+            ewmaNanos = rttNanos;
+        } else {
+            double w = Math.exp(-(double) Math.max(0, now - lastObserveNanos) / DECAY_NANOS);
+            ewmaNanos = (long) (current * w + rttNanos * (1 - w));
+        }
+        lastObserveNanos = now;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getEwmaNanos() {
+        return ewmaNanos;
+    }
+
+    /**
+     * peak EWMA 的代价: 延迟乘以排队请求数. 尚无样本的地址空闲时代价为 0 以便探测, 有请求在途时按失败惩罚计
+     */
+    public double getPeakEwmaCost() {
+        int pending = inFlight.get();
+        long ewma = ewmaNanos;
+        if (ewma == 0) {
+            return pending == 0 ? 0 : (double) FAILURE_PENALTY_NANOS + pending;
+        }
+        return (double) ewma * (pending + 1);
+    }
+
+    @Override
+    public String toString() {
+        return address + " inFlight " + inFlight.get() + " ewma " + ewmaNanos / 1000 + "us";
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.core.rpc.router;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * 基于 {@link EndpointStats} 的选址策略, 返回选中元素的下标. 注册中心的 LoadBalancer 和 proxy 路由共用
+ */
+public class LatencyAwareSelector {
+
+    /**
+     * 在途请求最少, 相同时随机
+     */
+    public static <T> int leastRequest(List<T> items, Function<T, EndpointStats> statsOf) {
+        int size = items.size();
+        if (size <= 1) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int best = -1;
+        int bestInFlight = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int i = 0; i < size; i++) {
+            int inFlight = statsOf.apply(items.get(i)).getInFlight();
+            if (inFlight < bestInFlight) {
+                best = i;
+                bestInFlight = inFlight;
+                ties = 1;
+            } else if (inFlight == bestInFlight && random.nextInt(++ties) == 0) {
+                // 蓄水池抽样, 相同的最小值中等概率选择
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 随机取两个, 选在途请求少的
+     */
+    public static <T> int powerOfTwoChoices(List<T> items, Function<T, EndpointStats> statsOf) {
+        int size = items.size();
+        if (size <= 1) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(size);
+        int b = random.nextInt(size - 1);
+        if (b >= a) {
+            b++;
+        }
+        return statsOf.apply(items.get(b)).getInFlight() < statsOf.apply(items.get(a)).getInFlight() ? b : a;
+    }
+
+    /**
+     * 随机取两个, 选 peak EWMA 代价小的
+     */
+    public static <T> int peakEwma(List<T> items, Function<T, EndpointStats> statsOf) {
+        int size = items.size();
+        if (size <= 1) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(size);
+        int b = random.nextInt(size - 1);
+        if (b >= a) {
+            b++;
+        }
+        return statsOf.apply(items.get(b)).getPeakEwmaCost() < statsOf.apply(items.get(a)).getPeakEwmaCost() ? b : a;
+    }
+}
@@ -28,6 +28,18 @@ public enum RouteType {
     /**
      * CONSISTENT_HASH_ROUTE  负载均衡 一致性hash路由
      */
-    CONSISTENT_HASH_ROUTE
+    CONSISTENT_HASH_ROUTE,
+    /**
+     * LEAST_REQUEST_ROUTE  在途请求最少
+     */
+    LEAST_REQUEST_ROUTE,
+    /**
+     * POWER_OF_TWO_CHOICES_ROUTE  随机两个中在途请求少的
+     */
+    POWER_OF_TWO_CHOICES_ROUTE,
+    /**
+     * PEAK_EWMA_ROUTE  随机两个中 peak EWMA 延迟代价小的
+     */
+    PEAK_EWMA_ROUTE
 }
 
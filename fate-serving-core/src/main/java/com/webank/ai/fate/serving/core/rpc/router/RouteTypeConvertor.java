@@ -33,6 +33,9 @@ public class RouteTypeConvertor {
      */
     private static final String ROUTE_TYPE_RANDOM = "random";
     private static final String ROUTE_TYPE_CONSISTENT_HASH = "consistent";
+    private static final String ROUTE_TYPE_LEAST_REQUEST = "least_request";
+    private static final String ROUTE_TYPE_POWER_OF_TWO_CHOICES = "power_of_two_choices";
+    private static final String ROUTE_TYPE_PEAK_EWMA = "peak_ewma";
 
     // 创建日志实例，在控制台日志输出的时候，可以打印出日志信息所在的类
     // 定义成static final,logger变量不可变，读取速度快
@@ -50,6 +53,12 @@ public class RouteTypeConvertor {
                 routeType = RouteType.RANDOM_ROUTE;
             } else if (routeTypeString.equalsIgnoreCase(ROUTE_TYPE_CONSISTENT_HASH)) {
                 routeType = RouteType.CONSISTENT_HASH_ROUTE;
+            } else if (routeTypeString.equalsIgnoreCase(ROUTE_TYPE_LEAST_REQUEST)) {
+                routeType = RouteType.LEAST_REQUEST_ROUTE;
+            } else if (routeTypeString.equalsIgnoreCase(ROUTE_TYPE_POWER_OF_TWO_CHOICES)) {
+                routeType = RouteType.POWER_OF_TWO_CHOICES_ROUTE;
+            } else if (routeTypeString.equalsIgnoreCase(ROUTE_TYPE_PEAK_EWMA)) {
+                routeType = RouteType.PEAK_EWMA_ROUTE;
             } else {
                 routeType = RouteType.RANDOM_ROUTE;
                 logger.error("unknown routeType{}, will use {} instead.", routeTypeString, ROUTE_TYPE_RANDOM);
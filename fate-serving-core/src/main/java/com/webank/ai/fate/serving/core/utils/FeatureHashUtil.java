@@ -0,0 +1,332 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.core.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 推理缓存 key 的计算工具.
+ * <p>
+ * 将特征 map 按 key 规范排序后的编码直接写入 128 位 Murmur3 哈希, 不生成中间 json 字符串, 也不使用 MessageDigest.
+ * 编码对每个值带类型标记和长度前缀, 因此不同结构的输入不会拼接出相同的字节序列; 整数类型统一按 long 编码,
+ * 浮点类型统一按 double 编码, 与 key 的插入顺序无关.
+ * 哈希状态和排序用的临时数组按线程复用. 非加密哈希, 仅用于缓存与去重
+ */
+public class FeatureHashUtil {
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_DOUBLE = 3;
+    private static final byte TAG_BOOLEAN = 4;
+    private static final byte TAG_MAP = 5;
+    private static final byte TAG_LIST = 6;
+    private static final byte TAG_OTHER = 7;
+
+    /**
+     * 规范顺序只需确定且与插入顺序无关: 先比较 String.hashCode (有缓存, 且由规范定义, 跨 JVM 一致), 相同时再按字典序
+     */
+    private static final Comparator<Object> KEY_ORDER = (a, b) -> {
+        String ka = String.valueOf(((Map.Entry<?, ?>) a).getKey());
+        String kb = String.valueOf(((Map.Entry<?, ?>) b).getKey());
+        int c = Integer.compare(ka.hashCode(), kb.hashCode());
+        return c != 0 ? c : ka.compareTo(kb);
+    };
+
+    private static final ThreadLocal<Murmur3Hasher> HASHER = ThreadLocal.withInitial(Murmur3Hasher::new);
+
+    /**
+     * @param featureData 特征数据
+     * @param prefixes    参与哈希的前缀, 如 partyId、表名, 各自独立编码
+     */
+    public static HashKey hash(Map<?, ?> featureData, String... prefixes) {
+        Murmur3Hasher hasher = HASHER.get();
+        hasher.reset();
+        for (String prefix : prefixes) {
+            hasher.putValue(prefix, 0);
+        }
+        hasher.putValue(featureData, 0);
+        return hasher.finish();
+    }
+
+    /**
+     * 128 位哈希值, 可直接作为进程内 map 的 key; toString 为 22 个字符的 base64url 编码, 用于远端缓存
+     */
+    public static final class HashKey {
+        private static final char[] BASE64_URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+        private final long high;
+        private final long low;
+        private String text;
+
+        public HashKey(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        public long getHigh() {
+            return high;
+        }
+
+        public long getLow() {
+            return low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof HashKey)) {
+                return false;
+            }
+            HashKey other = (HashKey) o;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            String result = text;
+            if (result == null) {
+                // 128 位按 6 位一组编码, 共 22 组, 最后一组只有 2 位有效
+                char[] chars = new char[22];
+                for (int i = 0; i < 22; i++) {
+                    int shift = 128 - 6 * (i + 1);
+                    int bits;
+                    if (shift >= 64) {
+                        bits = (int) (high >>> (shift - 64));
+                    } else if (shift > 58) {
+                        bits = (int) ((high << (64 - shift)) | (low >>> shift));
+                    } else if (shift >= 0) {
+                        bits = (int) (low >>> shift);
+                    } else {
+                        bits = (int) (low << -shift);
+                    }
+                    chars[i] = BASE64_URL[bits & 0x3f];
+                }
+                result = new String(chars);
+                text = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Murmur3 x64 128 的流式实现, 与一次性对同一字节序列计算的结果一致
+     */
+    static final class Murmur3Hasher {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private long h1;
+        private long h2;
+        private long k1;
+        private long k2;
+        private int pos;
+        private long length;
+        /**
+         * 按嵌套深度复用的 entry 排序数组
+         */
+        private final List<Object[]> scratch = new ArrayList<>();
+
+        void reset() {
+            h1 = 0;
+            h2 = 0;
+            k1 = 0;
+            k2 = 0;
+            pos = 0;
+            length = 0;
+        }
+
+        void putValue(Object value, int depth) {
+            if (value == null) {
+                putByte(TAG_NULL);
+            } else if (value instanceof String) {
+                putByte(TAG_STRING);
+                putString((String) value);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                putByte(TAG_LONG);
+                putLong(((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                putByte(TAG_DOUBLE);
+                putLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+            } else if (value instanceof Boolean) {
+                putByte(TAG_BOOLEAN);
+                putByte((Boolean) value ? (byte) 1 : (byte) 0);
+            } else if (value instanceof Map) {
+                putByte(TAG_MAP);
+                putMap((Map<?, ?>) value, depth);
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                putByte(TAG_LIST);
+                putLong(collection.size());
+                for (Object item : collection) {
+                    putValue(item, depth + 1);
+                }
+            } else {
+                putByte(TAG_OTHER);
+                putString(value.toString());
+            }
+        }
+
+        private void putMap(Map<?, ?> map, int depth) {
+            int size = map.size();
+            putLong(size);
+            while (scratch.size() <= depth) {
+                scratch.add(new Object[16]);
+            }
+            Object[] entries = scratch.get(depth);
+            if (entries.length < size) {
+                entries = new Object[Math.max(size, entries.length * 2)];
+                scratch.set(depth, entries);
+            }
+            int n = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                entries[n++] = entry;
+            }
+            Arrays.sort(entries, 0, n, KEY_ORDER);
+            try {
+                for (int i = 0; i < n; i++) {
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) entries[i];
+                    putValue(entry.getKey() != null ? entry.getKey().toString() : null, depth + 1);
+                    putValue(entry.getValue(), depth + 1);
+                }
+            } finally {
+                Arrays.fill(entries, 0, n, null);
+            }
+        }
+
+        private void putString(String s) {
+            int len = s.length();
+            putLong(len);
+            int i = 0;
+            // 每 4 个字符按小端拼成一个 long 写入, 字节序列与逐字节写入相同
+            for (; i + 4 <= len; i += 4) {
+                putLong(s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48);
+            }
+            for (; i < len; i++) {
+                char c = s.charAt(i);
+                putByte((byte) c);
+                putByte((byte) (c >>> 8));
+            }
+        }
+
+        /**
+         * 按小端写入 8 个字节, 未对齐时拆到当前块和下一块中
+         */
+        void putLong(long v) {
+            int shift = (pos & 7) << 3;
+            if (pos < 8) {
+                if (shift == 0) {
+                    k1 = v;
+                } else {
+                    k1 |= v << shift;
+                    k2 = v >>> (64 - shift);
+                }
+                pos += 8;
+            } else if (shift == 0) {
+                k2 = v;
+                process();
+            } else {
+                int next = pos - 8;
+                k2 |= v << shift;
+                process();
+                k1 = v >>> (64 - shift);
+                pos = next;
+            }
+        }
+
+        void putByte(byte b) {
+            long v = (b & 0xffL) << ((pos & 7) << 3);
+            if (pos < 8) {
+                k1 |= v;
+            } else {
+                k2 |= v;
+            }
+            if (++pos == 16) {
+                process();
+            }
+        }
+
+        private void process() {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+            k1 = 0;
+            k2 = 0;
+            pos = 0;
+            length += 16;
+        }
+
+        HashKey finish() {
+            if (pos > 0) {
+                length += pos;
+                h1 ^= mixK1(k1);
+                h2 ^= mixK2(k2);
+            }
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+            HashKey key = new HashKey(h1, h2);
+            reset();
+            return key;
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -19,6 +19,8 @@ package com.webank.ai.fate.serving.core.utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+
 public class ProtobufUtils {
     // 创建日志实例
     private static final Logger logger = LoggerFactory.getLogger(ProtobufUtils.class);
@@ -51,4 +53,28 @@ public class ProtobufUtils {
             }
         }
     }
+
+    /**
+     * 直接从 ByteBuffer 解析, 堆外 (如内存映射) 的 buffer 不会整体复制到堆上; 不改变 protoBuffer 的 position
+     */
+    public static <T> T parseProtoObject(com.google.protobuf.Parser<T> protoParser, ByteBuffer protoBuffer) throws com.google.protobuf.InvalidProtocolBufferException {
+        T messageV3;
+        try {
+            messageV3 = protoParser.parseFrom(protoBuffer.duplicate());
+            if (logger.isDebugEnabled()) {
+                logger.debug("parse {} proto object normal", messageV3.getClass().getSimpleName());
+            }
+            return messageV3;
+        } catch (Exception ex1) {
+            try {
+                messageV3 = protoParser.parseFrom(new byte[0]);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("parse {} proto object with default values", messageV3.getClass().getSimpleName());
+                }
+                return messageV3;
+            } catch (Exception ex2) {
+                throw ex1;
+            }
+        }
+    }
 }
@@ -1,36 +0,0 @@
-/*
- * Copyright 2019 The FATE Authors. All Rights Reserved.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *     http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package com.webank.ai.fate.serving.core.utils;
-
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
-public class ThreadPoolUtil {
-
-    public static ThreadPoolExecutor newThreadPoolExecutor() {
-        // 获取cpu核心线程数也就是计算资源。
-        int processors = Runtime.getRuntime().availableProcessors();
-        // 线程池参数：核心线程数、最大线程数、线程空闲时间、时间单位、队列、...
-        // 如果不希望任务在队列中等待而是希望将任务直接移交给工作线程，可使用SynchronousQueue作为等待队列。
-        // SynchronousQueue不是一个真正的队列，而是一种线程之间移交的机制。要将一个元素放入SynchronousQueue中，
-        // 必须有另一个线程正在等待接收这个元素。只有在使用无界线程池或者有饱和策略时才建议使用该队列。
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(processors, Integer.MAX_VALUE,
-                0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
-        return executor;
-    }
-}
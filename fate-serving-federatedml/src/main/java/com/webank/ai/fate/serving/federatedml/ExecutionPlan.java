@@ -0,0 +1,356 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml;
+
+import com.webank.ai.fate.serving.common.model.MergeInferenceAware;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.core.constant.StatusCode;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
+import com.webank.ai.fate.serving.federatedml.model.BaseComponent;
+import com.webank.ai.fate.serving.federatedml.model.Returnable;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * 由 DSL 编译得到的不可变执行计划.
+ * <p>
+ * 组件按拓扑序排列, 每个组件的上游在编译时解析为下标数组 ({@link #REQUEST_INPUT} 表示请求的输入数据),
+ * 是否 Returnable / MergeInferenceAware 也预先确定; 执行时组件输出写入线程私有的槽位数组,
+ * 传给组件的输入列表是该数组上的只读视图, 每行数据不再查询 DAG, 也不分配中间集合.
+ * 批量推理时实现了 {@link ColumnarInferenceAware} 的组件按列执行整批数据, 其余组件逐行执行
+ */
+public final class ExecutionPlan {
+
+    public static final int REQUEST_INPUT = -1;
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionPlan.class);
+
+    private final BaseComponent[] components;
+    private final String[] componentNames;
+    private final int[][] inputs;
+    private final boolean[] returnable;
+    private final boolean[] mergeAware;
+    private final boolean[] columnar;
+    private final boolean hasReturnable;
+    private final boolean hasColumnar;
+    private final ThreadLocal<Scratch> scratch;
+
+    private ExecutionPlan(List<BaseComponent> components, IntFunction<? extends Collection<Integer>> upInputs) {
+        int size = components.size();
+        this.components = components.toArray(new BaseComponent[size]);
+        this.componentNames = new String[size];
+        this.inputs = new int[size][];
+        this.returnable = new boolean[size];
+        this.mergeAware = new boolean[size];
+        this.columnar = new boolean[size];
+        boolean hasReturnable = false;
+        boolean hasColumnar = false;
+        for (int i = 0; i < size; i++) {
+            BaseComponent component = this.components[i];
+            Collection<Integer> upInput = upInputs.apply(i);
+            if (upInput == null || upInput.isEmpty()) {
+                inputs[i] = new int[]{REQUEST_INPUT};
+            } else {
+                // 保持与 DSLParser 中集合相同的遍历顺序
+                int[] indexes = new int[upInput.size()];
+                int j = 0;
+                for (Integer index : upInput) {
+                    if (index == null || index >= i || index < REQUEST_INPUT) {
+                        throw new IllegalArgumentException("component " + i + " has illegal input " + index);
+                    }
+                    indexes[j++] = index;
+                }
+                inputs[i] = indexes;
+            }
+            if (component != null) {
+                componentNames[i] = component.getComponentName();
+                returnable[i] = component instanceof Returnable;
+                mergeAware[i] = component instanceof MergeInferenceAware;
+                columnar[i] = component instanceof ColumnarInferenceAware;
+                hasReturnable |= returnable[i];
+                hasColumnar |= columnar[i];
+            }
+        }
+        this.hasReturnable = hasReturnable;
+        this.hasColumnar = hasColumnar;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(this.inputs));
+    }
+
+    public static ExecutionPlan compile(List<BaseComponent> components, DSLParser dslParser) {
+        return new ExecutionPlan(components, dslParser::getUpInputComponents);
+    }
+
+    /**
+     * @param upInputs 按拓扑序下标返回该组件的上游下标, null 或空表示使用请求的输入数据
+     */
+    public static ExecutionPlan compile(List<BaseComponent> components, IntFunction<? extends Collection<Integer>> upInputs) {
+        return new ExecutionPlan(components, upInputs);
+    }
+
+    public int size() {
+        return components.length;
+    }
+
+    /**
+     * 是否有组件支持按列执行, 没有时批量推理直接逐行执行即可
+     */
+    public boolean isColumnar() {
+        return hasColumnar;
+    }
+
+    /**
+     * 本地推理, 语义与逐个组件遍历 DAG 相同: 组件为空时透传第一个输入, Returnable 组件的输出放入结果
+     */
+    public Map<String, Object> localInference(Context context, Map<String, Object> inputData) {
+        Map<String, Object> result = new HashMap<>();
+        result.put(Dict.RET_CODE, StatusCode.SUCCESS);
+        boolean flatten = hasReturnable && isOldVersion(context);
+        Scratch s = scratch.get();
+        s.request = inputData;
+        try {
+            for (int i = 0; i < components.length; i++) {
+                BaseComponent component = components[i];
+                if (component == null) {
+                    s.outputs[i] = s.views[i].get(0);
+                    continue;
+                }
+                Map<String, Object> componentResult = component.localInference(context, s.views[i]);
+                s.outputs[i] = componentResult;
+                if (returnable[i]) {
+                    result.put(componentNames[i], componentResult);
+                    if (flatten) {
+                        result.putAll(componentResult);
+                    }
+                }
+            }
+        } finally {
+            s.clear();
+        }
+        return result;
+    }
+
+    /**
+     * 批量本地推理, 每行的结果与 {@link #localInference(Context, Map)} 相同.
+     * 按列执行的组件出现异常时, 该组件改为逐行执行
+     *
+     * @param errors 与 rows 等长, 出错的行在这里记录异常, 对应的结果为 null
+     */
+    public List<Map<String, Object>> localInference(Context context, List<Map<String, Object>> rows, Throwable[] errors) {
+        BatchSlot request = new BatchSlot(rows, errors);
+        BatchSlot[] outputs = new BatchSlot[components.length];
+        for (int i = 0; i < components.length; i++) {
+            BaseComponent component = components[i];
+            int[] indexes = inputs[i];
+            if (component == null) {
+                outputs[i] = indexes[0] == REQUEST_INPUT ? request : outputs[indexes[0]];
+                continue;
+            }
+            if (columnar[i]) {
+                List<ColumnarBatch> batches = new ArrayList<>(indexes.length);
+                for (int index : indexes) {
+                    batches.add((index == REQUEST_INPUT ? request : outputs[index]).batch());
+                }
+                try {
+                    ColumnarBatch output = ((ColumnarInferenceAware) component).columnarInference(context, batches);
+                    if (output != null) {
+                        outputs[i] = new BatchSlot(output);
+                        continue;
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("component {} columnar inference error, fall back to row by row", componentNames[i], e);
+                }
+            }
+            outputs[i] = rowByRow(context, component, indexes, request, outputs, rows, errors);
+        }
+
+        boolean flatten = hasReturnable && isOldVersion(context);
+        List<List<Map<String, Object>>> returnableRows = new ArrayList<>();
+        for (int i = 0; i < components.length; i++) {
+            returnableRows.add(returnable[i] ? outputs[i].rows() : null);
+        }
+        List<Map<String, Object>> results = new ArrayList<>(rows.size());
+        for (int r = 0; r < rows.size(); r++) {
+            if (errors[r] != null) {
+                results.add(null);
+                continue;
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put(Dict.RET_CODE, StatusCode.SUCCESS);
+            for (int i = 0; i < components.length; i++) {
+                if (returnable[i]) {
+                    Map<String, Object> componentResult = returnableRows.get(i).get(r);
+                    result.put(componentNames[i], componentResult);
+                    if (flatten) {
+                        result.putAll(componentResult);
+                    }
+                }
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static BatchSlot rowByRow(Context context, BaseComponent component, int[] indexes, BatchSlot request,
+                                      BatchSlot[] outputs, List<Map<String, Object>> rows, Throwable[] errors) {
+        List<List<Map<String, Object>>> inputRows = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            inputRows.add((index == REQUEST_INPUT ? request : outputs[index]).rows());
+        }
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        List<Map<String, Object>> input = new ArrayList<>(indexes.length);
+        for (int r = 0; r < rows.size(); r++) {
+            if (errors[r] != null) {
+                result.add(null);
+                continue;
+            }
+            input.clear();
+            for (List<Map<String, Object>> inputRow : inputRows) {
+                input.add(inputRow.get(r));
+            }
+            try {
+                context.putData(Dict.ORIGINAL_PREDICT_DATA, rows.get(r));
+                result.add(component.localInference(context, input));
+            } catch (Throwable e) {
+                errors[r] = e;
+                result.add(null);
+            }
+        }
+        return new BatchSlot(result, errors);
+    }
+
+    /**
+     * 合并远端结果, 结果取最后一个 MergeInferenceAware 组件的输出
+     */
+    public Map<String, Object> mergeRemoteInference(Context context, Map<String, Object> localData, Map<String, Object> remoteData) {
+        Map<String, Object> result = new HashMap<>();
+        result.put(Dict.RET_CODE, StatusCode.SUCCESS);
+        Map<String, Object> lastMerge = null;
+        boolean merged = false;
+        Scratch s = scratch.get();
+        s.request = localData;
+        try {
+            for (int i = 0; i < components.length; i++) {
+                if (mergeAware[i]) {
+                    Map<String, Object> mergeResult = ((MergeInferenceAware) components[i]).mergeRemoteInference(context, s.views[i], remoteData);
+                    s.outputs[i] = mergeResult;
+                    lastMerge = mergeResult;
+                    merged = true;
+                } else {
+                    s.outputs[i] = s.views[i].get(0);
+                }
+            }
+        } finally {
+            s.clear();
+        }
+        if (merged) {
+            result.putAll(lastMerge);
+        }
+        return result;
+    }
+
+    private static boolean isOldVersion(Context context) {
+        return StringUtils.isBlank(context.getVersion()) || Double.parseDouble(context.getVersion()) < 200;
+    }
+
+    /**
+     * 批量执行时一个组件的输出, 按需在行和列两种形式之间转换
+     */
+    private static final class BatchSlot {
+        final Throwable[] errors;
+        List<Map<String, Object>> rows;
+        ColumnarBatch batch;
+
+        BatchSlot(List<Map<String, Object>> rows, Throwable[] errors) {
+            this.rows = rows;
+            this.errors = errors;
+        }
+
+        BatchSlot(ColumnarBatch batch) {
+            this.batch = batch;
+            this.errors = null;
+        }
+
+        ColumnarBatch batch() {
+            if (batch == null) {
+                batch = ColumnarBatch.fromRows(rows, errors);
+            }
+            return batch;
+        }
+
+        List<Map<String, Object>> rows() {
+            if (rows == null) {
+                rows = batch.toRows();
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * 线程私有的执行现场, 每行执行完后清空, 不持有行数据
+     */
+    private static final class Scratch {
+        final Map<String, Object>[] outputs;
+        final InputView[] views;
+        Map<String, Object> request;
+
+        @SuppressWarnings("unchecked")
+        Scratch(int[][] inputs) {
+            this.outputs = new Map[inputs.length];
+            this.views = new InputView[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                views[i] = new InputView(this, inputs[i]);
+            }
+        }
+
+        Map<String, Object> get(int index) {
+            return index == REQUEST_INPUT ? request : outputs[index];
+        }
+
+        void clear() {
+            Arrays.fill(outputs, null);
+            request = null;
+        }
+    }
+
+    /**
+     * 组件输入的只读视图, 元素为上游组件在当前行的输出
+     */
+    private static final class InputView extends AbstractList<Map<String, Object>> implements RandomAccess {
+        final Scratch scratch;
+        final int[] indexes;
+
+        InputView(Scratch scratch, int[] indexes) {
+            this.scratch = scratch;
+            this.indexes = indexes;
+        }
+
+        @Override
+        public Map<String, Object> get(int index) {
+            return scratch.get(indexes[index]);
+        }
+
+        @Override
+        public int size() {
+            return indexes.length;
+        }
+    }
+}
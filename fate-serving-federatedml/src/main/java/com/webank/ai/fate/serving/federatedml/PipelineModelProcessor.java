@@ -21,20 +21,19 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.webank.ai.fate.api.networking.proxy.Proxy;
 import com.webank.ai.fate.core.mlmodel.buffer.PipelineProto;
-import com.webank.ai.fate.serving.common.model.MergeInferenceAware;
 import com.webank.ai.fate.serving.common.model.ModelProcessor;
 import com.webank.ai.fate.serving.common.rpc.core.ErrorMessageUtil;
+import com.webank.ai.fate.serving.common.utils.FutureUtil;
 import com.webank.ai.fate.serving.core.bean.*;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.exceptions.*;
-import com.webank.ai.fate.serving.core.utils.EncryptUtils;
-import com.webank.ai.fate.serving.core.utils.JsonUtil;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
+import com.webank.ai.fate.serving.core.utils.FeatureHashUtil;
 import com.webank.ai.fate.serving.federatedml.model.BaseComponent;
-import com.webank.ai.fate.serving.federatedml.model.Returnable;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -46,10 +45,11 @@ public class PipelineModelProcessor implements ModelProcessor {
 
     private static final Logger logger = LoggerFactory.getLogger(PipelineModelProcessor.class);
     private static String flower = "pipeline.pipeline:Pipeline";
-    private static ForkJoinPool forkJoinPool = new ForkJoinPool();
+    private static ForkJoinPool forkJoinPool = ManagedExecutors.newForkJoinPool("pipeline-inference", Runtime.getRuntime().availableProcessors());
     private List<BaseComponent> pipeLineNode = new ArrayList<>();
     private Map<String, BaseComponent> componentMap = new HashMap<String, BaseComponent>();
     private DSLParser dslParser = new DSLParser();
+    private ExecutionPlan executionPlan;
     private String modelPackage = "com.webank.ai.fate.serving.federatedml.model";
     private int splitSize = MetaInfo.PROPERTY_BATCH_SPLIT_SIZE; //并行任务数？
 
@@ -59,28 +59,64 @@ public class PipelineModelProcessor implements ModelProcessor {
         BatchInferenceResult batchFederatedResult = new BatchInferenceResult();
         Map<Integer, Map<String, Object>> localResult = batchLocalInference(context, batchInferenceRequest);
         Map<String, BatchInferenceResult> remoteResultMap = Maps.newHashMap();
-        remoteFutureMap.forEach((partyId, future) -> {
-            Proxy.Packet packet = null;
-            try {
-                BatchInferenceResult remoteInferenceResult = (BatchInferenceResult) future.get(timeout, TimeUnit.MILLISECONDS);
-                if (StatusCode.SUCCESS != remoteInferenceResult.getRetcode()) {
-                    throw new RemoteRpcException(transformRemoteErrorCode(remoteInferenceResult.getRetcode()), buildRemoteRpcErrorMsg(remoteInferenceResult.getRetcode(), remoteInferenceResult.getRetmsg()));
-                }
-                remoteResultMap.put(partyId, remoteInferenceResult);    //guest获得host方返回的数据
-            } catch (Exception e) {
-                if (!(e instanceof RemoteRpcException)) {
-                    throw new RemoteRpcException("party id " + partyId + " remote error");
-                } else {
-                    throw (RemoteRpcException) e;
+        try {
+            remoteFutureMap.forEach((partyId, future) -> {
+                Proxy.Packet packet = null;
+                try {
+                    BatchInferenceResult remoteInferenceResult = (BatchInferenceResult) future.get(timeout, TimeUnit.MILLISECONDS);
+                    checkRemoteBatchResult(remoteInferenceResult);
+                    remoteResultMap.put(partyId, remoteInferenceResult);    //guest获得host方返回的数据
+                } catch (Exception e) {
+                    if (!(e instanceof RemoteRpcException)) {
+                        throw new RemoteRpcException("party id " + partyId + " remote error");
+                    } else {
+                        throw (RemoteRpcException) e;
+                    }
                 }
-            } finally {
-                context.setDownstreamCost(System.currentTimeMillis() - context.getDownstreamBegin());
-            }
-        });
+            });
+        } finally {
+            context.setDownstreamCost(System.currentTimeMillis() - context.getDownstreamBegin());
+        }
         batchFederatedResult = batchMergeHostResult(context, localResult, remoteResultMap); //guest方执行合并
         return batchFederatedResult;
     }
 
+    /**
+     * 本地推理在调用线程执行, 此时各 host 的请求已经发出; 所有 host 返回后在回调中合并, 不阻塞等待远端
+     */
+    @Override
+    public CompletableFuture<BatchInferenceResult> guestBatchInferenceAsync(Context context, BatchInferenceRequest batchInferenceRequest, Map<String, CompletableFuture<BatchInferenceResult>> remoteFutureMap, long timeout) {
+        Map<Integer, Map<String, Object>> localResult = batchLocalInference(context, batchInferenceRequest);
+        Map<String, BatchInferenceResult> remoteResultMap = Maps.newConcurrentMap();
+        CompletableFuture<?>[] remoteFutures = new CompletableFuture[remoteFutureMap.size()];
+        int i = 0;
+        for (Map.Entry<String, CompletableFuture<BatchInferenceResult>> entry : remoteFutureMap.entrySet()) {
+            String partyId = entry.getKey();
+            remoteFutures[i++] = entry.getValue().handle((remoteInferenceResult, e) -> {
+                if (e != null) {
+                    Throwable cause = FutureUtil.unwrap(e);
+                    if (cause instanceof RemoteRpcException) {
+                        throw (RemoteRpcException) cause;
+                    }
+                    throw new RemoteRpcException("party id " + partyId + " remote error");
+                }
+                checkRemoteBatchResult(remoteInferenceResult);
+                remoteResultMap.put(partyId, remoteInferenceResult);    //guest获得host方返回的数据
+                return remoteInferenceResult;
+            });
+        }
+        // 所有 host 都返回后记录一次下游耗时
+        return CompletableFuture.allOf(remoteFutures)
+                .whenComplete((v, e) -> context.setDownstreamCost(System.currentTimeMillis() - context.getDownstreamBegin()))
+                .thenApplyAsync(v -> batchMergeHostResult(context, localResult, remoteResultMap), forkJoinPool);
+    }
+
+    private void checkRemoteBatchResult(BatchInferenceResult remoteInferenceResult) {
+        if (StatusCode.SUCCESS != remoteInferenceResult.getRetcode()) {
+            throw new RemoteRpcException(transformRemoteErrorCode(remoteInferenceResult.getRetcode()), buildRemoteRpcErrorMsg(remoteInferenceResult.getRetcode(), remoteInferenceResult.getRetmsg()));
+        }
+    }
+
     /**
      * host 端只需要本地预测即可
      *
@@ -111,26 +147,60 @@ public class PipelineModelProcessor implements ModelProcessor {
     @Override
     public ReturnResult guestInference(Context context, InferenceRequest inferenceRequest, Map<String, Future> futureMap, long timeout) {
         Map<String, Object> localResult = singleLocalPredict(context, inferenceRequest.getFeatureData());   //guest先在本地进行推理得到结果
-        ReturnResult remoteResult = new ReturnResult();
         Map<String, Object> remoteResultMap = Maps.newHashMap();
-        futureMap.forEach((partId, future) -> { //获得远端返回数据
-            try {
-                ReturnResult remoteReturnResult = (ReturnResult) future.get(timeout, TimeUnit.MILLISECONDS);
+        try {
+            futureMap.forEach((partId, future) -> { //获得远端返回数据
+                try {
+                    ReturnResult remoteReturnResult = (ReturnResult) future.get(timeout, TimeUnit.MILLISECONDS);
+                    if (remoteReturnResult != null) {
+                        remoteResultMap.put(partId, buildRemoteData(remoteReturnResult));
+                    }
+                } catch (Exception e) {
+                    logger.error("host " + partId + " remote error : " + e.getMessage());
+                    throw new RemoteRpcException("host " + partId + " remote error : " + e.getMessage());
+                }
+            });
+        } finally {
+            context.setDownstreamCost(System.currentTimeMillis() - context.getDownstreamBegin());
+        }
+        return buildMergeResult(singleMerge(context, localResult, remoteResultMap));    //合并
+    }
+
+    @Override
+    public CompletableFuture<ReturnResult> guestInferenceAsync(Context context, InferenceRequest inferenceRequest, Map<String, CompletableFuture<ReturnResult>> futureMap, long timeout) {
+        Map<String, Object> localResult = singleLocalPredict(context, inferenceRequest.getFeatureData());   //guest先在本地进行推理得到结果
+        Map<String, Object> remoteResultMap = Maps.newConcurrentMap();
+        CompletableFuture<?>[] remoteFutures = new CompletableFuture[futureMap.size()];
+        int i = 0;
+        for (Map.Entry<String, CompletableFuture<ReturnResult>> entry : futureMap.entrySet()) {
+            String partId = entry.getKey();
+            remoteFutures[i++] = entry.getValue().handle((remoteReturnResult, e) -> {
+                if (e != null) {
+                    Throwable cause = FutureUtil.unwrap(e);
+                    logger.error("host " + partId + " remote error : " + cause.getMessage());
+                    throw new RemoteRpcException("host " + partId + " remote error : " + cause.getMessage());
+                }
                 if (remoteReturnResult != null) {
-                    HashMap<String, Object> remoteData = Maps.newHashMap(remoteReturnResult.getData());
-                    remoteData.put(Dict.RET_CODE, remoteReturnResult.getRetcode());
-                    remoteData.put(Dict.MESSAGE, remoteReturnResult.getRetmsg());
-                    remoteData.put(Dict.DATA, remoteReturnResult.getData());
-                    remoteResultMap.put(partId, remoteData);
+                    remoteResultMap.put(partId, buildRemoteData(remoteReturnResult));
                 }
-            } catch (Exception e) {
-                logger.error("host " + partId + " remote error : " + e.getMessage());
-                throw new RemoteRpcException("host " + partId + " remote error : " + e.getMessage());
-            } finally {
-                context.setDownstreamCost(System.currentTimeMillis() - context.getDownstreamBegin());
-            }
-        });
-        Map<String, Object> tempResult = singleMerge(context, localResult, remoteResultMap);    //合并
+                return remoteReturnResult;
+            });
+        }
+        return CompletableFuture.allOf(remoteFutures)
+                .whenComplete((v, e) -> context.setDownstreamCost(System.currentTimeMillis() - context.getDownstreamBegin()))
+                .thenApplyAsync(v -> buildMergeResult(singleMerge(context, localResult, remoteResultMap)), forkJoinPool);
+    }
+
+    private Map<String, Object> buildRemoteData(ReturnResult remoteReturnResult) {
+        HashMap<String, Object> remoteData = Maps.newHashMap(remoteReturnResult.getData());
+        remoteData.put(Dict.RET_CODE, remoteReturnResult.getRetcode());
+        remoteData.put(Dict.MESSAGE, remoteReturnResult.getRetmsg());
+        remoteData.put(Dict.DATA, remoteReturnResult.getData());
+        return remoteData;
+    }
+
+    private ReturnResult buildMergeResult(Map<String, Object> tempResult) {
+        ReturnResult remoteResult = new ReturnResult();
         int retcode = (int) tempResult.get(Dict.RET_CODE);
         String message = tempResult.get(Dict.MESSAGE) == null ? "" : tempResult.get(Dict.MESSAGE).toString();
         tempResult.remove(Dict.RET_CODE);
@@ -159,13 +229,26 @@ public class PipelineModelProcessor implements ModelProcessor {
 
     //根据pipeline（.py）文件初始化模型
     public int initModel(Map<String, byte[]> modelProtoMap) {
+        if (modelProtoMap == null) {
+            logger.error("model content is null ");
+            throw new RuntimeException("model content is null");
+        }
+        Map<String, ByteBuffer> modelBufferMap = new HashMap<>(modelProtoMap.size());
+        modelProtoMap.forEach((k, v) -> modelBufferMap.put(k, v != null ? ByteBuffer.wrap(v) : null));
+        return initModelFromBuffers(modelBufferMap);
+    }
+
+    /**
+     * 各组件的 protobuf 直接从 buffer 解析, 模型缓存以内存映射方式读取时不经过堆上的 byte[]
+     */
+    public int initModelFromBuffers(Map<String, ByteBuffer> modelProtoMap) {
         if (modelProtoMap != null) {
             logger.info("start init pipeline,model components {}", modelProtoMap.keySet());
             try {
-                Map<String, byte[]> newModelProtoMap = changeModelProto(modelProtoMap);
+                Map<String, ByteBuffer> newModelProtoMap = changeModelProto(modelProtoMap);
                 logger.info("after parse pipeline {}", newModelProtoMap.keySet());
                 Preconditions.checkArgument(newModelProtoMap.get(PIPLELINE_IN_MODEL) != null);  //检查参数
-                PipelineProto.Pipeline pipeLineProto = PipelineProto.Pipeline.parseFrom(newModelProtoMap.get(PIPLELINE_IN_MODEL));
+                PipelineProto.Pipeline pipeLineProto = PipelineProto.Pipeline.parseFrom(newModelProtoMap.get(PIPLELINE_IN_MODEL).duplicate());
                 String dsl = pipeLineProto.getInferenceDsl().toStringUtf8();
                 dslParser.parseDagFromDSL(dsl);
                 ArrayList<String> components = dslParser.getAllComponent();
@@ -178,8 +261,8 @@ public class PipelineModelProcessor implements ModelProcessor {
                         Class modelClass = Class.forName(this.modelPackage + "." + className);
                         BaseComponent mlNode = (BaseComponent) modelClass.getConstructor().newInstance();   //定义算法组件
                         mlNode.setComponentName(componentName);
-                        byte[] protoMeta = newModelProtoMap.get(componentName + ".Meta");
-                        byte[] protoParam = newModelProtoMap.get(componentName + ".Param");
+                        ByteBuffer protoMeta = newModelProtoMap.get(componentName + ".Meta");
+                        ByteBuffer protoParam = newModelProtoMap.get(componentName + ".Param");
                         int returnCode = mlNode.initModel(protoMeta, protoParam);
                         if (returnCode == Integer.valueOf(StatusCode.SUCCESS)) {
                             componentMap.put(componentName, mlNode);
@@ -193,6 +276,7 @@ public class PipelineModelProcessor implements ModelProcessor {
                         logger.warn("Can not instance {} class", className);
                     }
                 }
+                executionPlan = ExecutionPlan.compile(pipeLineNode, dslParser);
             } catch (Exception ex) {
                 logger.info("initModel error:{}", ex);
                 throw new RuntimeException("initModel error");
@@ -210,7 +294,7 @@ public class PipelineModelProcessor implements ModelProcessor {
                                                                  BatchInferenceRequest batchFederatedParams) {
         long  begin =  System.currentTimeMillis();
         List<BatchInferenceRequest.SingleInferenceData> inputList = batchFederatedParams.getBatchDataList();
-        Map<String, Map<String, Object>> tempCache = Maps.newConcurrentMap();
+        Map<FeatureHashUtil.HashKey, Map<String, Object>> tempCache = Maps.newConcurrentMap();
         ForkJoinTask<Map<Integer, Map<String, Object>>> future = forkJoinPool.submit(new LocalInferenceTask(context, inputList, tempCache));
         Map<Integer, Map<String, Object>> result = null;
         try {
@@ -263,106 +347,18 @@ public class PipelineModelProcessor implements ModelProcessor {
         if (remoteData == null || remoteData.size() == 0) {
             throw new BaseException(StatusCode.GUEST_MERGE_ERROR, "remote inference result is null");
         }
-        List<Map<String, Object>> outputData = Lists.newArrayList();
-        List<Map<String, Object>> tempList = Lists.newArrayList();
-        Map<String, Object> result = Maps.newHashMap();
-        result.put(Dict.RET_CODE, StatusCode.SUCCESS);
-        int pipelineSize = this.pipeLineNode.size();
-        for (int i = 0; i < pipelineSize; i++) {
-            BaseComponent component = this.pipeLineNode.get(i);
-            List<Map<String, Object>> inputs = new ArrayList<>();
-            HashSet<Integer> upInputComponents = this.dslParser.getUpInputComponents(i);
-            if (upInputComponents != null) {
-                Iterator<Integer> iters = upInputComponents.iterator();
-                while (iters.hasNext()) {
-                    Integer upInput = iters.next();
-                    if (upInput == -1) {
-                        inputs.add(localData);
-                    } else {
-                        inputs.add(outputData.get(upInput));
-                    }
-                }
-            } else {
-                inputs.add(localData);
-            }
-            if (component != null) {
-                Map<String, Object> mergeResult = null;
-                if (component instanceof MergeInferenceAware) { //实现MergeInferenceAware接口的组件可以执行合并远端返回数据的逻辑
-                    String componentResultKey = component.getComponentName();
-                    mergeResult = ((MergeInferenceAware) component).mergeRemoteInference(context, inputs, remoteData);
-                    outputData.add(mergeResult);
-                    tempList.add(mergeResult);
-                } else {
-                    outputData.add(inputs.get(0));
-                }
-                if (component instanceof Returnable && mergeResult != null) {
-                    tempList.add(mergeResult);
-                }
-            } else {
-                outputData.add(inputs.get(0));
-            }
-        }
-        if (tempList.size() > 0) {
-            result.putAll(tempList.get(tempList.size() - 1));
-        }
-        return result;
+        return executionPlan.mergeRemoteInference(context, localData, remoteData);
     }
 
     //执行推理
     public Map<String, Object> singleLocalPredict(Context context, Map<String, Object> inputData) {
-        List<Map<String, Object>> outputData = Lists.newArrayList();
-        List<Map<String, Object>> tempList = Lists.newArrayList();
-        Map<String, Object> result = Maps.newHashMap();
-        result.put(Dict.RET_CODE, StatusCode.SUCCESS);
-        context.putData(Dict.ORIGINAL_PREDICT_DATA,inputData);
-        int pipelineSize = this.pipeLineNode.size();
-        for (int i = 0; i < pipelineSize; i++) {
-            BaseComponent component = this.pipeLineNode.get(i);
-            if (logger.isDebugEnabled()) {
-                if (component != null) {
-                    logger.debug("component class is {}", component.getClass().getName());
-                } else {
-                    logger.debug("component class is {}", component);
-                }
-            }
-            List<Map<String, Object>> inputs = new ArrayList<>();
-            HashSet<Integer> upInputComponents = this.dslParser.getUpInputComponents(i);
-            if (upInputComponents != null) {
-                Iterator<Integer> iters = upInputComponents.iterator();
-                while (iters.hasNext()) {
-                    Integer upInput = iters.next();
-                    if (upInput == -1) {
-                        inputs.add(inputData);
-                    } else {
-                        inputs.add(outputData.get(upInput));
-                    }
-                }
-            } else {
-                inputs.add(inputData);
-            }
-            if (component != null) {
-                Map<String, Object> componentResult = component.localInference(context, inputs);
-                outputData.add(componentResult);
-                tempList.add(componentResult);
-                if (component instanceof Returnable) {
-                    result.put(component.getComponentName(), componentResult);
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("component {} is Returnable return data {}", component, result);
-                    }
-                    if (StringUtils.isBlank(context.getVersion()) || Double.parseDouble(context.getVersion()) < 200) {  //？
-                        result.putAll(componentResult);
-                    }
-                }
-            } else {
-                outputData.add(inputs.get(0));
-            }
-        }
-        return result;
+        context.putData(Dict.ORIGINAL_PREDICT_DATA, inputData);
+        return executionPlan.localInference(context, inputData);
     }
 
-    private HashMap<String, byte[]> changeModelProto(Map<String, byte[]> modelProtoMap) {
-        HashMap<String, byte[]> newModelProtoMap = new HashMap<String, byte[]>(8);
-        for (Map.Entry<String, byte[]> entry : modelProtoMap.entrySet()) {
+    private HashMap<String, ByteBuffer> changeModelProto(Map<String, ByteBuffer> modelProtoMap) {
+        HashMap<String, ByteBuffer> newModelProtoMap = new HashMap<String, ByteBuffer>(8);
+        for (Map.Entry<String, ByteBuffer> entry : modelProtoMap.entrySet()) {
             String key = entry.getKey();
             if (!flower.equals(key)) {
                 String[] componentNameSegments = key.split("\\.", -1);
@@ -385,9 +381,9 @@ public class PipelineModelProcessor implements ModelProcessor {
     //本地模型处理
     class LocalInferenceTask extends RecursiveTask<Map<Integer, Map<String, Object>>> {
         Context context;
-        Map<String, Map<String, Object>> tempCache;
+        Map<FeatureHashUtil.HashKey, Map<String, Object>> tempCache;
         List<BatchInferenceRequest.SingleInferenceData> inputList;
-        LocalInferenceTask(Context context, List<BatchInferenceRequest.SingleInferenceData> inputList, Map<String, Map<String, Object>> tempCache) {
+        LocalInferenceTask(Context context, List<BatchInferenceRequest.SingleInferenceData> inputList, Map<FeatureHashUtil.HashKey, Map<String, Object>> tempCache) {
             this.context = context;
             this.inputList = inputList;
             this.tempCache = tempCache;
@@ -397,11 +393,14 @@ public class PipelineModelProcessor implements ModelProcessor {
         @Override
         protected Map<Integer, Map<String, Object>> compute() {
                 Map<Integer, Map<String, Object>> result = new HashMap<>();
-                if (inputList.size() <= splitSize) {
+                if (inputList.size() <= splitSize && Boolean.TRUE.equals(MetaInfo.PROPERTY_BATCH_COLUMNAR_ENABLE)
+                        && executionPlan.isColumnar()) {
+                    return computeColumnar();
+                } else if (inputList.size() <= splitSize) {
                     for (int i = 0; i < inputList.size(); i++) {
                         BatchInferenceRequest.SingleInferenceData input = inputList.get(i);
                         try {
-                            String key = EncryptUtils.encrypt(JsonUtil.object2Json(input.getFeatureData()), EncryptMethod.MD5); //加密
+                            FeatureHashUtil.HashKey key = FeatureHashUtil.hash(input.getFeatureData()); //特征哈希, 用于批内去重
                             Map<String, Object> singleResult = tempCache.get(key);
                             if (singleResult == null) {
                                 singleResult = singleLocalPredict(context, input.getFeatureData());
@@ -447,6 +446,75 @@ public class PipelineModelProcessor implements ModelProcessor {
                 }
 
         }
+
+        //按列执行整个子任务: 批内去重后一次性交给执行计划, 每行的结果和异常处理与逐行执行一致
+        private Map<Integer, Map<String, Object>> computeColumnar() {
+            Map<Integer, Map<String, Object>> result = new HashMap<>();
+            FeatureHashUtil.HashKey[] keys = new FeatureHashUtil.HashKey[inputList.size()];
+            int[] slots = new int[inputList.size()];
+            Map<FeatureHashUtil.HashKey, Integer> pending = new HashMap<>();
+            List<Map<String, Object>> rows = new ArrayList<>();
+            Throwable[] hashErrors = new Throwable[inputList.size()];
+            for (int i = 0; i < inputList.size(); i++) {
+                slots[i] = -1;
+                try {
+                    keys[i] = FeatureHashUtil.hash(inputList.get(i).getFeatureData());
+                } catch (Throwable e) {
+                    hashErrors[i] = e;
+                    continue;
+                }
+                if (tempCache.get(keys[i]) != null) {
+                    continue;
+                }
+                Integer slot = pending.get(keys[i]);
+                if (slot == null) {
+                    slot = rows.size();
+                    pending.put(keys[i], slot);
+                    rows.add(inputList.get(i).getFeatureData());
+                }
+                slots[i] = slot;
+            }
+            Throwable[] errors = new Throwable[rows.size()];
+            List<Map<String, Object>> outputs = rows.isEmpty() ? Collections.emptyList()
+                    : executionPlan.localInference(context, rows, errors);
+            boolean[] used = new boolean[rows.size()];
+            for (int i = 0; i < inputList.size(); i++) {
+                BatchInferenceRequest.SingleInferenceData input = inputList.get(i);
+                try {
+                    if (hashErrors[i] != null) {
+                        throw hashErrors[i];
+                    }
+                    Map<String, Object> singleResult;
+                    int slot = slots[i];
+                    if (slot < 0) {
+                        singleResult = Maps.newHashMap(tempCache.get(keys[i]));
+                    } else if (errors[slot] != null) {
+                        throw errors[slot];
+                    } else if (!used[slot]) {
+                        used[slot] = true;
+                        singleResult = outputs.get(slot);
+                        if (singleResult != null && singleResult.size() != 0) {
+                            tempCache.putIfAbsent(keys[i], singleResult);
+                        }
+                    } else {
+                        singleResult = Maps.newHashMap(outputs.get(slot));
+                    }
+                    result.put(input.getIndex(), singleResult);
+                    if (input.isNeedCheckFeature()) {
+                        if (input.getFeatureData() == null || input.getFeatureData().size() == 0) {
+                            throw new HostGetFeatureErrorException("no feature");
+                        }
+                    }
+                } catch (Throwable e) {
+                    if (result.get(input.getIndex()) == null) {
+                        result.put(input.getIndex(), ErrorMessageUtil.handleExceptionToMap(e));
+                    } else {
+                        result.get(input.getIndex()).putAll(ErrorMessageUtil.handleExceptionToMap(e));
+                    }
+                }
+            }
+            return result;
+        }
     }
 
     class MergeTask extends RecursiveTask<List<BatchInferenceResult.SingleInferenceResult>> {
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml.columnar;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * 一列特征.
+ * <p>
+ * 数值列直接保存 double[] 和空值位图 (位为 1 表示该行没有值), integral 为 true 时按 Integer 还原到行数据, 否则按 Double.
+ * 由行数据构建的列保存原始值, 数值在第一次使用时按 Double.parseDouble(value.toString()) 的语义解析并缓存,
+ * 无法解析的值在空值位图中记为空, 原始值仍然保留.
+ * 列创建后不再修改 (延迟解析的结果只写一次), 可以被多个批次共享
+ */
+public final class Column {
+
+    private final int size;
+    private final Object[] objects;
+    private final boolean integral;
+    private volatile double[] values;
+    private volatile long[] nulls;
+
+    private Column(int size, Object[] objects, double[] values, long[] nulls, boolean integral) {
+        this.size = size;
+        this.objects = objects;
+        this.values = values;
+        this.nulls = nulls;
+        this.integral = integral;
+    }
+
+    /**
+     * @param nulls 空值位图, 可以为 null 表示没有空值
+     */
+    public static Column numeric(double[] values, long[] nulls, boolean integral) {
+        return new Column(values.length, null, values, nulls != null ? nulls : newBitmap(values.length), integral);
+    }
+
+    /**
+     * 由原始值构建, null 表示该行没有值
+     */
+    public static Column of(Object[] objects) {
+        return new Column(objects.length, objects, null, null, false);
+    }
+
+    public static Column constant(int size, Object value) {
+        Object[] objects = new Object[size];
+        Arrays.fill(objects, value);
+        return of(objects);
+    }
+
+    public static long[] newBitmap(int size) {
+        return new long[(size + 63) >>> 6];
+    }
+
+    public static void setBit(long[] bitmap, int index) {
+        bitmap[index >>> 6] |= 1L << index;
+    }
+
+    public static boolean getBit(long[] bitmap, int index) {
+        return (bitmap[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * 与 values.contains(value.toString().toLowerCase()) 等价的判断.
+     * Double / Integer / Long 的字符串形式解析回来等于其数值, 所以先按数值比较, 数值相等时才转成字符串
+     */
+    public static Predicate<Object> lowerCaseMatcher(Set<String> values) {
+        Set<Double> numbers = new HashSet<>();
+        for (String value : values) {
+            try {
+                numbers.add(Double.parseDouble(value));
+            } catch (RuntimeException e) {
+                // 不是数值
+            }
+        }
+        return value -> {
+            if ((value instanceof Double && Double.isFinite((Double) value)) || value instanceof Integer || value instanceof Long) {
+                if (!numbers.contains(((Number) value).doubleValue())) {
+                    return false;
+                }
+            }
+            return values.contains(value.toString().toLowerCase());
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNumeric() {
+        return objects == null;
+    }
+
+    /**
+     * 该行是否有值
+     */
+    public boolean isPresent(int row) {
+        return objects != null ? objects[row] != null : !getBit(nulls, row);
+    }
+
+    /**
+     * 该行是否有数值, 有值但无法解析为数值时为 false
+     */
+    public boolean hasNumber(int row) {
+        return !getBit(nulls(), row);
+    }
+
+    public double[] values() {
+        if (values == null) {
+            parse();
+        }
+        return values;
+    }
+
+    public long[] nulls() {
+        if (nulls == null) {
+            parse();
+        }
+        return nulls;
+    }
+
+    /**
+     * 还原为行数据中的值, 没有值时返回 null
+     */
+    public Object get(int row) {
+        if (objects != null) {
+            return objects[row];
+        }
+        if (getBit(nulls, row)) {
+            return null;
+        }
+        return integral ? (Object) (int) values[row] : (Object) values[row];
+    }
+
+    /**
+     * 对有数值的行做变换并按 Double 还原; 有值但不是数值的行保留原值, 没有值的行仍然没有值
+     */
+    public Column mapNumbers(DoubleUnaryOperator operator) {
+        double[] source = values();
+        long[] sourceNulls = nulls();
+        double[] result = new double[size];
+        boolean hasNonNumber = false;
+        for (int i = 0; i < size; i++) {
+            if (getBit(sourceNulls, i)) {
+                hasNonNumber |= isPresent(i);
+            } else {
+                result[i] = operator.applyAsDouble(source[i]);
+            }
+        }
+        if (!hasNonNumber) {
+            return numeric(result, sourceNulls.clone(), false);
+        }
+        Object[] mixed = new Object[size];
+        for (int i = 0; i < size; i++) {
+            mixed[i] = getBit(sourceNulls, i) ? objects[i] : (Object) result[i];
+        }
+        return of(mixed);
+    }
+
+    private synchronized void parse() {
+        if (values != null) {
+            return;
+        }
+        double[] parsed = new double[size];
+        long[] bitmap = newBitmap(size);
+        for (int i = 0; i < size; i++) {
+            Object value = objects[i];
+            if (value instanceof Double) {
+                parsed[i] = (Double) value;
+            } else if (value instanceof Integer || value instanceof Long) {
+                parsed[i] = ((Number) value).longValue();
+            } else if (value == null) {
+                setBit(bitmap, i);
+            } else {
+                try {
+                    parsed[i] = Double.parseDouble(value.toString());
+                } catch (NumberFormatException e) {
+                    setBit(bitmap, i);
+                }
+            }
+        }
+        this.nulls = bitmap;
+        this.values = parsed;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml.columnar;
+
+import java.util.*;
+
+/**
+ * 按列存放的一批数据, 在 pipeline 中整体传递.
+ * <p>
+ * 组件不修改输入批次, 而是通过 {@link #derive()} 或 {@link #copy()} 生成新的批次; 列本身不可变, 未改动的列直接共享.
+ * 同一次执行中派生出的批次共享行错误数组, 某一行出错后其余行继续执行, 出错的行最终返回错误
+ */
+public final class ColumnarBatch {
+
+    private final int size;
+    private final Map<String, Column> columns;
+    private final Throwable[] errors;
+
+    public ColumnarBatch(int size) {
+        this(size, new Throwable[size], new LinkedHashMap<>());
+    }
+
+    private ColumnarBatch(int size, Throwable[] errors, Map<String, Column> columns) {
+        this.size = size;
+        this.errors = errors;
+        this.columns = columns;
+    }
+
+    /**
+     * 行数据中值为 null 的特征视为没有值; rows 中为 null 的行视为空行
+     */
+    public static ColumnarBatch fromRows(List<Map<String, Object>> rows, Throwable[] errors) {
+        int size = rows.size();
+        Map<String, Object[]> builders = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> row = rows.get(i);
+            if (row == null) {
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                if (entry.getValue() != null) {
+                    builders.computeIfAbsent(entry.getKey(), k -> new Object[size])[i] = entry.getValue();
+                }
+            }
+        }
+        Map<String, Column> columns = new LinkedHashMap<>(builders.size() * 2);
+        builders.forEach((name, objects) -> columns.put(name, Column.of(objects)));
+        return new ColumnarBatch(size, errors, columns);
+    }
+
+    /**
+     * 相同行数和行错误的空批次
+     */
+    public ColumnarBatch derive() {
+        return new ColumnarBatch(size, errors, new LinkedHashMap<>());
+    }
+
+    /**
+     * 共享全部列的新批次, 之后增删列不影响原批次
+     */
+    public ColumnarBatch copy() {
+        return new ColumnarBatch(size, errors, new LinkedHashMap<>(columns));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Column column(String name) {
+        return columns.get(name);
+    }
+
+    public void put(String name, Column column) {
+        if (column.size() != size) {
+            throw new IllegalArgumentException("column " + name + " size " + column.size() + " != " + size);
+        }
+        columns.put(name, column);
+    }
+
+    public Column remove(String name) {
+        return columns.remove(name);
+    }
+
+    public Map<String, Column> columns() {
+        return Collections.unmodifiableMap(columns);
+    }
+
+    /**
+     * 每行有值的特征数, 即还原成行数据后 map 的大小
+     */
+    public int[] presentCounts() {
+        int[] counts = new int[size];
+        for (Column column : columns.values()) {
+            for (int i = 0; i < size; i++) {
+                if (column.isPresent(i)) {
+                    counts[i]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    public boolean isFailed(int row) {
+        return errors[row] != null;
+    }
+
+    public Throwable getError(int row) {
+        return errors[row];
+    }
+
+    /**
+     * 记录行错误, 只保留第一个
+     */
+    public void fail(int row, Throwable e) {
+        if (errors[row] == null) {
+            errors[row] = e;
+        }
+    }
+
+    public Map<String, Object> row(int row) {
+        Map<String, Object> data = new HashMap<>(columns.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Column> entry : columns.entrySet()) {
+            Object value = entry.getValue().get(row);
+            if (value != null) {
+                data.put(entry.getKey(), value);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 出错的行为 null
+     */
+    public List<Map<String, Object>> toRows() {
+        List<Map<String, Object>> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(isFailed(i) ? null : row(i));
+        }
+        return rows;
+    }
+}
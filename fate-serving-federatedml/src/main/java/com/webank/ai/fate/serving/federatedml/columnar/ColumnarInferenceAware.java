@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml.columnar;
+
+import com.webank.ai.fate.serving.core.bean.Context;
+
+import java.util.List;
+
+/**
+ * 支持按列批量推理的组件, 与 {@link com.webank.ai.fate.serving.common.model.LocalInferenceAware} 的逐行结果一致.
+ * 未实现该接口的组件在批量推理时仍逐行执行
+ */
+public interface ColumnarInferenceAware {
+
+    /**
+     * 单行的错误通过 {@link ColumnarBatch#fail(int, Throwable)} 记录, 不抛出
+     *
+     * @return 输出批次, 返回 null 表示这批数据改为逐行执行
+     */
+    ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs);
+}
@@ -25,13 +25,14 @@ import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.utils.ProtobufUtils;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ForkJoinPool;
 
 public abstract class BaseComponent implements LocalInferenceAware {
 
@@ -48,17 +49,28 @@ public abstract class BaseComponent implements LocalInferenceAware {
     protected static final int IOERROR = -4;
     protected static final int RUNTIMEERROR = -5;
     private static final Logger logger = LoggerFactory.getLogger(BaseComponent.class);
-    static ForkJoinPool forkJoinPool = new ForkJoinPool();
     protected String componentName;
     protected String shortName;
     protected int index;
     protected FederatedRpcInvoker<Proxy.Packet> federatedRpcInvoker;
     protected Cache cache;
 
-    public abstract int initModel(byte[] protoMeta, byte[] protoParam);
+    /**
+     * protoMeta / protoParam 可能是模型缓存文件的内存映射, 直接交给 protobuf 解析, 不复制到堆上
+     */
+    public abstract int initModel(ByteBuffer protoMeta, ByteBuffer protoParam);
 
-    protected <T> T parseModel(com.google.protobuf.Parser<T> protoParser, byte[] protoString) throws com.google.protobuf.InvalidProtocolBufferException {
-        return ProtobufUtils.parseProtoObject(protoParser, protoString);
+    protected <T> T parseModel(com.google.protobuf.Parser<T> protoParser, ByteBuffer protoBuffer) throws com.google.protobuf.InvalidProtocolBufferException {
+        return ProtobufUtils.parseProtoObject(protoParser, protoBuffer);
+    }
+
+    //按列计算时, 有值但无法解析为数值的行按逐行计算时抛出的异常记为失败
+    protected static void failNonNumber(ColumnarBatch input, int row, Object value) {
+        try {
+            Double.parseDouble(value.toString());
+        } catch (RuntimeException e) {
+            input.fail(row, e);
+        }
     }
 
     //计算context对于features的特征命中率
@@ -20,14 +20,18 @@ import com.webank.ai.fate.core.mlmodel.buffer.DataIOMetaProto.DataIOMeta;
 import com.webank.ai.fate.core.mlmodel.buffer.DataIOParamProto.DataIOParam;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class DataIO extends BaseComponent {
+public class DataIO extends BaseComponent implements ColumnarInferenceAware {
     private static final Logger logger = LoggerFactory.getLogger(DataIO.class);
     private DataIOMeta dataIOMeta;
     private DataIOParam dataIOParam;
@@ -39,7 +43,7 @@ public class DataIO extends BaseComponent {
     private boolean isOutlier;
 
     @Override
-    public int initModel(byte[] protoMeta, byte[] protoParam) {
+    public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
         logger.info("start init DataIO class");
         try {
             this.dataIOMeta = this.parseModel(DataIOMeta.parser(), protoMeta);
@@ -101,4 +105,41 @@ public class DataIO extends BaseComponent {
         }
         return outputData;
     }
+
+    @Override
+    public ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs) {
+        ColumnarBatch data = inputs.get(0);
+        ColumnarBatch output = data;
+        if (this.inputformat.equals(Dict.TAG_INPUT_FORMAT) || this.inputformat.equals(Dict.SPARSE_INPUT_FORMAT)) {
+            output = data.derive();
+            Object fill = this.isImputer ? "" : 0;
+            for (String col : this.header) {
+                output.put(col, fillAbsent(data.column(col), data.size(), fill));
+            }
+        }
+        if (this.isImputer) {
+            output = this.imputer.transform(output);
+        }
+        if (this.isOutlier) {
+            output = this.outlier.transform(output);
+        }
+        return output;
+    }
+
+    private static Column fillAbsent(Column column, int size, Object fill) {
+        if (column == null) {
+            return Column.constant(size, fill);
+        }
+        for (int i = 0; i < size; i++) {
+            if (!column.isPresent(i)) {
+                Object[] values = new Object[size];
+                for (int j = 0; j < size; j++) {
+                    Object value = column.get(j);
+                    values[j] = value != null ? value : fill;
+                }
+                return Column.of(values);
+            }
+        }
+        return column;
+    }
 }
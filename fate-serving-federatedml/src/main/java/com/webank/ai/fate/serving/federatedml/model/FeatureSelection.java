@@ -23,6 +23,7 @@ import com.webank.ai.fate.serving.core.bean.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,7 +37,7 @@ public class FeatureSelection extends BaseComponent {
 
     //将模型的参数和结果，也就是Meta和param文件，反序列化为对象从而对Serving模型初始化
     @Override
-    public int initModel(byte[] protoMeta, byte[] protoParam) {
+    public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
         logger.info("start init Feature Selection class");
         this.needRun = false;
         try {
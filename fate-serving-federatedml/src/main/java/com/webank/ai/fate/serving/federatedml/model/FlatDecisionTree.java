@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml.model;
+
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.DecisionTreeModelParam;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.NodeParam;
+
+import java.util.Map;
+
+/**
+ * 决策树的数组化表示, 在 initModel 时由 DecisionTreeModelParam 编译得到,
+ * 推理时按节点下标直接访问, 不再做字符串切分和 map 查找
+ */
+final class FlatDecisionTree {
+
+    static final byte SITE_GUEST = 0;
+    static final byte SITE_HOST = 1;
+    static final byte SITE_OTHER = 2;
+
+    /**
+     * 特征值的状态, 见 {@link #encodeRow}
+     */
+    static final byte VALUE_MISSING = 0;
+    static final byte VALUE_PRESENT = 1;
+    static final byte VALUE_MALFORMED = 2;
+    static final byte VALUE_NULL = 3;
+
+    final int nodeCount;
+    final int[] left;
+    final int[] right;
+    final int[] fid;
+    final double[] threshold;
+    /**
+     * split_maskdict 中是否有该节点的分裂值, 没有时读取该节点与原实现一样抛出 NullPointerException
+     */
+    final boolean[] hasSplit;
+    final byte[] ownerSite;
+    /**
+     * 特征缺失时是否走左子树, 与原 missing_dir_maskdict 语义一致: 无记录或值为 1 时走右子树
+     */
+    final boolean[] missingDir;
+    final boolean[] isLeaf;
+    final double[] leafWeight;
+    final String[] nodeKey;
+    /**
+     * host 节点在整个模型中的序号, 用于 bitset 路由表, 非 host 节点为 -1
+     */
+    final int[] hostOrdinal;
+
+    FlatDecisionTree(DecisionTreeModelParam treeParam) {
+        int n = treeParam.getTreeCount();
+        this.nodeCount = n;
+        this.left = new int[n];
+        this.right = new int[n];
+        this.fid = new int[n];
+        this.threshold = new double[n];
+        this.hasSplit = new boolean[n];
+        this.ownerSite = new byte[n];
+        this.missingDir = new boolean[n];
+        this.isLeaf = new boolean[n];
+        this.leafWeight = new double[n];
+        this.nodeKey = new String[n];
+        this.hostOrdinal = new int[n];
+        Map<Integer, Double> splitMaskdict = treeParam.getSplitMaskdictMap();
+        Map<Integer, Integer> missingDirMaskdict = treeParam.getMissingDirMaskdictMap();
+        for (int i = 0; i < n; i++) {
+            NodeParam node = treeParam.getTree(i);
+            left[i] = node.getLeftNodeid();
+            right[i] = node.getRightNodeid();
+            fid[i] = node.getFid();
+            Double splitValue = splitMaskdict.get(i);
+            threshold[i] = splitValue != null ? splitValue : Double.NaN;
+            hasSplit[i] = splitValue != null;
+            ownerSite[i] = parseSite(node.getSitename());
+            Integer dir = missingDirMaskdict.get(i);
+            missingDir[i] = dir != null && dir != 1;
+            isLeaf[i] = node.getIsLeaf();
+            leafWeight[i] = node.getWeight();
+            nodeKey[i] = Integer.toString(i);
+        }
+    }
+
+    //离线的时候，每个树节点的域信息是role：partyid，如host:10000
+    static byte parseSite(String sitename) {
+        int end = sitename.indexOf(':');
+        String role = end >= 0 ? sitename.substring(0, end) : sitename;
+        if ("guest".equals(role)) {
+            return SITE_GUEST;
+        }
+        if ("host".equals(role)) {
+            return SITE_HOST;
+        }
+        return SITE_OTHER;
+    }
+
+    /**
+     * 按节点下标顺序为 host 节点分配序号, guest 与 host 由相同的树结构得到相同的序号
+     *
+     * @return 下一棵树的起始序号
+     */
+    int assignHostOrdinals(int base) {
+        int ordinal = base;
+        for (int i = 0; i < nodeCount; i++) {
+            hostOrdinal[i] = ownerSite[i] == SITE_HOST ? ordinal++ : -1;
+        }
+        return ordinal;
+    }
+
+    int maxFid() {
+        int max = -1;
+        for (int i = 0; i < nodeCount; i++) {
+            if (!isLeaf[i] && fid[i] > max) {
+                max = fid[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 判断节点在当前样本下是否走左子树, 与原 gotoNextLevel 的比较逻辑及异常类型一致:
+     * 节点没有分裂值或特征值为 null 时抛出 NullPointerException, 特征值无法解析时抛出 NumberFormatException
+     */
+    boolean goLeft(int node, double[] values, byte[] states) {
+        if (!hasSplit[node]) {
+            throw new NullPointerException("split value of node " + node + " is missing");
+        }
+        int f = fid[node];
+        byte state = f >= 0 && f < states.length ? states[f] : VALUE_MISSING;
+        if (state == VALUE_PRESENT) {
+            return values[f] <= threshold[node] + 1e-20;
+        }
+        if (state == VALUE_MALFORMED) {
+            throw new NumberFormatException("feature value of fid " + f + " is not a number");
+        }
+        if (state == VALUE_NULL) {
+            throw new NullPointerException("feature value of fid " + f + " is null");
+        }
+        return missingDir[node];
+    }
+
+    int next(int node, double[] values, byte[] states) {
+        return goLeft(node, values, states) ? left[node] : right[node];
+    }
+
+    static boolean testBit(long[] bits, int ordinal) {
+        return (bits[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    static void setBit(long[] bits, int ordinal) {
+        bits[ordinal >>> 6] |= 1L << ordinal;
+    }
+
+    /**
+     * 将以 fid 字符串为 key 的特征 map 编码为按 fid 下标的数组, 每个特征只解析一次
+     */
+    static void encodeRow(Map<String, Object> fidValueMapping, double[] values, byte[] states) {
+        for (Map.Entry<String, Object> entry : fidValueMapping.entrySet()) {
+            int f;
+            try {
+                f = Integer.parseInt(entry.getKey());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (f < 0 || f >= values.length) {
+                continue;
+            }
+            Object value = entry.getValue();
+            if (value == null) {
+                states[f] = VALUE_NULL;
+                continue;
+            }
+            try {
+                values[f] = Double.parseDouble(value.toString());
+                states[f] = VALUE_PRESENT;
+            } catch (NumberFormatException e) {
+                states[f] = VALUE_MALFORMED;
+            }
+        }
+    }
+}
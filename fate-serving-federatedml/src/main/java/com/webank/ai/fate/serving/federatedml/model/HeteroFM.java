@@ -19,37 +19,97 @@ package com.webank.ai.fate.serving.federatedml.model;
 import com.webank.ai.fate.core.mlmodel.buffer.fm.FMModelParamProto.Embedding;
 import com.webank.ai.fate.core.mlmodel.buffer.fm.FMModelParamProto.FMModelParam;
 import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public abstract class HeteroFM extends BaseComponent {
     private static final Logger logger = LoggerFactory.getLogger(HeteroFM.class);
+    /**
+     * 前向计算中每个隐向量维度上平方和的临时缓冲, 按线程复用
+     */
+    private static final ThreadLocal<double[]> SQUARES = ThreadLocal.withInitial(() -> new double[0]);
     private Map<String, Double> weight;
-    private Double intercept;
-    private Map<String, Embedding> embedding;
+    private double intercept;
     private int embedSize;
+    /**
+     * 加载时编译的隐向量矩阵: 第 f 个特征的隐向量为 embeddingMatrix[f * embedSize, (f + 1) * embedSize),
+     * 特征顺序与模型中 embedding 的遍历顺序一致, 保证累加顺序与逐个特征遍历 map 时相同
+     */
+    private String[] embeddingNames;
+    private double[] embeddingMatrix;
 
     @Override
-    public int initModel(byte[] protoMeta, byte[] protoParam) {
+    public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
         logger.info("start init HeteroFM class");
+        Map<String, Embedding> embedding;
         try {
             FMModelParam fmModelParam = this.parseModel(FMModelParam.parser(), protoParam);
             this.weight = fmModelParam.getWeightMap();
             this.intercept = fmModelParam.getIntercept();
-            this.embedding = fmModelParam.getEmbeddingMap();
+            embedding = fmModelParam.getEmbeddingMap();
             this.embedSize = fmModelParam.getEmbedSize();
+            this.embeddingNames = new String[embedding.size()];
+            this.embeddingMatrix = new double[embedding.size() * this.embedSize];
+            int f = 0;
+            for (Map.Entry<String, Embedding> entry : embedding.entrySet()) {
+                List<Double> wList = entry.getValue().getWeightList();
+                if (wList.size() < this.embedSize) {
+                    throw new IllegalArgumentException("embedding of " + entry.getKey() + " has " + wList.size()
+                            + " weights, less than embed size " + this.embedSize);
+                }
+                this.embeddingNames[f] = entry.getKey();
+                for (int i = 0; i < this.embedSize; i++) {
+                    this.embeddingMatrix[f * this.embedSize + i] = wList.get(i);
+                }
+                f++;
+            }
         } catch (Exception ex) {
-            ex.printStackTrace();
+            logger.error("init model error:", ex);
             return ILLEGALDATA;
         }
-        logger.info("Finish init HeteroFM class, model weight is {}, model embedding is {}", this.weight, this.embedding);
+        logger.info("Finish init HeteroFM class, model weight is {}, model embedding is {}", this.weight, embedding);
         return OK;
     }
 
+    //与 new Double(value.toString()) 结果相同, Double/Integer/Long 不经过字符串
+    private static double toDouble(Object value) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    private static double[] squares(int embedSize) {
+        double[] squares = SQUARES.get();
+        if (squares.length < embedSize) {
+            squares = new double[embedSize];
+            SQUARES.set(squares);
+        } else {
+            Arrays.fill(squares, 0, embedSize, 0.0);
+        }
+        return squares;
+    }
+
+    //二阶交叉项 0.5 * sum_i((sum_f v_fi * x_f)^2 - sum_f (v_fi * x_f)^2)
+    private static double cross(double[] multiplies, double[] squares, int embedSize) {
+        double cross = 0.0;
+        for (int i = 0; i < embedSize; i++) {
+            cross += multiplies[i] * multiplies[i] - squares[i];
+        }
+        return cross * 0.5;
+    }
+
     Map<String, Object> forward(List<Map<String, Object>> inputDatas) {
         Map<String, Object> inputData = inputDatas.get(0);
         int modelWeightHitCount = 0;
@@ -61,45 +121,40 @@ public abstract class HeteroFM extends BaseComponent {
             logger.debug("input data features number:{}", inputFeaturesNum);
         }
         double score = 0;
-        for (String key : inputData.keySet()) {
-            if (this.weight.containsKey(key)) {
-                Double x = new Double(inputData.get(key).toString());
-                Double w = new Double(this.weight.get(key).toString());
-                score += w * x;
+        for (Map.Entry<String, Object> entry : inputData.entrySet()) {
+            Double w = this.weight.get(entry.getKey());
+            if (w != null) {
+                score += w * toDouble(entry.getValue());
                 modelWeightHitCount += 1;
                 inputDataHitCount += 1;
                 if (logger.isDebugEnabled()) {
-                    logger.debug("key {} weight is {}, value is {}", key, this.weight.get(key), inputData.get(key));
+                    logger.debug("key {} weight is {}, value is {}", entry.getKey(), w, entry.getValue());
                 }
             }
         }
 
-        double[] multiplies = new double[this.embedSize];
-        double[] squares = new double[this.embedSize];
-        for (String key : this.embedding.keySet()) {
-            if (inputData.containsKey(key)) {
-                Double x = new Double(inputData.get(key).toString());
-                List<Double> wList = this.embedding.get(key).getWeightList();
-                for (int i = 0; i < this.embedSize; i++) {
-                    multiplies[i] = multiplies[i] + wList.get(i) * x;
-                    squares[i] = squares[i] + Math.pow(wList.get(i) * x, 2);
-                }
+        int embedSize = this.embedSize;
+        double[] embeddingMatrix = this.embeddingMatrix;
+        //multiplies 作为 FM_CROSS 返回, 会被缓存或在 merge 时使用, 不能复用
+        double[] multiplies = new double[embedSize];
+        double[] squares = squares(embedSize);
+        for (int f = 0; f < this.embeddingNames.length; f++) {
+            Object value = inputData.get(this.embeddingNames[f]);
+            if (value == null && !inputData.containsKey(this.embeddingNames[f])) {
+                continue;
+            }
+            double x = toDouble(value);
+            int offset = f * embedSize;
+            for (int i = 0; i < embedSize; i++) {
+                double wx = embeddingMatrix[offset + i] * x;
+                multiplies[i] += wx;
+                squares[i] += wx * wx;
             }
         }
-        double cross = 0.0;
-        for (int i = 0; i < this.embedSize; i++) {
-            cross += (Math.pow(multiplies[i], 2) - squares[i]);
-        }
-        score += cross * 0.5;
+        score += cross(multiplies, squares, embedSize);
         score += this.intercept;
-        double modelWeightHitRate = -1.0;
-        double inputDataHitRate = -1.0;
-        try {
-            modelWeightHitRate = (double) modelWeightHitCount / weightNum;
-            inputDataHitRate = (double) inputDataHitCount / inputFeaturesNum;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
+        double modelWeightHitRate = (double) modelWeightHitCount / weightNum;
+        double inputDataHitRate = (double) inputDataHitCount / inputFeaturesNum;
 
         if (logger.isDebugEnabled()) {
             logger.debug("model weight hit rate:{}", modelWeightHitRate);
@@ -113,4 +168,83 @@ public abstract class HeteroFM extends BaseComponent {
         return ret;
     }
 
+    //按列计算整批的前向结果, 输出列与逐行结果中的 key 相同, 有值但无法解析为数值的行记为失败
+    ColumnarBatch forward(ColumnarBatch input) {
+        int size = input.size();
+        int embedSize = this.embedSize;
+        double[] scores = new double[size];
+        int[] modelWeightHitCounts = new int[size];
+        for (Map.Entry<String, Column> entry : input.columns().entrySet()) {
+            Double w = this.weight.get(entry.getKey());
+            if (w == null) {
+                continue;
+            }
+            Column column = entry.getValue();
+            double[] values = column.values();
+            long[] nulls = column.nulls();
+            for (int i = 0; i < size; i++) {
+                if (!Column.getBit(nulls, i)) {
+                    scores[i] += w * values[i];
+                    modelWeightHitCounts[i]++;
+                } else if (column.isPresent(i)) {
+                    failNonNumber(input, i, column.get(i));
+                }
+            }
+        }
+        //批次中存在的 embedding 特征及其在矩阵中的行
+        int features = 0;
+        int[] rows = new int[this.embeddingNames.length];
+        Column[] columns = new Column[this.embeddingNames.length];
+        double[][] values = new double[this.embeddingNames.length][];
+        long[][] nulls = new long[this.embeddingNames.length][];
+        for (int f = 0; f < this.embeddingNames.length; f++) {
+            Column column = input.column(this.embeddingNames[f]);
+            if (column != null) {
+                rows[features] = f;
+                columns[features] = column;
+                values[features] = column.values();
+                nulls[features] = column.nulls();
+                features++;
+            }
+        }
+        double[] embeddingMatrix = this.embeddingMatrix;
+        double[] squares = squares(embedSize);
+        int[] inputFeaturesNums = input.presentCounts();
+        int weightNum = this.weight.size();
+        double[] modelWeightHitRates = new double[size];
+        double[] inputDataHitRates = new double[size];
+        Object[] crosses = new Object[size];
+        for (int r = 0; r < size; r++) {
+            double[] multiplies = new double[embedSize];
+            if (r > 0) {
+                Arrays.fill(squares, 0, embedSize, 0.0);
+            }
+            for (int j = 0; j < features; j++) {
+                if (Column.getBit(nulls[j], r)) {
+                    if (columns[j].isPresent(r)) {
+                        failNonNumber(input, r, columns[j].get(r));
+                    }
+                    continue;
+                }
+                double x = values[j][r];
+                int offset = rows[j] * embedSize;
+                for (int i = 0; i < embedSize; i++) {
+                    double wx = embeddingMatrix[offset + i] * x;
+                    multiplies[i] += wx;
+                    squares[i] += wx * wx;
+                }
+            }
+            scores[r] += cross(multiplies, squares, embedSize);
+            scores[r] += this.intercept;
+            modelWeightHitRates[r] = (double) modelWeightHitCounts[r] / weightNum;
+            inputDataHitRates[r] = (double) modelWeightHitCounts[r] / inputFeaturesNums[r];
+            crosses[r] = multiplies;
+        }
+        ColumnarBatch output = input.derive();
+        output.put(Dict.SCORE, Column.numeric(scores, null, false));
+        output.put(Dict.MODEL_WRIGHT_HIT_RATE, Column.numeric(modelWeightHitRates, null, false));
+        output.put(Dict.INPUT_DATA_HIT_RATE, Column.numeric(inputDataHitRates, null, false));
+        output.put(Dict.FM_CROSS, Column.of(crosses));
+        return output;
+    }
 }
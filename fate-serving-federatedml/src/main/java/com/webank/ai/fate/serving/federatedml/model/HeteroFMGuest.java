@@ -23,6 +23,8 @@ import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.utils.JsonUtil;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,7 +34,7 @@ import java.util.Set;
 
 import static java.lang.Math.exp;
 
-public class HeteroFMGuest extends HeteroFM implements MergeInferenceAware, Returnable {
+public class HeteroFMGuest extends HeteroFM implements MergeInferenceAware, Returnable, ColumnarInferenceAware {
     private static final Logger logger = LoggerFactory.getLogger(HeteroFMGuest.class);
     private double sigmod(double x) {
         return 1. / (1. + exp(-x));
@@ -43,6 +45,11 @@ public class HeteroFMGuest extends HeteroFM implements MergeInferenceAware, Retu
         return forwardRet;
     }
 
+    @Override
+    public ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs) {
+        return forward(inputs.get(0));
+    }
+
     @Override
     public Map<String, Object> mergeRemoteInference(Context context, List<Map<String, Object>> localDataList, Map<String, Object> hostData) {
         Map<String, Object> result = this.handleRemoteReturnData(hostData);
@@ -19,6 +19,8 @@ package com.webank.ai.fate.serving.federatedml.model;
 import com.webank.ai.fate.serving.common.model.LocalInferenceAware;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,7 +28,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class HeteroFMHost extends HeteroFM implements LocalInferenceAware, Returnable {
+public class HeteroFMHost extends HeteroFM implements LocalInferenceAware, Returnable, ColumnarInferenceAware {
     private static final Logger logger = LoggerFactory.getLogger(HeteroFMHost.class);
 
     @Override
@@ -41,4 +43,12 @@ public class HeteroFMHost extends HeteroFM implements LocalInferenceAware, Retur
         return result;
     }
 
+    @Override
+    public ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs) {
+        ColumnarBatch forwardRet = forward(inputs.get(0));
+        ColumnarBatch result = forwardRet.derive();
+        result.put(Dict.SCORE, forwardRet.column(Dict.SCORE));
+        result.put(Dict.FM_CROSS, forwardRet.column(Dict.FM_CROSS));
+        return result;
+    }
 }
@@ -22,80 +22,96 @@ import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningParamProto.FeatureBi
 import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningParamProto.FeatureBinningResult;
 import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningParamProto.IVParam;
 import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class HeteroFeatureBinning extends BaseComponent {
+public class HeteroFeatureBinning extends BaseComponent implements ColumnarInferenceAware {
     private static final Logger logger = LoggerFactory.getLogger(HeteroFeatureBinning.class);
-    private Map<String, List<Double>> splitPoints;
-    private List<Long> transformCols;
-    private List<String> header;
+    /**
+     * 加载时编译的分箱表, 只包含既有分裂点又在 transformCols 中的列
+     */
+    private Map<String, BinTable> binTables;
     private boolean needRun;
 
     @Override
-    public int initModel(byte[] protoMeta, byte[] protoParam) {
+    public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
         logger.info("start init Feature Binning class");
         this.needRun = false;
-        this.splitPoints = new HashMap<>(8);
+        Map<String, List<Double>> splitPoints = new HashMap<>(8);
         try {
             //对输入的Meta和Param两个序列化的模型文件进行反序列化
             FeatureBinningMeta featureBinningMeta = this.parseModel(FeatureBinningMeta.parser(), protoMeta);
             //从离线模型中继承参数
             this.needRun = featureBinningMeta.getNeedRun(); //是否需要执行，如果为否，这个组件在后续预测时将被跳过
             TransformMeta transformMeta = featureBinningMeta.getTransformParam();
-            this.transformCols = transformMeta.getTransformColsList();  //需要对哪些列做转化
+            List<Long> transformCols = transformMeta.getTransformColsList();  //需要对哪些列做转化
             FeatureBinningParam featureBinningParam = this.parseModel(FeatureBinningParam.parser(), protoParam);
-            this.header = featureBinningParam.getHeaderList();
+            List<String> header = featureBinningParam.getHeaderList();
             FeatureBinningResult featureBinningResult = featureBinningParam.getBinningResult(); //特征分箱后的结果。其中，包含每个特征的iv(?)，分箱点，woe等
             Map<String, IVParam> binningResult = featureBinningResult.getBinningResultMap();
             for (String key : binningResult.keySet()) {
                 IVParam oneColResult = binningResult.get(key);
-                List<Double> splitPoints = oneColResult.getSplitPointsList();
-                this.splitPoints.put(key, splitPoints);
+                splitPoints.put(key, oneColResult.getSplitPointsList());
             }
+            this.binTables = compile(header, transformCols, splitPoints);
         } catch (Exception ex) {
             logger.error("init model error:", ex);
             return ILLEGALDATA;
         }
-        logger.info("Finish init Feature Binning class");
+        logger.info("Finish init Feature Binning class, {} columns to transform", this.binTables.size());
         return OK;
     }
 
+    /**
+     * 列名重复时与按 header 建立的 map 一样以最后一次出现的序号为准
+     */
+    static Map<String, BinTable> compile(List<String> header, List<Long> transformCols, Map<String, List<Double>> splitPoints) {
+        long[] transformBitmap = new long[(header.size() + 63) >>> 6];
+        for (Long col : transformCols) {
+            if (col != null && col >= 0 && col < header.size()) {
+                transformBitmap[(int) (col >>> 6)] |= 1L << col;
+            }
+        }
+        Map<String, Integer> headerIndex = new HashMap<>(header.size() * 2);
+        for (int i = 0; i < header.size(); i++) {
+            headerIndex.put(header.get(i), i);
+        }
+        Map<String, BinTable> binTables = new HashMap<>(headerIndex.size() * 2);
+        headerIndex.forEach((name, index) -> {
+            List<Double> splitPoint = splitPoints.get(name);
+            if (splitPoint != null && (transformBitmap[index >>> 6] & (1L << index)) != 0) {
+                binTables.put(name, new BinTable(splitPoint));
+            }
+        });
+        return binTables;
+    }
+
     //在本地进行转化功能，将数据和模型结果中的splitPoint比较，确定属于哪个分箱后，用分箱的index代替原值
     @Override
     public Map<String, Object> localInference(Context context, List<Map<String, Object>> inputData) {
-        HashMap<String, Object> outputData = new HashMap<>(8);
-        HashMap<String, Long> headerMap = new HashMap<>(8);
         Map<String, Object> firstData = inputData.get(0);
         if (!this.needRun) {
             return firstData;
         }
-        for (int i = 0; i < this.header.size(); i++) {
-            headerMap.put(this.header.get(i), (long) i);  //特征列
-        }
-        for (String colName : firstData.keySet()) {
+        HashMap<String, Object> outputData = new HashMap<>(firstData.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Object> entry : firstData.entrySet()) {
+            BinTable binTable = this.binTables.get(entry.getKey());
+            if (binTable == null) {   //该列没有分裂点或不分箱，直接输出
+                outputData.put(entry.getKey(), entry.getValue());
+                continue;
+            }
             try {
-                if (!this.splitPoints.containsKey(colName)) {   //该列没有分裂点，直接输出
-                    outputData.put(colName, firstData.get(colName));
-                    continue;
-                }
-                Long thisColIndex = headerMap.get(colName); //当前列的序号
-                if (!this.transformCols.contains(thisColIndex)) {   //该列不分箱，直接输出
-                    outputData.put(colName, firstData.get(colName));
-                    continue;
-                }
-                List<Double> splitPoint = this.splitPoints.get(colName);
-                Double colValue = Double.valueOf(firstData.get(colName).toString());
-                int colIndex = Collections.binarySearch(splitPoint, colValue);  //分裂点序号
-                if (colIndex < 0) {
-                    colIndex = Math.min((- colIndex - 1), splitPoint.size() - 1);
-                }
-                outputData.put(colName, colIndex);
+                Object value = entry.getValue();
+                double colValue = value instanceof Double ? (Double) value : Double.parseDouble(value.toString());
+                outputData.put(entry.getKey(), binTable.index(colValue));
             } catch (Throwable e) {
                 logger.error("HeteroFeatureBinning error", e);
             }
@@ -106,4 +122,138 @@ public class HeteroFeatureBinning extends BaseComponent {
         return outputData;
     }
 
+    //按列分箱, 无法解析为数值的值与逐行处理一样不输出
+    @Override
+    public ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs) {
+        ColumnarBatch data = inputs.get(0);
+        if (!this.needRun) {
+            return data;
+        }
+        ColumnarBatch output = data.copy();
+        int size = data.size();
+        for (Map.Entry<String, Column> entry : data.columns().entrySet()) {
+            BinTable binTable = this.binTables.get(entry.getKey());
+            if (binTable == null) {
+                continue;
+            }
+            double[] values = entry.getValue().values();
+            long[] nulls = entry.getValue().nulls();
+            double[] bins = new double[size];
+            long[] absent = Column.newBitmap(size);
+            for (int i = 0; i < size; i++) {
+                if (Column.getBit(nulls, i)) {
+                    Column.setBit(absent, i);
+                } else {
+                    bins[i] = binTable.index(values[i]);
+                }
+            }
+            output.put(entry.getKey(), Column.numeric(bins, absent, true));
+        }
+        return output;
+    }
+
+    /**
+     * 单列的分箱表, 结果与 min(Collections.binarySearch(splitPoints, value) 的插入点, size - 1) 完全一致.
+     * <p>
+     * 分裂点按 Double.compare 严格递增 (正常的模型) 时, 命中的下标和插入点都等于下界,
+     * 在按 Double.compare 排序的 long 键上做无分支的下界查找; 否则按 Collections.binarySearch 相同的步骤查找.
+     * 分裂点都落在长度不超过 {@link #LOOKUP_MAX_RANGE} 的整数区间内时, 区间内的整数输入直接查表
+     */
+    static final class BinTable {
+        static final int LOOKUP_MAX_RANGE = 256;
+        private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+        private final double[] splits;
+        private final long[] keys;
+        private final boolean increasing;
+        private final int[] lookup;
+        private final long lookupBase;
+
+        BinTable(List<Double> splitPoint) {
+            int n = splitPoint.size();
+            this.splits = new double[n];
+            this.keys = new long[n];
+            boolean increasing = true;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                splits[i] = splitPoint.get(i);
+                keys[i] = key(splits[i]);
+                increasing &= i == 0 || keys[i - 1] < keys[i];
+                min = Math.min(min, splits[i]);
+                max = Math.max(max, splits[i]);
+            }
+            this.increasing = increasing;
+            //分裂点含 NaN 或无穷时 min/max 不是有限值, 不建表
+            if (Double.isFinite(min) && Double.isFinite(max) && Math.ceil(max) - Math.floor(min) < LOOKUP_MAX_RANGE) {
+                this.lookupBase = (long) Math.floor(min);
+                this.lookup = new int[(int) ((long) Math.ceil(max) - lookupBase) + 1];
+                for (int i = 0; i < lookup.length; i++) {
+                    lookup[i] = search((double) (lookupBase + i));
+                }
+            } else {
+                this.lookupBase = 0;
+                this.lookup = null;
+            }
+        }
+
+        /**
+         * 与 Double.compare 顺序一致的 long 键, NaN 统一为规范形式
+         */
+        private static long key(double value) {
+            long bits = Double.doubleToLongBits(value);
+            return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+
+        int index(double value) {
+            int[] table = this.lookup;
+            if (table != null) {
+                long k = (long) value;
+                long offset = k - lookupBase;
+                if (k == value && offset >= 0 && offset < table.length && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS) {
+                    return table[(int) offset];
+                }
+            }
+            return search(value);
+        }
+
+        private int search(double value) {
+            int n = keys.length;
+            if (!increasing) {
+                return binarySearch(value);
+            }
+            if (n == 0) {
+                return -1;
+            }
+            long key = key(value);
+            long[] keys = this.keys;
+            int base = 0;
+            int len = n;
+            while (len > 1) {
+                int half = len >>> 1;
+                base = keys[base + half - 1] < key ? base + half : base;
+                len -= half;
+            }
+            int lowerBound = base + (keys[base] < key ? 1 : 0);
+            return Math.min(lowerBound, n - 1);
+        }
+
+        //与 Collections.binarySearch 相同的查找步骤, 用于分裂点有重复或无序的模型
+        private int binarySearch(double value) {
+            int low = 0;
+            int high = splits.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = Double.compare(splits[mid], value);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return Math.min(low, splits.length - 1);
+        }
+    }
 }
@@ -16,31 +16,37 @@
 
 package com.webank.ai.fate.serving.federatedml.model;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import com.webank.ai.fate.core.mlmodel.buffer.LRModelParamProto.LRModelParam;
 import com.webank.ai.fate.serving.core.bean.Dict;
-import com.webank.ai.fate.serving.core.bean.MetaInfo;
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.*;
-import java.util.concurrent.ForkJoinTask;
-import java.util.concurrent.RecursiveTask;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public abstract class HeteroLR extends BaseComponent {
     private static final Logger logger = LoggerFactory.getLogger(HeteroLR.class);
     private Map<String, Double> weight;
     private Double intercept;
+    /**
+     * 加载时编译的权重向量: featureIndex 将特征名映射为 weights 中的下标
+     */
+    private Map<String, Integer> featureIndex;
+    private double[] weights;
 
     //模型初始化
     @Override
-    public int initModel(byte[] protoMeta, byte[] protoParam) {
+    public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
         logger.info("start init HeteroLR class");
         try {
             LRModelParam lrModelParam = this.parseModel(LRModelParam.parser(), protoParam);
             this.weight = lrModelParam.getWeightMap();
             this.intercept = lrModelParam.getIntercept();   //bias
+            compileWeight(this.weight);
         } catch (Exception ex) {
             ex.printStackTrace();
             return ILLEGALDATA;
@@ -49,40 +55,56 @@ public abstract class HeteroLR extends BaseComponent {
         return OK;
     }
 
+    private void compileWeight(Map<String, Double> weight) {
+        Map<String, Integer> index = new HashMap<>(weight.size() * 2);
+        double[] values = new double[weight.size()];
+        int i = 0;
+        for (Map.Entry<String, Double> entry : weight.entrySet()) {
+            index.put(entry.getKey().intern(), i);
+            values[i] = entry.getValue();
+            i++;
+        }
+        this.featureIndex = index;
+        this.weights = values;
+    }
+
+    private static double toDouble(Object value) {
+        // Double 直接取值, 其余类型保持与 new Double(value.toString()) 相同的解析语义
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        return Double.parseDouble(value.toString());
+    }
+
     //模型评分
     //计算score = weight * value + intercept, 若是host方，则intercept为0
     Map<String, Double> forward(List<Map<String, Object>> inputDatas) {
         Map<String, Object> inputData = inputDatas.get(0);
         int modelWeightHitCount = 0;
         int inputDataHitCount = 0;
-        int weightNum = this.weight.size();
+        int weightNum = this.weights.length;
         int inputFeaturesNum = inputData.size();
         if (logger.isDebugEnabled()) {
             logger.debug("model weight number:{}", weightNum);
             logger.debug("input data features number:{}", inputFeaturesNum);
         }
+        double[] weights = this.weights;
+        Map<String, Integer> featureIndex = this.featureIndex;
         double score = 0;
-        for (String key : inputData.keySet()) {
-            if (this.weight.containsKey(key)) {
-                Double x = new Double(inputData.get(key).toString());
-                Double w = new Double(this.weight.get(key).toString());
-                score += w * x;
+        for (Map.Entry<String, Object> entry : inputData.entrySet()) {
+            Integer index = featureIndex.get(entry.getKey());
+            if (index != null) {
+                score += weights[index] * toDouble(entry.getValue());
                 modelWeightHitCount += 1;
                 inputDataHitCount += 1;
                 if (logger.isDebugEnabled()) {
-                    logger.debug("key {} weight is {}, value is {}", key, this.weight.get(key), inputData.get(key));
+                    logger.debug("key {} weight is {}, value is {}", entry.getKey(), weights[index], entry.getValue());
                 }
             }
         }
         score += this.intercept;
-        double modelWeightHitRate = -1.0;
-        double inputDataHitRate = -1.0;
-        try {
-            modelWeightHitRate = (double) modelWeightHitCount / weightNum;
-            inputDataHitRate = (double) inputDataHitCount / inputFeaturesNum;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
+        double modelWeightHitRate = (double) modelWeightHitCount / weightNum;
+        double inputDataHitRate = (double) inputDataHitCount / inputFeaturesNum;
         if (logger.isDebugEnabled()) {
             logger.debug("model weight hit rate:{}", modelWeightHitRate);
             logger.debug("input data features hit rate:{}", inputDataHitRate);
@@ -94,131 +116,31 @@ public abstract class HeteroLR extends BaseComponent {
         return ret;
     }
 
-    Map<String, Double> forwardParallel(List<Map<String, Object>> inputDatas) {
-        Map<String, Object> inputData = inputDatas.get(0);
-        Map<String, Double> ret = new HashMap<>(8);
-        double modelWeightHitRate = -1.0;
-        double inputDataHitRate = -1.0;
-        Set<String> inputKeys =inputData.keySet();
-        Set<String> weightKeys = weight.keySet();
-        Set<String> joinKeys = Sets.newHashSet();
-        joinKeys.addAll(inputKeys);
-        joinKeys.retainAll(weightKeys);
-        int modelWeightHitCount = 0;
-        int inputDataHitCount = 0;
-        int weightNum = this.weight.size();
-        int inputFeaturesNum = inputData.size();
-        if (logger.isDebugEnabled()) {
-            logger.debug("model weight number:{}", weightNum);
-            logger.debug("input data features number:{}", inputFeaturesNum);
-        }
-        double score = 0;
-        ForkJoinTask<LRTaskResult> result = forkJoinPool.submit(new LRTask(weight, inputData, Lists.newArrayList(joinKeys)));   //多线程
-        if (result != null) {
-            try {
-                LRTaskResult lrTaskResult = result.get();
-                score = lrTaskResult.score;
-                modelWeightHitCount = lrTaskResult.modelWeightHitCount;
-                inputDataHitCount = lrTaskResult.inputDataHitCount;
-                score += this.intercept;
-                ret.put(Dict.SCORE, score);
-                modelWeightHitRate = (double) modelWeightHitCount / weightNum;
-                inputDataHitRate = (double) inputDataHitCount / inputFeaturesNum;
-                ret.put(Dict.MODEL_WRIGHT_HIT_RATE, modelWeightHitRate);
-                ret.put(Dict.INPUT_DATA_HIT_RATE, inputDataHitRate);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+    //按列计算整批的 score, 有值但无法解析为数值的行记为失败
+    double[] forward(ColumnarBatch input) {
+        int size = input.size();
+        double[] scores = new double[size];
+        for (Map.Entry<String, Column> entry : input.columns().entrySet()) {
+            Integer index = this.featureIndex.get(entry.getKey());
+            if (index == null) {
+                continue;
             }
-        }
-        return ret;
-    }
-
-    public class LRTask extends RecursiveTask<LRTaskResult> {   //任务分割
-
-        double modelWeightHitRate = -1.0;
-        double inputDataHitRate = -1.0;
-        int splitSize = MetaInfo.PROPERTY_LR_SPLIT_SIZE;
-        List<String> keys;
-        Map<String, Object> inputData;
-        Map<String, Double> weight;
-        public LRTask(Map<String, Double> weight, Map<String, Object> inputData, List<String> keys) {
-            this.keys = keys;
-            this.inputData = inputData;
-            this.weight = weight;
-        }
-
-        @Override
-        protected LRTaskResult compute() {
-            double score = 0;
-            int modelWeightHitCount = 0;
-            int inputDataHitCount = 0;
-            if (keys.size() <= splitSize) { //任务大小<=splitSize，开始计算得分
-                for (String key : keys) {
-                    inputData.get(key);
-                    if (this.weight.containsKey(key)) {
-                        Double x = new Double(inputData.get(key).toString());
-                        Double w = new Double(this.weight.get(key).toString());
-                        score += w * x;
-                        modelWeightHitCount += 1;
-                        inputDataHitCount += 1;
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("key {} weight is {}, value is {}", key, this.weight.get(key), inputData.get(key));
-                        }
-                    }
-                }
-            } else {    //任务分解
-                List<List<Integer>> splits = new ArrayList<List<Integer>>();
-                int size = keys.size();
-                int count = (size + splitSize - 1) / splitSize;
-                List<LRTask> subJobs = Lists.newArrayList();
-                for (int i = 0; i < count; i++) {   //分解为subList
-                    List<String> subList = keys.subList(i * splitSize, ((i + 1) * splitSize > size ? size : splitSize * (i + 1)));
-                    // logger.info("new subLRTask {}",i);
-                    LRTask subLRTask = new LRTask(weight, inputData, subList);
-                    subLRTask.fork();   //创建进程
-                    subJobs.add(subLRTask);
-                }
-                for (LRTask lrTask : subJobs) {
-                    LRTaskResult subResult = lrTask.join(); //执行lrTask，返回结果
-                    if (subResult != null) {
-                        score = score + subResult.score;
-                        modelWeightHitCount = modelWeightHitCount + subResult.modelWeightHitCount;
-                        inputDataHitCount = inputDataHitCount + subResult.inputDataHitCount;
-                    }
+            double weight = this.weights[index];
+            Column column = entry.getValue();
+            double[] values = column.values();
+            long[] nulls = column.nulls();
+            for (int i = 0; i < size; i++) {
+                if (!Column.getBit(nulls, i)) {
+                    scores[i] += weight * values[i];
+                } else if (column.isPresent(i)) {
+                    failNonNumber(input, i, column.get(i));
                 }
             }
-            LRTaskResult lrTaskResult = new LRTaskResult(score, modelWeightHitCount, inputDataHitCount);
-            return lrTaskResult;
         }
-    }
-
-    public class LRTaskResult {
-        double score = 0;
-        int modelWeightHitCount = 0;
-        int inputDataHitCount = 0;
-        public LRTaskResult(double score, int modelWeightHitCount, int inputDataHitCount) {
-            this.score = score;
-            this.modelWeightHitCount = modelWeightHitCount;
-            this.inputDataHitCount = inputDataHitCount;
+        double intercept = this.intercept;
+        for (int i = 0; i < size; i++) {
+            scores[i] += intercept;
         }
+        return scores;
     }
-    public static  void main(String[] args){
-
-        Set set1 =  new HashSet();
-        set1.add("1");
-        set1.add("2");
-        set1.add("3");
-        Set set2 =  new HashSet();
-        set2.add("2");
-        set2.add("3");
-
-        Set set3 = new HashSet();
-        set3.addAll(set1);
-        set3.retainAll(set2);
-        System.err.println(set3);
-
-    }
-
-
-
 }
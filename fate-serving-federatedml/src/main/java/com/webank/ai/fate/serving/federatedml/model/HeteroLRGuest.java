@@ -21,6 +21,9 @@ import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.exceptions.GuestMergeException;
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +34,7 @@ import java.util.Map;
 
 import static java.lang.Math.exp;
 
-public class HeteroLRGuest extends HeteroLR implements MergeInferenceAware, Returnable {
+public class HeteroLRGuest extends HeteroLR implements MergeInferenceAware, Returnable, ColumnarInferenceAware {
 
     private static final Logger logger = LoggerFactory.getLogger(HeteroLRGuest.class);
     private double sigmod(double x) {
@@ -48,6 +51,13 @@ public class HeteroLRGuest extends HeteroLR implements MergeInferenceAware, Retu
         return result;
     }
 
+    @Override
+    public ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs) {
+        ColumnarBatch output = inputs.get(0).derive();
+        output.put(Dict.SCORE, Column.numeric(forward(inputs.get(0)), null, false));
+        return output;
+    }
+
     @Override
     public Map<String, Object> mergeRemoteInference(Context context, List<Map<String, Object>> guestData,
                                                     Map<String, Object> hostData) {
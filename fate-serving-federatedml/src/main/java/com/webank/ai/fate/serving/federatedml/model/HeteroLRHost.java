@@ -16,10 +16,11 @@
 
 package com.webank.ai.fate.serving.federatedml.model;
 
-import com.google.common.collect.Maps;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
-import com.webank.ai.fate.serving.core.bean.MetaInfo;
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,21 +28,22 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class HeteroLRHost extends HeteroLR implements Returnable {
+public class HeteroLRHost extends HeteroLR implements Returnable, ColumnarInferenceAware {
 
     private static final Logger logger = LoggerFactory.getLogger(HeteroLRHost.class);
 
     @Override
     public Map<String, Object> localInference(Context context, List<Map<String, Object>> inputData) {
         HashMap<String, Object> result = new HashMap<>(8);
-        Map<String, Double> ret = Maps.newHashMap();
-        if(MetaInfo.PROPERTY_LR_USE_PARALLEL){   //默认为false
-            ret = forwardParallel(inputData);
-        }
-        else{
-            ret = forward(inputData);
-        }
+        Map<String, Double> ret = forward(inputData);
         result.put(Dict.SCORE, ret.get(Dict.SCORE));
         return result;   //该结果将由系统调度给guest
     }
+
+    @Override
+    public ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs) {
+        ColumnarBatch output = inputs.get(0).derive();
+        output.put(Dict.SCORE, Column.numeric(forward(inputs.get(0)), null, false));
+        return output;
+    }
 }
@@ -23,6 +23,7 @@ import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.DecisionT
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -37,10 +38,19 @@ public abstract class HeteroSecureBoost extends BaseComponent {
     protected List<String> classes;
     protected int treeDim;
     protected double learningRate;
+    protected FlatDecisionTree[] flatTrees;
+    /**
+     * 按 fid 下标编码样本时所需的数组长度
+     */
+    protected int featureDim;
+    /**
+     * 模型中 host 节点的总数, 即 bitset 路由表的位数
+     */
+    protected int hostNodeCount;
 
     //模型初始化
     @Override
-    public int initModel(byte[] protoMeta, byte[] protoParam) {
+    public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
         logger.info("start init HeteroLR class");
         try {
             //对输入的Meta和Param两个序列化的模型文件进行反序列化
@@ -58,6 +68,7 @@ public abstract class HeteroSecureBoost extends BaseComponent {
             this.classes = param.getClassesList();  //类别标签
             this.treeDim = param.getTreeDim();  //boost的每轮树的数量，对于回归和二分类等于1，对于多分类，是类别数量，每轮每个分类都有一个对应的树
             this.learningRate = meta.getLearningRate(); //学习率和权重放缩因子，推理时每个树得到的权重都会乘以learning_rate
+            compileTrees();
 
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -67,9 +78,27 @@ public abstract class HeteroSecureBoost extends BaseComponent {
         return OK;
     }
 
+    //将树编译为数组形式，推理时不再做字符串切分和 map 查找
+    private void compileTrees() {
+        FlatDecisionTree[] compiled = new FlatDecisionTree[this.trees.size()];
+        int maxFid = -1;
+        int ordinal = 0;
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = new FlatDecisionTree(this.trees.get(i));
+            ordinal = compiled[i].assignHostOrdinals(ordinal);
+            maxFid = Math.max(maxFid, compiled[i].maxFid());
+        }
+        for (Integer fid : featureNameFidMapping.values()) {
+            maxFid = Math.max(maxFid, fid);
+        }
+        this.flatTrees = compiled;
+        this.featureDim = maxFid + 1;
+        this.hostNodeCount = ordinal;
+    }
+
     //离线的时候，每个树节点的域信息是role：partyid，如host:10000，通过该函数获取$role
-    protected String getSite(int treeId, int treeNodeId) {
-        return this.trees.get(treeId).getTree(treeNodeId).getSitename().split(":", -1)[0];
+    protected byte getSite(int treeId, int treeNodeId) {
+        return this.flatTrees[treeId].ownerSite[treeNodeId];
     }
 
     //用来存储和读取每轮使用的数据
@@ -81,32 +110,9 @@ public abstract class HeteroSecureBoost extends BaseComponent {
         return tag.split("_");
     }
 
-    //输入当前的树、节点编号，特征值，输出树的下一层节点编号
-    protected int gotoNextLevel(int treeId, int treeNodeId, Map<String, Object> input) {
-        int nextTreeNodeId;
-        int fid = this.trees.get(treeId).getTree(treeNodeId).getFid();
-        double splitValue = this.trees.get(treeId).getSplitMaskdict().get(treeNodeId);
-        String fidStr = String.valueOf(fid);
-        if (input.containsKey(fidStr)) {
-            if (Double.parseDouble(input.get(fidStr).toString()) <= splitValue + 1e-20) {
-                nextTreeNodeId = this.trees.get(treeId).getTree(treeNodeId).getLeftNodeid();
-            } else {
-                nextTreeNodeId = this.trees.get(treeId).getTree(treeNodeId).getRightNodeid();
-            }
-        } else {
-            if (this.trees.get(treeId).getMissingDirMaskdict().containsKey(treeNodeId)) {
-                int missingDir = this.trees.get(treeId).getMissingDirMaskdict().get(treeNodeId);
-                if (missingDir == 1) {
-                    nextTreeNodeId = this.trees.get(treeId).getTree(treeNodeId).getRightNodeid();
-                } else {
-                    nextTreeNodeId = this.trees.get(treeId).getTree(treeNodeId).getLeftNodeid();
-                }
-            } else {
-                nextTreeNodeId = this.trees.get(treeId).getTree(treeNodeId).getRightNodeid();
-            }
-        }
-        return nextTreeNodeId;
+    //输入当前的树、节点编号，按 fid 编码的特征值，输出树的下一层节点编号
+    protected int gotoNextLevel(int treeId, int treeNodeId, double[] values, byte[] states) {
+        return this.flatTrees[treeId].next(treeNodeId, values, states);
     }
 
 }
-
@@ -61,7 +61,7 @@ public class HeteroSecureBoostingTreeGuest extends HeteroSecureBoost implements
     }
 
     private boolean isLocateInLeaf(int treeId, int treeNodeId) {
-        return this.trees.get(treeId).getTree(treeNodeId).getIsLeaf();
+        return this.flatTrees[treeId].isLeaf[treeNodeId];
     }
 
     private boolean checkLeafAll(int[] treeNodeIds) {
@@ -74,26 +74,73 @@ public class HeteroSecureBoostingTreeGuest extends HeteroSecureBoost implements
     }
 
     private double getTreeLeafWeight(int treeId, int treeNodeId) {
-        return this.trees.get(treeId).getTree(treeNodeId).getWeight();
+        return this.flatTrees[treeId].leafWeight[treeNodeId];
     }
 
-    private int traverseTree(int treeId, int treeNodeId, Map<String, Object> input) {
-        while (!this.isLocateInLeaf(treeId, treeNodeId) && this.getSite(treeId, treeNodeId).equals(this.site)) {
-            treeNodeId = this.gotoNextLevel(treeId, treeNodeId, input);
+    private int traverseTree(int treeId, int treeNodeId, double[] values, byte[] states) {
+        FlatDecisionTree tree = this.flatTrees[treeId];
+        while (!tree.isLeaf[treeNodeId] && tree.ownerSite[treeNodeId] == FlatDecisionTree.SITE_GUEST) {
+            treeNodeId = tree.next(treeNodeId, values, states);
         }
         return treeNodeId;
     }
 
-    private int fastTraverseTree(int treeId, int treeNodeId, Map<String, Object> input, Map<String, Object> lookUpTable) {
-        while (!this.isLocateInLeaf(treeId, treeNodeId)) {
-            if (this.getSite(treeId, treeNodeId).equals(this.site)) {
-                treeNodeId = this.gotoNextLevel(treeId, treeNodeId, input);
+    private int fastTraverseTree(int treeId, int treeNodeId, double[] values, byte[] states, long[] routeBits) {
+        FlatDecisionTree tree = this.flatTrees[treeId];
+        while (!tree.isLeaf[treeNodeId]) {
+            if (tree.ownerSite[treeNodeId] == FlatDecisionTree.SITE_GUEST) {
+                treeNodeId = tree.next(treeNodeId, values, states);
             } else {
-                Map<String, Boolean> lookUp = (Map<String, Boolean>) lookUpTable.get(String.valueOf(treeId));
-                if (lookUp.get(String.valueOf(treeNodeId))) {
-                    treeNodeId = this.trees.get(treeId).getTree(treeNodeId).getLeftNodeid();
+                int ordinal = tree.hostOrdinal[treeNodeId];
+                if (ordinal < 0) {
+                    throw new GuestMergeException("tree " + treeId + " node " + treeNodeId + " is not a host node");
+                }
+                treeNodeId = FlatDecisionTree.testBit(routeBits, ordinal) ? tree.left[treeNodeId] : tree.right[treeNodeId];
+            }
+        }
+        return treeNodeId;
+    }
+
+    //host 返回的 bitset 路由表, 经过 json 传输后为数字列表
+    private long[] parseRouteBits(Map<String, Object> remoteComponentData) {
+        Object routeBits = remoteComponentData.get(Dict.SBT_HOST_ROUTE_BITS);
+        if (routeBits == null) {
+            return null;
+        }
+        Object routeSize = remoteComponentData.get(Dict.SBT_HOST_ROUTE_SIZE);
+        if (routeSize == null || ((Number) routeSize).intValue() != this.hostNodeCount) {
+            throw new GuestMergeException("host route size " + routeSize + " does not match model host node count " + this.hostNodeCount);
+        }
+        long[] bits;
+        if (routeBits instanceof long[]) {
+            bits = (long[]) routeBits;
+        } else {
+            List<Number> words = (List<Number>) routeBits;
+            bits = new long[words.size()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = words.get(i).longValue();
+            }
+        }
+        if (bits.length != (this.hostNodeCount + 63) >>> 6) {
+            throw new GuestMergeException("host route bits length " + bits.length + " is invalid");
+        }
+        return bits;
+    }
+
+    private int fastTraverseTree(int treeId, int treeNodeId, double[] values, byte[] states, Map<String, Object> lookUpTable) {
+        FlatDecisionTree tree = this.flatTrees[treeId];
+        Map<String, Boolean> lookUp = null;
+        while (!tree.isLeaf[treeNodeId]) {
+            if (tree.ownerSite[treeNodeId] == FlatDecisionTree.SITE_GUEST) {
+                treeNodeId = tree.next(treeNodeId, values, states);
+            } else {
+                if (lookUp == null) {
+                    lookUp = (Map<String, Boolean>) lookUpTable.get(String.valueOf(treeId));
+                }
+                if (lookUp.get(tree.nodeKey[treeNodeId])) {
+                    treeNodeId = tree.left[treeNodeId];
                 } else {
-                    treeNodeId = this.trees.get(treeId).getTree(treeNodeId).getRightNodeid();
+                    treeNodeId = tree.right[treeNodeId];
                 }
             }
             if (logger.isDebugEnabled()) {
@@ -102,6 +149,7 @@ public class HeteroSecureBoostingTreeGuest extends HeteroSecureBoost implements
         }
         return treeNodeId;
     }
+
     private Map<String, Object> getFinalPredict(double[] weights) {
         Map<String, Object> ret = new HashMap<String, Object>(8);
         if (this.numClasses == 2) {
@@ -145,14 +193,15 @@ public class HeteroSecureBoostingTreeGuest extends HeteroSecureBoost implements
             }
         }
         logger.info("feature hit rate : {}", 1.0 * featureHit / this.featureNameFidMapping.size());
-        double[] weights = new double[this.treeNum];
-        int communicationRound = 0;
+        double[] values = new double[this.featureDim];
+        byte[] states = new byte[this.featureDim];
+        FlatDecisionTree.encodeRow(fidValueMapping, values, states);
         //对于所有的树进行遍历
         for (int i = 0; i < this.treeNum; ++i) {
             if (this.isLocateInLeaf(i, treeNodeIds[i])) {
                 continue;
             }
-            treeNodeIds[i] = this.traverseTree(i, treeNodeIds[i], fidValueMapping);
+            treeNodeIds[i] = this.traverseTree(i, treeNodeIds[i], values, states);
             //如果某棵树遇到host节点，则将host节点记录，将其发给host以期返回下一个分支
             if (!this.isLocateInLeaf(i, treeNodeIds[i])) {
                 treeLocation.put(String.valueOf(i), treeNodeIds[i]);
@@ -177,13 +226,16 @@ public class HeteroSecureBoostingTreeGuest extends HeteroSecureBoost implements
             throw new GuestMergeException("tree node id array is not return from first loop");
         }
         HashMap<String, Object> fidValueMapping = (HashMap<String, Object>) localData.get("fidValueMapping");
+        double[] values = new double[this.featureDim];
+        byte[] states = new byte[this.featureDim];
+        FlatDecisionTree.encodeRow(fidValueMapping, values, states);
         remoteData.forEach((k, v) -> {
             HashMap<String, Object> treeLocation = new HashMap<String, Object>(8);
             for (int i = 0; i < this.treeNum; ++i) {
                 if (this.isLocateInLeaf(i, treeNodeIds[i])) {
                     continue;
                 }
-                treeNodeIds[i] = this.traverseTree(i, treeNodeIds[i], fidValueMapping);
+                treeNodeIds[i] = this.traverseTree(i, treeNodeIds[i], values, states);
                 if (!this.isLocateInLeaf(i, treeNodeIds[i])) {
                     treeLocation.put(String.valueOf(i), treeNodeIds[i]);
                 }
@@ -194,11 +246,14 @@ public class HeteroSecureBoostingTreeGuest extends HeteroSecureBoost implements
             if (remoteComopnentData == null) {
                 remoteComopnentData = onePartyData;
             }
+            long[] routeBits = parseRouteBits(remoteComopnentData);
             //由于已经获得Host方发送的路由表，则在后续的推理过程中，遇到任何的Host的节点，都可以知道遍历方向。 Guest从记录的host节点继续往下推导，直至到达叶子节点
             for (String treeIdx : treeLocation.keySet()) {
                 int idx = Integer.valueOf(treeIdx);
                 int curNodeId = (Integer) treeLocation.get(treeIdx);
-                int final_node_id = this.fastTraverseTree(idx, curNodeId, fidValueMapping, remoteComopnentData);
+                int final_node_id = routeBits != null
+                        ? this.fastTraverseTree(idx, curNodeId, values, states, routeBits)
+                        : this.fastTraverseTree(idx, curNodeId, values, states, remoteComopnentData);
                 treeNodeIds[idx] = final_node_id;
             }
             //Guest得到每个树的节点编号，利用节点编号索引出叶子权重，经过处理后得到预测结果，并将结果输出，推理流程完成
@@ -16,11 +16,11 @@
 
 package com.webank.ai.fate.serving.federatedml.model;
 
-import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.DecisionTreeModelParam;
-import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.NodeParam;
 import com.webank.ai.fate.serving.common.model.LocalInferenceAware;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.core.bean.MetaInfo;
+import org.apache.commons.lang3.StringUtils;
 
 import java.util.HashMap;
 import java.util.List;
@@ -30,9 +30,10 @@ public class HeteroSecureBoostingTreeHost extends HeteroSecureBoost implements L
     private final String site = "host";
     private final String modelId = "HeteroSecureBoostingTreeHost"; // need to change
     private boolean fastMode = true;
-    private int traverseTree(int treeId, int treeNodeId, Map<String, Object> input) {
-        while (getSite(treeId, treeNodeId).equals(this.site)) {
-            treeNodeId = this.gotoNextLevel(treeId, treeNodeId, input);
+    private int traverseTree(int treeId, int treeNodeId, double[] values, byte[] states) {
+        FlatDecisionTree tree = this.flatTrees[treeId];
+        while (tree.ownerSite[treeNodeId] == FlatDecisionTree.SITE_HOST) {
+            treeNodeId = tree.next(treeNodeId, values, states);
         }
 
         return treeNodeId;
@@ -40,34 +41,24 @@ public class HeteroSecureBoostingTreeHost extends HeteroSecureBoost implements L
 
     public Map<String, Object> extractHostNodeRoute(Map<String, Object> input) {
         Map<String, Object> result = new HashMap<String, Object>(8);
+        double[] values = new double[this.featureDim];
+        byte[] states = new byte[this.featureDim];
+        FlatDecisionTree.encodeRow(input, values, states);
         for (int i = 0; i < this.treeNum; i++) {
-            DecisionTreeModelParam treeParam = this.trees.get(i);
-            List<NodeParam> nodes = treeParam.getTreeList();
+            FlatDecisionTree tree = this.flatTrees[i];
             Map<String, Boolean> treeRoute = new HashMap<String, Boolean>(8);
-            for (int j = 0; j < nodes.size(); j++) {
-                NodeParam node = nodes.get(j);
-                if (!this.getSite(i, j).equals(this.site)) {
+            for (int j = 0; j < tree.nodeCount; j++) {
+                if (tree.ownerSite[j] != FlatDecisionTree.SITE_HOST) {
                     continue;
                 }
-                int fid = this.trees.get(i).getTree(j).getFid();
-                double splitValue = this.trees.get(i).getSplitMaskdict().get(j);
-                boolean direction = false; // false go right, true go left
                 if (logger.isDebugEnabled()) {
                     logger.info("i is {}, j is {}", i, j);
-                    logger.info("best fid is {}", fid);
-                    logger.info("best split val is {}", splitValue);
+                    logger.info("best fid is {}", tree.fid[j]);
+                    logger.info("best split val is {}", tree.threshold[j]);
                 }
                 //对于该预测的样本，对于所有自身拥有的Host节点，判断该样本的遍历方向（向左还是向右），并把所有的路由方向记录下来。
-                if (input.containsKey(Integer.toString(fid))) {
-                    Object featVal = input.get(Integer.toString(fid));
-                    direction = Double.parseDouble(featVal.toString()) <= splitValue + 1e-20;
-                } else {
-                    if (this.trees.get(i).getMissingDirMaskdict().containsKey(j)) {
-                        int missingDir = this.trees.get(i).getMissingDirMaskdict().get(j);
-                        direction = (missingDir != 1);
-                    }
-                }
-                treeRoute.put(Integer.toString(j), direction);
+                // false go right, true go left
+                treeRoute.put(tree.nodeKey[j], tree.goLeft(j, values, states));
             }
             result.put(Integer.toString(i), treeRoute);
         }
@@ -77,6 +68,34 @@ public class HeteroSecureBoostingTreeHost extends HeteroSecureBoost implements L
         return result;
     }
 
+    /**
+     * 以 bitset 形式返回路由表, 第 n 位为 1 表示序号为 n 的 host 节点走左子树
+     */
+    public Map<String, Object> extractHostNodeRouteBits(Map<String, Object> input) {
+        double[] values = new double[this.featureDim];
+        byte[] states = new byte[this.featureDim];
+        FlatDecisionTree.encodeRow(input, values, states);
+        long[] bits = new long[(this.hostNodeCount + 63) >>> 6];
+        for (int i = 0; i < this.treeNum; i++) {
+            FlatDecisionTree tree = this.flatTrees[i];
+            for (int j = 0; j < tree.nodeCount; j++) {
+                int ordinal = tree.hostOrdinal[j];
+                if (ordinal >= 0 && tree.goLeft(j, values, states)) {
+                    FlatDecisionTree.setBit(bits, ordinal);
+                }
+            }
+        }
+        Map<String, Object> result = new HashMap<String, Object>(4);
+        result.put(Dict.SBT_HOST_ROUTE_BITS, bits);
+        result.put(Dict.SBT_HOST_ROUTE_SIZE, this.hostNodeCount);
+        return result;
+    }
+
+    private boolean supportRouteBits(Context context) {
+        String version = context.getVersion();
+        return StringUtils.isNotBlank(version) && Double.parseDouble(version) >= MetaInfo.SBT_ROUTE_BITSET_VERSION;
+    }
+
     @Override
     public Map<String, Object> localInference(Context context, List<Map<String, Object>> request) {
         String tag = context.getCaseId() + "." + this.componentName + "." + Dict.INPUT_DATA;
@@ -90,7 +109,12 @@ public class HeteroSecureBoostingTreeHost extends HeteroSecureBoost implements L
                 ++featureHit;
             }
         }
-        ret = this.extractHostNodeRoute(fidValueMapping);   //提取本地节点路由
+        //提取本地节点路由, 新版本 guest 使用 bitset 格式, 旧版本仍使用 map 格式
+        if (supportRouteBits(context)) {
+            ret = this.extractHostNodeRouteBits(fidValueMapping);
+        } else {
+            ret = this.extractHostNodeRoute(fidValueMapping);
+        }
         return ret;
     }
 }
\ No newline at end of file
@@ -16,6 +16,8 @@
 
 package com.webank.ai.fate.serving.federatedml.model;
 
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 public class Imputer {
     private static final Logger logger = LoggerFactory.getLogger(Imputer.class);
@@ -56,4 +59,36 @@ public class Imputer {
         }
         return output;
     }
+
+    //按列替换缺失值, 与逐行处理一致, 只输出 missingReplaceValues 中的列
+    public ColumnarBatch transform(ColumnarBatch input) {
+        ColumnarBatch output = input.derive();
+        int size = input.size();
+        Predicate<Object> missing = Column.lowerCaseMatcher(this.missingValueSet);
+        for (Map.Entry<String, String> entry : this.missingReplaceValues.entrySet()) {
+            String col = entry.getKey();
+            Column column = input.column(col);
+            if (column == null) {
+                output.put(col, Column.constant(size, entry.getValue()));
+                continue;
+            }
+            Object[] values = null;
+            for (int i = 0; i < size; i++) {
+                Object value = column.get(i);
+                if (value == null || missing.test(value)) {
+                    if (values == null) {
+                        values = new Object[size];
+                        for (int j = 0; j < i; j++) {
+                            values[j] = column.get(j);
+                        }
+                    }
+                    values[i] = entry.getValue();
+                } else if (values != null) {
+                    values[i] = value;
+                }
+            }
+            output.put(col, values != null ? Column.of(values) : column);
+        }
+        return output;
+    }
 }
@@ -17,6 +17,8 @@
 package com.webank.ai.fate.serving.federatedml.model;
 
 import com.webank.ai.fate.core.mlmodel.buffer.ScaleParamProto.ColumnScaleParam;
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,26 +35,7 @@ public class MinMaxScale {
                 if (scales.containsKey(key)) {
                     ColumnScaleParam scale = scales.get(key);
                     double value = Double.parseDouble(inputData.get(key).toString());
-                    if (value > scale.getColumnUpper()) {   //上限
-                        value = 1;
-                    } else if (value < scale.getColumnLower()) {    //下限
-                        value = 0;
-                    } else {
-                        double range = scale.getColumnUpper() - scale.getColumnLower();
-                        if (range < 0) {
-                            if (logger.isDebugEnabled()) {
-                                logger.warn("min_max_scale range may be error, it should be larger than 0, but is {}, set value to 0 ", range);
-                            }
-                            value = 0;
-                        } else {
-                            if (Math.abs(range - 0) < 1e-6) {
-                                range = 1;
-                            }
-                            value = (value - scale.getColumnLower()) / range;
-                        }
-                    }
-
-                    inputData.put(key, value);
+                    inputData.put(key, scale(value, scale));
                 } else {
                     if (logger.isDebugEnabled()) {
                         logger.warn("feature {} is not in scale, maybe missing or do not need to be scaled", key);
@@ -65,4 +48,35 @@ public class MinMaxScale {
         }
         return inputData;
     }
+
+    //按列归一化, 无法解析为数值的值保持原样, 与逐行处理一致
+    public ColumnarBatch transform(ColumnarBatch input, Map<String, ColumnScaleParam> scales) {
+        ColumnarBatch output = input.copy();
+        for (Map.Entry<String, Column> entry : input.columns().entrySet()) {
+            ColumnScaleParam scale = scales.get(entry.getKey());
+            if (scale != null) {
+                output.put(entry.getKey(), entry.getValue().mapNumbers(value -> scale(value, scale)));
+            }
+        }
+        return output;
+    }
+
+    private static double scale(double value, ColumnScaleParam scale) {
+        if (value > scale.getColumnUpper()) {   //上限
+            return 1;
+        } else if (value < scale.getColumnLower()) {    //下限
+            return 0;
+        }
+        double range = scale.getColumnUpper() - scale.getColumnLower();
+        if (range < 0) {
+            if (logger.isDebugEnabled()) {
+                logger.warn("min_max_scale range may be error, it should be larger than 0, but is {}, set value to 0 ", range);
+            }
+            return 0;
+        }
+        if (Math.abs(range - 0) < 1e-6) {
+            range = 1;
+        }
+        return (value - scale.getColumnLower()) / range;
+    }
 }
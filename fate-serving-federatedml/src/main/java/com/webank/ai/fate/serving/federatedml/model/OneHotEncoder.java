@@ -20,91 +20,264 @@ import com.webank.ai.fate.core.mlmodel.buffer.OneHotMetaProto.OneHotMeta;
 import com.webank.ai.fate.core.mlmodel.buffer.OneHotParamProto.ColsMap;
 import com.webank.ai.fate.core.mlmodel.buffer.OneHotParamProto.OneHotParam;
 import com.webank.ai.fate.serving.common.model.LocalInferenceAware;
+import com.webank.ai.fate.serving.common.model.OneHotEncoderMetrics;
 import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class OneHotEncoder extends BaseComponent implements LocalInferenceAware {
+public class OneHotEncoder extends BaseComponent implements LocalInferenceAware, ColumnarInferenceAware, OneHotEncoderMetrics.Source {
     private static final Logger logger = LoggerFactory.getLogger(OneHotEncoder.class);
-    Pattern doublePattern = Pattern.compile("^-?([1-9]\\\\d*\\\\.\\\\d*|0\\\\.\\\\d*[1-9]\\\\d*|0?\\\\.0+|0)$");
-    private List<String> cols;
-    private Map<String, ColsMap> colsMapMap;
+    private static final int NO_SLOT = -1;
+    private Set<String> cols;
+    /**
+     * 加载时编译的每列 类别取值 -> 输出列序号 的映射, 只包含 cols 中在模型里有类别的列
+     */
+    private Map<String, ColumnEncoder> encoders;
     private boolean needRun;
 
     //将模型的参数和结果，也就是Meta和param文件，反序列化为对象从而对Serving模型初始化
     @Override
-    public int initModel(byte[] protoMeta, byte[] protoParam) {
+    public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
         logger.info("start init OneHot Encoder class");
         try {
             OneHotMeta oneHotMeta = this.parseModel(OneHotMeta.parser(), protoMeta);
             OneHotParam oneHotParam = this.parseModel(OneHotParam.parser(), protoParam);
             this.needRun = oneHotMeta.getNeedRun(); //是否需要执行，如果为否，这个组件在后续预测时将被跳过
-            this.cols = oneHotMeta.getTransformColNamesList();  //需要做转化的列名
-            this.colsMapMap = oneHotParam.getColMapMap();   //每个需要转化的列，各种可能的值对应的新列名
+            this.cols = new HashSet<>(oneHotMeta.getTransformColNamesList());  //需要做转化的列名
+            Map<String, ColsMap> colsMapMap = oneHotParam.getColMapMap();   //每个需要转化的列，各种可能的值对应的新列名
+            this.encoders = new HashMap<>(this.cols.size() * 2);
+            for (String col : this.cols) {
+                ColsMap colsMap = colsMapMap.get(col);
+                if (colsMap != null) {
+                    this.encoders.put(col, new ColumnEncoder(col, colsMap));
+                }
+            }
         } catch (Exception ex) {
             logger.error("OneHotEncoder initModel error", ex);
             return ILLEGALDATA;
         }
+        OneHotEncoderMetrics.register(this);
         logger.info("Finish init OneHot Encoder class");
         return OK;
     }
 
-    private boolean isDouble(String str) {
-        if (null == str || "".equals(str)) {
-            return false;
-        }
-        return this.doublePattern.matcher(str).matches();
-    }
-
+    //进行转化功能，对每个需要转化的输入数据，找到与之相等的类别，将对应的新列名的值设定为1，其余值均设定为0，
+    //如果没有类别与输入数据相等，则所有新列名对应的值均为0. 值为 null 的特征与缺失一样不输出
     @Override
     public Map<String, Object> localInference(Context context, List<Map<String, Object>> inputData) {
-        HashMap<String, Object> outputData = new HashMap<>();
         Map<String, Object> firstData = inputData.get(0);
         if (!this.needRun) {
             return firstData;
         }
-        for (String colName : firstData.keySet()) {
-            try {
-                if (!this.cols.contains(colName)) {
-                    outputData.put(colName, firstData.get(colName));
-                    continue;
-                }
-                ColsMap colsMap = this.colsMapMap.get(colName);
-                List<String> values = colsMap.getValuesList();
-                List<String> encodedVariables = colsMap.getTransformedHeadersList();
-                Integer inputValue = 0;
-                try {
-                    String thisInputValue = firstData.get(colName).toString();
-                    if (this.isDouble(thisInputValue)) {
-                        double d = Double.valueOf(thisInputValue);
-                        inputValue = (int) Math.ceil(d);
+        HashMap<String, Object> outputData = new HashMap<>(firstData.size() * 2);
+        for (Map.Entry<String, Object> entry : firstData.entrySet()) {
+            if (!this.cols.contains(entry.getKey())) {
+                outputData.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            ColumnEncoder encoder = this.encoders.get(entry.getKey());
+            if (encoder == null || entry.getValue() == null) {
+                continue;
+            }
+            int slot = encoder.slot(entry.getValue());
+            String[] headers = encoder.headers;
+            for (int i = 0; i < headers.length; i++) {
+                outputData.put(headers[i], i == slot ? 1.0 : 0.0);
+            }
+        }
+        return outputData;
+    }
+
+    @Override
+    public ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs) {
+        ColumnarBatch data = inputs.get(0);
+        if (!this.needRun) {
+            return data;
+        }
+        ColumnarBatch output = data.derive();
+        for (Map.Entry<String, Column> entry : data.columns().entrySet()) {
+            if (!this.cols.contains(entry.getKey())) {
+                output.put(entry.getKey(), entry.getValue());
+            }
+        }
+        int size = data.size();
+        for (Map.Entry<String, Column> entry : data.columns().entrySet()) {
+            ColumnEncoder encoder = this.encoders.get(entry.getKey());
+            if (encoder == null) {
+                continue;
+            }
+            Column column = entry.getValue();
+            int[] slots = new int[size];
+            long[] absent = Column.newBitmap(size);
+            if (column.isNumeric()) {
+                double[] values = column.values();
+                long[] nulls = column.nulls();
+                for (int r = 0; r < size; r++) {
+                    if (Column.getBit(nulls, r)) {
+                        Column.setBit(absent, r);
                     } else {
-                        inputValue = Integer.valueOf(thisInputValue);
+                        slots[r] = encoder.slot(values[r]);
                     }
-                } catch (Throwable e) {
-                    logger.error("Onehot component accept number input value only");
                 }
-                //进行转化功能，对每个需要转化的输入数据，和colsMapMap中的key做对比，
-                //当相等时，将对应的新列名的值设定为1，其余值均设定为0，如果其中没有值与输入数据相等，则所有新列名对应的值均为0
-                for (int i = 0; i < values.size(); i++) {
-                    Integer possibleValue = Integer.parseInt(values.get(i));
-                    String newColName = encodedVariables.get(i);
-                    if (inputValue.equals(possibleValue)) { //只支持整形数的输入
-                        outputData.put(newColName, 1.0);
+            } else {
+                for (int r = 0; r < size; r++) {
+                    Object value = column.get(r);
+                    if (value == null) {
+                        Column.setBit(absent, r);
                     } else {
-                        outputData.put(newColName, 0.0);
+                        slots[r] = encoder.slot(value);
                     }
                 }
-            } catch (Throwable e) {
-                logger.error("HeteroFeatureBinning error", e);
+            }
+            String[] headers = encoder.headers;
+            for (int i = 0; i < headers.length; i++) {
+                double[] encoded = new double[size];
+                for (int r = 0; r < size; r++) {
+                    encoded[r] = slots[r] == i ? 1.0 : 0.0;
+                }
+                output.put(headers[i], Column.numeric(encoded, absent, false));
             }
         }
-        return outputData;
+        return output;
+    }
+
+    /**
+     * 各列取值不在模型类别中的次数, 用于观察数据漂移
+     */
+    public Map<String, Long> getUnseenCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        this.encoders.forEach((col, encoder) -> counts.put(col, encoder.unseen.get()));
+        return counts;
+    }
+
+    /**
+     * 各列取值既不是模型中的类别也无法解析为数值的次数, 只统计类别全部为数值的列
+     */
+    public Map<String, Long> getMalformedCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        this.encoders.forEach((col, encoder) -> counts.put(col, encoder.malformed.get()));
+        return counts;
+    }
+
+    /**
+     * 各列非整数的数值输入按向上取整命中类别的次数, 只统计类别全部为整数的列
+     */
+    public Map<String, Long> getCeiledCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        this.encoders.forEach((col, encoder) -> counts.put(col, encoder.ceiled.get()));
+        return counts;
     }
 
+    @Override
+    public OneHotEncoderMetrics getMetrics() {
+        return new OneHotEncoderMetrics(this.componentName, getUnseenCounts(), getMalformedCounts(), getCeiledCounts());
+    }
+
+    /**
+     * 单列的类别映射. 输入先按原文本查找, 命中时不做任何解析; 数值输入或文本未命中时按数值查找,
+     * 因此 1, 1.0, "1.0" 都能命中类别 "1", 0.5 和 "0.50" 都能命中类别 "0.5".
+     * 类别全部为整数的列沿用原有的向上取整, 1.2 命中类别 "2", 并单独计数.
+     * 类别重复时以第一次出现的为准
+     */
+    private static final class ColumnEncoder {
+        private final String name;
+        private final String[] headers;
+        private final Map<String, Integer> textSlots;
+        private final Map<Double, Integer> numericSlots;
+        private final boolean numericOnly;
+        private final boolean integerOnly;
+        private final AtomicLong unseen = new AtomicLong();
+        private final AtomicLong malformed = new AtomicLong();
+        private final AtomicLong ceiled = new AtomicLong();
+
+        ColumnEncoder(String name, ColsMap colsMap) {
+            List<String> values = colsMap.getValuesList();
+            List<String> encodedVariables = colsMap.getTransformedHeadersList();
+            if (values.size() != encodedVariables.size()) {
+                throw new IllegalArgumentException("onehot column " + name + " has " + values.size()
+                        + " values but " + encodedVariables.size() + " transformed headers");
+            }
+            this.name = name;
+            this.headers = encodedVariables.toArray(new String[0]);
+            this.textSlots = new HashMap<>(values.size() * 2);
+            this.numericSlots = new HashMap<>(values.size() * 2);
+            boolean numericOnly = true;
+            boolean integerOnly = true;
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                textSlots.putIfAbsent(value, i);
+                try {
+                    double number = Double.parseDouble(value);
+                    numericSlots.putIfAbsent(numericKey(number), i);
+                    integerOnly &= number == Math.rint(number);
+                } catch (NumberFormatException e) {
+                    numericOnly = false;
+                    integerOnly = false;
+                }
+            }
+            this.numericOnly = numericOnly;
+            this.integerOnly = integerOnly;
+        }
+
+        //0.0 与 -0.0 视为同一个类别
+        private static Double numericKey(double value) {
+            return value == 0 ? 0.0 : value;
+        }
+
+        int slot(double value) {
+            Integer slot = numericSlots.get(numericKey(value));
+            if (slot != null) {
+                return slot;
+            }
+            double ceil = Math.ceil(value);
+            if (integerOnly && ceil != value) {
+                slot = numericSlots.get(numericKey(ceil));
+                if (slot != null) {
+                    if (ceiled.incrementAndGet() == 1) {
+                        logger.warn("onehot column {} got non-integer value {}, rounded up to {}", name, value, ceil);
+                    }
+                    return slot;
+                }
+            }
+            return unseen(value);
+        }
+
+        int slot(Object value) {
+            if (value instanceof Number) {
+                return slot(((Number) value).doubleValue());
+            }
+            String text = value.toString();
+            Integer slot = textSlots.get(text);
+            if (slot != null) {
+                return slot;
+            }
+            double number;
+            try {
+                number = Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                if (!numericOnly) {
+                    return unseen(text);
+                }
+                if (malformed.incrementAndGet() == 1) {
+                    logger.warn("onehot column {} got malformed value {}", name, text);
+                }
+                return NO_SLOT;
+            }
+            return slot(number);
+        }
+
+        private int unseen(Object value) {
+            if (unseen.incrementAndGet() == 1) {
+                logger.warn("onehot column {} got unseen value {}", name, value);
+            }
+            return NO_SLOT;
+        }
+    }
 }
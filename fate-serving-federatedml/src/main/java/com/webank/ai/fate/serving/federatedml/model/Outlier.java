@@ -16,12 +16,15 @@
 
 package com.webank.ai.fate.serving.federatedml.model;
 
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 public class Outlier {
     private static final Logger logger = LoggerFactory.getLogger(Outlier.class);
@@ -58,4 +61,33 @@ public class Outlier {
 
         return inputData;
     }
+
+    //按列替换异常值, 不修改输入批次
+    public ColumnarBatch transform(ColumnarBatch input) {
+        ColumnarBatch output = input.copy();
+        int size = input.size();
+        Predicate<Object> outlier = Column.lowerCaseMatcher(this.outlierValueSet);
+        for (Map.Entry<String, Column> entry : input.columns().entrySet()) {
+            Column column = entry.getValue();
+            Object[] values = null;
+            for (int i = 0; i < size; i++) {
+                Object value = column.get(i);
+                if (value != null && outlier.test(value)) {
+                    if (values == null) {
+                        values = new Object[size];
+                        for (int j = 0; j < i; j++) {
+                            values[j] = column.get(j);
+                        }
+                    }
+                    values[i] = outlierReplaceValues.get(entry.getKey());
+                } else if (values != null) {
+                    values[i] = value;
+                }
+            }
+            if (values != null) {
+                output.put(entry.getKey(), Column.of(values));
+            }
+        }
+        return output;
+    }
 }
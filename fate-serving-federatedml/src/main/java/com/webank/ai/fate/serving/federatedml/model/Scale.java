@@ -20,13 +20,16 @@ import com.webank.ai.fate.core.mlmodel.buffer.ScaleMetaProto.ScaleMeta;
 import com.webank.ai.fate.core.mlmodel.buffer.ScaleParamProto.ScaleParam;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
-public class Scale extends BaseComponent {
+public class Scale extends BaseComponent implements ColumnarInferenceAware {
     private static final Logger logger = LoggerFactory.getLogger(Scale.class);
     private ScaleMeta scaleMeta;
     private ScaleParam scaleParam;
@@ -34,7 +37,7 @@ public class Scale extends BaseComponent {
 
     //将模型的参数和结果，也就是Meta和param文件，反序列化为对象从而对Serving模型初始化
     @Override
-    public int initModel(byte[] protoMeta, byte[] protoParam) {
+    public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
         logger.info("start init Scale class");
         try {
             this.scaleMeta = this.parseModel(ScaleMeta.parser(), protoMeta);
@@ -65,4 +68,17 @@ public class Scale extends BaseComponent {
         return outputData;
     }
 
+    @Override
+    public ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs) {
+        ColumnarBatch output = inputs.get(0);
+        if (this.needRun) {
+            String scaleMethod = this.scaleMeta.getMethod();
+            if (scaleMethod.toLowerCase().equals(Dict.MIN_MAX_SCALE)) {
+                output = new MinMaxScale().transform(output, this.scaleParam.getColScaleParamMap());
+            } else if (scaleMethod.toLowerCase().equals(Dict.STANDARD_SCALE)) {
+                output = new StandardScale().transform(output, this.scaleParam.getColScaleParamMap());
+            }
+        }
+        return output;
+    }
 }
@@ -17,6 +17,8 @@
 package com.webank.ai.fate.serving.federatedml.model;
 
 import com.webank.ai.fate.core.mlmodel.buffer.ScaleParamProto.ColumnScaleParam;
+import com.webank.ai.fate.serving.federatedml.columnar.Column;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,19 +33,7 @@ public class StandardScale {
                 if (standardScalesMap.containsKey(key)) {
                     ColumnScaleParam standardScale = standardScalesMap.get(key);
                     double value = Double.parseDouble(inputData.get(key).toString());
-                    double upper = standardScale.getColumnUpper();
-                    double lower = standardScale.getColumnLower();
-                    if (value > upper) {
-                        value = upper;
-                    } else if (value < lower) {
-                        value = lower;
-                    }
-                    double std = standardScale.getStd();
-                    if (std == 0) {
-                        std = 1;
-                    }
-                    value = (value - standardScale.getMean()) / std;
-                    inputData.put(key, value);
+                    inputData.put(key, scale(value, standardScale));
                 } else {
                     if (logger.isDebugEnabled()) {
                         logger.debug("feature {} is not in scale, maybe missing or do not need to be scaled");
@@ -56,4 +46,31 @@ public class StandardScale {
         }
         return inputData;
     }
+
+    //按列标准化, 无法解析为数值的值保持原样, 与逐行处理一致
+    public ColumnarBatch transform(ColumnarBatch input, Map<String, ColumnScaleParam> standardScalesMap) {
+        ColumnarBatch output = input.copy();
+        for (Map.Entry<String, Column> entry : input.columns().entrySet()) {
+            ColumnScaleParam standardScale = standardScalesMap.get(entry.getKey());
+            if (standardScale != null) {
+                output.put(entry.getKey(), entry.getValue().mapNumbers(value -> scale(value, standardScale)));
+            }
+        }
+        return output;
+    }
+
+    private static double scale(double value, ColumnScaleParam standardScale) {
+        double upper = standardScale.getColumnUpper();
+        double lower = standardScale.getColumnLower();
+        if (value > upper) {
+            value = upper;
+        } else if (value < lower) {
+            value = lower;
+        }
+        double std = standardScale.getStd();
+        if (std == 0) {
+            std = 1;
+        }
+        return (value - standardScale.getMean()) / std;
+    }
 }
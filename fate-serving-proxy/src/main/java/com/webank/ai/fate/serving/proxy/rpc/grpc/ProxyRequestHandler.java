@@ -23,6 +23,7 @@ import com.webank.ai.fate.serving.common.bean.BaseContext;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.ServiceAdaptor;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.proxy.rpc.core.ProxyServiceRegister;
 import io.grpc.stub.StreamObserver;
@@ -64,6 +65,8 @@ public abstract class ProxyRequestHandler extends DataTransferServiceGrpc.DataTr
         }
         context.setGuestAppId(req.getHeader().getSrc().getPartyId());
         context.setHostAppid(req.getHeader().getDst().getPartyId());
+        context.setDeadline(DeadlineUtil.earliest(DeadlineUtil.grpcDeadline(),
+                DeadlineUtil.fromBudget(context.getTimeStamp(), req.getHeader().getConf().getOverallTimeout())));
         InboundPackage<Proxy.Packet> inboundPackage = new InboundPackage<Proxy.Packet>();
         inboundPackage.setBody(req);
 
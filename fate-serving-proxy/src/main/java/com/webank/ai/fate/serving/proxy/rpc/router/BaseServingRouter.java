@@ -23,6 +23,8 @@ import com.webank.ai.fate.serving.common.rpc.core.RouterInterface;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.exceptions.NoRouteInfoException;
+import com.webank.ai.fate.serving.core.rpc.router.EndpointStats;
+import com.webank.ai.fate.serving.core.rpc.router.LatencyAwareSelector;
 import com.webank.ai.fate.serving.core.rpc.router.RouteType;
 import com.webank.ai.fate.serving.core.rpc.router.RouterInfo;
 import org.slf4j.Logger;
@@ -30,9 +32,11 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
 public abstract class BaseServingRouter implements RouterInterface {
     private static final Logger logger = LoggerFactory.getLogger(BaseServingRouter.class);
+    private static final Function<RouterInfo, EndpointStats> STATS_OF = routerInfo -> EndpointStats.get(routerInfo.getHost(), routerInfo.getPort());
 
     public abstract List<RouterInfo> getRouterInfoList(Context context, InboundPackage inboundPackage);
 
@@ -57,6 +61,18 @@ public abstract class BaseServingRouter implements RouterInterface {
                 idx = Hashing.consistentHash(context.getRouteBasis(), routeList.size());
                 break;
             }
+            case LEAST_REQUEST_ROUTE: {
+                idx = LatencyAwareSelector.leastRequest(routeList, STATS_OF);
+                break;
+            }
+            case POWER_OF_TWO_CHOICES_ROUTE: {
+                idx = LatencyAwareSelector.powerOfTwoChoices(routeList, STATS_OF);
+                break;
+            }
+            case PEAK_EWMA_ROUTE: {
+                idx = LatencyAwareSelector.peakEwma(routeList, STATS_OF);
+                break;
+            }
             default: {
                 // to use the first one.
                 break;
@@ -28,6 +28,7 @@ import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.bean.MetaInfo;
+import com.webank.ai.fate.serving.core.rpc.router.EndpointStats;
 import com.webank.ai.fate.serving.core.rpc.router.RouteType;
 import com.webank.ai.fate.serving.core.rpc.router.RouteTypeConvertor;
 import com.webank.ai.fate.serving.core.rpc.router.RouterInfo;
@@ -349,8 +350,31 @@ public class ConfigFileBasedServingRouter extends BaseServingRouter implements I
             }
         }
 
+        Set<String> dropped = addresses(routeTable);
+        dropped.removeAll(addresses(newRouteTable));
         routeTable = newRouteTable;
         topicEndpointMapping.clear();
+        // 从路由表中删除的地址清理其调用统计
+        dropped.forEach(EndpointStats::remove);
+    }
+
+    /**
+     * 路由表中所有地址, 格式与 {@link EndpointStats#get(String, int)} 一致
+     */
+    private static Set<String> addresses(Map<String, Map<String, List<BasicMeta.Endpoint>>> table) {
+        Set<String> addresses = new HashSet<>();
+        if (table == null) {
+            return addresses;
+        }
+        for (Map<String, List<BasicMeta.Endpoint>> serviceTable : table.values()) {
+            for (List<BasicMeta.Endpoint> endpoints : serviceTable.values()) {
+                for (BasicMeta.Endpoint endpoint : endpoints) {
+                    String host = !endpoint.getIp().isEmpty() ? endpoint.getIp() : endpoint.getHostname();
+                    addresses.add(host + ":" + endpoint.getPort());
+                }
+            }
+        }
+        return addresses;
     }
 
     private void initPermission(JsonObject confJson) {
@@ -25,6 +25,7 @@ import com.webank.ai.fate.serving.common.rpc.core.AbstractServiceAdaptor;
 import com.webank.ai.fate.serving.common.rpc.core.FateService;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.bean.GrpcConnectionPool;
@@ -88,7 +89,10 @@ public class BatchInferenceService extends AbstractServiceAdaptor<Map, Map> {
         }
         InferenceServiceProto.InferenceMessage.Builder reqBuilder = InferenceServiceProto.InferenceMessage.newBuilder();
         reqBuilder.setBody(ByteString.copyFrom(JsonUtil.object2Json(inferenceReqMap).getBytes()));
-        InferenceServiceGrpc.InferenceServiceFutureStub futureStub = InferenceServiceGrpc.newFutureStub(managedChannel);
+        long remaining = DeadlineUtil.limit(context, timeout);
+        DeadlineUtil.check(context, "forwarding to " + routerInfo);
+        InferenceServiceGrpc.InferenceServiceFutureStub futureStub = InferenceServiceGrpc.newFutureStub(managedChannel)
+                .withDeadlineAfter(remaining, TimeUnit.MILLISECONDS);
         if (callName.equals(Dict.SERVICENAME_BATCH_INFERENCE)) {
             resultFuture = futureStub.batchInference(reqBuilder.build());
         } else {
@@ -97,7 +101,7 @@ public class BatchInferenceService extends AbstractServiceAdaptor<Map, Map> {
         }
         try {
             logger.info("routerinfo {}", routerInfo);
-            InferenceServiceProto.InferenceMessage result = resultFuture.get(timeout, TimeUnit.MILLISECONDS);
+            InferenceServiceProto.InferenceMessage result = resultFuture.get(remaining, TimeUnit.MILLISECONDS);
             if (logger.isDebugEnabled()) {
                 logger.debug("send {} result {}", routerInfo, inferenceReqMap, result);
             }
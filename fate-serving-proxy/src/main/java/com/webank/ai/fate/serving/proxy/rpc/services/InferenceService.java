@@ -25,6 +25,7 @@ import com.webank.ai.fate.serving.common.rpc.core.AbstractServiceAdaptor;
 import com.webank.ai.fate.serving.common.rpc.core.FateService;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.bean.GrpcConnectionPool;
@@ -80,10 +81,13 @@ public class InferenceService extends AbstractServiceAdaptor<Map, Map> {
         inferenceReqMap.putAll(reqBodyMap);
         InferenceServiceProto.InferenceMessage.Builder reqBuilder = InferenceServiceProto.InferenceMessage.newBuilder();
         reqBuilder.setBody(ByteString.copyFrom(JsonUtil.object2Json(inferenceReqMap).getBytes()));
-        InferenceServiceGrpc.InferenceServiceFutureStub futureStub = InferenceServiceGrpc.newFutureStub(managedChannel);
+        long remaining = DeadlineUtil.limit(context, timeout);
+        DeadlineUtil.check(context, "forwarding to " + routerInfo);
+        InferenceServiceGrpc.InferenceServiceFutureStub futureStub = InferenceServiceGrpc.newFutureStub(managedChannel)
+                .withDeadlineAfter(remaining, TimeUnit.MILLISECONDS);
         resultFuture = futureStub.inference(reqBuilder.build());
         try {
-            InferenceServiceProto.InferenceMessage result = resultFuture.get(timeout, TimeUnit.MILLISECONDS);
+            InferenceServiceProto.InferenceMessage result = resultFuture.get(remaining, TimeUnit.MILLISECONDS);
             resultString = new String(result.getBody().toByteArray());
         } catch (Exception e) {
             logger.error("remote {} get grpc result error", routerInfo);
@@ -25,6 +25,7 @@ import com.webank.ai.fate.serving.common.rpc.core.AbstractServiceAdaptor;
 import com.webank.ai.fate.serving.common.rpc.core.FateService;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
 import com.webank.ai.fate.serving.core.bean.*;
 import com.webank.ai.fate.serving.core.exceptions.ProxyAuthException;
 import com.webank.ai.fate.serving.core.exceptions.RemoteRpcException;
@@ -63,6 +64,14 @@ public class UnaryCallService extends AbstractServiceAdaptor<Proxy.Packet, Proxy
         Proxy.Packet sourcePackage = data.getBody();
         RouterInfo routerInfo = data.getRouterInfo();
 
+        // 转发前扣除本跳耗时, 已超时的请求不再转发; 需要在签名之前改写 header
+        long remaining = DeadlineUtil.limit(context, timeout);
+        DeadlineUtil.check(context, "forwarding to " + routerInfo);
+        Proxy.Metadata header = sourcePackage.getHeader();
+        sourcePackage = sourcePackage.toBuilder()
+                .setHeader(header.toBuilder().setConf(header.getConf().toBuilder().setOverallTimeout(remaining)))
+                .build();
+
         try {
             sourcePackage = authUtils.addAuthInfo(sourcePackage);
         } catch (Exception e) {
@@ -73,11 +82,11 @@ public class UnaryCallService extends AbstractServiceAdaptor<Proxy.Packet, Proxy
         try {
             NettyServerInfo nettyServerInfo;
             ManagedChannel managedChannel = grpcConnectionPool.getManagedChannel(routerInfo);
-            DataTransferServiceGrpc.DataTransferServiceFutureStub stub1 = DataTransferServiceGrpc.newFutureStub(managedChannel);
-            stub1.withDeadlineAfter(timeout, TimeUnit.MILLISECONDS);
+            DataTransferServiceGrpc.DataTransferServiceFutureStub stub1 = DataTransferServiceGrpc.newFutureStub(managedChannel)
+                    .withDeadlineAfter(remaining, TimeUnit.MILLISECONDS);
             context.setDownstreamBegin(System.currentTimeMillis());
             ListenableFuture<Proxy.Packet> future = stub1.unaryCall(sourcePackage);
-            Proxy.Packet packet = future.get(timeout, TimeUnit.MILLISECONDS);
+            Proxy.Packet packet = future.get(remaining, TimeUnit.MILLISECONDS);
             return packet;
         } catch (Exception e) {
             logger.error("unaryCall error", e);
@@ -18,6 +18,7 @@ package com.webank.ai.fate.register.annotions;
 
 import com.webank.ai.fate.register.common.Role;
 import com.webank.ai.fate.register.common.RouterMode;
+import com.webank.ai.fate.register.loadbalance.LoadBalanceModel;
 import com.webank.ai.fate.serving.core.bean.MetaInfo;
 
 import java.lang.annotation.ElementType;
@@ -37,6 +38,11 @@ public @interface RegisterService {
 
     RouterMode routerMode() default RouterMode.ALL_ALLOWED;
 
+    /**
+     * 调用方按 project/environment/serviceName 路由时使用的负载均衡策略
+     */
+    LoadBalanceModel loadBalance() default LoadBalanceModel.random_with_weight;
+
     Role  role()  default   Role.COMMON;
 
 
@@ -24,6 +24,7 @@ import com.webank.ai.fate.register.url.URL;
 import com.webank.ai.fate.register.url.UrlUtils;
 import com.webank.ai.fate.register.utils.StringUtils;
 import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.core.rpc.router.EndpointStats;
 import com.webank.ai.fate.serving.core.utils.JsonUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,9 +45,13 @@ public abstract class AbstractRegistry implements Registry {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractRegistry.class);
     private static final char URL_SEPARATOR = ' ';
-    private static final String URL_SPLIT = "\\s+";
     private static final int MAX_RETRY_TIMES_SAVE_PROPERTIES = 3;
     private final Properties properties = new Properties();
+    /**
+     * properties 的已解析索引, 修改 properties 时在锁内复制并整体替换, 读取无锁
+     */
+    private final Object routeIndexLock = new Object();
+    private volatile RouteIndex routeIndex = RouteIndex.EMPTY;
     private final ExecutorService registryCacheExecutor = new ThreadPoolExecutor(1, 1,
             0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
             new NamedThreadFactory("FateSaveRegistryCache", true));
@@ -275,6 +280,9 @@ public abstract class AbstractRegistry implements Registry {
             try {
                 in = new FileInputStream(file);
                 properties.load(in);
+                synchronized (routeIndexLock) {
+                    routeIndex = RouteIndex.build(properties);
+                }
                 if (logger.isDebugEnabled()) {
                     logger.debug("Load registry cache file " + file + ", data: " + properties);
                 }
@@ -293,26 +301,15 @@ public abstract class AbstractRegistry implements Registry {
     }
 
     public List<URL> getCacheUrls(URL url) {
-        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
-            String key = (String) entry.getKey();
-            String value = (String) entry.getValue();
-            if (key != null && key.length() > 0 && key.equals(url.getServiceKey())
-                    && (Character.isLetter(key.charAt(0)) || key.charAt(0) == '_')
-                    && value != null && value.length() > 0) {
-                String[] arr = value.trim().split(URL_SPLIT);
-                List<URL> urls = new ArrayList<>();
-                for (String u : arr) {
-                    // for jmx url
-                    if (u.startsWith(JMX_PROTOCOL_KEY)) {
-                        urls.add(URL.parseJMXServiceUrl(u));
-                    } else {
-                        urls.add(URL.valueOf(u));
-                    }
-                }
-                return urls;
-            }
-        }
-        return null;
+        RouteIndex.Entry entry = routeIndex.get(url);
+        return entry != null ? new ArrayList<>(entry.getUrls()) : null;
+    }
+
+    /**
+     * 按 project / environment / 服务名查找缓存的路由, 不解析 url, 返回的列表不可修改
+     */
+    public RouteIndex.Entry getRouteEntry(String project, String environment, String serviceInterface) {
+        return routeIndex.get(project, environment, serviceInterface);
     }
 
     @Override
@@ -519,7 +516,15 @@ public abstract class AbstractRegistry implements Registry {
             if (logger.isDebugEnabled()) {
                 logger.debug("properties set property key {} value {}", url.getServiceKey(), buf.toString());
             }
-            properties.setProperty(url.getServiceKey(), buf.toString());
+            RouteIndex previous;
+            RouteIndex current;
+            synchronized (routeIndexLock) {
+                properties.setProperty(url.getServiceKey(), buf.toString());
+                previous = routeIndex;
+                current = routeIndex.with(url.getServiceKey(), buf.toString());
+                routeIndex = current;
+            }
+            evictDroppedEndpoints(previous.get(url), current);
             long version = lastCacheChanged.incrementAndGet();
             if (syncSaveFile) {
                 doSaveProperties(version);
@@ -531,6 +536,18 @@ public abstract class AbstractRegistry implements Registry {
         }
     }
 
+    /**
+     * 删除的地址不再出现在任何路由中时, 清理其调用统计
+     */
+    private void evictDroppedEndpoints(RouteIndex.Entry before, RouteIndex current) {
+        if (before == null) {
+            return;
+        }
+        Set<String> dropped = before.getAddresses();
+        dropped.removeAll(current.getAddresses());
+        dropped.forEach(EndpointStats::remove);
+    }
+
     @Override
     public void destroy() {
         if (logger.isInfoEnabled()) {
@@ -234,6 +234,8 @@ public interface Constants {
 
     String WEIGHT_KEY = "weight";
 
+    String LOADBALANCE_KEY = "loadbalance";
+
     String COMPATIBLE_CONFIG_KEY = "compatible_config";
 
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.register.common;
+
+import com.webank.ai.fate.register.url.URL;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongFunction;
+
+import static com.webank.ai.fate.register.common.Constants.EMPTY_PROTOCOL;
+import static com.webank.ai.fate.register.common.Constants.JMX_PROTOCOL_KEY;
+
+/**
+ * 注册中心缓存的路由索引, 按 project / environment / 服务名 三级索引已解析的 url.
+ * <p>
+ * 索引不可变, 注册中心通知时复制受影响的路径生成新索引并整体替换 (copy-on-write),
+ * 路由时只做 hash 查找, 不再遍历 Properties, 也不再重复解析 url 字符串
+ */
+public final class RouteIndex {
+
+    public static final RouteIndex EMPTY = new RouteIndex(Collections.emptyMap());
+
+    private final Map<String, Map<String, Map<String, Entry>>> index;
+
+    private RouteIndex(Map<String, Map<String, Map<String, Entry>>> index) {
+        this.index = index;
+    }
+
+    public static RouteIndex build(Properties properties) {
+        RouteIndex routeIndex = EMPTY;
+        for (String key : properties.stringPropertyNames()) {
+            routeIndex = routeIndex.with(key, properties.getProperty(key));
+        }
+        return routeIndex;
+    }
+
+    public Entry get(String project, String environment, String serviceInterface) {
+        Map<String, Map<String, Entry>> environments = index.get(project);
+        if (environments == null) {
+            return null;
+        }
+        Map<String, Entry> services = environments.get(environment);
+        if (services == null) {
+            return null;
+        }
+        return services.get(serviceInterface);
+    }
+
+    public Entry get(URL url) {
+        return get(url.getProject(), url.getEnvironment(), url.getServiceInterface());
+    }
+
+    /**
+     * 所有可用 url 的 host:port
+     */
+    public Set<String> getAddresses() {
+        Set<String> addresses = new HashSet<>();
+        for (Map<String, Map<String, Entry>> environments : index.values()) {
+            for (Map<String, Entry> services : environments.values()) {
+                for (Entry entry : services.values()) {
+                    addresses.addAll(entry.getAddresses());
+                }
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * 返回替换了 serviceKey 对应 url 列表的新索引, 原索引不变
+     *
+     * @param serviceKey project/environment/服务名, 即 {@link URL#getServiceKey()}
+     * @param value      空格分隔的 url 字符串, 与缓存文件中的格式一致
+     */
+    public RouteIndex with(String serviceKey, String value) {
+        if (serviceKey == null || serviceKey.length() == 0
+                || !(Character.isLetter(serviceKey.charAt(0)) || serviceKey.charAt(0) == '_')) {
+            return this;
+        }
+        int serviceIndex = serviceKey.lastIndexOf('/');
+        int environmentIndex = serviceIndex > 0 ? serviceKey.lastIndexOf('/', serviceIndex - 1) : -1;
+        if (environmentIndex <= 0) {
+            return this;
+        }
+        String project = serviceKey.substring(0, environmentIndex);
+        String environment = serviceKey.substring(environmentIndex + 1, serviceIndex);
+        String serviceInterface = serviceKey.substring(serviceIndex + 1);
+
+        Map<String, Map<String, Map<String, Entry>>> newIndex = new HashMap<>(index);
+        Map<String, Map<String, Entry>> environments = new HashMap<>(index.getOrDefault(project, Collections.emptyMap()));
+        Map<String, Entry> services = new HashMap<>(environments.getOrDefault(environment, Collections.emptyMap()));
+        List<URL> urls = parse(value);
+        if (urls.isEmpty()) {
+            services.remove(serviceInterface);
+        } else {
+            services.put(serviceInterface, new Entry(urls));
+        }
+        environments.put(environment, Collections.unmodifiableMap(services));
+        newIndex.put(project, Collections.unmodifiableMap(environments));
+        return new RouteIndex(Collections.unmodifiableMap(newIndex));
+    }
+
+    private static List<URL> parse(String value) {
+        if (value == null || value.trim().length() == 0) {
+            return Collections.emptyList();
+        }
+        String[] arr = value.trim().split("\\s+");
+        List<URL> urls = new ArrayList<>(arr.length);
+        for (String u : arr) {
+            // for jmx url
+            if (u.startsWith(JMX_PROTOCOL_KEY)) {
+                urls.add(URL.parseJMXServiceUrl(u));
+            } else {
+                urls.add(URL.valueOf(u));
+            }
+        }
+        return urls;
+    }
+
+    public static final class Entry {
+        private final List<URL> urls;
+        private final List<URL> availableUrls;
+        /**
+         * 按请求版本过滤后的结果, 随 Entry 一起在通知时整体失效
+         */
+        private final ConcurrentMap<Long, List<URL>> versionUrls = new ConcurrentHashMap<>();
+
+        Entry(List<URL> urls) {
+            this.urls = Collections.unmodifiableList(urls);
+            List<URL> available = new ArrayList<>(urls.size());
+            for (URL url : urls) {
+                if (!EMPTY_PROTOCOL.equalsIgnoreCase(url.getProtocol())) {
+                    available.add(url);
+                }
+            }
+            this.availableUrls = Collections.unmodifiableList(available);
+        }
+
+        /**
+         * 缓存中的全部 url, 包括 empty 协议的占位 url
+         */
+        public List<URL> getUrls() {
+            return urls;
+        }
+
+        /**
+         * 去掉 empty 协议后的 url
+         */
+        public List<URL> getAvailableUrls() {
+            return availableUrls;
+        }
+
+        /**
+         * 可用 url 的 host:port, 与 EndpointStats 的地址格式一致
+         */
+        public Set<String> getAddresses() {
+            Set<String> addresses = new HashSet<>();
+            for (URL url : availableUrls) {
+                addresses.add(url.getHost() + ":" + url.getPort());
+            }
+            return addresses;
+        }
+
+        public List<URL> getVersionUrls(long version, LongFunction<List<URL>> filter) {
+            List<URL> result = versionUrls.get(version);
+            if (result == null) {
+                result = Collections.unmodifiableList(filter.apply(version));
+                List<URL> previous = versionUrls.putIfAbsent(version, result);
+                if (previous != null) {
+                    result = previous;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -27,6 +27,9 @@ public class DefaultLoadBalanceFactory implements LoadBalancerFactory {
         loaderBalanceRegister = new ConcurrentHashMap();
         loaderBalanceRegister.put(LoadBalanceModel.random_with_weight, new RandomLoadBalance());
         loaderBalanceRegister.put(LoadBalanceModel.random, new RandomLoadBalance());
+        loaderBalanceRegister.put(LoadBalanceModel.least_request, new LatencyAwareLoadBalance(LoadBalanceModel.least_request));
+        loaderBalanceRegister.put(LoadBalanceModel.power_of_two_choices, new LatencyAwareLoadBalance(LoadBalanceModel.power_of_two_choices));
+        loaderBalanceRegister.put(LoadBalanceModel.peak_ewma, new LatencyAwareLoadBalance(LoadBalanceModel.peak_ewma));
     }
 
     @Override
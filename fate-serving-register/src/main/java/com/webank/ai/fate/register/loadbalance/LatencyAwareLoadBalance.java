@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.register.loadbalance;
+
+import com.webank.ai.fate.register.url.URL;
+import com.webank.ai.fate.serving.core.rpc.router.EndpointStats;
+import com.webank.ai.fate.serving.core.rpc.router.LatencyAwareSelector;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 按 gRPC 客户端采集的 {@link EndpointStats} 选址, 不考虑 weight 参数
+ */
+public class LatencyAwareLoadBalance extends AbstractLoadBalancer {
+
+    private static final Function<URL, EndpointStats> STATS_OF = url -> EndpointStats.get(url.getHost(), url.getPort());
+
+    private final LoadBalanceModel model;
+
+    public LatencyAwareLoadBalance(LoadBalanceModel model) {
+        this.model = model;
+    }
+
+    @Override
+    protected List<URL> doSelect(List<URL> urls) {
+        int index;
+        switch (model) {
+            case least_request:
+                index = LatencyAwareSelector.leastRequest(urls, STATS_OF);
+                break;
+            case power_of_two_choices:
+                index = LatencyAwareSelector.powerOfTwoChoices(urls, STATS_OF);
+                break;
+            case peak_ewma:
+                index = LatencyAwareSelector.peakEwma(urls, STATS_OF);
+                break;
+            default:
+                throw new IllegalArgumentException("unsupported load balance model " + model);
+        }
+        return Collections.singletonList(urls.get(index));
+    }
+}
@@ -24,5 +24,17 @@ public enum LoadBalanceModel {
     /**
      * random_with_weight
      */
-    random_with_weight
+    random_with_weight,
+    /**
+     * least_request 在途请求最少
+     */
+    least_request,
+    /**
+     * power_of_two_choices 随机两个中在途请求少的
+     */
+    power_of_two_choices,
+    /**
+     * peak_ewma 随机两个中 peak EWMA 延迟代价小的
+     */
+    peak_ewma
 }
\ No newline at end of file
@@ -63,14 +63,21 @@ public abstract class AbstractRouterService implements RouterService {
         Preconditions.checkArgument(StringUtils.isNotEmpty(environment));
         Preconditions.checkArgument(StringUtils.isNotEmpty(serviceName));
         LoadBalancer loadBalancer = loadBalancerFactory.getLoaderBalancer(LoadBalanceModel.random_with_weight);
+        return doRouter(project, environment, serviceName, loadBalancer);
+    }
+
+    public abstract List<URL> doRouter(URL url, LoadBalancer loadBalancer);
+
+    /**
+     * 子类可以直接按 project / environment / 服务名查找, 默认先拼成 url
+     */
+    protected List<URL> doRouter(String project, String environment, String serviceName, LoadBalancer loadBalancer) {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append(project).append("/").append(environment).append("/").append(serviceName);
         URL paramUrl = URL.valueOf(stringBuilder.toString());
         return doRouter(paramUrl, loadBalancer);
     }
 
-    public abstract List<URL> doRouter(URL url, LoadBalancer loadBalancer);
-
     @Override
     public List<URL> router(URL url) {
         return this.router(url, LoadBalanceModel.random);
@@ -17,25 +17,56 @@
 package com.webank.ai.fate.register.router;
 
 import com.webank.ai.fate.register.common.Constants;
+import com.webank.ai.fate.register.common.RouteIndex;
+import com.webank.ai.fate.register.loadbalance.LoadBalanceModel;
 import com.webank.ai.fate.register.loadbalance.LoadBalancer;
 import com.webank.ai.fate.register.url.CollectionUtils;
 import com.webank.ai.fate.register.url.URL;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class DefaultRouterService extends AbstractRouterService {
     @Override
     public List<URL> doRouter(URL url, LoadBalancer loadBalancer) {
-        List<URL> urls = registry.getCacheUrls(url);
-        if (CollectionUtils.isEmpty(urls)) {
+        RouteIndex.Entry entry = registry.getRouteEntry(url.getProject(), url.getEnvironment(), url.getServiceInterface());
+        String version = url.getParameter(Constants.VERSION_KEY);
+        return select(entry, StringUtils.isNotBlank(version) ? Long.parseLong(version) : null, loadBalancer);
+    }
+
+    @Override
+    protected List<URL> doRouter(String project, String environment, String serviceName, LoadBalancer loadBalancer) {
+        RouteIndex.Entry entry = registry.getRouteEntry(project, environment, serviceName);
+        return select(entry, null, getServiceLoadBalancer(entry, loadBalancer));
+    }
+
+    /**
+     * 服务注册时可以通过 loadbalance 参数指定负载均衡策略, 未指定时使用默认策略
+     */
+    private LoadBalancer getServiceLoadBalancer(RouteIndex.Entry entry, LoadBalancer defaultLoadBalancer) {
+        if (entry == null || entry.getAvailableUrls().isEmpty()) {
+            return defaultLoadBalancer;
+        }
+        String model = entry.getAvailableUrls().get(0).getParameter(Constants.LOADBALANCE_KEY);
+        if (StringUtils.isBlank(model)) {
+            return defaultLoadBalancer;
+        }
+        try {
+            return loadBalancerFactory.getLoaderBalancer(LoadBalanceModel.valueOf(model));
+        } catch (IllegalArgumentException e) {
+            logger.warn("unknown load balance model {}, use default", model);
+            return defaultLoadBalancer;
+        }
+    }
+
+    private List<URL> select(RouteIndex.Entry entry, Long version, LoadBalancer loadBalancer) {
+        if (entry == null) {
             return null;
         }
-        urls = filterEmpty(urls);
-        String version = url.getParameter(Constants.VERSION_KEY);
-        if (CollectionUtils.isNotEmpty(urls) && StringUtils.isNotBlank(version)) {
-            urls = filterVersion(urls, Long.parseLong(version));
+        // 索引中已去掉 empty 协议, 按版本过滤的结果也在索引中缓存
+        List<URL> urls = entry.getAvailableUrls();
+        if (CollectionUtils.isNotEmpty(urls) && version != null) {
+            urls = entry.getVersionUrls(version, v -> filterVersion(entry.getAvailableUrls(), v));
         }
         List<URL> resultUrls = loadBalancer.select(urls);
         if (logger.isDebugEnabled()) {
@@ -43,19 +74,4 @@ public class DefaultRouterService extends AbstractRouterService {
         }
         return resultUrls;
     }
-
-    private List<URL> filterEmpty(List<URL> urls) {
-        List<URL> resultList = new ArrayList<>();
-        if (urls != null) {
-            urls.forEach(url -> {
-                if (!url.getProtocol().equalsIgnoreCase(Constants.EMPTY_PROTOCOL)) {
-                    resultList.add(url);
-                }
-            });
-        }
-        return resultList;
-    }
 }
-
-
-
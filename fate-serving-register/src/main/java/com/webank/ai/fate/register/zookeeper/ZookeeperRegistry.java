@@ -22,6 +22,7 @@ import com.google.common.collect.Sets;
 import com.webank.ai.fate.register.annotions.RegisterService;
 import com.webank.ai.fate.register.common.*;
 import com.webank.ai.fate.register.interfaces.NotifyListener;
+import com.webank.ai.fate.register.loadbalance.LoadBalanceModel;
 import com.webank.ai.fate.register.url.CollectionUtils;
 import com.webank.ai.fate.register.url.URL;
 import com.webank.ai.fate.register.url.UrlUtils;
@@ -54,7 +55,8 @@ public class ZookeeperRegistry extends FailbackRegistry {
     Set<String> registedString = Sets.newHashSet();
     Set<String> anyServices = new HashSet<String>();
     private String environment;
-    private Set<String> dynamicEnvironments = new HashSet<String>();
+    // 模型并行恢复时会并发添加, register 时遍历
+    private Set<String> dynamicEnvironments = Sets.newConcurrentHashSet();
     private String project;
     private int port;
 
@@ -249,6 +251,9 @@ public class ZookeeperRegistry extends FailbackRegistry {
         String param = "?";
         RouterMode routerMode = registerService.routerMode();
         param = param + Constants.ROUTER_MODE + "=" + routerMode.name();
+        if (registerService.loadBalance() != LoadBalanceModel.random_with_weight) {
+            param = param + "&" + Constants.LOADBALANCE_KEY + "=" + registerService.loadBalance().name();
+        }
         param = param + "&";
         param = param + Constants.TIMESTAMP_KEY + "=" + System.currentTimeMillis();
         String key = serviceName;
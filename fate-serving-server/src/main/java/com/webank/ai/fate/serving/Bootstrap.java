@@ -95,20 +95,37 @@ public class Bootstrap {
             MetaInfo.PROPERTY_REDIS_MAX_IDLE = environment.getProperty(Dict.PROPERTY_REDIS_MAX_IDLE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_REDIS_MAX_IDLE)) : 2;
             MetaInfo.PROPERTY_REDIS_EXPIRE = environment.getProperty(Dict.PROPERTY_REDIS_EXPIRE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_REDIS_EXPIRE)) : 3000;
             MetaInfo.PROPERTY_REDIS_CLUSTER_NODES = environment.getProperty(Dict.PROPERTY_REDIS_CLUSTER_NODES);
+            MetaInfo.PROPERTY_REDIS_BATCH_CHUNK_SIZE = environment.getProperty(Dict.PROPERTY_REDIS_BATCH_CHUNK_SIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_REDIS_BATCH_CHUNK_SIZE)) : 500;
             MetaInfo.PROPERTY_LOCAL_CACHE_MAXSIZE = environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_MAXSIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_MAXSIZE)) : 10000;
             MetaInfo.PROPERTY_LOCAL_CACHE_EXPIRE = environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_EXPIRE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_EXPIRE)) : 30;
             MetaInfo.PROPERTY_LOCAL_CACHE_INTERVAL = environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_INTERVAL) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_INTERVAL)) : 3;
+            MetaInfo.PROPERTY_LOCAL_CACHE_MAXBYTES = environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_MAXBYTES) != null ? Long.valueOf(environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_MAXBYTES)) : 0L;
+            MetaInfo.PROPERTY_LOCAL_CACHE_NEGATIVE_EXPIRE = environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_NEGATIVE_EXPIRE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_LOCAL_CACHE_NEGATIVE_EXPIRE)) : 3;
+            MetaInfo.PROPERTY_ASYNC_EVENT_RINGBUFFER_SIZE = environment.getProperty(Dict.PROPERTY_ASYNC_EVENT_RINGBUFFER_SIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_ASYNC_EVENT_RINGBUFFER_SIZE)) : 8192;
+            MetaInfo.PROPERTY_ASYNC_EVENT_WAIT_STRATEGY = environment.getProperty(Dict.PROPERTY_ASYNC_EVENT_WAIT_STRATEGY, "sleeping");
+            MetaInfo.PROPERTY_INFERENCE_POOL_CORE_SIZE = environment.getProperty(Dict.PROPERTY_INFERENCE_POOL_CORE_SIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_INFERENCE_POOL_CORE_SIZE)) : processors;
+            MetaInfo.PROPERTY_INFERENCE_POOL_MAX_SIZE = environment.getProperty(Dict.PROPERTY_INFERENCE_POOL_MAX_SIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_INFERENCE_POOL_MAX_SIZE)) : 200;
+            MetaInfo.PROPERTY_INFERENCE_POOL_QUEUE_SIZE = environment.getProperty(Dict.PROPERTY_INFERENCE_POOL_QUEUE_SIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_INFERENCE_POOL_QUEUE_SIZE)) : 1000;
+            MetaInfo.PROPERTY_INFERENCE_USE_VIRTUAL_THREAD = environment.getProperty(Dict.PROPERTY_INFERENCE_USE_VIRTUAL_THREAD) != null ? Boolean.valueOf(environment.getProperty(Dict.PROPERTY_INFERENCE_USE_VIRTUAL_THREAD)) : false;
+            MetaInfo.PROPERTY_GRPC_CHANNEL_MAX_STREAMS = environment.getProperty(Dict.PROPERTY_GRPC_CHANNEL_MAX_STREAMS) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_GRPC_CHANNEL_MAX_STREAMS)) : 100;
+            MetaInfo.PROPERTY_GRPC_CHANNEL_MAX_SIZE = environment.getProperty(Dict.PROPERTY_GRPC_CHANNEL_MAX_SIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_GRPC_CHANNEL_MAX_SIZE)) : 32;
             MetaInfo.PROPERTY_BATCH_SPLIT_SIZE = environment.getProperty(Dict.PROPERTY_BATCH_SPLIT_SIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_BATCH_SPLIT_SIZE)) : 100;
-            MetaInfo.PROPERTY_LR_SPLIT_SIZE = environment.getProperty(Dict.PROPERTY_LR_SPLIT_SIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_LR_SPLIT_SIZE)) : 500;
+            MetaInfo.PROPERTY_BATCH_COLUMNAR_ENABLE = environment.getProperty(Dict.PROPERTY_BATCH_COLUMNAR_ENABLE) != null ? Boolean.valueOf(environment.getProperty(Dict.PROPERTY_BATCH_COLUMNAR_ENABLE)) : true;
             MetaInfo.PROPERTY_SERVICE_ROLE_NAME = environment.getProperty(Dict.PROPERTY_SERVICE_ROLE_NAME, Dict.PROPERTY_SERVICE_ROLE_NAME_DEFAULT_VALUE);
             MetaInfo.PROPERTY_MODEL_TRANSFER_URL = environment.getProperty(Dict.PROPERTY_MODEL_TRANSFER_URL);
             MetaInfo.PROPERTY_MODEL_CACHE_PATH = StringUtils.isNotBlank(environment.getProperty(Dict.PROPERTY_MODEL_CACHE_PATH)) ? environment.getProperty(Dict.PROPERTY_MODEL_CACHE_PATH) : MetaInfo.PROPERTY_ROOT_PATH;
+            MetaInfo.PROPERTY_MODEL_RESTORE_THREADS = environment.getProperty(Dict.PROPERTY_MODEL_RESTORE_THREADS) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_MODEL_RESTORE_THREADS)) : processors;
+            MetaInfo.PROPERTY_MODEL_RESTORE_PRIORITY = environment.getProperty(Dict.PROPERTY_MODEL_RESTORE_PRIORITY, "");
+            MetaInfo.PROPERTY_FEATURE_CACHE_ENABLE = environment.getProperty(Dict.PROPERTY_FEATURE_CACHE_ENABLE) != null ? Boolean.valueOf(environment.getProperty(Dict.PROPERTY_FEATURE_CACHE_ENABLE)) : false;
+            MetaInfo.PROPERTY_FEATURE_CACHE_MAX_SIZE = environment.getProperty(Dict.PROPERTY_FEATURE_CACHE_MAX_SIZE) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_FEATURE_CACHE_MAX_SIZE)) : 10000;
+            MetaInfo.PROPERTY_FEATURE_CACHE_TTL_SECONDS = environment.getProperty(Dict.PROPERTY_FEATURE_CACHE_TTL_SECONDS) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_FEATURE_CACHE_TTL_SECONDS)) : 60;
+            MetaInfo.PROPERTY_FEATURE_CACHE_REFRESH_SECONDS = environment.getProperty(Dict.PROPERTY_FEATURE_CACHE_REFRESH_SECONDS) != null ? Integer.valueOf(environment.getProperty(Dict.PROPERTY_FEATURE_CACHE_REFRESH_SECONDS)) : 0;
             MetaInfo.PROPERTY_ACL_ENABLE = Boolean.valueOf(environment.getProperty(Dict.PROPERTY_ACL_ENABLE, "false"));
             MetaInfo.PROPERTY_ACL_USERNAME = environment.getProperty(Dict.PROPERTY_ACL_USERNAME);
             MetaInfo.PROPERTY_ACL_PASSWORD = environment.getProperty(Dict.PROPERTY_ACL_PASSWORD);
             MetaInfo.PROPERTY_PRINT_INPUT_DATA = environment.getProperty(Dict.PROPERTY_PRINT_INPUT_DATA) != null ? Boolean.valueOf(environment.getProperty(Dict.PROPERTY_PRINT_INPUT_DATA)) : false;
             MetaInfo.PROPERTY_PRINT_OUTPUT_DATA = environment.getProperty(Dict.PROPERTY_PRINT_OUTPUT_DATA) != null ? Boolean.valueOf(environment.getProperty(Dict.PROPERTY_PRINT_OUTPUT_DATA)) : false;
-            MetaInfo.PROPERTY_LR_USE_PARALLEL = environment.getProperty(Dict.PROPERTY_LR_USE_PARALLEL) != null ? Boolean.valueOf(environment.getProperty(Dict.PROPERTY_LR_USE_PARALLEL)) : false;
+            MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC = environment.getProperty(Dict.PROPERTY_BATCH_INFERENCE_BODY_CODEC, Dict.BODY_CODEC_JSON);
         } catch (Exception e) {
             e.printStackTrace();
             logger.error("init metainfo error", e);
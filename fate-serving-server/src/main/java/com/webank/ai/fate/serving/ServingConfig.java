@@ -21,9 +21,10 @@ import com.webank.ai.fate.register.router.DefaultRouterService;
 import com.webank.ai.fate.register.router.RouterService;
 import com.webank.ai.fate.register.zookeeper.ZookeeperRegistry;
 import com.webank.ai.fate.serving.common.cache.Cache;
-import com.webank.ai.fate.serving.common.cache.ExpiringLRUCache;
+import com.webank.ai.fate.serving.common.cache.NearCache;
 import com.webank.ai.fate.serving.common.cache.RedisCache;
 import com.webank.ai.fate.serving.common.cache.RedisClusterCache;
+import com.webank.ai.fate.serving.common.cache.WindowTinyLfuCache;
 import com.webank.ai.fate.serving.common.flow.FlowCounterManager;
 import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.bean.MetaInfo;
@@ -65,45 +66,19 @@ public class ServingConfig {
     }
 
     @Bean
-    public Cache cache() {
+    public Cache cache(FlowCounterManager flowCounterManager) {
         String cacheType = MetaInfo.PROPERTY_CACHE_TYPE;
         logger.info("cache type is {},prepare to build cache", cacheType);
         Cache cache = null;
         switch (cacheType) {
             case "redis":
-                String ip = MetaInfo.PROPERTY_REDIS_IP;
-                String password = MetaInfo.PROPERTY_REDIS_PASSWORD;
-                Integer port = MetaInfo.PROPERTY_REDIS_PORT;
-                Integer timeout = MetaInfo.PROPERTY_REDIS_TIMEOUT;
-                Integer maxTotal = MetaInfo.PROPERTY_REDIS_MAX_TOTAL;
-                Integer maxIdle = MetaInfo.PROPERTY_REDIS_MAX_IDLE;
-                Integer expire = MetaInfo.PROPERTY_REDIS_EXPIRE;
-                String clusterNodes = MetaInfo.PROPERTY_REDIS_CLUSTER_NODES;
-
-                RedisCache redisCache;
-                if (StringUtils.isNotBlank(clusterNodes)) {
-                    redisCache = new RedisClusterCache(clusterNodes);
-                    logger.info("redis cache mode: cluster");
-                } else {
-                    redisCache = new RedisCache();
-                    logger.info("redis cache mode: standalone");
-                }
-                redisCache.setExpireTime(timeout);
-                redisCache.setMaxTotal(maxTotal);
-                redisCache.setMaxIdel(maxIdle);
-                redisCache.setHost(ip);
-                redisCache.setPort(port);
-                redisCache.setExpireTime(expire != null ? expire : -1);
-                redisCache.setPassword(password);
-                redisCache.init();
-                cache = redisCache;
+                cache = buildRedisCache();
                 break;
             case "local":
-                Integer maxSize = MetaInfo.PROPERTY_LOCAL_CACHE_MAXSIZE;
-                Integer expireTime = MetaInfo.PROPERTY_LOCAL_CACHE_EXPIRE;
-                Integer interval = MetaInfo.PROPERTY_LOCAL_CACHE_INTERVAL;
-                ExpiringLRUCache lruCache = new ExpiringLRUCache(maxSize, expireTime, interval);
-                cache = lruCache;
+                cache = buildLocalCache();
+                break;
+            case "near":
+                cache = new NearCache(buildLocalCache(), buildRedisCache(), MetaInfo.PROPERTY_LOCAL_CACHE_NEGATIVE_EXPIRE, flowCounterManager);
                 break;
             default:
         }
@@ -111,6 +86,46 @@ public class ServingConfig {
         return cache;
     }
 
+    private Cache buildRedisCache() {
+        String ip = MetaInfo.PROPERTY_REDIS_IP;
+        String password = MetaInfo.PROPERTY_REDIS_PASSWORD;
+        Integer port = MetaInfo.PROPERTY_REDIS_PORT;
+        Integer timeout = MetaInfo.PROPERTY_REDIS_TIMEOUT;
+        Integer maxTotal = MetaInfo.PROPERTY_REDIS_MAX_TOTAL;
+        Integer maxIdle = MetaInfo.PROPERTY_REDIS_MAX_IDLE;
+        Integer expire = MetaInfo.PROPERTY_REDIS_EXPIRE;
+        String clusterNodes = MetaInfo.PROPERTY_REDIS_CLUSTER_NODES;
+
+        RedisCache redisCache;
+        if (StringUtils.isNotBlank(clusterNodes)) {
+            redisCache = new RedisClusterCache(clusterNodes);
+            logger.info("redis cache mode: cluster");
+        } else {
+            redisCache = new RedisCache();
+            logger.info("redis cache mode: standalone");
+        }
+        redisCache.setExpireTime(timeout);
+        redisCache.setMaxTotal(maxTotal);
+        redisCache.setMaxIdel(maxIdle);
+        redisCache.setHost(ip);
+        redisCache.setPort(port);
+        redisCache.setExpireTime(expire != null ? expire : -1);
+        redisCache.setPassword(password);
+        redisCache.setBatchChunkSize(MetaInfo.PROPERTY_REDIS_BATCH_CHUNK_SIZE);
+        redisCache.init();
+        return redisCache;
+    }
+
+    private Cache buildLocalCache() {
+        Integer maxSize = MetaInfo.PROPERTY_LOCAL_CACHE_MAXSIZE;
+        Long maxBytes = MetaInfo.PROPERTY_LOCAL_CACHE_MAXBYTES;
+        Integer expireTime = MetaInfo.PROPERTY_LOCAL_CACHE_EXPIRE;
+        if (maxBytes != null && maxBytes > 0) {
+            return new WindowTinyLfuCache(maxBytes, WindowTinyLfuCache.ESTIMATED_BYTES, expireTime);
+        }
+        return new WindowTinyLfuCache(maxSize, expireTime);
+    }
+
     @Bean
     @Conditional(UseZkCondition.class)
     @ConditionalOnBean(ZookeeperRegistry.class)
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.common.interceptors;
+
+import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
+import com.webank.ai.fate.serving.common.rpc.core.Interceptor;
+import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
+import com.webank.ai.fate.serving.core.bean.Context;
+import org.springframework.stereotype.Service;
+
+/**
+ * 截止时间已过的请求在排队之后、特征获取和推理之前直接失败
+ */
+@Service
+public class DeadlineInterceptor implements Interceptor {
+
+    @Override
+    public void doPreProcess(Context context, InboundPackage inboundPackage, OutboundPackage outboundPackage) throws Exception {
+        DeadlineUtil.check(context, context.getServiceName());
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package com.webank.ai.fate.serving.event;
 
+import com.google.common.collect.Lists;
 import com.webank.ai.fate.serving.common.async.AbstractAsyncMessageProcessor;
 import com.webank.ai.fate.serving.common.async.AsyncMessageEvent;
 import com.webank.ai.fate.serving.common.async.Subscribe;
@@ -34,10 +35,19 @@ public class BatchCacheEventHandler extends AbstractAsyncMessageProcessor {
     @Autowired
     Cache cache;
 
-    @Subscribe(value = Dict.EVENT_SET_BATCH_INFERENCE_CACHE)
-    public void handleMetricsEvent(AsyncMessageEvent event) {
-        List<Cache.DataWrapper> lists = (List<Cache.DataWrapper>) event.getData();
-        if (lists != null) {
+    /**
+     * 同一批取到的事件合并为一次批量写, redis 下为一次 pipeline
+     */
+    @Subscribe(value = Dict.EVENT_SET_BATCH_INFERENCE_CACHE, batch = true)
+    public void handleMetricsEvent(List<AsyncMessageEvent> events) {
+        List<Cache.DataWrapper> lists = Lists.newArrayList();
+        for (AsyncMessageEvent event : events) {
+            List<Cache.DataWrapper> data = (List<Cache.DataWrapper>) event.getData();
+            if (data != null) {
+                lists.addAll(data);
+            }
+        }
+        if (!lists.isEmpty()) {
             cache.put(lists);
         }
     }
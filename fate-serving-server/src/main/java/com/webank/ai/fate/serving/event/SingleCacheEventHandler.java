@@ -16,6 +16,7 @@
 
 package com.webank.ai.fate.serving.event;
 
+import com.google.common.collect.Lists;
 import com.webank.ai.fate.serving.common.async.AbstractAsyncMessageProcessor;
 import com.webank.ai.fate.serving.common.async.AsyncMessageEvent;
 import com.webank.ai.fate.serving.common.async.Subscribe;
@@ -27,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -35,11 +37,20 @@ public class SingleCacheEventHandler extends AbstractAsyncMessageProcessor {
     @Autowired
     Cache cache;
 
-    @Subscribe(value = Dict.EVENT_SET_INFERENCE_CACHE)
-    public void handleMetricsEvent(AsyncMessageEvent event) {
-        CacheEventData cacheEventData = (CacheEventData) event.getData();
-        Map map = (Map) cacheEventData.getData();
-        cache.put(cacheEventData.getKey(), JsonUtil.object2Json(map));
+    /**
+     * 同一批取到的事件合并为一次批量写, redis 下为一次 pipeline
+     */
+    @Subscribe(value = Dict.EVENT_SET_INFERENCE_CACHE, batch = true)
+    public void handleMetricsEvent(List<AsyncMessageEvent> events) {
+        List<Cache.DataWrapper> lists = Lists.newArrayListWithCapacity(events.size());
+        for (AsyncMessageEvent event : events) {
+            CacheEventData cacheEventData = (CacheEventData) event.getData();
+            Map map = (Map) cacheEventData.getData();
+            lists.add(new Cache.DataWrapper(cacheEventData.getKey(), JsonUtil.object2Json(map)));
+        }
+        if (!lists.isEmpty()) {
+            cache.put(lists);
+        }
     }
 
 }
@@ -24,24 +24,26 @@ import com.webank.ai.fate.register.annotions.RegisterService;
 import com.webank.ai.fate.serving.common.bean.ServingServerContext;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
-import com.webank.ai.fate.serving.core.bean.BatchInferenceResult;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
 import com.webank.ai.fate.serving.core.bean.Context;
-import com.webank.ai.fate.serving.core.bean.ReturnResult;
+import com.webank.ai.fate.serving.core.bean.MetaInfo;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
 import com.webank.ai.fate.serving.core.utils.ObjectTransform;
-import com.webank.ai.fate.serving.core.utils.ThreadPoolUtil;
 import com.webank.ai.fate.serving.guest.provider.GuestBatchInferenceProvider;
 import com.webank.ai.fate.serving.guest.provider.GuestSingleInferenceProvider;
 import io.grpc.stub.StreamObserver;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class GuestInferenceService extends InferenceServiceGrpc.InferenceServiceImplBase {
     static final String BATCH_INFERENCE = "batchInference";
     static final String INFERENCE = "inference";
-    private static ThreadPoolExecutor executor = ThreadPoolUtil.newThreadPoolExecutor();
+    private static ExecutorService executor = ManagedExecutors.newRequestExecutor("guest-inference", MetaInfo.PROPERTY_INFERENCE_POOL_CORE_SIZE,
+            MetaInfo.PROPERTY_INFERENCE_POOL_MAX_SIZE, MetaInfo.PROPERTY_INFERENCE_POOL_QUEUE_SIZE, MetaInfo.PROPERTY_INFERENCE_USE_VIRTUAL_THREAD);
     @Autowired
     GuestBatchInferenceProvider guestBatchInferenceProvider;
     @Autowired
@@ -50,30 +52,40 @@ public class GuestInferenceService extends InferenceServiceGrpc.InferenceService
     @Override
     @RegisterService(useDynamicEnvironment = true, serviceName = INFERENCE)
     public void inference(InferenceMessage req, StreamObserver<InferenceMessage> responseObserver) {
+        long deadline = DeadlineUtil.grpcDeadline();
         executor.submit(() -> {
-            InferenceMessage.Builder response = InferenceMessage.newBuilder();
             Context context = prepareContext();
+            context.setDeadline(deadline);
             InboundPackage inboundPackage = new InboundPackage();
             inboundPackage.setBody(req);
-            OutboundPackage outboundPackage = this.guestSingleInferenceProvider.service(context, inboundPackage);
-            ReturnResult returnResult = (ReturnResult) outboundPackage.getData();
-            response.setBody(ByteString.copyFrom(ObjectTransform.bean2Json(returnResult).getBytes()));
-            responseObserver.onNext(response.build());
-            responseObserver.onCompleted();
+            reply(this.guestSingleInferenceProvider.serviceAsync(context, inboundPackage), responseObserver);
         });
     }
 
     @Override
     @RegisterService(useDynamicEnvironment = true, serviceName = BATCH_INFERENCE)
     public void batchInference(InferenceServiceProto.InferenceMessage req, StreamObserver<InferenceServiceProto.InferenceMessage> responseObserver) {
+        long deadline = DeadlineUtil.grpcDeadline();
         executor.submit(() -> {
-            InferenceMessage.Builder response = InferenceMessage.newBuilder();
             Context context = prepareContext();
+            context.setDeadline(deadline);
             InboundPackage inboundPackage = new InboundPackage();
             inboundPackage.setBody(req);
-            OutboundPackage outboundPackage = this.guestBatchInferenceProvider.service(context, inboundPackage);
-            BatchInferenceResult returnResult = (BatchInferenceResult) outboundPackage.getData();
-            response.setBody(ByteString.copyFrom(ObjectTransform.bean2Json(returnResult).getBytes()));
+            reply(this.guestBatchInferenceProvider.serviceAsync(context, inboundPackage), responseObserver);
+        });
+    }
+
+    /**
+     * 结果在远端返回的回调中写回, 请求线程提交后即释放
+     */
+    private void reply(CompletableFuture<OutboundPackage> future, StreamObserver<InferenceMessage> responseObserver) {
+        future.whenComplete((outboundPackage, e) -> {
+            if (e != null) {
+                responseObserver.onError(e);
+                return;
+            }
+            InferenceMessage.Builder response = InferenceMessage.newBuilder();
+            response.setBody(ByteString.copyFrom(ObjectTransform.bean2Json(outboundPackage.getData()).getBytes()));
             responseObserver.onNext(response.build());
             responseObserver.onCompleted();
         });
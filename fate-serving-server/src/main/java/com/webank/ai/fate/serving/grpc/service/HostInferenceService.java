@@ -25,25 +25,30 @@ import com.webank.ai.fate.register.common.Role;
 import com.webank.ai.fate.serving.common.bean.ServingServerContext;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
+import com.webank.ai.fate.serving.core.bean.BatchInferenceResult;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.core.bean.MetaInfo;
 import com.webank.ai.fate.serving.core.bean.ReturnResult;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
 import com.webank.ai.fate.serving.core.utils.JsonUtil;
-import com.webank.ai.fate.serving.core.utils.ThreadPoolUtil;
 import com.webank.ai.fate.serving.host.provider.HostBatchInferenceProvider;
 import com.webank.ai.fate.serving.host.provider.HostSingleInferenceProvider;
+import com.webank.ai.fate.serving.rpc.BatchInferenceCodec;
 import io.grpc.stub.StreamObserver;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class HostInferenceService extends DataTransferServiceGrpc.DataTransferServiceImplBase {
-    private static ThreadPoolExecutor executor = ThreadPoolUtil.newThreadPoolExecutor();
+    private static ExecutorService executor = ManagedExecutors.newRequestExecutor("host-inference", MetaInfo.PROPERTY_INFERENCE_POOL_CORE_SIZE,
+            MetaInfo.PROPERTY_INFERENCE_POOL_MAX_SIZE, MetaInfo.PROPERTY_INFERENCE_POOL_QUEUE_SIZE, MetaInfo.PROPERTY_INFERENCE_USE_VIRTUAL_THREAD);
     @Autowired
     HostBatchInferenceProvider hostBatchInferenceProvider;
     @Autowired
@@ -52,9 +57,13 @@ public class HostInferenceService extends DataTransferServiceGrpc.DataTransferSe
     @Override
     @RegisterService(serviceName = Dict.UNARYCALL, useDynamicEnvironment = true, role = Role.HOST)
     public void unaryCall(Proxy.Packet req, StreamObserver<Proxy.Packet> responseObserver) {
+        // 截止时间从收到请求时开始计算, 包含在线程池中排队的时间
+        long deadline = DeadlineUtil.earliest(DeadlineUtil.grpcDeadline(),
+                DeadlineUtil.fromBudget(System.currentTimeMillis(), req.getHeader().getConf().getOverallTimeout()));
         executor.submit(() -> {
             String actionType = req.getHeader().getCommand().getName();
             ServingServerContext context = (ServingServerContext) prepareContext();
+            context.setDeadline(deadline);
             String namespace = req.getHeader().getTask().getModel().getNamespace();
             String tableName = req.getHeader().getTask().getModel().getTableName();
             context.setActionType(actionType);
@@ -70,6 +79,8 @@ public class HostInferenceService extends DataTransferServiceGrpc.DataTransferSe
             context.setModelNamesapce(namespace);
             context.setModelTableName(tableName);
             context.setCaseId(req.getAuth().getNonce());
+            String bodyCodec = req.getHeader().getBodyCodec();
+            context.putData(Dict.BODY_CODEC, bodyCodec);
             Object result = null;
             byte[] data = req.getBody().getValue().toByteArray();
 
@@ -99,9 +110,20 @@ public class HostInferenceService extends DataTransferServiceGrpc.DataTransferSe
                     break;
             }
             Packet.Builder packetBuilder = Packet.newBuilder();
-            packetBuilder.setBody(Proxy.Data.newBuilder()
-                    .setValue(ByteString.copyFrom(JsonUtil.object2Json(result).getBytes()))
-                    .build());
+            // 在响应头中声明自身版本, guest 据此决定后续批量请求的编码方式
+            Proxy.Metadata.Builder headerBuilder = Proxy.Metadata.newBuilder().setOperator(Long.toString(MetaInfo.CURRENT_VERSION));
+            if (result instanceof BatchInferenceResult && BatchInferenceCodec.isProtobuf(bodyCodec)) {
+                //按请求使用的编码方式返回
+                packetBuilder.setHeader(headerBuilder.setBodyCodec(bodyCodec).build());
+                packetBuilder.setBody(Proxy.Data.newBuilder()
+                        .setValue(ByteString.copyFrom(BatchInferenceCodec.encodeResult((BatchInferenceResult) result)))
+                        .build());
+            } else {
+                packetBuilder.setHeader(headerBuilder.build());
+                packetBuilder.setBody(Proxy.Data.newBuilder()
+                        .setValue(ByteString.copyFrom(JsonUtil.object2Json(result).getBytes()))
+                        .build());
+            }
             responseObserver.onNext(packetBuilder.build());
             responseObserver.onCompleted();
         });
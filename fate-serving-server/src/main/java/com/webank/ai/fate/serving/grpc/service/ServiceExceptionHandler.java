@@ -20,6 +20,8 @@ import io.grpc.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.RejectedExecutionException;
+
 public class ServiceExceptionHandler implements ServerInterceptor {
     private static final Logger logger = LoggerFactory.getLogger(ServiceExceptionHandler.class);
 
@@ -32,6 +34,10 @@ public class ServiceExceptionHandler implements ServerInterceptor {
             public void onHalfClose() {
                 try {
                     super.onHalfClose();
+                } catch (RejectedExecutionException e) {
+                    logger.warn("service overloaded, {}", e.getMessage());
+                    call.close(Status.RESOURCE_EXHAUSTED
+                            .withDescription(e.getMessage()), new Metadata());
                 } catch (Exception e) {
                     logger.error("ServiceException:", e);
                     call.close(Status.INTERNAL
@@ -52,6 +52,7 @@ public class GuestModelInterceptor implements Interceptor {
             throw new ModelNullException("can not find model by service id " + serviceId);
         }
         ((ServingServerContext) context).setModel(model);
+        modelManager.recordAccess(model);
 
         int times = 1;
         if (context.getServiceName().equalsIgnoreCase(Dict.SERVICENAME_BATCH_INFERENCE)) {
@@ -25,6 +25,8 @@ import com.webank.ai.fate.serving.common.rpc.core.FateService;
 import com.webank.ai.fate.serving.common.rpc.core.FederatedRpcInvoker;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
+import com.webank.ai.fate.serving.common.utils.FutureUtil;
 import com.webank.ai.fate.serving.core.bean.*;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.exceptions.BaseException;
@@ -32,9 +34,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @FateService(name = "batchInference", preChain = {
         "requestOverloadBreaker",
+        "deadlineInterceptor",
         "guestBatchParamInterceptor",
         "guestModelInterceptor",
         "federationRouterInterceptor"
@@ -54,18 +58,39 @@ public class GuestBatchInferenceProvider extends AbstractServingServiceProvider<
         BatchInferenceRequest batchInferenceRequest = (BatchInferenceRequest) inboundPackage.getBody();
         Map futureMap = Maps.newHashMap();
         //guest将请求发送给host？
+        long timeout = DeadlineUtil.limit(context, MetaInfo.PROPERTY_BATCH_INFERENCE_RPC_TIMEOUT);
         model.getFederationModelMap().forEach((hostPartyId, remoteModel) -> {
             BatchHostFederatedParams batchHostFederatedParams = buildBatchHostFederatedParams(context, batchInferenceRequest, model, remoteModel);
             ListenableFuture<BatchInferenceResult> originBatchResultFuture = federatedRpcInvoker.batchInferenceRpcWithCache(context, buildRpcDataWraper(model, remoteModel, batchHostFederatedParams), MetaInfo.PROPERTY_REMOTE_MODEL_INFERENCE_RESULT_CACHE_SWITCH);
             futureMap.put(hostPartyId, originBatchResultFuture);
         });
         //执行推理逻辑
-        BatchInferenceResult batchFederatedResult = modelProcessor.guestBatchInference(context, batchInferenceRequest, futureMap, MetaInfo.PROPERTY_BATCH_INFERENCE_RPC_TIMEOUT);
+        BatchInferenceResult batchFederatedResult = modelProcessor.guestBatchInference(context, batchInferenceRequest, futureMap, timeout);
         batchFederatedResult.setCaseid(context.getCaseId());
         postProcess(context, batchFederatedResult); //result中包含模型相关信息
         return batchFederatedResult;
     }
 
+    @Override
+    protected CompletableFuture<BatchInferenceResult> doServiceAsync(Context context, InboundPackage<BatchInferenceRequest> inboundPackage, OutboundPackage<BatchInferenceResult> outboundPackage) {
+        Model model = ((ServingServerContext) context).getModel();
+        ModelProcessor modelProcessor = model.getModelProcessor();
+        BatchInferenceRequest batchInferenceRequest = inboundPackage.getBody();
+        Map<String, CompletableFuture<BatchInferenceResult>> futureMap = Maps.newHashMap();
+        long timeout = DeadlineUtil.limit(context, MetaInfo.PROPERTY_BATCH_INFERENCE_RPC_TIMEOUT);
+        model.getFederationModelMap().forEach((hostPartyId, remoteModel) -> {
+            BatchHostFederatedParams batchHostFederatedParams = buildBatchHostFederatedParams(context, batchInferenceRequest, model, remoteModel);
+            ListenableFuture<BatchInferenceResult> originBatchResultFuture = federatedRpcInvoker.batchInferenceRpcWithCache(context, buildRpcDataWraper(model, remoteModel, batchHostFederatedParams), MetaInfo.PROPERTY_REMOTE_MODEL_INFERENCE_RESULT_CACHE_SWITCH);
+            futureMap.put(hostPartyId, FutureUtil.toCompletableFuture(originBatchResultFuture, timeout));
+        });
+        return modelProcessor.guestBatchInferenceAsync(context, batchInferenceRequest, futureMap, timeout)
+                .thenApply(batchFederatedResult -> {
+                    batchFederatedResult.setCaseid(context.getCaseId());
+                    postProcess(context, batchFederatedResult);
+                    return batchFederatedResult;
+                });
+    }
+
     @Override
     protected OutboundPackage<BatchInferenceResult> serviceFailInner(Context context, InboundPackage<BatchInferenceRequest> data, Throwable e) {
         OutboundPackage<BatchInferenceResult> outboundPackage = new OutboundPackage<BatchInferenceResult>();
@@ -22,6 +22,8 @@ import com.webank.ai.fate.serving.common.bean.ServingServerContext;
 import com.webank.ai.fate.serving.common.model.Model;
 import com.webank.ai.fate.serving.common.model.ModelProcessor;
 import com.webank.ai.fate.serving.common.rpc.core.*;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
+import com.webank.ai.fate.serving.common.utils.FutureUtil;
 import com.webank.ai.fate.serving.core.bean.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,10 +32,12 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 @FateService(name = "singleInference", preChain = {
         "requestOverloadBreaker",
+        "deadlineInterceptor",
         "guestSingleParamInterceptor",
         "guestModelInterceptor",
         "federationRouterInterceptor"
@@ -58,16 +62,45 @@ public class GuestSingleInferenceProvider extends AbstractServingServiceProvider
         remoteInferenceRequest.setSendToRemoteFeatureData(inferenceRequest.getSendToRemoteFeatureData());
 
         List<FederatedRpcInvoker.RpcDataWraper> rpcList = this.buildRpcDataWraper(context, Dict.FEDERATED_INFERENCE, remoteInferenceRequest);
+        // 远端调用的超时不超过请求剩余的时间
+        long timeout = DeadlineUtil.limit(context, MetaInfo.PROPERTY_SINGLE_INFERENCE_RPC_TIMEOUT);
         rpcList.forEach((rpcDataWraper -> {
             ListenableFuture<ReturnResult> future = federatedRpcInvoker.singleInferenceRpcWithCache(context, rpcDataWraper, MetaInfo.PROPERTY_REMOTE_MODEL_INFERENCE_RESULT_CACHE_SWITCH);
             futureMap.put(rpcDataWraper.getHostModel().getPartId(), future);
         }));
         //执行推理逻辑
-        ReturnResult returnResult = modelProcessor.guestInference(context, inferenceRequest, futureMap, MetaInfo.PROPERTY_SINGLE_INFERENCE_RPC_TIMEOUT);
+        ReturnResult returnResult = modelProcessor.guestInference(context, inferenceRequest, futureMap, timeout);
         postProcess(context, returnResult);
         return returnResult;
     }
 
+    /**
+     * 发出远端请求后由 modelProcessor 组合本地与远端结果, 当前线程不等待 host 返回
+     */
+    @Override
+    protected CompletableFuture<ReturnResult> doServiceAsync(Context context, InboundPackage<InferenceRequest> inboundPackage, OutboundPackage<ReturnResult> outboundPackage) {
+        Model model = ((ServingServerContext) context).getModel();
+        ModelProcessor modelProcessor = model.getModelProcessor();
+        InferenceRequest inferenceRequest = inboundPackage.getBody();
+        Map<String, CompletableFuture<ReturnResult>> futureMap = Maps.newHashMap();
+
+        InferenceRequest remoteInferenceRequest = new InferenceRequest();
+        remoteInferenceRequest.setSendToRemoteFeatureData(inferenceRequest.getSendToRemoteFeatureData());
+
+        List<FederatedRpcInvoker.RpcDataWraper> rpcList = this.buildRpcDataWraper(context, Dict.FEDERATED_INFERENCE, remoteInferenceRequest);
+        // 远端调用的超时不超过请求剩余的时间
+        long timeout = DeadlineUtil.limit(context, MetaInfo.PROPERTY_SINGLE_INFERENCE_RPC_TIMEOUT);
+        rpcList.forEach((rpcDataWraper -> {
+            ListenableFuture<ReturnResult> future = federatedRpcInvoker.singleInferenceRpcWithCache(context, rpcDataWraper, MetaInfo.PROPERTY_REMOTE_MODEL_INFERENCE_RESULT_CACHE_SWITCH);
+            futureMap.put(rpcDataWraper.getHostModel().getPartId(), FutureUtil.toCompletableFuture(future, timeout));
+        }));
+        return modelProcessor.guestInferenceAsync(context, inferenceRequest, futureMap, timeout)
+                .thenApply(returnResult -> {
+                    postProcess(context, returnResult);
+                    return returnResult;
+                });
+    }
+
     @Override
     protected OutboundPackage<ReturnResult> serviceFailInner(Context context, InboundPackage<InferenceRequest> data, Throwable e) {
         OutboundPackage<ReturnResult> outboundPackage = new OutboundPackage<ReturnResult>();
@@ -22,6 +22,7 @@ import com.webank.ai.fate.serving.common.interceptors.AbstractInterceptor;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
 import com.webank.ai.fate.serving.core.adaptor.BatchFeatureDataAdaptor;
+import com.webank.ai.fate.serving.core.adaptor.CachingBatchFeatureDataAdaptor;
 import com.webank.ai.fate.serving.core.bean.*;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.exceptions.FeatureDataAdaptorException;
@@ -83,6 +84,10 @@ public class HostBatchFeatureAdaptorInterceptor extends AbstractInterceptor<Batc
             } catch (Exception e) {
                 logger.error("batch adaptor init error");
             }
+            if (MetaInfo.PROPERTY_FEATURE_CACHE_ENABLE) {
+                batchFeatureDataAdaptor = new CachingBatchFeatureDataAdaptor(batchFeatureDataAdaptor, MetaInfo.PROPERTY_FEATURE_CACHE_MAX_SIZE,
+                        MetaInfo.PROPERTY_FEATURE_CACHE_TTL_SECONDS, MetaInfo.PROPERTY_FEATURE_CACHE_REFRESH_SECONDS);
+            }
         }
         logger.info("batch adaptor class is {}", adaptorClass);
     }
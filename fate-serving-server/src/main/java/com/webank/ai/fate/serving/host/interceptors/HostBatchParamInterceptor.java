@@ -22,9 +22,11 @@ import com.webank.ai.fate.serving.common.rpc.core.Interceptor;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
 import com.webank.ai.fate.serving.core.bean.BatchHostFederatedParams;
 import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.bean.MetaInfo;
 import com.webank.ai.fate.serving.core.exceptions.HostInvalidParamException;
 import com.webank.ai.fate.serving.core.utils.JsonUtil;
+import com.webank.ai.fate.serving.rpc.BatchInferenceCodec;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -37,7 +39,11 @@ public class HostBatchParamInterceptor implements Interceptor {
         try {
             byte[] reqBody = (byte[]) inboundPackage.getBody();
             BatchHostFederatedParams batchHostFederatedParams = null;
-            batchHostFederatedParams = JsonUtil.json2Object(reqBody, BatchHostFederatedParams.class);
+            if (BatchInferenceCodec.isProtobuf((String) context.getData(Dict.BODY_CODEC))) {
+                batchHostFederatedParams = BatchInferenceCodec.decodeRequest(reqBody);
+            } else {
+                batchHostFederatedParams = JsonUtil.json2Object(reqBody, BatchHostFederatedParams.class);
+            }
             inboundPackage.setBody(batchHostFederatedParams);
             //参数检查
             Preconditions.checkArgument(batchHostFederatedParams != null, "");
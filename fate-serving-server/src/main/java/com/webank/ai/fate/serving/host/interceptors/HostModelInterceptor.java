@@ -60,6 +60,7 @@ public class HostModelInterceptor implements Interceptor {
             throw new HostModelNullException("mode is null");
         }
         servingServerContext.setModel(model);
+        modelManager.recordAccess(model);
 
         //？？
         int times = 1;
@@ -21,6 +21,7 @@ import com.webank.ai.fate.serving.adaptor.dataaccess.AbstractSingleFeatureDataAd
 import com.webank.ai.fate.serving.common.interceptors.AbstractInterceptor;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
+import com.webank.ai.fate.serving.core.adaptor.CachingSingleFeatureDataAdaptor;
 import com.webank.ai.fate.serving.core.adaptor.SingleFeatureDataAdaptor;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.InferenceRequest;
@@ -69,6 +70,10 @@ public class HostSingleFeatureAdaptorInterceptor extends AbstractInterceptor<Inf
             } catch (Exception e) {
                 logger.error("single adaptor init error");
             }
+            if (MetaInfo.PROPERTY_FEATURE_CACHE_ENABLE) {
+                singleFeatureDataAdaptor = new CachingSingleFeatureDataAdaptor(singleFeatureDataAdaptor, MetaInfo.PROPERTY_FEATURE_CACHE_MAX_SIZE,
+                        MetaInfo.PROPERTY_FEATURE_CACHE_TTL_SECONDS, MetaInfo.PROPERTY_FEATURE_CACHE_REFRESH_SECONDS);
+            }
             logger.info("single adaptor class is {}", adaptorClass);
         }
     }
@@ -21,6 +21,7 @@ import com.webank.ai.fate.serving.common.model.Model;
 import com.webank.ai.fate.serving.common.rpc.core.FateService;
 import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
 import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
 import com.webank.ai.fate.serving.core.bean.BatchHostFederatedParams;
 import com.webank.ai.fate.serving.core.bean.BatchInferenceRequest;
 import com.webank.ai.fate.serving.core.bean.BatchInferenceResult;
@@ -36,6 +37,7 @@ import org.springframework.stereotype.Service;
         "requestOverloadBreaker",
         "hostBatchParamInterceptor",
         "hostModelInterceptor",
+        "deadlineInterceptor",
         "hostBatchFeatureAdaptorInterceptor"
 }, postChain = {
 
@@ -49,6 +51,7 @@ public class HostBatchInferenceProvider extends AbstractServingServiceProvider<B
     public BatchInferenceResult doService(Context context, InboundPackage data, OutboundPackage outboundPackage) {
         BatchHostFederatedParams batchHostFederatedParams = (BatchHostFederatedParams) data.getBody();
         Model model = ((ServingServerContext) context).getModel();
+        DeadlineUtil.check(context, "host batch inference");
         BatchInferenceResult batchInferenceResult = model.getModelProcessor().hostBatchInference(context, batchHostFederatedParams);    //执行推理逻辑
         return batchInferenceResult;
     }
@@ -20,6 +20,7 @@ import com.webank.ai.fate.serving.common.bean.ServingServerContext;
 import com.webank.ai.fate.serving.common.model.Model;
 import com.webank.ai.fate.serving.common.model.ModelProcessor;
 import com.webank.ai.fate.serving.common.rpc.core.*;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.InferenceRequest;
 import com.webank.ai.fate.serving.core.bean.ReturnResult;
@@ -35,6 +36,7 @@ import java.util.Map;
         "requestOverloadBreaker",
         "hostParamInterceptor",
         "hostModelInterceptor",
+        "deadlineInterceptor",
         "hostSingleFeatureAdaptorInterceptor"
 }, postChain = {
 
@@ -60,6 +62,7 @@ public class HostSingleInferenceProvider extends AbstractServingServiceProvider<
         InferenceRequest params = data.getBody();
         Model model = ((ServingServerContext) context).getModel();
         ModelProcessor modelProcessor = model.getModelProcessor();
+        DeadlineUtil.check(context, "host inference");
         ReturnResult result = modelProcessor.hostInference(context, params);    //执行推理逻辑
         return result;
 
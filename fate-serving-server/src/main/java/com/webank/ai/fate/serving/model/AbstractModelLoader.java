@@ -27,6 +27,8 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 public abstract class AbstractModelLoader<MODELDATA> implements ModelLoader {
 
@@ -85,9 +87,7 @@ public abstract class AbstractModelLoader<MODELDATA> implements ModelLoader {
         try {
             String cachePath = getCachePath(context, name, namespace);
             if (cachePath != null) {
-                byte[] bytes = doRestore(new File(cachePath));
-                MODELDATA modelData = this.unserialize(context, bytes);
-                return modelData;
+                return this.restore(context, new File(cachePath));
             }
         } catch (Throwable e) {
             logger.error("restore model data error", e);
@@ -95,6 +95,11 @@ public abstract class AbstractModelLoader<MODELDATA> implements ModelLoader {
         return null;
     }
 
+    protected MODELDATA restore(Context context, File file) throws IOException {
+        byte[] bytes = doRestore(file);
+        return this.unserialize(context, bytes);
+    }
+
     protected abstract ModelProcessor initPipeLine(Context context, MODELDATA modeldata);
 
     private String getCachePath(Context context, String name, String namespace) {
@@ -124,12 +129,12 @@ public abstract class AbstractModelLoader<MODELDATA> implements ModelLoader {
                     throw new IOException("Can not lock the registry cache file " + file.getAbsolutePath() + ", ignore and retry later, maybe multi java process use the file");
                 }
                 try {
-                    if (!file.exists()) {
-                        file.createNewFile();
-                    }
-                    try (FileOutputStream outputFile = new FileOutputStream(file)) {
+                    // 先写临时文件再替换, 正在以内存映射方式读取旧文件的线程不受影响
+                    File tempFile = new File(file.getAbsolutePath() + ".tmp");
+                    try (FileOutputStream outputFile = new FileOutputStream(tempFile)) {
                         outputFile.write(data);
                     }
+                    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
                 } finally {
                     lock.release();
                 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.model;
+
+import com.webank.ai.fate.serving.common.model.ModelProcessor;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.utils.JsonUtil;
+import com.webank.ai.fate.serving.federatedml.PipelineModelProcessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型数据为 组件名 -> protobuf 字节 的加载器.
+ * 本地缓存使用 {@link ModelCacheFile} 二进制格式, 恢复时以内存映射方式读取; 旧版 json + base64 格式的缓存仍可读取
+ */
+public abstract class AbstractPipelineModelLoader extends AbstractModelLoader<Map<String, ByteBuffer>> {
+
+    @Override
+    protected byte[] serialize(Context context, Map<String, ByteBuffer> data) {
+        if (data != null) {
+            return ModelCacheFile.write(data);
+        }
+        return null;
+    }
+
+    @Override
+    protected Map<String, ByteBuffer> unserialize(Context context, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (ModelCacheFile.isBinary(buffer)) {
+            try {
+                return ModelCacheFile.read(buffer);
+            } catch (IOException e) {
+                logger.error("read model cache error", e);
+                return null;
+            }
+        }
+        return unserializeLegacy(data);
+    }
+
+    @Override
+    protected Map<String, ByteBuffer> restore(Context context, File file) throws IOException {
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        Map<String, ByteBuffer> result = ModelCacheFile.map(file);
+        if (result != null) {
+            return result;
+        }
+        return super.restore(context, file);
+    }
+
+    @Override
+    protected ModelProcessor initPipeLine(Context context, Map<String, ByteBuffer> modelData) {
+        if (modelData != null) {
+            PipelineModelProcessor modelProcessor = new PipelineModelProcessor();
+            modelProcessor.initModelFromBuffers(modelData);
+            return modelProcessor;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * 旧版格式: json 对象, value 为 base64 编码的组件字节
+     */
+    protected Map<String, ByteBuffer> unserializeLegacy(byte[] data) {
+        Map originData = JsonUtil.json2Object(new String(data, StandardCharsets.UTF_8), Map.class);
+        if (originData == null) {
+            return null;
+        }
+        Map<String, ByteBuffer> result = new HashMap<>(originData.size() * 2);
+        originData.forEach((k, v) -> {
+            result.put(k.toString(), ByteBuffer.wrap(Base64.getDecoder().decode(v.toString())));
+        });
+        return result;
+    }
+}
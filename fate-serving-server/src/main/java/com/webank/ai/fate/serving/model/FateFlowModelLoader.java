@@ -16,17 +16,14 @@
 
 package com.webank.ai.fate.serving.model;
 
-import com.google.common.collect.Maps;
 import com.webank.ai.fate.register.router.RouterService;
 import com.webank.ai.fate.register.url.URL;
-import com.webank.ai.fate.serving.common.model.ModelProcessor;
 import com.webank.ai.fate.serving.common.utils.HttpClientPool;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.bean.MetaInfo;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.utils.JsonUtil;
-import com.webank.ai.fate.serving.federatedml.PipelineModelProcessor;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,60 +31,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 @Component
-public class FateFlowModelLoader extends AbstractModelLoader<Map<String, byte[]>> {
+public class FateFlowModelLoader extends AbstractPipelineModelLoader {
     private static final Logger logger = LoggerFactory.getLogger(FateFlowModelLoader.class);
 
     @Autowired(required = false)
     private RouterService routerService;
 
     @Override
-    protected byte[] serialize(Context context, Map<String, byte[]> data) {
-        Map<String, String> result = Maps.newHashMap();
-        if (data != null) {
-            data.forEach((k, v) -> {
-                String base64String = new String(Base64.getEncoder().encode(v));
-                result.put(k, base64String);
-            });
-            return JsonUtil.object2Json(result).getBytes();
-        }
-        return null;
-    }
-
-    @Override
-    protected Map<String, byte[]> unserialize(Context context, byte[] data) {
-        Map<String, byte[]> result = Maps.newHashMap();
-        if (data != null) {
-            String dataString = new String(data);
-            Map originData = JsonUtil.json2Object(dataString, Map.class);
-            if (originData != null) {
-                originData.forEach((k, v) -> {
-                    result.put(k.toString(), Base64.getDecoder().decode(v.toString()));
-                });
-                return result;
-            }
-        }
-        return null;
-    }
-
-    @Override
-    protected ModelProcessor initPipeLine(Context context, Map<String, byte[]> stringMap) {
-        if (stringMap != null) {
-            PipelineModelProcessor modelProcessor = new PipelineModelProcessor();
-            modelProcessor.initModel(stringMap);
-            return modelProcessor;
-        } else {
-            return null;
-        }
-    }
-
-    @Override
-    protected Map<String, byte[]> doLoadModel(Context context, ModelLoaderParam modelLoaderParam) {
+    protected Map<String, ByteBuffer> doLoadModel(Context context, ModelLoaderParam modelLoaderParam) {
 
         logger.info("read model, name: {} namespace: {}", modelLoaderParam.tableName, modelLoaderParam.nameSpace);
         try {
@@ -137,14 +95,14 @@ public class FateFlowModelLoader extends AbstractModelLoader<Map<String, byte[]>
                 logger.info("read model fail, {}, {}, {}", modelLoaderParam.tableName, modelLoaderParam.nameSpace, responseData.get(Dict.RET_MSG));
                 return null;
             }
-            Map<String, byte[]> resultMap = new HashMap<>(8);
+            Map<String, ByteBuffer> resultMap = new HashMap<>(8);
             Map<String, Object> dataMap = responseData.get(Dict.DATA) != null ? (Map<String, Object>) responseData.get(Dict.DATA) : null;
             if (dataMap == null || dataMap.isEmpty()) {
                 logger.info("read model fail, {}, {}, {}", modelLoaderParam.tableName, modelLoaderParam.nameSpace, dataMap);
                 return null;
             }
             for (Map.Entry<String, Object> entry : dataMap.entrySet()) {
-                resultMap.put(entry.getKey(), Base64.getDecoder().decode(String.valueOf(entry.getValue())));
+                resultMap.put(entry.getKey(), ByteBuffer.wrap(Base64.getDecoder().decode(String.valueOf(entry.getValue()))));
             }
             return resultMap;
         } catch (Exception e) {
@@ -152,5 +110,4 @@ public class FateFlowModelLoader extends AbstractModelLoader<Map<String, byte[]>
         }
         return null;
     }
-
-}
\ No newline at end of file
+}
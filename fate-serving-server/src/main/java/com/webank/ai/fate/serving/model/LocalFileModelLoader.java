@@ -17,79 +17,31 @@
 package com.webank.ai.fate.serving.model;
 
 import com.google.common.collect.Maps;
-import com.webank.ai.fate.serving.common.model.ModelProcessor;
 import com.webank.ai.fate.serving.common.utils.TransferUtils;
 import com.webank.ai.fate.serving.common.utils.ZipUtil;
 import com.webank.ai.fate.serving.core.bean.Context;
 import com.webank.ai.fate.serving.core.bean.Dict;
 import com.webank.ai.fate.serving.core.exceptions.ModelLoadException;
-import com.webank.ai.fate.serving.core.utils.JsonUtil;
-import com.webank.ai.fate.serving.federatedml.PipelineModelProcessor;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
-import java.util.Base64;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
 @Service
-public class LocalFileModelLoader extends AbstractModelLoader<Map<String, byte[]>> {
+public class LocalFileModelLoader extends AbstractPipelineModelLoader {
     @Override
-    protected byte[] serialize(Context context, Map<String, byte[]> data) {
-        Map<String, String> result = Maps.newHashMap();
-        if (data != null) {
-            data.forEach((k, v) -> {
-                String base64String = new String(Base64.getEncoder().encode(v));
-                result.put(k, base64String);
-            });
-            return JsonUtil.object2Json(result).getBytes();
-        }
-        return null;
-    }
-
-    @Override
-    protected Map<String, byte[]> unserialize(Context context, byte[] data) {
-        Map<String, byte[]> result = Maps.newHashMap();
-        try {
-            if (data != null) {
-                Map originData = JsonUtil.json2Object(data, Map.class);
-                if (originData != null) {
-                    originData.forEach((k, v) -> {
-                        result.put(k.toString(), Base64.getDecoder().decode(v.toString()));
-                    });
-                    return result;
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
-    }
-
-    @Override
-    protected ModelProcessor initPipeLine(Context context, Map<String, byte[]> stringMap) {
-        if (stringMap != null) {
-            PipelineModelProcessor modelProcessor = new PipelineModelProcessor();
-            modelProcessor.initModel(stringMap);
-            return modelProcessor;
-        } else {
-            return null;
-        }
-    }
-
-    @Override
-    protected Map<String, byte[]> doLoadModel(Context context, ModelLoaderParam modelLoaderParam) {
+    protected Map<String, ByteBuffer> doLoadModel(Context context, ModelLoaderParam modelLoaderParam) {
         String filePath = modelLoaderParam.getFilePath();
         File file = new File(filePath);
         if (!file.exists()) {
             throw new ModelLoadException("model file" + file.getAbsolutePath() + " is not exist");
         }
-        byte[] content = readFile(file);
-        Map<String, byte[]> data = unserialize(context, content);
-        return data;
+        return readFile(file);
     }
 
-    protected byte[] readFile(File file) {
+    protected Map<String, ByteBuffer> readFile(File file) {
         String outputPath = "";
         try {
             String tempDir = System.getProperty(Dict.PROPERTY_USER_HOME) + "/.fate/temp/";
@@ -98,7 +50,7 @@ public class LocalFileModelLoader extends AbstractModelLoader<Map<String, byte[]
             if (!outputDir.exists()) {
                 throw new FileNotFoundException();
             }
-            Map<String, Object> resultMap = Maps.newHashMap();
+            Map<String, ByteBuffer> resultMap = Maps.newHashMap();
             String root = outputDir.getAbsolutePath();
             List<String> properties = TransferUtils.yml2Properties(root + File.separator + "define" + File.separator + "define_meta.yaml");
             if (properties != null) {
@@ -118,7 +70,7 @@ public class LocalFileModelLoader extends AbstractModelLoader<Map<String, byte[]
                                 int readCount = in.read(content);
                                 if (readCount > 0) {
                                     String resultKey = keySplit[2] + "." + keySplit[3] + ":" + keySplit[4];
-                                    resultMap.put(resultKey, content);
+                                    resultMap.put(resultKey, ByteBuffer.wrap(content));
                                 }
                                 in.close();
                             } else {
@@ -140,7 +92,7 @@ public class LocalFileModelLoader extends AbstractModelLoader<Map<String, byte[]
                     }
                 }
             }
-            return JsonUtil.object2Json(resultMap).getBytes();
+            return resultMap;
         } catch (Exception e) {
             logger.error("read file {} error, cause by {}", file.getAbsolutePath(), e.getMessage());
             e.printStackTrace();
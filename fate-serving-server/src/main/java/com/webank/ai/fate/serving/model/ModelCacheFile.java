@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 模型缓存文件的二进制格式, 存放各组件的 protobuf 原始字节.
+ * <pre>
+ * header (24 字节): magic(4) | version(2) | reserved(2) | 条目数(4) | 目录长度(4) | 目录 crc32(4) | reserved(4)
+ * 目录: 每个条目为 名称长度(2) | 名称 utf-8 | 偏移(8) | 长度(4) | crc32(4)
+ * 数据: 各组件字节依次存放, 起始位置按 8 字节对齐
+ * </pre>
+ * 读取时整个文件以 {@link FileChannel#map} 映射, 各组件返回映射区域上的只读 slice, 交给 protobuf 直接解析.
+ * 文件开头不是 {@link #MAGIC} 时视为旧版 json + base64 格式
+ */
+public class ModelCacheFile {
+
+    static final int MAGIC = 0x46534D43;
+    static final short VERSION = 1;
+    static final int HEADER_LENGTH = 24;
+    private static final int ALIGNMENT = 8;
+
+    public static boolean isBinary(ByteBuffer buffer) {
+        return buffer.remaining() >= HEADER_LENGTH && buffer.getInt(buffer.position()) == MAGIC;
+    }
+
+    /**
+     * @return 组件名 -> 组件字节; 文件不是二进制格式时返回 null
+     */
+    public static Map<String, ByteBuffer> map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_LENGTH) {
+                return null;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("model cache file " + file.getAbsolutePath() + " is too large, size " + size);
+            }
+            // 映射在 channel 关闭后仍然有效, 由 GC 回收
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (!isBinary(buffer)) {
+                return null;
+            }
+            return read(buffer);
+        }
+    }
+
+    /**
+     * 解析二进制格式, 返回的 buffer 与 data 共享内容
+     */
+    public static Map<String, ByteBuffer> read(ByteBuffer data) throws IOException {
+        ByteBuffer buffer = data.slice();
+        if (!isBinary(buffer)) {
+            throw new IOException("not a binary model cache");
+        }
+        short version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("unsupported model cache version " + version);
+        }
+        int count = buffer.getInt(8);
+        int tocLength = buffer.getInt(12);
+        int tocChecksum = buffer.getInt(16);
+        if (count < 0 || tocLength < 0 || HEADER_LENGTH + (long) tocLength > buffer.limit()) {
+            throw new IOException("model cache header is corrupted");
+        }
+        ByteBuffer toc = slice(buffer, HEADER_LENGTH, tocLength);
+        if (checksum(toc) != tocChecksum) {
+            throw new IOException("model cache checksum mismatch, table of contents");
+        }
+        Map<String, ByteBuffer> result = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[toc.getShort() & 0xFFFF];
+            toc.get(name);
+            long offset = toc.getLong();
+            int length = toc.getInt();
+            int crc = toc.getInt();
+            String key = new String(name, StandardCharsets.UTF_8);
+            if (length < 0 || offset < HEADER_LENGTH + tocLength || offset + length > buffer.limit()) {
+                throw new IOException("model cache entry " + key + " is out of range");
+            }
+            ByteBuffer entry = slice(buffer, (int) offset, length);
+            if (checksum(entry) != crc) {
+                throw new IOException("model cache checksum mismatch, entry " + key);
+            }
+            result.put(key, entry.asReadOnlyBuffer());
+        }
+        return result;
+    }
+
+    public static byte[] write(Map<String, ByteBuffer> data) {
+        int count = data.size();
+        byte[][] names = new byte[count][];
+        int tocLength = 0;
+        int i = 0;
+        for (String key : data.keySet()) {
+            names[i] = key.getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > 0xFFFF) {
+                throw new IllegalArgumentException("model component name is too long: " + key);
+            }
+            tocLength += 2 + names[i].length + 8 + 4 + 4;
+            i++;
+        }
+        long total = align(HEADER_LENGTH + tocLength);
+        for (ByteBuffer value : data.values()) {
+            total = align(total + (value != null ? value.remaining() : 0));
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("model is too large to cache, size " + total);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) total);
+        ByteBuffer toc = slice(buffer, HEADER_LENGTH, tocLength);
+        int offset = (int) align(HEADER_LENGTH + tocLength);
+        i = 0;
+        for (ByteBuffer value : data.values()) {
+            ByteBuffer content = value != null ? value.duplicate() : ByteBuffer.allocate(0);
+            int length = content.remaining();
+            buffer.position(offset);
+            buffer.put(content);
+            toc.putShort((short) names[i].length);
+            toc.put(names[i]);
+            toc.putLong(offset);
+            toc.putInt(length);
+            toc.putInt(checksum(slice(buffer, offset, length)));
+            offset = (int) align(offset + length);
+            i++;
+        }
+        toc.flip();
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putInt(8, count);
+        buffer.putInt(12, tocLength);
+        buffer.putInt(16, checksum(toc));
+        return buffer.array();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.limit(offset + length);
+        duplicate.position(offset);
+        return duplicate.slice();
+    }
+
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.duplicate());
+        return (int) crc32.getValue();
+    }
+
+    private static long align(long position) {
+        return (position + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
@@ -19,22 +19,24 @@ package com.webank.ai.fate.serving.model;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.webank.ai.fate.api.mlmodel.manager.ModelServiceProto;
-import com.webank.ai.fate.register.common.NamedThreadFactory;
 import com.webank.ai.fate.register.provider.FateServer;
 import com.webank.ai.fate.register.url.URL;
 import com.webank.ai.fate.register.zookeeper.ZookeeperRegistry;
 import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.common.flow.TimeUtil;
 import com.webank.ai.fate.serving.common.model.Model;
 import com.webank.ai.fate.serving.common.model.ModelProcessor;
 import com.webank.ai.fate.serving.core.bean.*;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
 import com.webank.ai.fate.serving.core.exceptions.ModelNullException;
 import com.webank.ai.fate.serving.core.exceptions.ModelProcessorInitException;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
 import com.webank.ai.fate.serving.core.utils.EncryptUtils;
 import com.webank.ai.fate.serving.core.utils.JsonUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -49,7 +51,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
-public class ModelManager implements InitializingBean {
+public class ModelManager implements InitializingBean, DisposableBean {
 
     @Autowired(required = false)
     ZookeeperRegistry zookeeperRegistry;    //server中的接口将被注册至zookeeper
@@ -60,13 +62,28 @@ public class ModelManager implements InitializingBean {
     // old version cache file
     File publishLoadStoreFile;  //已加载的模型？
     File publishOnlineStoreFile;    //已绑定的模型？
+    File modelAccessFile;   //模型最近访问时间
     Logger logger = LoggerFactory.getLogger(this.getClass());
-    ExecutorService executorService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue<>(), new NamedThreadFactory("ModelService", true));
-    private ConcurrentMap<String, String> serviceIdNamespaceMap = new ConcurrentHashMap<>();
-    private ConcurrentMap<String, Model> namespaceMap = new ConcurrentHashMap<String, Model>(); //
-    // (guest) name + namespace -> (host) model
-    private ConcurrentMap<String, Model> partnerModelMap = new ConcurrentHashMap<String, Model>();
+    ExecutorService executorService = ManagedExecutors.newThreadPool("ModelService", 1, 1, 1024,
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    // serviceId / namespace / partner 的映射, 请求线程无锁读取快照
+    private final ModelRegistry modelRegistry = new ModelRegistry();
+    // model resource name -> 最近一次访问时间, 启动恢复时优先加载近期有流量的模型
+    private ConcurrentMap<String, Long> modelAccessMap = new ConcurrentHashMap<>();
+    private volatile boolean modelAccessChanged;
+    // 启动恢复期间各服务ID的状态, 恢复完成前收到的请求直接返回失败
+    private ConcurrentMap<String, RestoreState> restoreStateMap = new ConcurrentHashMap<>();
+    private volatile CompletableFuture<Void> restoreFuture = CompletableFuture.completedFuture(null);
+    private final ScheduledExecutorService modelAccessStoreExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "model-access-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 访问时间的记录粒度, 同时也是写入缓存文件的间隔
+     */
+    private static final long MODEL_ACCESS_INTERVAL = 60000;
 
     private static String[] URL_FILTER_CHARACTER = {"?", ":", "/", "&"};
 
@@ -77,15 +94,16 @@ public class ModelManager implements InitializingBean {
         Preconditions.checkArgument(serviceIds != null && serviceIds.size() != 0, "param service id is blank");
         logger.info("try to unbind model, service id : {}", serviceIds);
         String modelKey = this.getNameSpaceKey(req.getTableName(), req.getNamespace());
-        if (!this.namespaceMap.containsKey(modelKey)) { //model在server的地址？
+        ModelRegistry.Snapshot snapshot = modelRegistry.snapshot();
+        Model model = snapshot.getModel(modelKey);
+        if (model == null) { //model在server的地址？
             logger.error("not found model info table name {} namespace {}, please check if the model is already loaded.", req.getTableName(), req.getNamespace());
             throw new ModelNullException(" found model info, please check if the model is already loaded.");
         }
-        Model model = this.namespaceMap.get(modelKey);
         String tableNamekey = this.getNameSpaceKey(model.getTableName(), model.getNamespace());
 
         serviceIds.forEach(serviceId -> {
-            if (!tableNamekey.equals(this.serviceIdNamespaceMap.get(serviceId))) {
+            if (!tableNamekey.equals(snapshot.getNamespaceKey(serviceId))) {
                 logger.info("unbind request info is error {}", req);
                 throw new ModelNullException("unbind request info is error");
             }
@@ -105,10 +123,9 @@ public class ModelManager implements InitializingBean {
             logger.info("Unregister urls: {}", unRegisterUrls);
         }
         //解绑服务ID
-        serviceIds.forEach(serviceId -> {
-            this.serviceIdNamespaceMap.remove(serviceId);
-        });
-        this.store(serviceIdNamespaceMap, serviceIdFile);
+        modelRegistry.unbind(serviceIds);
+        serviceIds.forEach(restoreStateMap::remove);
+        this.storeServiceIds();
         logger.info("unbind model success");
         resultBuilder.setStatusCode(StatusCode.SUCCESS);
         return resultBuilder.build();
@@ -123,14 +140,24 @@ public class ModelManager implements InitializingBean {
     }
 
     public synchronized void store() {
+        ModelRegistry.Snapshot snapshot = modelRegistry.snapshot();
         executorService.submit(() -> {
-            doSaveCache(namespaceMap, namespaceFile, 0);
-            doSaveCache(serviceIdNamespaceMap, serviceIdFile, 0);
+            doSaveCache(new ConcurrentHashMap<>(snapshot.getNamespaceMap()), namespaceFile, 0);
+            doSaveCache(new ConcurrentHashMap<>(snapshot.getServiceIdNamespaceMap()), serviceIdFile, 0);
         });
 
         logger.info("Store model cache success");
     }
 
+    // 缓存文件中保存为 ConcurrentMap, 与旧版本兼容
+    private void storeModels() {
+        this.store(new ConcurrentHashMap<>(modelRegistry.snapshot().getNamespaceMap()), namespaceFile);
+    }
+
+    private void storeServiceIds() {
+        this.store(new ConcurrentHashMap<>(modelRegistry.snapshot().getServiceIdNamespaceMap()), serviceIdFile);
+    }
+
     //从文件中读取模型
     private List<RequestWapper> doLoadOldVersionCache(File file) {
         Map<String, RequestWapper> properties = new HashMap<>(8);
@@ -229,79 +256,182 @@ public class ModelManager implements InitializingBean {
         }
     }
 
-    //恢复模型
-    public synchronized void restore(Context context) {
+    /**
+     * 恢复模型: 在有界线程池中并行恢复, 显式指定优先的模型和近期有流量的模型先恢复.
+     * 每个模型恢复完成后立即对外可见并注册对应的服务, 不等待其他模型, 各服务ID的状态见 {@link #getRestoreState(String)}
+     *
+     * @return 全部模型恢复结束时完成
+     */
+    public synchronized CompletableFuture<Void> restore(Context context) {
         // compatible 1.2.x
         restoreOldVersionCache();
         ConcurrentMap<String, String> tempServiceIdNamespaceMap = new ConcurrentHashMap<>(8);
         ConcurrentMap<String, Model> tempNamespaceMap = new ConcurrentHashMap<>(8);
         doLoadCache(tempNamespaceMap, namespaceFile);
         doLoadCache(tempServiceIdNamespaceMap, serviceIdFile);
+        doLoadCache(modelAccessMap, modelAccessFile);
 
-        ModelLoader.ModelLoaderParam modelLoaderParam = new ModelLoader.ModelLoaderParam();
-        ModelLoader modelLoader = this.modelLoaderFactory.getModelLoader(context, ModelLoader.LoadModelType.FATEFLOW);
-
-        tempNamespaceMap.forEach((k, model) -> {
-            try {
-                modelLoaderParam.setLoadModelType(ModelLoader.LoadModelType.FATEFLOW);
-                modelLoaderParam.setTableName(model.getTableName());
-                modelLoaderParam.setNameSpace(model.getNamespace());
-                ModelProcessor modelProcessor = modelLoader.restoreModel(context, modelLoaderParam);
-                if (modelProcessor != null) {
-                    model.setModelProcessor(modelProcessor);
-                    if (model.getRole().equals(Dict.GUEST)) {
-                        for (Model value : model.getFederationModelMap().values()) {
-                            value.setRole(Dict.HOST);
-                        }
-                    }
-                    namespaceMap.put(k, model);
-                    if (Dict.HOST.equals(model.getRole())) {
-                        model.getFederationModelMap().values().forEach(remoteModel -> {
-                            String remoteNamespaceKey = this.getNameSpaceKey(remoteModel.getTableName(), remoteModel.getNamespace());
-                            this.partnerModelMap.put(remoteNamespaceKey, model);
-                        });
-                    }
+        Map<String, List<String>> namespaceServiceIdsMap = new HashMap<>(8);
+        tempServiceIdNamespaceMap.forEach((serviceId, namespaceKey) -> {
+            if (tempNamespaceMap.containsKey(namespaceKey)) {
+                namespaceServiceIdsMap.computeIfAbsent(namespaceKey, k -> Lists.newArrayList()).add(serviceId);
+                restoreStateMap.put(serviceId, RestoreState.LOADING);
+            }
+        });
+        if (tempNamespaceMap.isEmpty()) {
+            logger.info("no model need to restore");
+            return restoreFuture;
+        }
 
-                    logger.info("restore model {} success ", k);
+        Set<String> priority = new HashSet<>();
+        if (StringUtils.isNotBlank(MetaInfo.PROPERTY_MODEL_RESTORE_PRIORITY)) {
+            for (String item : MetaInfo.PROPERTY_MODEL_RESTORE_PRIORITY.split(",")) {
+                if (StringUtils.isNotBlank(item)) {
+                    priority.add(item.trim());
                 }
-
-            } catch (Exception e) {
-                logger.info("restore model {} error {} ", k, e.getMessage());
             }
-
+        }
+        List<String> restoreOrder = getRestoreOrder(tempNamespaceMap, namespaceServiceIdsMap, priority, modelAccessMap);
+        ModelLoader modelLoader = this.modelLoaderFactory.getModelLoader(context, ModelLoader.LoadModelType.FATEFLOW);
+        int threads = MetaInfo.PROPERTY_MODEL_RESTORE_THREADS != null ? MetaInfo.PROPERTY_MODEL_RESTORE_THREADS : 1;
+        threads = Math.max(1, Math.min(threads, restoreOrder.size()));
+        ExecutorService restoreExecutor = ManagedExecutors.newThreadPool("model-restore", threads, threads, restoreOrder.size(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        logger.info("try to restore {} models with {} threads, order {}", restoreOrder.size(), threads, restoreOrder);
+
+        long begin = System.currentTimeMillis();
+        AtomicInteger restored = new AtomicInteger();
+        CompletableFuture[] futures = new CompletableFuture[restoreOrder.size()];
+        for (int i = 0; i < restoreOrder.size(); i++) {
+            String namespaceKey = restoreOrder.get(i);
+            Model model = tempNamespaceMap.get(namespaceKey);
+            List<String> serviceIds = namespaceServiceIdsMap.getOrDefault(namespaceKey, Collections.emptyList());
+            futures[i] = CompletableFuture.runAsync(() -> {
+                if (restoreModel(context, modelLoader, namespaceKey, model, serviceIds)) {
+                    restored.incrementAndGet();
+                }
+            }, restoreExecutor);
+        }
+        restoreFuture = CompletableFuture.allOf(futures).whenComplete((result, e) -> {
+            restoreExecutor.shutdown();
+            logger.info("restore model over, {} of {} models restored, cost {} ms", restored.get(), restoreOrder.size(), System.currentTimeMillis() - begin);
         });
+        return restoreFuture;
+    }
 
-        tempServiceIdNamespaceMap.forEach((k, v) -> {
-            if (namespaceMap.get(v) != null) {
-                serviceIdNamespaceMap.put(k, v);
+    /**
+     * 恢复顺序: 显式指定优先 (服务ID 或 tableName_namespace) 的模型在前, 其余按最近访问时间倒序, 都没有访问记录时按加载时间倒序
+     */
+    static List<String> getRestoreOrder(Map<String, Model> models, Map<String, List<String>> namespaceServiceIdsMap,
+                                        Set<String> priority, Map<String, Long> accessMap) {
+        List<String> order = new ArrayList<>(models.keySet());
+        Comparator<String> comparator = Comparator.comparing((String namespaceKey) -> {
+            if (priority.contains(namespaceKey)) {
+                return false;
+            }
+            for (String serviceId : namespaceServiceIdsMap.getOrDefault(namespaceKey, Collections.emptyList())) {
+                if (priority.contains(serviceId)) {
+                    return false;
+                }
             }
+            return true;
         });
+        comparator = comparator.thenComparing(Comparator.comparingLong((String namespaceKey) -> accessMap.getOrDefault(models.get(namespaceKey).getResourceName(), 0L)).reversed())
+                .thenComparing(Comparator.comparingLong((String namespaceKey) -> models.get(namespaceKey).getTimestamp()).reversed());
+        order.sort(comparator);
+        return order;
+    }
 
-        // register service after restore
-        if (namespaceMap != null && namespaceMap.size() > 0) {
-            List<String> environments = Lists.newArrayList();
-            for (Model model : namespaceMap.values()) {
-                if (Dict.HOST.equals(model.getRole())) {
-                    String modelKey = ModelUtil.genModelKey(model.getTableName(), model.getNamespace());
-                    environments.add(EncryptUtils.encrypt(modelKey, EncryptMethod.MD5));
+    private boolean restoreModel(Context context, ModelLoader modelLoader, String namespaceKey, Model model, List<String> serviceIds) {
+        try {
+            ModelLoader.ModelLoaderParam modelLoaderParam = new ModelLoader.ModelLoaderParam();
+            modelLoaderParam.setLoadModelType(ModelLoader.LoadModelType.FATEFLOW);
+            modelLoaderParam.setTableName(model.getTableName());
+            modelLoaderParam.setNameSpace(model.getNamespace());
+            ModelProcessor modelProcessor = modelLoader.restoreModel(context, modelLoaderParam);
+            if (modelProcessor == null) {
+                logger.info("restore model {} failed, model cache not found", namespaceKey);
+                serviceIds.forEach(serviceId -> restoreStateMap.replace(serviceId, RestoreState.LOADING, RestoreState.FAILED));
+                return false;
+            }
+            model.setModelProcessor(modelProcessor);
+            if (model.getRole().equals(Dict.GUEST)) {
+                for (Model value : model.getFederationModelMap().values()) {
+                    value.setRole(Dict.HOST);
                 }
             }
-            this.registerService(environments);
-        }
 
-        if (serviceIdNamespaceMap != null && serviceIdNamespaceMap.size() > 0) {
             List<String> environments = Lists.newArrayList();
-            for (Map.Entry<String, String> modelEntry : serviceIdNamespaceMap.entrySet()) {
-                Model model = namespaceMap.get(modelEntry.getValue());
-                if (model != null) {
-                    environments.add(modelEntry.getKey());
-                    //environments.add(model.getPartId());
+            // 模型和绑定的服务ID在同一次快照替换中发布
+            boolean published = modelRegistry.update(builder -> {
+                // 恢复期间通过 load 重新加载的同名模型优先
+                boolean absent = builder.getModel(namespaceKey) == null;
+                if (absent) {
+                    builder.putModel(namespaceKey, model);
+                }
+                for (String serviceId : serviceIds) {
+                    // 恢复期间重新绑定过的服务ID保持新的绑定
+                    if (builder.getNamespaceKey(serviceId) == null) {
+                        builder.bind(serviceId, namespaceKey);
+                    }
                 }
+                return absent;
+            });
+            if (published && Dict.HOST.equals(model.getRole())) {
+                String modelKey = ModelUtil.genModelKey(model.getTableName(), model.getNamespace());
+                environments.add(EncryptUtils.encrypt(modelKey, EncryptMethod.MD5));
+            }
+            environments.addAll(serviceIds);
+            if (!environments.isEmpty()) {
+                this.registerService(environments);
             }
-            this.registerService(environments);
+            serviceIds.forEach(serviceId -> restoreStateMap.replace(serviceId, RestoreState.LOADING, RestoreState.READY));
+            logger.info("restore model {} success ", namespaceKey);
+            return true;
+        } catch (Exception e) {
+            serviceIds.forEach(serviceId -> restoreStateMap.replace(serviceId, RestoreState.LOADING, RestoreState.FAILED));
+            logger.info("restore model {} error {} ", namespaceKey, e.getMessage());
+            return false;
         }
+    }
+
+    /**
+     * @return 服务ID的恢复状态, 未参与启动恢复的已绑定服务为 READY, 未绑定的服务为 null
+     */
+    public RestoreState getRestoreState(String serviceId) {
+        RestoreState state = restoreStateMap.get(serviceId);
+        if (state == null && modelRegistry.snapshot().isBound(serviceId)) {
+            return RestoreState.READY;
+        }
+        return state;
+    }
+
+    public Map<String, RestoreState> getRestoreStates() {
+        return Collections.unmodifiableMap(restoreStateMap);
+    }
+
+    public CompletableFuture<Void> getRestoreFuture() {
+        return restoreFuture;
+    }
+
+    /**
+     * 记录模型访问时间, 同一模型在 {@link #MODEL_ACCESS_INTERVAL} 内只记录一次
+     */
+    public void recordAccess(Model model) {
+        String resourceName = model.getResourceName();
+        long now = TimeUtil.currentTimeMillis();
+        Long last = modelAccessMap.get(resourceName);
+        if (last == null || now - last >= MODEL_ACCESS_INTERVAL) {
+            modelAccessMap.put(resourceName, now);
+            modelAccessChanged = true;
+        }
+    }
 
-        logger.info("restore model success ");
+    private void storeModelAccess() {
+        if (modelAccessChanged && modelAccessFile != null) {
+            modelAccessChanged = false;
+            doSaveCache(modelAccessMap, modelAccessFile, 0);
+        }
     }
 
     private void registerService(Collection environments) {
@@ -323,11 +453,12 @@ public class ModelManager implements InitializingBean {
         returnResult.setRetcode(StatusCode.SUCCESS);
         Model model = this.buildModelForBind(context, req);
         String modelKey = this.getNameSpaceKey(model.getTableName(), model.getNamespace());
-        Model loadedModel = this.namespaceMap.get(modelKey);
+        Model loadedModel = modelRegistry.snapshot().getModel(modelKey);
         if (loadedModel == null) {
             throw new ModelNullException("model " + modelKey + " is not exist ");
         }
-        this.serviceIdNamespaceMap.put(serviceId, modelKey);
+        modelRegistry.bind(serviceId, modelKey);
+        this.restoreStateMap.remove(serviceId);
         if (zookeeperRegistry != null) {
             if (StringUtils.isNotEmpty(serviceId)) {
                 zookeeperRegistry.addDynamicEnvironment(serviceId);
@@ -335,7 +466,7 @@ public class ModelManager implements InitializingBean {
             zookeeperRegistry.register(FateServer.serviceSets);
         }
         //update cache
-        this.store(serviceIdNamespaceMap, serviceIdFile);
+        this.storeServiceIds();
         return returnResult;
     }
 
@@ -392,7 +523,8 @@ public class ModelManager implements InitializingBean {
         return model;
     }
 
-    public synchronized ReturnResult load(Context context, ModelServiceProto.PublishRequest req) {
+    // 模型在锁外加载和初始化, 只有发布和注册在锁内
+    public ReturnResult load(Context context, ModelServiceProto.PublishRequest req) {
         if (logger.isDebugEnabled()) {
             logger.debug("try to load model, receive request : {}", req);
         }
@@ -417,87 +549,59 @@ public class ModelManager implements InitializingBean {
             throw new ModelProcessorInitException("model initialization error, please check if the model exists and the configuration of the FATEFLOW load model process is correct.");
         }
         model.setModelProcessor(modelProcessor);
-        this.namespaceMap.put(namespaceKey, model);
-
-        if (Dict.HOST.equals(model.getRole())) {
-            model.getFederationModelMap().values().forEach(remoteModel -> {
-                String remoteNamespaceKey = this.getNameSpaceKey(remoteModel.getTableName(), remoteModel.getNamespace());
-                this.partnerModelMap.put(remoteNamespaceKey, model);
-            });
-        }
-        /**
-         *  host model
-         */
-        if (Dict.HOST.equals(model.getRole()) && zookeeperRegistry != null) {
-            String modelKey = ModelUtil.genModelKey(model.getTableName(), model.getNamespace());
-            zookeeperRegistry.addDynamicEnvironment(EncryptUtils.encrypt(modelKey, EncryptMethod.MD5));
-            zookeeperRegistry.register(FateServer.hostServiceSets);
+        synchronized (this) {
+            modelRegistry.putModel(namespaceKey, model);
+            /**
+             *  host model
+             */
+            if (Dict.HOST.equals(model.getRole()) && zookeeperRegistry != null) {
+                String modelKey = ModelUtil.genModelKey(model.getTableName(), model.getNamespace());
+                zookeeperRegistry.addDynamicEnvironment(EncryptUtils.encrypt(modelKey, EncryptMethod.MD5));
+                zookeeperRegistry.register(FateServer.hostServiceSets);
+            }
+            // update cache
+            this.storeModels();
         }
-        // update cache
-        this.store(namespaceMap, namespaceFile);
         return returnResult;
 
     }
 
     public List<Model> queryModel(Context context, ModelServiceProto.QueryModelRequest queryModelRequest) {
         int queryType = queryModelRequest.getQueryType();
+        ModelRegistry.Snapshot snapshot = modelRegistry.snapshot();
         switch (queryType) {
             case 0:
-                List<Model> allModels = listAllModel();
-                return allModels.stream().map(e -> {
-                    Model clone = (Model) e.clone();
-                    this.serviceIdNamespaceMap.forEach((k, v) -> {
-                        if (clone.getServiceIds() == null) {
-                            clone.setServiceIds(Lists.newArrayList());
-                        }
-                        String nameSpaceKey = this.getNameSpaceKey(clone.getTableName(), clone.getNamespace());
-                        if (nameSpaceKey.equals(v)) {
-                            clone.getServiceIds().add(k);
-                        }
-                    });
-                    return clone;
-                }).collect(Collectors.toList());
+                return snapshot.getNamespaceMap().entrySet().stream()
+                        .map(e -> cloneWithServiceIds(e.getValue(), snapshot.getServiceIds(e.getKey())))
+                        .collect(Collectors.toList());
             case 1:
                 // Fuzzy query
-                String serviceId = queryModelRequest.getServiceId();
-                return this.namespaceMap.values().stream()
-                        .filter(e -> {
-                            String nameSpaceKey = this.getNameSpaceKey(e.getTableName(), e.getNamespace());
-                            boolean isMatch = false;
-                            for (Map.Entry<String, String> entry : this.serviceIdNamespaceMap.entrySet()) {
-                                if (entry.getKey().toLowerCase().indexOf(serviceId.toLowerCase()) > -1 && nameSpaceKey.equals(entry.getValue())) {
-                                    isMatch = true;
-                                    break;
-                                }
-                            }
-                            return isMatch;
-                        })
-                        .map(e -> {
-                            Model clone = (Model) e.clone();
-                            if (clone.getServiceIds() == null) {
-                                clone.setServiceIds(Lists.newArrayList());
-                            }
-                            String nameSpaceKey = this.getNameSpaceKey(clone.getTableName(), clone.getNamespace());
-
-                            this.serviceIdNamespaceMap.forEach((k, v) -> {
-                                if (v.equals(nameSpaceKey)) {
-                                    clone.getServiceIds().add(k);
-                                }
-                            });
-                            return clone;
-                        })
+                String serviceId = queryModelRequest.getServiceId().toLowerCase();
+                return snapshot.getNamespaceMap().entrySet().stream()
+                        .filter(e -> snapshot.getServiceIds(e.getKey()).stream().anyMatch(k -> k.toLowerCase().contains(serviceId)))
+                        .map(e -> cloneWithServiceIds(e.getValue(), snapshot.getServiceIds(e.getKey())))
                         .collect(Collectors.toList());
             default:
                 return null;
         }
     }
 
+    private Model cloneWithServiceIds(Model model, List<String> serviceIds) {
+        Model clone = (Model) model.clone();
+        clone.setServiceIds(Lists.newArrayList(serviceIds));
+        return clone;
+    }
+
     public Model getModelByServiceId(String serviceId) {
-        String namespaceKey = serviceIdNamespaceMap.get(serviceId);
-        if (namespaceKey == null) {
+        ModelRegistry.Snapshot snapshot = modelRegistry.snapshot();
+        Model model = snapshot.getModelByServiceId(serviceId);
+        if (model == null && !snapshot.isBound(serviceId)) {
+            if (restoreStateMap.get(serviceId) == RestoreState.LOADING) {
+                throw new ModelNullException("model of serviceId " + serviceId + " is restoring, please retry later");
+            }
             throw new ModelNullException("serviceId is not bind model");
         }
-        return this.namespaceMap.get(namespaceKey);
+        return model;
     }
 
     /**
@@ -506,16 +610,16 @@ public class ModelManager implements InitializingBean {
      * @return
      */
     public List<Model> listAllModel() {
-        return new ArrayList(this.namespaceMap.values());
+        return new ArrayList(modelRegistry.snapshot().getNamespaceMap().values());
     }
 
     public Model getModelByTableNameAndNamespace(String tableName, String namespace) {
         String key = getNameSpaceKey(tableName, namespace);
-        return namespaceMap.get(key);
+        return modelRegistry.snapshot().getModel(key);
     }
 
     private String getNameSpaceKey(String tableName, String namespace) {
-        return new StringBuilder().append(tableName).append("_").append(namespace).toString();
+        return ModelRegistry.getNameSpaceKey(tableName, namespace);
     }
 
     private void clearCache(String name, String namespace) {
@@ -545,13 +649,8 @@ public class ModelManager implements InitializingBean {
             logger.error("not found model info table name {} namespace {}, please check if the model is already loaded.", request.getTableName(), request.getNamespace());
             throw new ModelNullException(" found model info, please check if the model is already loaded.");
         }
-        List<String> serviceIds = Lists.newArrayList();
         String nameSpaceKey = this.getNameSpaceKey(model.getTableName(), model.getNamespace());
-        serviceIdNamespaceMap.forEach((k, v) -> {
-            if (v.equals(nameSpaceKey)) {
-                serviceIds.add(k);
-            }
-        });
+        List<String> serviceIds = modelRegistry.snapshot().getServiceIds(nameSpaceKey);
 
         boolean useRegister = MetaInfo.PROPERTY_USE_REGISTER;
         if (useRegister) {
@@ -578,10 +677,11 @@ public class ModelManager implements InitializingBean {
             }
             logger.info("unregister urls: {}", unRegisterUrls);
         }
-        this.namespaceMap.remove(nameSpaceKey);
-        serviceIds.forEach(serviceId -> {
-            this.serviceIdNamespaceMap.remove(serviceId);
-        });
+        modelRegistry.removeModel(nameSpaceKey);
+        serviceIds.forEach(restoreStateMap::remove);
+        if (this.modelAccessMap.remove(model.getResourceName()) != null) {
+            this.modelAccessChanged = true;
+        }
         logger.info("unload model success");
         this.store();
         this.clearCache(model.getTableName(), model.getNamespace());
@@ -651,7 +751,7 @@ public class ModelManager implements InitializingBean {
     }
 
     public Model getPartnerModel(String tableName, String namespace) {
-        return this.partnerModelMap.get(getNameSpaceKey(tableName, namespace));
+        return modelRegistry.snapshot().getPartnerModel(getNameSpaceKey(tableName, namespace));
     }
 
     @Override
@@ -666,6 +766,7 @@ public class ModelManager implements InitializingBean {
             generateParent(namespaceFile);
             serviceIdFile = new File(bindModelStoreFileName);
             generateParent(serviceIdFile);
+            modelAccessFile = new File(locationPre + "/.fate/modelAccessStore.cache");
             // compatible 1.2.x
             locationPre = System.getProperty(Dict.PROPERTY_USER_HOME);
             String publishLoadFileName = locationPre + "/.fate/publishLoadStore.cache";
@@ -673,6 +774,25 @@ public class ModelManager implements InitializingBean {
             publishLoadStoreFile = new File(publishLoadFileName);
             publishOnlineStoreFile = new File(publishOnlineFileName);
         }
+        modelAccessStoreExecutor.scheduleAtFixedRate(this::storeModelAccess, MODEL_ACCESS_INTERVAL, MODEL_ACCESS_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        // 停机前写入最后一个周期的访问时间
+        modelAccessStoreExecutor.shutdown();
+        try {
+            modelAccessStoreExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        storeModelAccess();
+    }
+
+    public enum RestoreState {
+        LOADING,
+        READY,
+        FAILED
     }
 
     private static class RequestWapper {
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.model;
+
+import com.webank.ai.fate.serving.common.model.Model;
+import com.webank.ai.fate.serving.core.bean.Dict;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 模型注册表: 所有映射关系保存在一个不可变的 {@link Snapshot} 中, 通过一个 volatile 引用发布.
+ * 读 (每个请求的模型查找) 只读取当前快照, 不加锁; 写在锁内复制当前快照修改后整体替换,
+ * 读者看到的始终是某一次修改完成后的一致状态
+ */
+public class ModelRegistry {
+
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot = new Snapshot(new HashMap<>(), new HashMap<>());
+
+    public static String getNameSpaceKey(String tableName, String namespace) {
+        return new StringBuilder().append(tableName).append("_").append(namespace).toString();
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 在锁内基于当前快照修改并发布新快照
+     */
+    public <R> R update(Function<Builder, R> function) {
+        synchronized (writeLock) {
+            Builder builder = new Builder(snapshot);
+            R result = function.apply(builder);
+            if (builder.changed) {
+                snapshot = builder.build();
+            }
+            return result;
+        }
+    }
+
+    public void putModel(String namespaceKey, Model model) {
+        update(builder -> builder.putModel(namespaceKey, model));
+    }
+
+    public void bind(String serviceId, String namespaceKey) {
+        update(builder -> builder.bind(serviceId, namespaceKey));
+    }
+
+    public void unbind(Collection<String> serviceIds) {
+        update(builder -> {
+            serviceIds.forEach(builder::unbind);
+            return null;
+        });
+    }
+
+    /**
+     * 删除模型及其绑定的服务ID
+     */
+    public void removeModel(String namespaceKey) {
+        update(builder -> builder.removeModel(namespaceKey));
+    }
+
+    public static class Snapshot {
+        private final Map<String, Model> namespaceMap;
+        private final Map<String, String> serviceIdNamespaceMap;
+        // 以下为由上面两个映射派生的索引
+        private final Map<String, Model> serviceIdModelMap;
+        private final Map<String, List<String>> namespaceServiceIdsMap;
+        // (guest) name + namespace -> (host) model
+        private final Map<String, Model> partnerModelMap;
+
+        Snapshot(Map<String, Model> namespaceMap, Map<String, String> serviceIdNamespaceMap) {
+            Map<String, Model> serviceIdModelMap = new HashMap<>(serviceIdNamespaceMap.size() * 2);
+            Map<String, List<String>> namespaceServiceIdsMap = new HashMap<>(namespaceMap.size() * 2);
+            Map<String, Model> partnerModelMap = new HashMap<>(namespaceMap.size() * 2);
+            serviceIdNamespaceMap.forEach((serviceId, namespaceKey) -> {
+                Model model = namespaceMap.get(namespaceKey);
+                if (model != null) {
+                    serviceIdModelMap.put(serviceId, model);
+                }
+                namespaceServiceIdsMap.computeIfAbsent(namespaceKey, k -> new ArrayList<>()).add(serviceId);
+            });
+            namespaceMap.values().forEach(model -> {
+                if (Dict.HOST.equals(model.getRole())) {
+                    model.getFederationModelMap().values().forEach(remoteModel ->
+                            partnerModelMap.put(getNameSpaceKey(remoteModel.getTableName(), remoteModel.getNamespace()), model));
+                }
+            });
+            namespaceServiceIdsMap.replaceAll((k, v) -> Collections.unmodifiableList(v));
+            this.namespaceMap = Collections.unmodifiableMap(namespaceMap);
+            this.serviceIdNamespaceMap = Collections.unmodifiableMap(serviceIdNamespaceMap);
+            this.serviceIdModelMap = serviceIdModelMap;
+            this.namespaceServiceIdsMap = namespaceServiceIdsMap;
+            this.partnerModelMap = partnerModelMap;
+        }
+
+        public Model getModelByServiceId(String serviceId) {
+            return serviceIdModelMap.get(serviceId);
+        }
+
+        public boolean isBound(String serviceId) {
+            return serviceIdNamespaceMap.containsKey(serviceId);
+        }
+
+        public Model getModel(String namespaceKey) {
+            return namespaceMap.get(namespaceKey);
+        }
+
+        public Model getPartnerModel(String namespaceKey) {
+            return partnerModelMap.get(namespaceKey);
+        }
+
+        public String getNamespaceKey(String serviceId) {
+            return serviceIdNamespaceMap.get(serviceId);
+        }
+
+        public List<String> getServiceIds(String namespaceKey) {
+            return namespaceServiceIdsMap.getOrDefault(namespaceKey, Collections.emptyList());
+        }
+
+        public Map<String, Model> getNamespaceMap() {
+            return namespaceMap;
+        }
+
+        public Map<String, String> getServiceIdNamespaceMap() {
+            return serviceIdNamespaceMap;
+        }
+    }
+
+    public static class Builder {
+        private final Map<String, Model> namespaceMap;
+        private final Map<String, String> serviceIdNamespaceMap;
+        private boolean changed;
+
+        Builder(Snapshot snapshot) {
+            this.namespaceMap = new HashMap<>(snapshot.namespaceMap);
+            this.serviceIdNamespaceMap = new HashMap<>(snapshot.serviceIdNamespaceMap);
+        }
+
+        public Model getModel(String namespaceKey) {
+            return namespaceMap.get(namespaceKey);
+        }
+
+        public String getNamespaceKey(String serviceId) {
+            return serviceIdNamespaceMap.get(serviceId);
+        }
+
+        public Model putModel(String namespaceKey, Model model) {
+            changed = true;
+            return namespaceMap.put(namespaceKey, model);
+        }
+
+        public String bind(String serviceId, String namespaceKey) {
+            changed = true;
+            return serviceIdNamespaceMap.put(serviceId, namespaceKey);
+        }
+
+        public String unbind(String serviceId) {
+            changed = true;
+            return serviceIdNamespaceMap.remove(serviceId);
+        }
+
+        public Model removeModel(String namespaceKey) {
+            changed = true;
+            serviceIdNamespaceMap.values().removeIf(namespaceKey::equals);
+            return namespaceMap.remove(namespaceKey);
+        }
+
+        Snapshot build() {
+            return new Snapshot(namespaceMap, serviceIdNamespaceMap);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.rpc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.webank.ai.fate.api.serving.batch.BatchInferenceProto;
+import com.webank.ai.fate.serving.core.bean.BatchHostFederatedParams;
+import com.webank.ai.fate.serving.core.bean.BatchInferenceRequest;
+import com.webank.ai.fate.serving.core.bean.BatchInferenceResult;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.core.bean.MetaInfo;
+import com.webank.ai.fate.serving.core.utils.JsonUtil;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * guest 与 host 之间批量推理请求/结果的 protobuf 编解码
+ * <p>
+ * 特征以列的形式传输, 同一批次内的特征名只出现一次; 结果中 map 的 key 同样使用批次级别的字典.
+ * 解码后的对象与 json 反序列化得到的对象一致: 整数在 int 范围内时为 Integer, 否则为 Long
+ * <p>
+ * host 在响应头中声明自身版本, guest 只向已声明支持的 host 发送 protobuf, 其余 host 仍使用 json
+ */
+public class BatchInferenceCodec {
+
+    // host partyId -> 最近一次响应中声明的版本, 旧版本 host 不声明, 记为 0
+    private static final ConcurrentMap<String, Long> HOST_VERSIONS = new ConcurrentHashMap<>();
+
+    public static boolean isProtobuf(String bodyCodec) {
+        return Dict.BODY_CODEC_PROTOBUF.equals(bodyCodec);
+    }
+
+    public static boolean useProtobuf(String hostPartyId) {
+        if (!isProtobuf(MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC)) {
+            return false;
+        }
+        // 尚未收到过该 host 的响应时不知道其版本, 先用 json
+        Long version = HOST_VERSIONS.get(hostPartyId);
+        return version != null && version >= MetaInfo.BATCH_PROTOBUF_BODY_VERSION;
+    }
+
+    public static void recordHostVersion(String hostPartyId, String version) {
+        long value = 0;
+        if (StringUtils.isNotBlank(version)) {
+            try {
+                value = (long) Double.parseDouble(version);
+            } catch (NumberFormatException e) {
+                value = 0;
+            }
+        }
+        HOST_VERSIONS.put(hostPartyId, value);
+    }
+
+    public static byte[] encodeRequest(BatchHostFederatedParams params) {
+        BatchInferenceProto.BatchHostRequest.Builder builder = BatchInferenceProto.BatchHostRequest.newBuilder();
+        builder.setCaseId(StringUtils.defaultString(params.getCaseId()));
+        builder.setServiceId(StringUtils.defaultString(params.getServiceId()));
+        builder.setApplyId(StringUtils.defaultString(params.getApplyId()));
+        builder.setPartyId(StringUtils.defaultString(params.getPartyId()));
+        builder.setModelId(StringUtils.defaultString(params.getModelId()));
+        builder.setModelVersion(StringUtils.defaultString(params.getModelVersion()));
+        builder.setHostTableName(StringUtils.defaultString(params.getHostTableName()));
+        builder.setHostNamespace(StringUtils.defaultString(params.getHostNamespace()));
+        builder.setGuestPartyId(StringUtils.defaultString(params.getGuestPartyId()));
+        builder.setHostPartyId(StringUtils.defaultString(params.getHostPartyId()));
+        builder.setBatch(encodeFeatureBatch(params.getBatchDataList()));
+        return builder.build().toByteArray();
+    }
+
+    public static BatchHostFederatedParams decodeRequest(byte[] body) throws InvalidProtocolBufferException {
+        BatchInferenceProto.BatchHostRequest request = BatchInferenceProto.BatchHostRequest.parseFrom(body);
+        BatchHostFederatedParams params = new BatchHostFederatedParams();
+        params.setCaseId(request.getCaseId());
+        params.setServiceId(StringUtils.trimToNull(request.getServiceId()));
+        params.setApplyId(StringUtils.trimToNull(request.getApplyId()));
+        params.setPartyId(StringUtils.trimToNull(request.getPartyId()));
+        params.setModelId(StringUtils.trimToNull(request.getModelId()));
+        params.setModelVersion(StringUtils.trimToNull(request.getModelVersion()));
+        params.setHostTableName(request.getHostTableName());
+        params.setHostNamespace(request.getHostNamespace());
+        params.setGuestPartyId(request.getGuestPartyId());
+        params.setHostPartyId(request.getHostPartyId());
+        params.setBatchDataList(decodeFeatureBatch(request.getBatch()));
+        return params;
+    }
+
+    public static byte[] encodeResult(BatchInferenceResult result) {
+        Dictionary dictionary = new Dictionary();
+        BatchInferenceProto.BatchHostResult.Builder builder = BatchInferenceProto.BatchHostResult.newBuilder();
+        builder.setRetcode(result.getRetcode());
+        builder.setRetmsg(StringUtils.defaultString(result.getRetmsg()));
+        builder.setCaseid(StringUtils.defaultString(result.getCaseid()));
+        if (result.getData() != null) {
+            builder.setData(encodeMap(result.getData(), dictionary));
+        }
+        for (BatchInferenceResult.SingleInferenceResult single : result.getBatchDataList()) {
+            BatchInferenceProto.SingleResult.Builder singleBuilder = BatchInferenceProto.SingleResult.newBuilder();
+            if (single.getIndex() != null) {
+                singleBuilder.setIndex(single.getIndex());
+            }
+            singleBuilder.setRetcode(single.getRetcode());
+            singleBuilder.setRetmsg(StringUtils.defaultString(single.getRetmsg()));
+            if (single.getData() != null) {
+                singleBuilder.setHasData(true);
+                singleBuilder.setData(encodeMap(single.getData(), dictionary));
+            }
+            builder.addResults(singleBuilder);
+        }
+        builder.addAllDictionary(dictionary.names);
+        return builder.build().toByteArray();
+    }
+
+    public static BatchInferenceResult decodeResult(byte[] body) throws InvalidProtocolBufferException {
+        BatchInferenceProto.BatchHostResult proto = BatchInferenceProto.BatchHostResult.parseFrom(body);
+        List<String> dictionary = proto.getDictionaryList();
+        BatchInferenceResult result = new BatchInferenceResult();
+        result.setRetcode(proto.getRetcode());
+        result.setRetmsg(proto.getRetmsg());
+        result.setCaseid(proto.getCaseid());
+        if (proto.hasData()) {
+            result.setData(decodeMap(proto.getData(), dictionary));
+        }
+        List<BatchInferenceResult.SingleInferenceResult> singleResults = new ArrayList<>(proto.getResultsCount());
+        for (BatchInferenceProto.SingleResult single : proto.getResultsList()) {
+            Map<String, Object> data = single.getHasData() ? decodeMap(single.getData(), dictionary) : null;
+            singleResults.add(new BatchInferenceResult.SingleInferenceResult(single.getIndex(), single.getRetcode(), single.getRetmsg(), data));
+        }
+        result.setBatchDataList(singleResults);
+        return result;
+    }
+
+    private static BatchInferenceProto.FeatureBatch encodeFeatureBatch(List<BatchInferenceRequest.SingleInferenceData> rows) {
+        Dictionary dictionary = new Dictionary();
+        BatchInferenceProto.FeatureBatch.Builder batchBuilder = BatchInferenceProto.FeatureBatch.newBuilder();
+        // 同名特征在不同行中类型可能不同, 按 (特征, 类型) 分列
+        Map<Long, BatchInferenceProto.FeatureColumn.Builder> columns = new LinkedHashMap<>();
+        if (rows != null) {
+            for (int row = 0; row < rows.size(); row++) {
+                BatchInferenceRequest.SingleInferenceData data = rows.get(row);
+                batchBuilder.addIndexes(data.getIndex());
+                batchBuilder.addNeedCheckFeature(data.isNeedCheckFeature());
+                Map<String, Object> features = data.getSendToRemoteFeatureData();
+                if (features == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Object> entry : features.entrySet()) {
+                    int name = dictionary.indexOf(entry.getKey());
+                    Object value = entry.getValue();
+                    BatchInferenceProto.ColumnType type = columnType(value);
+                    long columnKey = ((long) name << 2) | type.getNumber();
+                    BatchInferenceProto.FeatureColumn.Builder column = columns.get(columnKey);
+                    if (column == null) {
+                        column = BatchInferenceProto.FeatureColumn.newBuilder().setName(name).setType(type);
+                        columns.put(columnKey, column);
+                    }
+                    column.addRows(row);
+                    switch (type) {
+                        case DOUBLE:
+                            column.addDoubleValues(toDouble((Number) value));
+                            break;
+                        case LONG:
+                            column.addLongValues(((Number) value).longValue());
+                            break;
+                        case STRING:
+                            column.addStringValues((String) value);
+                            break;
+                        default:
+                            column.addStringValues(JsonUtil.object2Json(value));
+                    }
+                }
+            }
+        }
+        for (BatchInferenceProto.FeatureColumn.Builder column : columns.values()) {
+            batchBuilder.addColumns(column);
+        }
+        batchBuilder.addAllDictionary(dictionary.names);
+        return batchBuilder.build();
+    }
+
+    private static List<BatchHostFederatedParams.SingleInferenceData> decodeFeatureBatch(BatchInferenceProto.FeatureBatch batch) {
+        int rowCount = batch.getIndexesCount();
+        List<BatchHostFederatedParams.SingleInferenceData> rows = Lists.newArrayListWithCapacity(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            BatchHostFederatedParams.SingleInferenceData data = new BatchHostFederatedParams.SingleInferenceData();
+            data.setIndex(batch.getIndexes(row));
+            data.setNeedCheckFeature(row < batch.getNeedCheckFeatureCount() && batch.getNeedCheckFeature(row));
+            rows.add(data);
+        }
+        List<String> dictionary = batch.getDictionaryList();
+        for (BatchInferenceProto.FeatureColumn column : batch.getColumnsList()) {
+            String name = dictionary.get(column.getName());
+            for (int i = 0; i < column.getRowsCount(); i++) {
+                Object value;
+                switch (column.getType()) {
+                    case DOUBLE:
+                        value = column.getDoubleValues(i);
+                        break;
+                    case LONG:
+                        value = narrow(column.getLongValues(i));
+                        break;
+                    case STRING:
+                        value = column.getStringValues(i);
+                        break;
+                    default:
+                        value = JsonUtil.json2Object(column.getStringValues(i), Object.class);
+                }
+                rows.get(column.getRows(i)).getSendToRemoteFeatureData().put(name, value);
+            }
+        }
+        return rows;
+    }
+
+    private static BatchInferenceProto.ColumnType columnType(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return BatchInferenceProto.ColumnType.DOUBLE;
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return BatchInferenceProto.ColumnType.LONG;
+        }
+        if (value instanceof String) {
+            return BatchInferenceProto.ColumnType.STRING;
+        }
+        return BatchInferenceProto.ColumnType.JSON;
+    }
+
+    private static double toDouble(Number value) {
+        // float 按其十进制文本转换, 与 json 序列化后再解析的结果一致
+        if (value instanceof Float) {
+            return Double.parseDouble(value.toString());
+        }
+        return value.doubleValue();
+    }
+
+    private static Object narrow(long value) {
+        if (value == (int) value) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    private static BatchInferenceProto.ValueMap encodeMap(Map<?, ?> map, Dictionary dictionary) {
+        BatchInferenceProto.ValueMap.Builder builder = BatchInferenceProto.ValueMap.newBuilder();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            builder.addKeys(dictionary.indexOf(String.valueOf(entry.getKey())));
+            builder.addValues(encodeValue(entry.getValue(), dictionary));
+        }
+        return builder.build();
+    }
+
+    private static BatchInferenceProto.Value encodeValue(Object value, Dictionary dictionary) {
+        BatchInferenceProto.Value.Builder builder = BatchInferenceProto.Value.newBuilder();
+        if (value == null) {
+            builder.setNullValue(true);
+        } else if (value instanceof Double || value instanceof Float) {
+            builder.setDoubleValue(toDouble((Number) value));
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            builder.setLongValue(((Number) value).longValue());
+        } else if (value instanceof String) {
+            builder.setStringValue((String) value);
+        } else if (value instanceof Boolean) {
+            builder.setBoolValue((Boolean) value);
+        } else if (value instanceof Map) {
+            builder.setMapValue(encodeMap((Map<?, ?>) value, dictionary));
+        } else if (value instanceof Collection) {
+            BatchInferenceProto.ValueList.Builder listBuilder = BatchInferenceProto.ValueList.newBuilder();
+            for (Object item : (Collection<?>) value) {
+                listBuilder.addValues(encodeValue(item, dictionary));
+            }
+            builder.setListValue(listBuilder);
+        } else if (value.getClass().isArray()) {
+            BatchInferenceProto.ValueList.Builder listBuilder = BatchInferenceProto.ValueList.newBuilder();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                listBuilder.addValues(encodeValue(Array.get(value, i), dictionary));
+            }
+            builder.setListValue(listBuilder);
+        } else {
+            // 其他类型按 json 的树形结构传输
+            return encodeValue(JsonUtil.json2Object(JsonUtil.object2Json(value), Object.class), dictionary);
+        }
+        return builder.build();
+    }
+
+    private static Map<String, Object> decodeMap(BatchInferenceProto.ValueMap valueMap, List<String> dictionary) {
+        Map<String, Object> map = Maps.newHashMapWithExpectedSize(valueMap.getKeysCount());
+        for (int i = 0; i < valueMap.getKeysCount(); i++) {
+            map.put(dictionary.get(valueMap.getKeys(i)), decodeValue(valueMap.getValues(i), dictionary));
+        }
+        return map;
+    }
+
+    private static Object decodeValue(BatchInferenceProto.Value value, List<String> dictionary) {
+        switch (value.getKindCase()) {
+            case DOUBLEVALUE:
+                return value.getDoubleValue();
+            case LONGVALUE:
+                return narrow(value.getLongValue());
+            case STRINGVALUE:
+                return value.getStringValue();
+            case BOOLVALUE:
+                return value.getBoolValue();
+            case MAPVALUE:
+                return decodeMap(value.getMapValue(), dictionary);
+            case LISTVALUE:
+                List<Object> list = new ArrayList<>(value.getListValue().getValuesCount());
+                for (BatchInferenceProto.Value item : value.getListValue().getValuesList()) {
+                    list.add(decodeValue(item, dictionary));
+                }
+                return list;
+            default:
+                return null;
+        }
+    }
+
+    private static class Dictionary {
+        final Map<String, Integer> index = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+
+        int indexOf(String name) {
+            Integer i = index.get(name);
+            if (i == null) {
+                i = names.size();
+                index.put(name, i);
+                names.add(name);
+            }
+            return i;
+        }
+    }
+}
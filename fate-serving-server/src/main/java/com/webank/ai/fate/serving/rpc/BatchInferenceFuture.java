@@ -18,7 +18,11 @@ package com.webank.ai.fate.serving.rpc;
 
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.webank.ai.fate.api.networking.proxy.Proxy;
 import com.webank.ai.fate.serving.common.async.AsyncMessageEvent;
 import com.webank.ai.fate.serving.common.cache.Cache;
@@ -28,20 +32,20 @@ import com.webank.ai.fate.serving.common.utils.DisruptorUtil;
 import com.webank.ai.fate.serving.core.bean.BatchInferenceRequest;
 import com.webank.ai.fate.serving.core.bean.BatchInferenceResult;
 import com.webank.ai.fate.serving.core.bean.Dict;
-import com.webank.ai.fate.serving.core.bean.EncryptMethod;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
-import com.webank.ai.fate.serving.core.utils.EncryptUtils;
+import com.webank.ai.fate.serving.core.exceptions.RemoteRpcException;
+import com.webank.ai.fate.serving.core.utils.FeatureHashUtil;
 import com.webank.ai.fate.serving.core.utils.JsonUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
-public class BatchInferenceFuture extends AbstractFuture {
+/**
+ * host 批量推理结果: 远端返回后解析并与命中缓存的部分合并, 完成时通知已注册的回调
+ */
+public class BatchInferenceFuture extends AbstractFuture<BatchInferenceResult> {
 
     Logger logger = LoggerFactory.getLogger(BatchInferenceFuture.class);
     ListenableFuture<Proxy.Packet> future;
@@ -60,17 +64,32 @@ public class BatchInferenceFuture extends AbstractFuture {
         this.batchInferenceRequest = batchInferenceRequest;
         this.useCache = useCache;
         this.cacheData = cacheData;
-    }
-
-    @Override
-    public BatchInferenceResult get() throws InterruptedException, ExecutionException {
         if (future != null) {
-            BatchInferenceResult remoteBatchInferenceResult = parse(future.get());
-            return mergeCache(remoteBatchInferenceResult);
+            Futures.addCallback(future, new FutureCallback<Proxy.Packet>() {
+                @Override
+                public void onSuccess(Proxy.Packet remote) {
+                    try {
+                        set(mergeCache(parse(remote)));
+                    } catch (Throwable e) {
+                        setException(e);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    setException(t);
+                }
+            }, MoreExecutors.directExecutor());
         } else {
-            return mergeCache(null);
+            set(mergeCache(null));
         }
+    }
 
+    @Override
+    protected void afterDone() {
+        if (isCancelled() && future != null) {
+            future.cancel(wasInterrupted());
+        }
     }
 
     public BatchInferenceResult mergeCache(BatchInferenceResult remoteBatchInferenceResult) {
@@ -95,20 +114,23 @@ public class BatchInferenceFuture extends AbstractFuture {
         }
     }
 
-    @Override
-    public BatchInferenceResult get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        if (future != null) {
-            BatchInferenceResult remoteBatchInferenceResult = parse(future.get(timeout, unit));
-            return mergeCache(remoteBatchInferenceResult);
-        } else {
-            return mergeCache(null);
-        }
-    }
-
     private BatchInferenceResult parse(Proxy.Packet remote) {
         if (remote != null) {
-            String remoteContent = remote.getBody().getValue().toStringUtf8();
-            BatchInferenceResult remoteInferenceResult = JsonUtil.json2Object(remoteContent, BatchInferenceResult.class);
+            BatchInferenceResult remoteInferenceResult;
+            String hostPartyId = rpcDataWraper.getHostModel().getPartId();
+            BatchInferenceCodec.recordHostVersion(hostPartyId, remote.getHeader().getOperator());
+            if (BatchInferenceCodec.isProtobuf(remote.getHeader().getBodyCodec())) {
+                try {
+                    remoteInferenceResult = BatchInferenceCodec.decodeResult(remote.getBody().getValue().toByteArray());
+                } catch (InvalidProtocolBufferException e) {
+                    // 解析失败后对该 host 退回 json
+                    BatchInferenceCodec.recordHostVersion(hostPartyId, null);
+                    throw new RemoteRpcException("parse remote batch result error: " + e.getMessage());
+                }
+            } else {
+                String remoteContent = remote.getBody().getValue().toStringUtf8();
+                remoteInferenceResult = JsonUtil.json2Object(remoteContent, BatchInferenceResult.class);
+            }
             if (useCache && StatusCode.SUCCESS == remoteInferenceResult.getRetcode()) {
                 try {
                     AsyncMessageEvent asyncMessageEvent = new AsyncMessageEvent();
@@ -138,10 +160,7 @@ public class BatchInferenceFuture extends AbstractFuture {
         String tableName = guestModel.getTableName();
         String namespace = guestModel.getNamespace();
         String partId = hostModel.getPartId();
-        StringBuilder sb = new StringBuilder();
-        sb.append(partId).append(tableName).append(namespace).append(JsonUtil.object2Json(sendToRemote));
-        String key = EncryptUtils.encrypt(sb.toString(), EncryptMethod.MD5);
-        return key;
+        return FeatureHashUtil.hash(sendToRemote, partId, tableName, namespace).toString();
     }
 
 }
@@ -20,8 +20,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.ByteString;
 import com.webank.ai.fate.api.networking.proxy.DataTransferServiceGrpc;
 import com.webank.ai.fate.api.networking.proxy.Proxy;
@@ -36,7 +37,8 @@ import com.webank.ai.fate.serving.common.rpc.core.FederatedRpcInvoker;
 import com.webank.ai.fate.serving.common.utils.DisruptorUtil;
 import com.webank.ai.fate.serving.core.bean.*;
 import com.webank.ai.fate.serving.core.constant.StatusCode;
-import com.webank.ai.fate.serving.core.utils.EncryptUtils;
+import com.webank.ai.fate.serving.core.exceptions.DeadlineExceededException;
+import com.webank.ai.fate.serving.core.utils.FeatureHashUtil;
 import com.webank.ai.fate.serving.core.utils.JsonUtil;
 import com.webank.ai.fate.serving.event.CacheEventData;
 import io.grpc.ManagedChannel;
@@ -49,9 +51,7 @@ import org.springframework.stereotype.Service;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 @Service
 public class DefaultFederatedRpcInvoker implements FederatedRpcInvoker<Proxy.Packet> {
@@ -62,12 +62,18 @@ public class DefaultFederatedRpcInvoker implements FederatedRpcInvoker<Proxy.Pac
     @Autowired
     private Cache cache;
 
-    private Proxy.Packet build(Context context, RpcDataWraper rpcDataWraper) {
+    Proxy.Packet build(Context context, RpcDataWraper rpcDataWraper, long timeout) {
         Model model = ((ServingServerContext) context).getModel();
         Preconditions.checkArgument(model != null);
         Proxy.Packet.Builder packetBuilder = Proxy.Packet.newBuilder();
-        packetBuilder.setBody(Proxy.Data.newBuilder().setValue(ByteString.copyFrom(JsonUtil.object2Json(rpcDataWraper.getData()).getBytes())).build());
         Proxy.Metadata.Builder metaDataBuilder = Proxy.Metadata.newBuilder();
+        Object data = rpcDataWraper.getData();
+        if (data instanceof BatchHostFederatedParams && BatchInferenceCodec.useProtobuf(rpcDataWraper.getHostModel().getPartId())) {
+            packetBuilder.setBody(Proxy.Data.newBuilder().setValue(ByteString.copyFrom(BatchInferenceCodec.encodeRequest((BatchHostFederatedParams) data))).build());
+            metaDataBuilder.setBodyCodec(Dict.BODY_CODEC_PROTOBUF);
+        } else {
+            packetBuilder.setBody(Proxy.Data.newBuilder().setValue(ByteString.copyFrom(JsonUtil.object2Json(data).getBytes())).build());
+        }
         Proxy.Topic.Builder topicBuilder = Proxy.Topic.newBuilder();
         metaDataBuilder.setSrc(topicBuilder.setPartyId(String.valueOf(model.getPartId())).setRole(MetaInfo.PROPERTY_SERVICE_ROLE_NAME).setName(Dict.PARTNER_PARTY_NAME).build());
         metaDataBuilder.setDst(topicBuilder.setPartyId(String.valueOf(rpcDataWraper.getHostModel().getPartId())).setRole(MetaInfo.PROPERTY_SERVICE_ROLE_NAME).setName(Dict.PARTY_NAME).build());
@@ -80,6 +86,10 @@ public class DefaultFederatedRpcInvoker implements FederatedRpcInvoker<Proxy.Pac
         modelBuilder.setTableName(rpcDataWraper.getHostModel().getTableName());
         taskBuilder.setModel(modelBuilder.build());
         metaDataBuilder.setTask(taskBuilder.build());
+        if (timeout > 0) {
+            // 剩余时间随请求经 proxy 传给 host, 每一跳扣除自身耗时
+            metaDataBuilder.setConf(Proxy.Conf.newBuilder().setOverallTimeout(timeout).build());
+        }
         packetBuilder.setHeader(metaDataBuilder.build());
         Proxy.AuthInfo.Builder authBuilder = Proxy.AuthInfo.newBuilder();
         if (context.getCaseId() != null) {
@@ -115,6 +125,10 @@ public class DefaultFederatedRpcInvoker implements FederatedRpcInvoker<Proxy.Pac
         return address;
     }
 
+    ManagedChannel getManagedChannel(String address) {
+        return GrpcConnectionPool.getPool().getManagedChannel(address);
+    }
+
     @Override
     public Proxy.Packet sync(Context context, RpcDataWraper rpcDataWraper, long timeout) {
         Proxy.Packet resultPacket = null;
@@ -136,10 +150,7 @@ public class DefaultFederatedRpcInvoker implements FederatedRpcInvoker<Proxy.Pac
         String tableName = guestModel.getTableName();
         String namespace = guestModel.getNamespace();
         String partId = hostModel.getPartId();
-        StringBuilder sb = new StringBuilder();
-        sb.append(partId).append(tableName).append(namespace).append(JsonUtil.object2Json(sendToRemote));
-        String key = EncryptUtils.encrypt(sb.toString(), EncryptMethod.MD5);
-        return key;
+        return FeatureHashUtil.hash(sendToRemote, partId, tableName, namespace).toString();
     }
 
     @Override
@@ -152,54 +163,32 @@ public class DefaultFederatedRpcInvoker implements FederatedRpcInvoker<Proxy.Pac
                 ReturnResult returnResult = new ReturnResult();
                 returnResult.setRetcode(StatusCode.SUCCESS);
                 returnResult.setRetmsg("hit host cache");
-                return new AbstractFuture<ReturnResult>() {
-                    @Override
-                    public ReturnResult get() throws InterruptedException, ExecutionException {
-                        returnResult.setData(data);
-                        return returnResult;
-                    }
-
-                    @Override
-                    public ReturnResult get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-                        returnResult.setData(data);
-                        return returnResult;
-                    }
-                };
+                returnResult.setData(data);
+                return Futures.immediateFuture(returnResult);
             }
         }
         ListenableFuture<Proxy.Packet> future = this.async(context, rpcDataWraper);
-        return new AbstractFuture<ReturnResult>() {
-            @Override
-            public ReturnResult get() throws InterruptedException, ExecutionException {
-                return parse(future.get());
-            }
-
-            @Override
-            public ReturnResult get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-                return parse(future.get(timeout, unit));
-            }
-
-            private ReturnResult parse(Proxy.Packet remote) {
-                if (remote != null) {
-                    String remoteContent = remote.getBody().getValue().toStringUtf8();
-                    ReturnResult remoteInferenceResult = JsonUtil.json2Object(remoteContent, ReturnResult.class);
-                    if (useCache && StatusCode.SUCCESS == remoteInferenceResult.getRetcode()) {
-                        try {
-                            AsyncMessageEvent asyncMessageEvent = new AsyncMessageEvent();
-                            CacheEventData cacheEventData = new CacheEventData(buildCacheKey(rpcDataWraper.getGuestModel(), rpcDataWraper.getHostModel(), inferenceRequest.getSendToRemoteFeatureData()), remoteInferenceResult.getData());
-                            asyncMessageEvent.setName(Dict.EVENT_SET_INFERENCE_CACHE);
-                            asyncMessageEvent.setData(cacheEventData);
-                            DisruptorUtil.producer(asyncMessageEvent);
-                        } catch (Exception e) {
-                            logger.error("send cache event error", e);
-                        }
+        // 在完成 rpc 的线程上直接解析, 调用方可以注册回调而不必阻塞等待
+        return Futures.transform(future, remote -> {
+            if (remote != null) {
+                String remoteContent = remote.getBody().getValue().toStringUtf8();
+                ReturnResult remoteInferenceResult = JsonUtil.json2Object(remoteContent, ReturnResult.class);
+                if (useCache && StatusCode.SUCCESS == remoteInferenceResult.getRetcode()) {
+                    try {
+                        AsyncMessageEvent asyncMessageEvent = new AsyncMessageEvent();
+                        CacheEventData cacheEventData = new CacheEventData(buildCacheKey(rpcDataWraper.getGuestModel(), rpcDataWraper.getHostModel(), inferenceRequest.getSendToRemoteFeatureData()), remoteInferenceResult.getData());
+                        asyncMessageEvent.setName(Dict.EVENT_SET_INFERENCE_CACHE);
+                        asyncMessageEvent.setData(cacheEventData);
+                        DisruptorUtil.producer(asyncMessageEvent);
+                    } catch (Exception e) {
+                        logger.error("send cache event error", e);
                     }
-                    return remoteInferenceResult;
-                } else {
-                    return null;
                 }
+                return remoteInferenceResult;
+            } else {
+                return null;
             }
-        };
+        }, MoreExecutors.directExecutor());
     }
 
 
@@ -263,12 +252,21 @@ public class DefaultFederatedRpcInvoker implements FederatedRpcInvoker<Proxy.Pac
 
     @Override
     public ListenableFuture<Proxy.Packet> async(Context context, RpcDataWraper rpcDataWraper) {
-        Proxy.Packet packet = this.build(context, rpcDataWraper);
+        long timeout = 0;
+        if (context.getDeadline() > 0) {
+            timeout = context.getRemainingTime();
+            if (timeout <= 0) {
+                return Futures.immediateFailedFuture(new DeadlineExceededException("deadline exceeded before calling host " + rpcDataWraper.getHostModel().getPartId()));
+            }
+        }
+        Proxy.Packet packet = this.build(context, rpcDataWraper, timeout);
         String address = this.route();
-        GrpcConnectionPool grpcConnectionPool = GrpcConnectionPool.getPool();
         Preconditions.checkArgument(StringUtils.isNotEmpty(address));
-        ManagedChannel channel1 = grpcConnectionPool.getManagedChannel(address);
+        ManagedChannel channel1 = this.getManagedChannel(address);
         DataTransferServiceGrpc.DataTransferServiceFutureStub stub1 = DataTransferServiceGrpc.newFutureStub(channel1);
+        if (timeout > 0) {
+            stub1 = stub1.withDeadlineAfter(timeout, TimeUnit.MILLISECONDS);
+        }
         context.setDownstreamBegin(System.currentTimeMillis());
         ListenableFuture<Proxy.Packet> future = stub1.unaryCall(packet);
         return future;
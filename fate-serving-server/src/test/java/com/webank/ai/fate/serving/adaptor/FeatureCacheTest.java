@@ -0,0 +1,300 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.adaptor;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.core.adaptor.*;
+import com.webank.ai.fate.serving.core.bean.BatchHostFeatureAdaptorResult;
+import com.webank.ai.fate.serving.core.bean.BatchHostFederatedParams;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.bean.ReturnResult;
+import com.webank.ai.fate.serving.core.constant.StatusCode;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(JUnit4.class)
+public class FeatureCacheTest {
+
+    private static final long LOAD_MILLIS = 50;
+
+    private static Map<String, Object> featureIds(String deviceId) {
+        Map<String, Object> featureIds = Maps.newHashMap();
+        featureIds.put("device_id", deviceId);
+        return featureIds;
+    }
+
+    private static BatchHostFederatedParams.SingleInferenceData data(int index, String deviceId) {
+        BatchHostFederatedParams.SingleInferenceData data = new BatchHostFederatedParams.SingleInferenceData();
+        data.setIndex(index);
+        data.setSendToRemoteFeatureData(featureIds(deviceId));
+        return data;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 同一个 key 的并发未命中只调用一次 adaptor, 之后命中缓存
+     */
+    @Test
+    public void testSingleflight() throws Exception {
+        SlowSingleAdaptor slow = new SlowSingleAdaptor();
+        CachingSingleFeatureDataAdaptor adaptor = new CachingSingleFeatureDataAdaptor(slow, 100, 60, 0);
+        int threads = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    ReturnResult result = adaptor.getData(null, featureIds("a"));
+                    Assert.assertEquals(StatusCode.SUCCESS, result.getRetcode());
+                    Assert.assertEquals("a", result.getData().get("device_id"));
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(error.get());
+        Assert.assertEquals(1, slow.calls.get());
+
+        // 返回的是副本, 修改不影响缓存
+        adaptor.getData(null, featureIds("a")).getData().clear();
+        Assert.assertEquals("a", adaptor.getData(null, featureIds("a")).getData().get("device_id"));
+        Assert.assertEquals(1, slow.calls.get());
+
+        FeatureCacheMetrics metrics = adaptor.getFeatureCache().getMetrics();
+        Assert.assertEquals(threads + 2, metrics.getRequestCount());
+        Assert.assertEquals(1, metrics.getLoadCount());
+        Assert.assertEquals(threads - 1, metrics.getWaitCount());
+        Assert.assertTrue(metrics.getAvgLoadMicros() >= LOAD_MILLIS * 1000);
+    }
+
+    /**
+     * 失败的结果不缓存
+     */
+    @Test
+    public void testErrorNotCached() {
+        SlowSingleAdaptor slow = new SlowSingleAdaptor();
+        CachingSingleFeatureDataAdaptor adaptor = new CachingSingleFeatureDataAdaptor(slow, 100, 60, 0);
+        Assert.assertEquals(StatusCode.HOST_FEATURE_NOT_EXIST, adaptor.getData(null, featureIds("missing")).getRetcode());
+        Assert.assertEquals(StatusCode.HOST_FEATURE_NOT_EXIST, adaptor.getData(null, featureIds("missing")).getRetcode());
+        Assert.assertEquals(2, slow.calls.get());
+    }
+
+    /**
+     * 批量请求只对未命中的数据调用 adaptor, 并发的批量请求中重复的 key 只加载一次
+     */
+    @Test
+    public void testBatch() throws Exception {
+        SlowBatchAdaptor slow = new SlowBatchAdaptor();
+        CachingBatchFeatureDataAdaptor adaptor = new CachingBatchFeatureDataAdaptor(slow, 100, 60, 0);
+
+        BatchHostFeatureAdaptorResult result = adaptor.getFeatures(null, Lists.newArrayList(data(0, "a"), data(1, "b"), data(2, "a")));
+        Assert.assertEquals(3, result.getIndexResultMap().size());
+        Assert.assertEquals("a", result.getIndexResultMap().get(2).getFeatures().get("device_id"));
+        Assert.assertEquals(Integer.valueOf(2), result.getIndexResultMap().get(2).getIndex());
+        Assert.assertEquals(Collections.singletonList(2), slow.requested);
+
+        result = adaptor.getFeatures(null, Lists.newArrayList(data(0, "b"), data(1, "c"), data(2, "missing")));
+        Assert.assertEquals("b", result.getIndexResultMap().get(0).getFeatures().get("device_id"));
+        Assert.assertEquals("c", result.getIndexResultMap().get(1).getFeatures().get("device_id"));
+        Assert.assertEquals(StatusCode.HOST_FEATURE_NOT_EXIST, result.getIndexResultMap().get(2).getRetcode());
+        Assert.assertEquals(Arrays.asList(2, 2), slow.requested);
+
+        slow.requested.clear();
+        int threads = 8;
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    List<BatchHostFederatedParams.SingleInferenceData> list = Lists.newArrayList();
+                    for (int i = 0; i < 16; i++) {
+                        list.add(data(i, "d" + i));
+                    }
+                    BatchHostFeatureAdaptorResult batchResult = adaptor.getFeatures(null, list);
+                    Assert.assertEquals(16, batchResult.getIndexResultMap().size());
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(error.get());
+        Assert.assertEquals(16, slow.requested.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    /**
+     * 超过 refresh 时间的命中返回旧值, 并在后台用单独的 context 刷新
+     */
+    @Test
+    public void testRefreshAhead() throws Exception {
+        SlowSingleAdaptor slow = new SlowSingleAdaptor();
+        CachingSingleFeatureDataAdaptor adaptor = new CachingSingleFeatureDataAdaptor(slow, 100, 10, 1);
+        Assert.assertEquals(1, adaptor.getData(null, featureIds("a")).getData().get("version"));
+        Thread.sleep(1100);
+
+        Context context = new BaseContext();
+        context.setDeadline(System.currentTimeMillis() + LOAD_MILLIS);
+        Assert.assertEquals(1, adaptor.getData(context, featureIds("a")).getData().get("version"));
+        long deadline = System.currentTimeMillis() + 5000;
+        Object version = 1;
+        while (version.equals(1) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            version = adaptor.getData(null, featureIds("a")).getData().get("version");
+        }
+        Assert.assertEquals(2, version);
+        Assert.assertEquals(2, slow.calls.get());
+        Assert.assertEquals(1, adaptor.getFeatureCache().getMetrics().getRefreshCount());
+        // 刷新不使用请求的 context, 也不受请求的截止时间限制
+        Context refreshContext = slow.contexts.get(1);
+        Assert.assertNotNull(refreshContext);
+        Assert.assertNotSame(context, refreshContext);
+        Assert.assertEquals(0, refreshContext.getDeadline());
+    }
+
+    /**
+     * 批量请求的刷新按 key 重新构造请求数据, 请求返回后调用方修改自己的数据不影响刷新
+     */
+    @Test
+    public void testBatchRefreshAhead() throws Exception {
+        SlowBatchAdaptor slow = new SlowBatchAdaptor();
+        CachingBatchFeatureDataAdaptor adaptor = new CachingBatchFeatureDataAdaptor(slow, 100, 10, 1);
+        adaptor.getFeatures(null, Lists.newArrayList(data(0, "a")));
+        Thread.sleep(1100);
+
+        BatchHostFederatedParams.SingleInferenceData request = data(7, "a");
+        Context context = new BaseContext();
+        BatchHostFeatureAdaptorResult result = adaptor.getFeatures(context, Lists.newArrayList(request));
+        Assert.assertEquals("a", result.getIndexResultMap().get(7).getFeatures().get("device_id"));
+        request.getSendToRemoteFeatureData().clear();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (slow.requested.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, slow.requested.size());
+        Assert.assertNotSame(context, slow.contexts.get(1));
+        BatchHostFederatedParams.SingleInferenceData refreshed = slow.data.get(1).get(0);
+        Assert.assertNotSame(request, refreshed);
+        Assert.assertEquals(featureIds("a"), refreshed.getSendToRemoteFeatureData());
+        Assert.assertEquals(1, adaptor.getFeatureCache().getMetrics().getRefreshCount());
+    }
+
+    /**
+     * 热点数据下每个 key 只加载一次, 其余请求命中缓存
+     */
+    @Test
+    public void testHitRate() {
+        SlowSingleAdaptor slow = new SlowSingleAdaptor();
+        CachingSingleFeatureDataAdaptor adaptor = new CachingSingleFeatureDataAdaptor(slow, 100, 60, 0);
+        int requests = 200;
+        int devices = 10;
+        for (int i = 0; i < requests; i++) {
+            adaptor.getData(null, featureIds("d" + (i % devices)));
+        }
+        FeatureCacheMetrics metrics = adaptor.getFeatureCache().getMetrics();
+        Assert.assertEquals(devices, slow.calls.get());
+        Assert.assertEquals(1 - (double) devices / requests, metrics.getHitRate(), 1e-9);
+    }
+
+    static class SlowSingleAdaptor implements SingleFeatureDataAdaptor {
+        final AtomicInteger calls = new AtomicInteger();
+        final List<Context> contexts = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public ReturnResult getData(Context context, Map<String, Object> featureIds) {
+            int version = calls.incrementAndGet();
+            contexts.add(context);
+            sleep(LOAD_MILLIS);
+            if ("missing".equals(featureIds.get("device_id"))) {
+                return ReturnResult.build(StatusCode.HOST_FEATURE_NOT_EXIST, "not found");
+            }
+            Map<String, Object> data = Maps.newHashMap(featureIds);
+            data.put("version", version);
+            return ReturnResult.build(StatusCode.SUCCESS, "", data);
+        }
+    }
+
+    static class SlowBatchAdaptor implements BatchFeatureDataAdaptor {
+        /**
+         * 每次调用请求的数据条数
+         */
+        final List<Integer> requested = new CopyOnWriteArrayList<>();
+        final List<Context> contexts = new CopyOnWriteArrayList<>();
+        final List<List<BatchHostFederatedParams.SingleInferenceData>> data = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public List<ParamDescriptor> desc() {
+            return null;
+        }
+
+        @Override
+        public BatchHostFeatureAdaptorResult getFeatures(Context context, List<BatchHostFederatedParams.SingleInferenceData> featureIdList) {
+            contexts.add(context);
+            data.add(featureIdList);
+            requested.add(featureIdList.size());
+            sleep(LOAD_MILLIS);
+            BatchHostFeatureAdaptorResult result = new BatchHostFeatureAdaptorResult();
+            result.setRetcode(StatusCode.SUCCESS);
+            for (BatchHostFederatedParams.SingleInferenceData data : featureIdList) {
+                BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult single = new BatchHostFeatureAdaptorResult.SingleBatchHostFeatureAdaptorResult();
+                single.setIndex(data.getIndex());
+                if ("missing".equals(data.getSendToRemoteFeatureData().get("device_id"))) {
+                    single.setRetcode(StatusCode.HOST_FEATURE_NOT_EXIST);
+                } else {
+                    single.setRetcode(StatusCode.SUCCESS);
+                    single.setFeatures(Maps.newHashMap(data.getSendToRemoteFeatureData()));
+                }
+                result.getIndexResultMap().put(data.getIndex(), single);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.async;
+
+import com.google.common.collect.Sets;
+import com.webank.ai.fate.serving.common.async.AbstractAsyncMessageProcessor;
+import com.webank.ai.fate.serving.common.async.AsyncMessageEvent;
+import com.webank.ai.fate.serving.common.async.AsyncSubscribeRegister;
+import com.webank.ai.fate.serving.common.async.Subscribe;
+import com.webank.ai.fate.serving.common.utils.DisruptorUtil;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RunWith(JUnit4.class)
+public class AsyncEventBusTest {
+
+    private static final String EVENT_NAME = "asyncEventBusTest";
+    private static final int PRODUCERS = 200;
+    private static final int EVENTS_PER_PRODUCER = 2000;
+
+    private static final CountingProcessor processor = new CountingProcessor();
+
+    @BeforeClass
+    public static void register() throws Exception {
+        Method method = CountingProcessor.class.getMethod("handle", List.class);
+        AsyncSubscribeRegister.METHOD_INSTANCE_MAP.put(method, processor);
+        AsyncSubscribeRegister.SUBSCRIBE_METHOD_MAP.put(EVENT_NAME, Sets.newHashSet(method));
+    }
+
+    /**
+     * 200 个线程并发发布, 检查发布成功的事件都被批量投递, 且没有重复投递
+     */
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        AtomicLong published = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(PRODUCERS);
+        for (int t = 0; t < PRODUCERS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    AsyncMessageEvent event = new AsyncMessageEvent();
+                    event.setName(EVENT_NAME);
+                    for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                        event.setData(i);
+                        if (DisruptorUtil.producer(event)) {
+                            published.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        start.countDown();
+        Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (processor.events.get() < published.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertTrue(published.get() > 0);
+        Assert.assertEquals(published.get(), processor.events.get());
+        Assert.assertTrue(processor.batches.get() <= processor.events.get());
+    }
+
+    public static class CountingProcessor extends AbstractAsyncMessageProcessor {
+        final AtomicLong events = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+
+        @Subscribe(value = EVENT_NAME, batch = true)
+        public void handle(List<AsyncMessageEvent> list) {
+            batches.incrementAndGet();
+            events.addAndGet(list.size());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.cache;
+
+import com.google.common.collect.Lists;
+import com.webank.ai.fate.serving.common.cache.Cache;
+import com.webank.ai.fate.serving.common.cache.NearCache;
+import com.webank.ai.fate.serving.common.cache.WindowTinyLfuCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class NearCacheTest {
+
+    /**
+     * 以本地缓存模拟 L2, 并统计访问次数
+     */
+    static class CountingCache extends WindowTinyLfuCache {
+        AtomicInteger gets = new AtomicInteger();
+
+        CountingCache() {
+            super(1000, 0);
+        }
+
+        @Override
+        public Object get(Object key) {
+            gets.incrementAndGet();
+            return super.get(key);
+        }
+    }
+
+    @Test
+    public void testReadThroughAndNegativeCache() {
+        CountingCache l2 = new CountingCache();
+        l2.put("hot", "v");
+        NearCache cache = new NearCache(new WindowTinyLfuCache(100, 30), l2, 30, null);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("v", cache.get("hot"));
+            Assert.assertNull(cache.get("absent"));
+        }
+        Assert.assertEquals(2, l2.gets.get());
+    }
+
+    @Test
+    public void testBatchGetAndWriteBehind() throws Exception {
+        CountingCache l2 = new CountingCache();
+        NearCache cache = new NearCache(new WindowTinyLfuCache(100, 30), l2, 30, null);
+        cache.put(Lists.newArrayList(new Cache.DataWrapper("a", "1"), new Cache.DataWrapper("b", "2")));
+        List<Cache.DataWrapper> result = cache.get(new Object[]{"a", "b", "c"});
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(1, l2.gets.get());
+        for (int i = 0; i < 50 && l2.get("b") == null; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("2", l2.get("b"));
+        cache.delete("a");
+        Assert.assertNull(cache.get("a"));
+        for (int i = 0; i < 50 && l2.get("a") != null; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertNull(l2.get("a"));
+    }
+
+    /**
+     * 删除与排队中的写入按提交顺序到达 L2, 删除后 L2 中不会重新出现旧值
+     */
+    @Test
+    public void testDeleteAfterQueuedPut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> operations = new CopyOnWriteArrayList<>();
+        WindowTinyLfuCache l2 = new WindowTinyLfuCache(1000, 0) {
+            @Override
+            public void put(Object key, Object value) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.put(key, value);
+                operations.add("put");
+            }
+
+            @Override
+            public void delete(Object key) {
+                super.delete(key);
+                operations.add("delete");
+            }
+        };
+        NearCache cache = new NearCache(new WindowTinyLfuCache(100, 30), l2, 30, null);
+        cache.put("k", "v");
+        cache.delete("k");
+        release.countDown();
+        for (int i = 0; i < 500 && operations.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(Lists.newArrayList("put", "delete"), operations);
+        Assert.assertNull(l2.get("k"));
+        Assert.assertNull(cache.get("k"));
+    }
+
+    /**
+     * 读 L2 未命中期间另一个请求写入了该 key, 空标记不能覆盖新值
+     */
+    @Test
+    public void testNegativeDoesNotOverwriteConcurrentPut() {
+        NearCache[] holder = new NearCache[1];
+        WindowTinyLfuCache l2 = new WindowTinyLfuCache(1000, 0) {
+            @Override
+            public Object get(Object key) {
+                holder[0].put(key, "new");
+                return null;
+            }
+
+            @Override
+            public List<DataWrapper> get(Object[] keys) {
+                for (Object key : keys) {
+                    holder[0].put(key, "new");
+                }
+                return Lists.newArrayList();
+            }
+        };
+        NearCache cache = new NearCache(new WindowTinyLfuCache(100, 30), l2, 30, null);
+        holder[0] = cache;
+        Assert.assertNull(cache.get("single"));
+        Assert.assertEquals("new", cache.get("single"));
+
+        List<Cache.DataWrapper> result = cache.get(new Object[]{"batch"});
+        Assert.assertTrue(result.isEmpty());
+        result = cache.get(new Object[]{"batch"});
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("new", result.get(0).getValue());
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.cache;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.webank.ai.fate.serving.common.cache.Cache;
+import com.webank.ai.fate.serving.common.cache.RedisCache;
+import com.webank.ai.fate.serving.common.cache.RedisClusterCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.SafeEncoder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以内存中的假节点代替 redis, 检查批量读写的分组、顺序与过期时间
+ */
+@RunWith(JUnit4.class)
+public class RedisCacheTest {
+
+    static class FakeJedis extends Jedis {
+        final Map<String, String> data = Maps.newHashMap();
+        final Map<String, Integer> ttl = Maps.newHashMap();
+        final List<List<String>> mgets = Lists.newArrayList();
+        final List<String> pipelinedKeys = Lists.newArrayList();
+        // 返回 MOVED 的 key
+        final List<String> moved = Lists.newArrayList();
+        List<Object> slots = Collections.emptyList();
+        int syncs;
+
+        @Override
+        public List<String> mget(String... keys) {
+            mgets.add(Lists.newArrayList(keys));
+            List<String> values = Lists.newArrayList();
+            for (String key : keys) {
+                values.add(data.get(key));
+            }
+            return values;
+        }
+
+        @Override
+        public List<Object> clusterSlots() {
+            return slots;
+        }
+
+        @Override
+        public Pipeline pipelined() {
+            return new FakePipeline(this);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 命令在 sync 时才执行, 与真实 pipeline 一样
+     */
+    static class FakePipeline extends Pipeline {
+        final FakeJedis jedis;
+        final List<Runnable> commands = Lists.newArrayList();
+        final List<Object> replies = Lists.newArrayList();
+
+        FakePipeline(FakeJedis jedis) {
+            this.jedis = jedis;
+        }
+
+        @Override
+        public Response<String> get(String key) {
+            commands.add(() -> {
+                jedis.pipelinedKeys.add(key);
+                replies.add(jedis.moved.contains(key) ? new JedisDataException("MOVED") : jedis.data.get(key));
+            });
+            return null;
+        }
+
+        @Override
+        public Response<String> set(String key, String value) {
+            commands.add(() -> {
+                jedis.pipelinedKeys.add(key);
+                jedis.data.put(key, value);
+                jedis.ttl.remove(key);
+                replies.add("OK");
+            });
+            return null;
+        }
+
+        @Override
+        public Response<String> setex(String key, int seconds, String value) {
+            commands.add(() -> {
+                jedis.pipelinedKeys.add(key);
+                jedis.data.put(key, value);
+                jedis.ttl.put(key, seconds);
+                replies.add("OK");
+            });
+            return null;
+        }
+
+        @Override
+        public void sync() {
+            syncAndReturnAll();
+        }
+
+        @Override
+        public List<Object> syncAndReturnAll() {
+            jedis.syncs++;
+            replies.clear();
+            commands.forEach(Runnable::run);
+            commands.clear();
+            return Lists.newArrayList(replies);
+        }
+    }
+
+    static class FakePool extends JedisPool {
+        final FakeJedis jedis = new FakeJedis();
+
+        @Override
+        public Jedis getResource() {
+            return jedis;
+        }
+    }
+
+    static class FakeCluster extends JedisCluster {
+        final Map<String, JedisPool> nodes = Maps.newLinkedHashMap();
+        final Map<String, String> redirected = Maps.newHashMap();
+
+        FakeCluster() {
+            // 不可达的地址, 只为满足构造函数
+            super(new HostAndPort("127.0.0.1", 1));
+        }
+
+        @Override
+        public Map<String, JedisPool> getClusterNodes() {
+            return nodes;
+        }
+
+        @Override
+        public String get(String key) {
+            return redirected.get(key);
+        }
+
+        @Override
+        public String setex(String key, int seconds, String value) {
+            redirected.put(key, value);
+            return "OK";
+        }
+
+        @Override
+        public String set(String key, String value) {
+            redirected.put(key, value);
+            return "OK";
+        }
+    }
+
+    private static final String NODE_A = "127.0.0.1:7001";
+    private static final String NODE_B = "127.0.0.1:7002";
+    private static final int HALF = 8192;
+
+    private List<Object> slotRange(long start, long end, String node) {
+        String[] hostAndPort = node.split(":");
+        List<Object> master = Lists.newArrayList(SafeEncoder.encode(hostAndPort[0]), Long.valueOf(hostAndPort[1]));
+        return Lists.newArrayList(start, end, master);
+    }
+
+    private String owner(String key) {
+        return JedisClusterCRC16.getSlot(key) < HALF ? NODE_A : NODE_B;
+    }
+
+    /**
+     * 交替选取属于两个节点的 key
+     */
+    private String[] keysOnBothNodes(int count) {
+        String[] keys = new String[count];
+        int candidate = 0;
+        for (int i = 0; i < count; i++) {
+            String node = i % 2 == 0 ? NODE_A : NODE_B;
+            while (!node.equals(owner("key-" + candidate))) {
+                candidate++;
+            }
+            keys[i] = "key-" + candidate++;
+        }
+        return keys;
+    }
+
+    static class PoolCache extends RedisCache {
+        PoolCache(JedisPool pool) {
+            this.jedisPool = pool;
+        }
+    }
+
+    static class ClusterCache extends RedisClusterCache {
+        ClusterCache(String clusterNodes, JedisCluster cluster) {
+            super(clusterNodes);
+            this.jedisCluster = cluster;
+        }
+
+        String[] getSlotOwners() {
+            return slotOwners;
+        }
+    }
+
+    private ClusterCache buildClusterCache(FakeCluster cluster) {
+        FakePool a = new FakePool();
+        FakePool b = new FakePool();
+        a.jedis.slots = Lists.newArrayList(slotRange(0, HALF - 1, NODE_A), slotRange(HALF, 16383, NODE_B));
+        cluster.nodes.put(NODE_A, a);
+        cluster.nodes.put(NODE_B, b);
+        ClusterCache cache = new ClusterCache(NODE_A + "," + NODE_B, cluster);
+        cache.setBatchChunkSize(4);
+        cache.setExpireTime(60);
+        return cache;
+    }
+
+    private FakeJedis node(FakeCluster cluster, String node) {
+        return ((FakePool) cluster.nodes.get(node)).jedis;
+    }
+
+    @Test
+    public void testMgetKeepsOrderWithMisses() {
+        FakePool pool = new FakePool();
+        RedisCache cache = new PoolCache(pool);
+        cache.setBatchChunkSize(3);
+        Object[] keys = new Object[10];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "k" + i;
+            if (i % 3 != 1) {
+                pool.jedis.data.put("k" + i, "v" + i);
+            }
+        }
+        List<Cache.DataWrapper> result = cache.get(keys);
+        List<String> expected = Lists.newArrayList("k0", "k2", "k3", "k5", "k6", "k8", "k9");
+        Assert.assertEquals(expected.size(), result.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i), result.get(i).getKey());
+            Assert.assertEquals("v" + expected.get(i).substring(1), result.get(i).getValue());
+        }
+        // 10 个 key 分 4 次 MGET, 每次不超过 3 个
+        Assert.assertEquals(4, pool.jedis.mgets.size());
+        for (List<String> chunk : pool.jedis.mgets) {
+            Assert.assertTrue(chunk.size() <= 3);
+        }
+        Assert.assertTrue(cache.get(new Object[0]).isEmpty());
+    }
+
+    @Test
+    public void testPipelinedPutWithTtl() {
+        FakePool pool = new FakePool();
+        RedisCache cache = new PoolCache(pool);
+        cache.setBatchChunkSize(3);
+        cache.setExpireTime(60);
+        List<Cache.DataWrapper> list = Lists.newArrayList();
+        for (int i = 0; i < 7; i++) {
+            list.add(new Cache.DataWrapper("k" + i, "v" + i));
+        }
+        cache.put(list);
+        for (int i = 0; i < 7; i++) {
+            Assert.assertEquals("v" + i, pool.jedis.data.get("k" + i));
+            Assert.assertEquals(Integer.valueOf(60), pool.jedis.ttl.get("k" + i));
+        }
+        // 每 3 条同步一次, 最后剩余的再同步一次
+        Assert.assertEquals(3, pool.jedis.syncs);
+
+        cache.setExpireTime(-1);
+        cache.put(Lists.newArrayList(new Cache.DataWrapper("forever", "v")));
+        Assert.assertEquals("v", pool.jedis.data.get("forever"));
+        Assert.assertNull(pool.jedis.ttl.get("forever"));
+    }
+
+    @Test
+    public void testClusterGroupsKeysBySlotOwner() {
+        FakeCluster cluster = new FakeCluster();
+        ClusterCache cache = buildClusterCache(cluster);
+        String[] keys = keysOnBothNodes(20);
+        for (int i = 0; i < keys.length; i++) {
+            if (i % 4 != 3) {
+                node(cluster, owner(keys[i])).data.put(keys[i], "v" + i);
+            }
+        }
+        List<Cache.DataWrapper> result = cache.get(keys);
+        int next = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i % 4 == 3) {
+                continue;
+            }
+            Assert.assertEquals(keys[i], result.get(next).getKey());
+            Assert.assertEquals("v" + i, result.get(next).getValue());
+            next++;
+        }
+        Assert.assertEquals(next, result.size());
+        // 每个节点只收到自己负责的 key
+        for (String node : Lists.newArrayList(NODE_A, NODE_B)) {
+            Assert.assertFalse(node(cluster, node).pipelinedKeys.isEmpty());
+            for (String key : node(cluster, node).pipelinedKeys) {
+                Assert.assertEquals(node, owner(key));
+            }
+        }
+        Assert.assertTrue(cluster.redirected.isEmpty());
+    }
+
+    @Test
+    public void testClusterPipelinedPutWithTtl() {
+        FakeCluster cluster = new FakeCluster();
+        ClusterCache cache = buildClusterCache(cluster);
+        String[] keys = keysOnBothNodes(10);
+        List<Cache.DataWrapper> list = Lists.newArrayList();
+        for (int i = 0; i < keys.length; i++) {
+            list.add(new Cache.DataWrapper(keys[i], "v" + i));
+        }
+        cache.put(list);
+        for (int i = 0; i < keys.length; i++) {
+            FakeJedis owner = node(cluster, owner(keys[i]));
+            Assert.assertEquals("v" + i, owner.data.get(keys[i]));
+            Assert.assertEquals(Integer.valueOf(60), owner.ttl.get(keys[i]));
+        }
+        Assert.assertTrue(cluster.redirected.isEmpty());
+    }
+
+    @Test
+    public void testClusterMovedFallsBackToJedisCluster() {
+        FakeCluster cluster = new FakeCluster();
+        ClusterCache cache = buildClusterCache(cluster);
+        String[] keys = keysOnBothNodes(10);
+        for (int i = 0; i < keys.length; i++) {
+            node(cluster, owner(keys[i])).data.put(keys[i], "v" + i);
+        }
+        String movedKey = keys[0];
+        node(cluster, NODE_A).moved.add(movedKey);
+        cluster.redirected.put(movedKey, "redirected");
+        List<Cache.DataWrapper> result = cache.get(keys);
+        Assert.assertEquals(keys.length, result.size());
+        for (int i = 0; i < keys.length; i++) {
+            Assert.assertEquals(keys[i], result.get(i).getKey());
+            Assert.assertEquals(movedKey.equals(keys[i]) ? "redirected" : "v" + i, result.get(i).getValue());
+        }
+        // slot 表已失效, 下次批量操作时重新拉取
+        Assert.assertNull(cache.getSlotOwners());
+    }
+}
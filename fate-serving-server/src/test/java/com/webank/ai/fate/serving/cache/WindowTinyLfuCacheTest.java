@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.cache;
+
+import com.webank.ai.fate.serving.common.cache.LRUCache;
+import com.webank.ai.fate.serving.common.cache.WindowTinyLfuCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class WindowTinyLfuCacheTest {
+
+    private static final int CAPACITY = 1000;
+    private static final int KEY_SPACE = 100000;
+    private static final int TRACE_LENGTH = 1000000;
+
+    /**
+     * 按 Zipf 分布 (s = 0.9) 生成访问序列
+     */
+    private static int[] zipfTrace(long seed) {
+        double[] cumulative = new double[KEY_SPACE];
+        double sum = 0;
+        for (int i = 0; i < KEY_SPACE; i++) {
+            sum += 1.0 / Math.pow(i + 1, 0.9);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] trace = new int[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = index >= 0 ? index : -index - 1;
+        }
+        return trace;
+    }
+
+    @Test
+    public void testBoundedUnderConcurrentWrites() throws Exception {
+        WindowTinyLfuCache cache = new WindowTinyLfuCache(CAPACITY, 0);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int offset = t * KEY_SPACE;
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < KEY_SPACE; i++) {
+                        cache.put(offset + i, "value" + i);
+                        cache.get(offset + i / 2);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+        cache.cleanUp();
+        Assert.assertTrue(cache.size() <= CAPACITY);
+        Assert.assertEquals(cache.size(), cache.weightedSize());
+    }
+
+    @Test
+    public void testBoundedByWeight() {
+        long maxBytes = 64 * 1024;
+        WindowTinyLfuCache cache = new WindowTinyLfuCache(maxBytes, WindowTinyLfuCache.ESTIMATED_BYTES, 0);
+        char[] chars = new char[512];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        for (int i = 0; i < 10000; i++) {
+            cache.put("key" + i, value);
+        }
+        cache.cleanUp();
+        Assert.assertTrue(cache.weightedSize() <= maxBytes);
+        Assert.assertTrue(cache.size() > 0);
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        WindowTinyLfuCache cache = new WindowTinyLfuCache(CAPACITY, 60);
+        cache.put("short", "v", 1);
+        cache.put("default", "v");
+        Assert.assertEquals("v", cache.get("short"));
+        Thread.sleep(2100);
+        Assert.assertNull(cache.get("short"));
+        Assert.assertEquals("v", cache.get("default"));
+        cache.cleanUp();
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testReplaceAndDelete() {
+        WindowTinyLfuCache cache = new WindowTinyLfuCache(CAPACITY, 0);
+        cache.put("k", "v1");
+        cache.put("k", "v2");
+        Assert.assertEquals("v2", cache.get("k"));
+        cache.delete("k");
+        Assert.assertNull(cache.get("k"));
+        cache.cleanUp();
+        Assert.assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void testZipfHitRatio() {
+        int[] trace = zipfTrace(7);
+        WindowTinyLfuCache tinyLfu = new WindowTinyLfuCache(CAPACITY, 0);
+        LRUCache<Integer, Integer> lru = new LRUCache<>(CAPACITY);
+        long lruHits = 0;
+        for (int key : trace) {
+            if (tinyLfu.get(key) == null) {
+                tinyLfu.put(key, key);
+            }
+            if (lru.get(key) != null) {
+                lruHits++;
+            } else {
+                lru.put(key, key);
+            }
+        }
+        double tinyLfuRatio = (double) tinyLfu.hitCount() / TRACE_LENGTH;
+        double lruRatio = (double) lruHits / TRACE_LENGTH;
+        Assert.assertTrue(tinyLfuRatio > lruRatio);
+    }
+
+    @Test
+    public void testConcurrentReadThrough() throws Exception {
+        int[] trace = zipfTrace(11);
+        WindowTinyLfuCache cache = new WindowTinyLfuCache(CAPACITY, 0);
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        AtomicInteger wrongValues = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 7919;
+            executor.submit(() -> {
+                try {
+                    for (int i = 0; i < TRACE_LENGTH; i++) {
+                        int key = trace[(i + offset) % TRACE_LENGTH];
+                        Object value = cache.get(key);
+                        if (value == null) {
+                            cache.put(key, key);
+                        } else if (!value.equals(key)) {
+                            wrongValues.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(latch.await(120, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertEquals(0, wrongValues.get());
+        cache.cleanUp();
+        Assert.assertTrue(cache.size() <= CAPACITY);
+        Assert.assertEquals(cache.size(), cache.weightedSize());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.core.utils;
+
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+@RunWith(JUnit4.class)
+public class FeatureHashUtilTest {
+
+    private static final byte[] FOX = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+
+    private static void assertHash(long high, long low, FeatureHashUtil.HashKey key) {
+        Assert.assertEquals(Long.toHexString(high), Long.toHexString(key.getHigh()));
+        Assert.assertEquals(Long.toHexString(low), Long.toHexString(key.getLow()));
+    }
+
+    private static FeatureHashUtil.HashKey hashBytes(byte[] data) {
+        FeatureHashUtil.Murmur3Hasher hasher = new FeatureHashUtil.Murmur3Hasher();
+        for (byte b : data) {
+            hasher.putByte(b);
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * 从 offset 开始的 8 个字节按小端用 putLong 写入, 其余逐字节写入
+     */
+    private static FeatureHashUtil.HashKey hashWithLongAt(byte[] data, int offset) {
+        FeatureHashUtil.Murmur3Hasher hasher = new FeatureHashUtil.Murmur3Hasher();
+        for (int i = 0; i < offset; i++) {
+            hasher.putByte(data[i]);
+        }
+        long v = 0;
+        for (int i = 7; i >= 0; i--) {
+            v = v << 8 | (data[offset + i] & 0xffL);
+        }
+        hasher.putLong(v);
+        for (int i = offset + 8; i < data.length; i++) {
+            hasher.putByte(data[i]);
+        }
+        return hasher.finish();
+    }
+
+    @Test
+    public void testReferenceVectors() {
+        // Murmur3_x64_128, seed 0 的公开结果
+        assertHash(0L, 0L, hashBytes(new byte[0]));
+        assertHash(0xcbd8a7b341bd9b02L, 0x5b1e906a48ae1d19L, hashBytes("hello".getBytes(StandardCharsets.US_ASCII)));
+        assertHash(0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L, hashBytes(FOX));
+        byte[] seq = new byte[33];
+        for (int i = 0; i < seq.length; i++) {
+            seq[i] = (byte) i;
+        }
+        assertHash(0x7d41281bfaba4612L, 0x55ac8073a7d6a30bL, hashBytes(seq));
+    }
+
+    @Test
+    public void testUnalignedPutLong() {
+        // 覆盖 long 落在块内、跨越 8 字节和 16 字节边界的所有偏移
+        for (int offset = 0; offset + 8 <= FOX.length; offset++) {
+            assertHash(0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L, hashWithLongAt(FOX, offset));
+        }
+        byte[] block = Arrays.copyOf(FOX, 16);
+        for (int offset = 0; offset <= 8; offset++) {
+            Assert.assertEquals(hashBytes(block), hashWithLongAt(block, offset));
+        }
+    }
+
+    @Test
+    public void testCanonical() {
+        Map<String, Object> a = new LinkedHashMap<>();
+        a.put("x0", 1);
+        a.put("x1", "v");
+        a.put("x2", Arrays.asList(1.5, null));
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("x2", Arrays.asList(1.5, null));
+        b.put("x1", "v");
+        b.put("x0", 1L);
+        Assert.assertEquals(FeatureHashUtil.hash(a, "9999", "table", "ns"), FeatureHashUtil.hash(b, "9999", "table", "ns"));
+        Assert.assertEquals(FeatureHashUtil.hash(a).toString(), FeatureHashUtil.hash(b).toString());
+        Assert.assertEquals(22, FeatureHashUtil.hash(a).toString().length());
+        // 前缀各自编码, 拼接相同的前缀不会冲突
+        Assert.assertNotEquals(FeatureHashUtil.hash(a, "99", "99table"), FeatureHashUtil.hash(a, "9999", "table"));
+        b.put("x0", 1.0);
+        Assert.assertNotEquals(FeatureHashUtil.hash(a), FeatureHashUtil.hash(b));
+    }
+
+    @Test
+    public void testNoCollision() {
+        Random random = new Random(3);
+        Set<FeatureHashUtil.HashKey> keys = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            Map<String, Object> features = Maps.newHashMap();
+            features.put("id", i);
+            features.put("x", random.nextInt(10));
+            keys.add(FeatureHashUtil.hash(features));
+        }
+        Assert.assertEquals(100000, keys.size());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.executor;
+
+import com.webank.ai.fate.serving.core.executor.ExecutorMetrics;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutor;
+import com.webank.ai.fate.serving.core.executor.ManagedExecutors;
+import com.webank.ai.fate.serving.core.executor.VirtualThreadExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class ManagedExecutorsTest {
+
+    private static ExecutorMetrics find(String name) {
+        for (ExecutorMetrics metrics : ManagedExecutors.metrics()) {
+            if (metrics.getName().equals(name)) {
+                return metrics;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 线程和队列都占满后拒绝, 并反映在指标中
+     */
+    private static void assertBounded(ManagedExecutor executor, int capacity) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(capacity);
+        for (int i = 0; i < capacity; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        try {
+            executor.execute(() -> {
+            });
+            Assert.fail("executor should be full");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        ExecutorMetrics metrics = find(executor.getName());
+        Assert.assertNotNull(metrics);
+        Assert.assertEquals(1, metrics.getRejectedCount());
+        Assert.assertEquals(capacity, metrics.getActiveCount() + metrics.getQueueSize());
+        release.countDown();
+        Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertNull(find(executor.getName()));
+    }
+
+    @Test
+    public void testThreadPoolBounded() throws Exception {
+        ManagedExecutor executor = ManagedExecutors.newRequestExecutor("test-bounded", 2, 4, 8, false);
+        Assert.assertTrue(executor instanceof ThreadPoolExecutor);
+        assertBounded(executor, 12);
+    }
+
+    @Test
+    public void testVirtualThreadBounded() throws Exception {
+        ManagedExecutor executor = ManagedExecutors.newRequestExecutor("test-virtual", 2, 4, 8, true);
+        Assert.assertEquals(ManagedExecutors.isVirtualThreadSupported(), executor instanceof VirtualThreadExecutor);
+        assertBounded(executor, 12);
+    }
+
+    @Test
+    public void testWaitTime() throws Exception {
+        ManagedExecutor executor = ManagedExecutors.newThreadPool("test-wait", 1, 1, 16, new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch done = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        ExecutorMetrics metrics = executor.metrics();
+        Assert.assertEquals(4, metrics.getTaskCount());
+        // 最后一个任务至少排队了前三个任务的执行时间
+        Assert.assertTrue(metrics.getMaxWaitMicros() >= 50000);
+        executor.shutdown();
+    }
+}
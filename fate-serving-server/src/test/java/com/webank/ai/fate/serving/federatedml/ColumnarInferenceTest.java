@@ -0,0 +1,329 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.webank.ai.fate.core.mlmodel.buffer.DataIOMetaProto.DataIOMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.DataIOMetaProto.ImputerMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.DataIOMetaProto.OutlierMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.DataIOParamProto.DataIOParam;
+import com.webank.ai.fate.core.mlmodel.buffer.DataIOParamProto.ImputerParam;
+import com.webank.ai.fate.core.mlmodel.buffer.DataIOParamProto.OutlierParam;
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningMetaProto.FeatureBinningMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningMetaProto.TransformMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningParamProto.FeatureBinningParam;
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningParamProto.FeatureBinningResult;
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningParamProto.IVParam;
+import com.webank.ai.fate.core.mlmodel.buffer.LRModelParamProto.LRModelParam;
+import com.webank.ai.fate.core.mlmodel.buffer.OneHotMetaProto.OneHotMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.OneHotParamProto.ColsMap;
+import com.webank.ai.fate.core.mlmodel.buffer.OneHotParamProto.OneHotParam;
+import com.webank.ai.fate.core.mlmodel.buffer.ScaleMetaProto.ScaleMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.ScaleParamProto.ColumnScaleParam;
+import com.webank.ai.fate.core.mlmodel.buffer.ScaleParamProto.ScaleParam;
+import com.webank.ai.fate.core.mlmodel.buffer.fm.FMModelParamProto.Embedding;
+import com.webank.ai.fate.core.mlmodel.buffer.fm.FMModelParamProto.FMModelParam;
+import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarInferenceAware;
+import com.webank.ai.fate.serving.federatedml.model.*;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+@RunWith(JUnit4.class)
+public class ColumnarInferenceTest {
+
+    private static final int FEATURES = 20;
+    private static final int EMBED_SIZE = 8;
+    private static final int BATCH = 500;
+
+    private static <T extends BaseComponent> T init(T component, String name, ByteBuffer meta, ByteBuffer param) {
+        component.setComponentName(name);
+        Assert.assertEquals(0, component.initModel(meta, param));
+        return component;
+    }
+
+    private static ByteBuffer buffer(com.google.protobuf.Message message) {
+        return message.toByteString().asReadOnlyByteBuffer();
+    }
+
+    private static List<String> header() {
+        List<String> header = new ArrayList<>();
+        for (int i = 0; i < FEATURES; i++) {
+            header.add("x" + i);
+        }
+        return header;
+    }
+
+    private static DataIO dataIO(boolean imputer) {
+        DataIOMeta.Builder meta = DataIOMeta.newBuilder().setInputFormat("dense")
+                .setOutlierMeta(OutlierMeta.newBuilder().setIsOutlier(true).addOutlierValue("9999"));
+        DataIOParam.Builder param = DataIOParam.newBuilder().addAllHeader(header());
+        Map<String, String> outlierReplace = Maps.newHashMap();
+        Map<String, String> missingReplace = Maps.newHashMap();
+        for (String col : header()) {
+            outlierReplace.put(col, "1");
+            missingReplace.put(col, "0");
+        }
+        param.setOutlierParam(OutlierParam.newBuilder().putAllOutlierReplaceValue(outlierReplace));
+        if (imputer) {
+            meta.setImputerMeta(ImputerMeta.newBuilder().setIsImputer(true).addMissingValue("").addMissingValue("na"));
+            param.setImputerParam(ImputerParam.newBuilder().putAllMissingReplaceValue(missingReplace));
+        }
+        return init(new DataIO(), "dataio_0", buffer(meta.build()), buffer(param.build()));
+    }
+
+    private static Scale scale() {
+        ScaleParam.Builder param = ScaleParam.newBuilder();
+        for (int i = 0; i < FEATURES; i += 2) {
+            param.putColScaleParam("x" + i, ColumnScaleParam.newBuilder().setColumnLower(-1).setColumnUpper(5).build());
+        }
+        ScaleMeta meta = ScaleMeta.newBuilder().setNeedRun(true).setMethod(Dict.MIN_MAX_SCALE).build();
+        return init(new Scale(), "scale_0", buffer(meta), buffer(param.build()));
+    }
+
+    private static HeteroFeatureBinning binning() {
+        TransformMeta.Builder transform = TransformMeta.newBuilder();
+        FeatureBinningResult.Builder result = FeatureBinningResult.newBuilder();
+        for (int i = 0; i < FEATURES / 2; i++) {
+            transform.addTransformCols(i);
+            result.putBinningResult("x" + i, IVParam.newBuilder().addSplitPoints(0.2).addSplitPoints(0.5).addSplitPoints(0.8).build());
+        }
+        FeatureBinningMeta meta = FeatureBinningMeta.newBuilder().setNeedRun(true).setTransformParam(transform).build();
+        FeatureBinningParam param = FeatureBinningParam.newBuilder().addAllHeader(header()).setBinningResult(result).build();
+        return init(new HeteroFeatureBinningGuest(), "binning_0", buffer(meta), buffer(param));
+    }
+
+    private static OneHotEncoder oneHot() {
+        OneHotMeta meta = OneHotMeta.newBuilder().setNeedRun(true).addTransformColNames("x0").addTransformColNames("x1").build();
+        OneHotParam.Builder param = OneHotParam.newBuilder();
+        for (String col : Arrays.asList("x0", "x1")) {
+            ColsMap.Builder colsMap = ColsMap.newBuilder();
+            for (int value = 0; value < 3; value++) {
+                colsMap.addValues(String.valueOf(value)).addTransformedHeaders(col + "_" + value);
+            }
+            param.putColMap(col, colsMap.build());
+        }
+        return init(new OneHotEncoder(), "onehot_0", buffer(meta), buffer(param.build()));
+    }
+
+    private static Map<String, Double> weights() {
+        Map<String, Double> weight = Maps.newHashMap();
+        for (int i = 0; i < FEATURES; i++) {
+            weight.put("x" + i, 0.1 * (i % 5) - 0.2);
+        }
+        for (int value = 0; value < 3; value++) {
+            weight.put("x0_" + value, 0.3 * value);
+            weight.put("x1_" + value, -0.2 * value);
+        }
+        return weight;
+    }
+
+    private static HeteroLRGuest lr() {
+        LRModelParam param = LRModelParam.newBuilder().putAllWeight(weights()).setIntercept(0.25).build();
+        return init(new HeteroLRGuest(), "lr_0", null, buffer(param));
+    }
+
+    private static <T extends HeteroFM> T fm(T component) {
+        FMModelParam.Builder param = FMModelParam.newBuilder().putAllWeight(weights()).setIntercept(-0.5).setEmbedSize(EMBED_SIZE);
+        Random random = new Random(7);
+        for (int i = 0; i < FEATURES; i += 3) {
+            Embedding.Builder embedding = Embedding.newBuilder();
+            for (int k = 0; k < EMBED_SIZE; k++) {
+                embedding.addWeight(random.nextGaussian());
+            }
+            param.putEmbedding("x" + i, embedding.build());
+        }
+        return init(component, "fm_0", null, buffer(param.build()));
+    }
+
+    /**
+     * dataio -> scale -> binning -> onehot -> lr
+     */
+    private static ExecutionPlan lrPlan() {
+        List<BaseComponent> components = Lists.newArrayList(dataIO(true), scale(), binning(), oneHot(), lr());
+        return ExecutionPlan.compile(components, i -> Sets.newHashSet(i - 1));
+    }
+
+    /**
+     * 混合 Double / Integer / 数字字符串 / 缺失值 / 异常值
+     */
+    private static List<Map<String, Object>> rows(int count, long seed, boolean dirty) {
+        Random random = new Random(seed);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            Map<String, Object> row = Maps.newHashMap();
+            for (int i = 0; i < FEATURES; i++) {
+                int kind = random.nextInt(10);
+                String name = "x" + i;
+                if (kind == 0) {
+                    continue;
+                } else if (kind == 1) {
+                    row.put(name, random.nextInt(4));
+                } else if (kind == 2) {
+                    row.put(name, String.valueOf(random.nextDouble() * 6 - 1));
+                } else if (kind == 3 && dirty) {
+                    Object[] dirtyValues = {"NA", "", "9999", 9999};
+                    row.put(name, dirtyValues[random.nextInt(dirtyValues.length)]);
+                } else {
+                    row.put(name, random.nextDouble() * 6 - 1);
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static Context newContext() {
+        Context context = new BaseContext();
+        context.setVersion("200");
+        return context;
+    }
+
+    private static void assertClose(Object expected, Object actual) {
+        if (expected instanceof Map) {
+            Map<?, ?> expectedMap = (Map<?, ?>) expected;
+            Map<?, ?> actualMap = (Map<?, ?>) actual;
+            Assert.assertEquals(expectedMap.keySet(), actualMap.keySet());
+            expectedMap.forEach((k, v) -> assertClose(v, actualMap.get(k)));
+        } else if (expected instanceof double[]) {
+            double[] expectedArray = (double[]) expected;
+            double[] actualArray = (double[]) actual;
+            Assert.assertEquals(expectedArray.length, actualArray.length);
+            for (int i = 0; i < expectedArray.length; i++) {
+                Assert.assertEquals(expectedArray[i], actualArray[i], 1e-12);
+            }
+        } else if (expected instanceof Double) {
+            Assert.assertTrue(actual instanceof Double);
+            Assert.assertEquals((Double) expected, (Double) actual, 1e-12);
+        } else {
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * 批量按列执行的结果与逐行执行一致, 请求数据不被修改
+     */
+    private static void assertSameAsRowPath(ExecutionPlan plan, List<Map<String, Object>> rows) {
+        Context context = newContext();
+        List<Map<String, Object>> snapshot = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            snapshot.add(new HashMap<>(row));
+        }
+        Throwable[] errors = new Throwable[rows.size()];
+        List<Map<String, Object>> results = plan.localInference(context, rows, errors);
+        Assert.assertEquals(snapshot, rows);
+        for (int r = 0; r < rows.size(); r++) {
+            Map<String, Object> expected;
+            try {
+                expected = plan.localInference(context, new HashMap<>(rows.get(r)));
+            } catch (RuntimeException e) {
+                Assert.assertNotNull(errors[r]);
+                Assert.assertEquals(e.getClass(), errors[r].getClass());
+                Assert.assertNull(results.get(r));
+                continue;
+            }
+            Assert.assertNull(errors[r]);
+            assertClose(expected, results.get(r));
+        }
+    }
+
+    @Test
+    public void testLrPipeline() {
+        ExecutionPlan plan = lrPlan();
+        Assert.assertTrue(plan.isColumnar());
+        assertSameAsRowPath(plan, rows(BATCH, 1, true));
+    }
+
+    @Test
+    public void testFmGuestAndHost() {
+        for (HeteroFM fm : Arrays.asList(fm(new HeteroFMGuest()), fm(new HeteroFMHost()))) {
+            List<BaseComponent> components = Lists.newArrayList(dataIO(false), fm);
+            ExecutionPlan plan = ExecutionPlan.compile(components, i -> Sets.newHashSet(i - 1));
+            assertSameAsRowPath(plan, rows(BATCH, 2, false));
+        }
+    }
+
+    /**
+     * 没有缺失值处理时 "NA" 无法解析, 只有对应的行失败
+     */
+    @Test
+    public void testRowErrors() {
+        List<BaseComponent> components = Lists.newArrayList(dataIO(false), lr());
+        ExecutionPlan plan = ExecutionPlan.compile(components, i -> Sets.newHashSet(i - 1));
+        List<Map<String, Object>> rows = rows(BATCH, 3, false);
+        rows.get(7).put("x3", "NA");
+        rows.get(9).put("x5", "abc");
+        Throwable[] errors = new Throwable[rows.size()];
+        plan.localInference(newContext(), rows, errors);
+        Assert.assertTrue(errors[7] instanceof NumberFormatException);
+        Assert.assertTrue(errors[9] instanceof NumberFormatException);
+        assertSameAsRowPath(plan, rows);
+    }
+
+    /**
+     * 按列执行抛出异常时该组件改为逐行执行, 未实现按列接口的组件始终逐行执行
+     */
+    @Test
+    public void testFallback() {
+        List<BaseComponent> components = Lists.newArrayList(dataIO(true), new FailingColumnar(), new RowOnly(), lr());
+        components.get(1).setComponentName("failing_0");
+        components.get(2).setComponentName("row_0");
+        ExecutionPlan plan = ExecutionPlan.compile(components, i -> Sets.newHashSet(i - 1));
+        assertSameAsRowPath(plan, rows(BATCH, 4, true));
+    }
+
+    static class FailingColumnar extends BaseComponent implements ColumnarInferenceAware {
+        @Override
+        public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
+            return OK;
+        }
+
+        @Override
+        public Map<String, Object> localInference(Context context, List<Map<String, Object>> input) {
+            return input.get(0);
+        }
+
+        @Override
+        public ColumnarBatch columnarInference(Context context, List<ColumnarBatch> inputs) {
+            throw new IllegalStateException("columnar not supported");
+        }
+    }
+
+    static class RowOnly extends BaseComponent {
+        @Override
+        public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
+            return OK;
+        }
+
+        @Override
+        public Map<String, Object> localInference(Context context, List<Map<String, Object>> input) {
+            Map<String, Object> output = new HashMap<>(input.get(0));
+            output.put("x19", input.get(0).size());
+            return output;
+        }
+    }
+}
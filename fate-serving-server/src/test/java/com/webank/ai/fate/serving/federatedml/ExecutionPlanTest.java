@@ -0,0 +1,211 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.common.model.MergeInferenceAware;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.federatedml.model.BaseComponent;
+import com.webank.ai.fate.serving.federatedml.model.Returnable;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+@RunWith(JUnit4.class)
+public class ExecutionPlanTest {
+
+    private static final int FEATURES = 20;
+
+    private static <T extends BaseComponent> T named(T component, String name) {
+        component.setComponentName(name);
+        return component;
+    }
+
+    private static Map<String, Object> row(int seed) {
+        Map<String, Object> row = Maps.newHashMap();
+        for (int i = 0; i < FEATURES; i++) {
+            row.put("x" + i, (seed + i) % 7 * 0.5);
+        }
+        return row;
+    }
+
+    /**
+     * dataio -> binning -> lr
+     */
+    private static List<BaseComponent> typicalPipeline() {
+        return Lists.newArrayList(named(new MockDataIO(), "dataio_0"), named(new MockBinning(), "binning_0"), named(new MockLR(), "lr_0"));
+    }
+
+    private static Map<Integer, HashSet<Integer>> chain(int size) {
+        Map<Integer, HashSet<Integer>> upInputs = Maps.newHashMap();
+        upInputs.put(0, Sets.newHashSet(ExecutionPlan.REQUEST_INPUT));
+        for (int i = 1; i < size; i++) {
+            upInputs.put(i, Sets.newHashSet(i - 1));
+        }
+        return upInputs;
+    }
+
+    private static Context newContext(String version) {
+        Context context = new BaseContext();
+        context.setVersion(version);
+        return context;
+    }
+
+    /**
+     * 编译前的执行方式: 每行每个组件重新查询上游并分配输入列表
+     */
+    private static Map<String, Object> walk(List<BaseComponent> components, Map<Integer, HashSet<Integer>> upInputs,
+                                            Context context, Map<String, Object> inputData) {
+        List<Map<String, Object>> outputData = Lists.newArrayList();
+        Map<String, Object> result = Maps.newHashMap();
+        result.put(Dict.RET_CODE, 0);
+        for (int i = 0; i < components.size(); i++) {
+            BaseComponent component = components.get(i);
+            List<Map<String, Object>> inputs = new ArrayList<>();
+            HashSet<Integer> upInputComponents = upInputs.get(i);
+            if (upInputComponents != null) {
+                for (Integer upInput : upInputComponents) {
+                    inputs.add(upInput == -1 ? inputData : outputData.get(upInput));
+                }
+            } else {
+                inputs.add(inputData);
+            }
+            if (component != null) {
+                Map<String, Object> componentResult = component.localInference(context, inputs);
+                outputData.add(componentResult);
+                if (component instanceof Returnable) {
+                    result.put(component.getComponentName(), componentResult);
+                    if (context.getVersion() == null || Double.parseDouble(context.getVersion()) < 200) {
+                        result.putAll(componentResult);
+                    }
+                }
+            } else {
+                outputData.add(inputs.get(0));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testSameResultAsWalk() {
+        List<BaseComponent> components = typicalPipeline();
+        Map<Integer, HashSet<Integer>> upInputs = chain(components.size());
+        ExecutionPlan plan = ExecutionPlan.compile(components, upInputs::get);
+        for (String version : Arrays.asList(null, "200")) {
+            Context context = newContext(version);
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals(walk(components, upInputs, context, row(i)), plan.localInference(context, row(i)));
+            }
+        }
+    }
+
+    /**
+     * 多输入、直接引用请求数据以及实例化失败 (透传) 的组件
+     */
+    @Test
+    public void testMultiInputAndMissingComponent() {
+        List<BaseComponent> components = Lists.newArrayList(named(new MockDataIO(), "dataio_0"), null,
+                named(new MockBinning(), "binning_0"), named(new MockUnion(), "union_0"), named(new MockLR(), "lr_0"));
+        Map<Integer, HashSet<Integer>> upInputs = Maps.newHashMap();
+        upInputs.put(0, Sets.newHashSet(ExecutionPlan.REQUEST_INPUT));
+        upInputs.put(1, Sets.newHashSet(0));
+        upInputs.put(2, Sets.newHashSet(1));
+        upInputs.put(3, Sets.newHashSet(2, ExecutionPlan.REQUEST_INPUT, 0));
+        upInputs.put(4, Sets.newHashSet(3));
+        ExecutionPlan plan = ExecutionPlan.compile(components, upInputs::get);
+        Context context = newContext("200");
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(walk(components, upInputs, context, row(i)), plan.localInference(context, row(i)));
+        }
+
+        Map<String, Object> remote = Maps.newHashMap();
+        remote.put("9999", Collections.singletonMap("score", 0.5));
+        Map<String, Object> merged = plan.mergeRemoteInference(context, row(1), remote);
+        Assert.assertEquals(Boolean.TRUE, merged.get("merged"));
+        Assert.assertEquals(0, merged.get(Dict.RET_CODE));
+
+        // 上游下标必须在当前组件之前
+        upInputs.put(1, Sets.newHashSet(3));
+        try {
+            ExecutionPlan.compile(components, upInputs::get);
+            Assert.fail("input after the component should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    abstract static class MockComponent extends BaseComponent {
+        @Override
+        public int initModel(ByteBuffer protoMeta, ByteBuffer protoParam) {
+            return OK;
+        }
+    }
+
+    static class MockDataIO extends MockComponent {
+        @Override
+        public Map<String, Object> localInference(Context context, List<Map<String, Object>> input) {
+            return input.get(0);
+        }
+    }
+
+    static class MockBinning extends MockComponent {
+        @Override
+        public Map<String, Object> localInference(Context context, List<Map<String, Object>> input) {
+            Map<String, Object> output = new HashMap<>(input.get(0).size() * 2);
+            input.get(0).forEach((k, v) -> output.put(k, ((Number) v).doubleValue() > 1.0 ? 1 : 0));
+            return output;
+        }
+    }
+
+    static class MockUnion extends MockComponent {
+        @Override
+        public Map<String, Object> localInference(Context context, List<Map<String, Object>> input) {
+            Map<String, Object> output = new HashMap<>();
+            for (int i = 0; i < input.size(); i++) {
+                output.put("input" + i, input.get(i).size());
+            }
+            output.putAll(input.get(0));
+            return output;
+        }
+    }
+
+    static class MockLR extends MockComponent implements Returnable, MergeInferenceAware {
+        @Override
+        public Map<String, Object> localInference(Context context, List<Map<String, Object>> input) {
+            double score = 0;
+            for (Object value : input.get(0).values()) {
+                score += value instanceof Number ? ((Number) value).doubleValue() * 0.1 : 0;
+            }
+            return Collections.singletonMap("score", 1 / (1 + Math.exp(-score)));
+        }
+
+        @Override
+        public Map<String, Object> mergeRemoteInference(Context context, List<Map<String, Object>> localData, Map<String, Object> remoteData) {
+            Map<String, Object> output = new HashMap<>();
+            output.put("merged", Boolean.TRUE);
+            return output;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml;
+
+import com.webank.ai.fate.core.mlmodel.buffer.fm.FMModelParamProto.Embedding;
+import com.webank.ai.fate.core.mlmodel.buffer.fm.FMModelParamProto.FMModelParam;
+import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.model.HeteroFM;
+import com.webank.ai.fate.serving.federatedml.model.HeteroFMGuest;
+import com.webank.ai.fate.serving.federatedml.model.HeteroFMHost;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+
+@RunWith(JUnit4.class)
+public class HeteroFMTest {
+
+    private static final double EPSILON = 1e-12;
+    private static final int FEATURES = 100;
+
+    private final Context context = new BaseContext();
+
+    /**
+     * 改造前的前向计算, 作为对照
+     */
+    static Map<String, Object> referenceForward(FMModelParam param, Map<String, Object> inputData) {
+        Map<String, Double> weight = param.getWeightMap();
+        Map<String, Embedding> embedding = param.getEmbeddingMap();
+        int embedSize = param.getEmbedSize();
+        int modelWeightHitCount = 0;
+        double score = 0;
+        for (String key : inputData.keySet()) {
+            if (weight.containsKey(key)) {
+                Double x = new Double(inputData.get(key).toString());
+                Double w = new Double(weight.get(key).toString());
+                score += w * x;
+                modelWeightHitCount += 1;
+            }
+        }
+        double[] multiplies = new double[embedSize];
+        double[] squares = new double[embedSize];
+        for (String key : embedding.keySet()) {
+            if (inputData.containsKey(key)) {
+                Double x = new Double(inputData.get(key).toString());
+                List<Double> wList = embedding.get(key).getWeightList();
+                for (int i = 0; i < embedSize; i++) {
+                    multiplies[i] = multiplies[i] + wList.get(i) * x;
+                    squares[i] = squares[i] + Math.pow(wList.get(i) * x, 2);
+                }
+            }
+        }
+        double cross = 0.0;
+        for (int i = 0; i < embedSize; i++) {
+            cross += (Math.pow(multiplies[i], 2) - squares[i]);
+        }
+        score += cross * 0.5;
+        score += param.getIntercept();
+        Map<String, Object> ret = new HashMap<>();
+        ret.put(Dict.SCORE, score);
+        ret.put(Dict.MODEL_WRIGHT_HIT_RATE, (double) modelWeightHitCount / weight.size());
+        ret.put(Dict.INPUT_DATA_HIT_RATE, (double) modelWeightHitCount / inputData.size());
+        ret.put(Dict.FM_CROSS, multiplies);
+        return ret;
+    }
+
+    private static FMModelParam param(int embedSize, long seed) {
+        Random random = new Random(seed);
+        FMModelParam.Builder param = FMModelParam.newBuilder().setIntercept(random.nextGaussian()).setEmbedSize(embedSize);
+        for (int f = 0; f < FEATURES; f++) {
+            if (random.nextInt(4) > 0) {
+                param.putWeight("x" + f, random.nextGaussian() * 10);
+            }
+            if (random.nextInt(4) > 0) {
+                Embedding.Builder embedding = Embedding.newBuilder();
+                for (int i = 0; i < embedSize; i++) {
+                    embedding.addWeight(random.nextGaussian() * 10);
+                }
+                param.putEmbedding("x" + f, embedding.build());
+            }
+        }
+        return param.build();
+    }
+
+    private static <T extends HeteroFM> T init(T component, FMModelParam param) {
+        component.setComponentName("fm_0");
+        Assert.assertEquals(0, component.initModel(null, param.toByteString().asReadOnlyByteBuffer()));
+        return component;
+    }
+
+    private static List<Map<String, Object>> rows(int count, long seed) {
+        Random random = new Random(seed);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            Map<String, Object> row = new HashMap<>();
+            for (int f = 0; f < FEATURES + 10; f++) {
+                switch (random.nextInt(5)) {
+                    case 0:
+                        break;
+                    case 1:
+                        row.put("x" + f, random.nextInt(100) - 50);
+                        break;
+                    case 2:
+                        row.put("x" + f, String.valueOf(random.nextGaussian() * 100));
+                        break;
+                    default:
+                        row.put("x" + f, random.nextGaussian() * 100);
+                        break;
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 逐行计算与改造前的累加顺序完全相同; 按列计算的一次项按列顺序累加, 与逐行结果只差舍入误差
+     */
+    private static void assertClose(double expected, double actual, boolean exact) {
+        Assert.assertEquals(expected, actual, exact ? 0 : EPSILON * Math.max(1, Math.abs(expected)));
+    }
+
+    private static void assertSame(Map<String, Object> expected, Map<String, Object> actual, boolean exact) {
+        assertClose((Double) expected.get(Dict.SCORE), ((Number) actual.get(Dict.SCORE)).doubleValue(), exact);
+        double[] expectedCross = (double[]) expected.get(Dict.FM_CROSS);
+        double[] actualCross = (double[]) actual.get(Dict.FM_CROSS);
+        Assert.assertEquals(expectedCross.length, actualCross.length);
+        for (int i = 0; i < expectedCross.length; i++) {
+            assertClose(expectedCross[i], actualCross[i], exact);
+        }
+    }
+
+    @Test
+    public void testSameAsReference() {
+        for (int embedSize : new int[]{0, 1, 4, 8, 16, 32, 64}) {
+            FMModelParam param = param(embedSize, embedSize);
+            HeteroFMGuest guest = init(new HeteroFMGuest(), param);
+            HeteroFMHost host = init(new HeteroFMHost(), param);
+            List<Map<String, Object>> rows = rows(50, embedSize + 100);
+            ColumnarBatch guestBatch = guest.columnarInference(context,
+                    Collections.singletonList(ColumnarBatch.fromRows(rows, new Throwable[rows.size()])));
+            ColumnarBatch hostBatch = host.columnarInference(context,
+                    Collections.singletonList(ColumnarBatch.fromRows(rows, new Throwable[rows.size()])));
+            for (int r = 0; r < rows.size(); r++) {
+                Map<String, Object> expected = referenceForward(param, rows.get(r));
+                List<Map<String, Object>> input = Collections.singletonList(rows.get(r));
+                Map<String, Object> guestResult = guest.localInference(context, input);
+                Map<String, Object> hostResult = host.localInference(context, input);
+                assertSame(expected, guestResult, true);
+                assertSame(expected, hostResult, true);
+                assertSame(expected, guestBatch.row(r), false);
+                assertSame(expected, hostBatch.row(r), false);
+                Assert.assertEquals(expected.get(Dict.MODEL_WRIGHT_HIT_RATE), guestResult.get(Dict.MODEL_WRIGHT_HIT_RATE));
+                Assert.assertEquals(expected.get(Dict.INPUT_DATA_HIT_RATE), guestResult.get(Dict.INPUT_DATA_HIT_RATE));
+                Assert.assertEquals(2, hostResult.size());
+            }
+        }
+    }
+
+    /**
+     * 每次返回的 FM_CROSS 相互独立, 不受后续计算影响
+     */
+    @Test
+    public void testCrossNotShared() {
+        FMModelParam param = param(8, 1);
+        HeteroFMGuest guest = init(new HeteroFMGuest(), param);
+        List<Map<String, Object>> rows = rows(2, 2);
+        double[] first = (double[]) guest.localInference(context, rows.subList(0, 1)).get(Dict.FM_CROSS);
+        double[] copy = first.clone();
+        guest.localInference(context, rows.subList(1, 2));
+        Assert.assertArrayEquals(copy, first, 0);
+    }
+
+    @Test
+    public void testIllegalModel() {
+        FMModelParam param = FMModelParam.newBuilder().setEmbedSize(4)
+                .putEmbedding("x0", Embedding.newBuilder().addWeight(1).addWeight(2).build()).build();
+        Assert.assertNotEquals(0, new HeteroFMHost().initModel(null, param.toByteString().asReadOnlyByteBuffer()));
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml;
+
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningMetaProto.FeatureBinningMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningMetaProto.TransformMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningParamProto.FeatureBinningParam;
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningParamProto.FeatureBinningResult;
+import com.webank.ai.fate.core.mlmodel.buffer.FeatureBinningParamProto.IVParam;
+import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.model.HeteroFeatureBinning;
+import com.webank.ai.fate.serving.federatedml.model.HeteroFeatureBinningGuest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+
+@RunWith(JUnit4.class)
+public class HeteroFeatureBinningTest {
+
+    private static final double[] SPECIAL = {Double.NaN, 0.0, -0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, 1e18, -1e18, 0.5, 1, -1, 2, 255, 256, 257};
+
+    /**
+     * 改造前的分箱逻辑, 作为对照
+     */
+    static class Reference {
+        final Map<String, List<Double>> splitPoints;
+        final List<Long> transformCols;
+        final List<String> header;
+
+        Reference(Map<String, List<Double>> splitPoints, List<Long> transformCols, List<String> header) {
+            this.splitPoints = splitPoints;
+            this.transformCols = transformCols;
+            this.header = header;
+        }
+
+        Map<String, Object> inference(Map<String, Object> firstData) {
+            HashMap<String, Object> outputData = new HashMap<>(8);
+            HashMap<String, Long> headerMap = new HashMap<>(8);
+            for (int i = 0; i < this.header.size(); i++) {
+                headerMap.put(this.header.get(i), (long) i);
+            }
+            for (String colName : firstData.keySet()) {
+                try {
+                    if (!this.splitPoints.containsKey(colName)) {
+                        outputData.put(colName, firstData.get(colName));
+                        continue;
+                    }
+                    Long thisColIndex = headerMap.get(colName);
+                    if (!this.transformCols.contains(thisColIndex)) {
+                        outputData.put(colName, firstData.get(colName));
+                        continue;
+                    }
+                    List<Double> splitPoint = this.splitPoints.get(colName);
+                    Double colValue = Double.valueOf(firstData.get(colName).toString());
+                    int colIndex = Collections.binarySearch(splitPoint, colValue);
+                    if (colIndex < 0) {
+                        colIndex = Math.min((-colIndex - 1), splitPoint.size() - 1);
+                    }
+                    outputData.put(colName, colIndex);
+                } catch (Throwable e) {
+                    // 与原实现一样丢弃无法解析的值
+                }
+            }
+            return outputData;
+        }
+    }
+
+    private static HeteroFeatureBinning binning(List<String> header, List<Long> transformCols, Map<String, List<Double>> splitPoints) {
+        FeatureBinningResult.Builder result = FeatureBinningResult.newBuilder();
+        splitPoints.forEach((name, points) -> result.putBinningResult(name, IVParam.newBuilder().addAllSplitPoints(points).build()));
+        TransformMeta transform = TransformMeta.newBuilder().addAllTransformCols(transformCols).build();
+        FeatureBinningMeta meta = FeatureBinningMeta.newBuilder().setNeedRun(true).setTransformParam(transform).build();
+        FeatureBinningParam param = FeatureBinningParam.newBuilder().addAllHeader(header).setBinningResult(result).build();
+        HeteroFeatureBinning component = new HeteroFeatureBinningGuest();
+        component.setComponentName("binning_0");
+        Assert.assertEquals(0, component.initModel(meta.toByteString().asReadOnlyByteBuffer(), param.toByteString().asReadOnlyByteBuffer()));
+        return component;
+    }
+
+    private static List<Double> randomSplits(Random random) {
+        List<Double> points = new ArrayList<>();
+        int size = random.nextInt(12);
+        switch (random.nextInt(6)) {
+            case 0:
+                // 低基数整数列, 走查表
+                for (int i = 0; i < size; i++) {
+                    points.add((double) (random.nextInt(40) - 10));
+                }
+                Collections.sort(points);
+                break;
+            case 1:
+                for (int i = 0; i < size; i++) {
+                    points.add(random.nextInt(100) / 10.0 - 3);
+                }
+                Collections.sort(points);
+                break;
+            case 2:
+                // 含特殊值
+                for (int i = 0; i < size; i++) {
+                    points.add(SPECIAL[random.nextInt(SPECIAL.length)]);
+                }
+                Collections.sort(points);
+                break;
+            case 3:
+                // 无序
+                for (int i = 0; i < size; i++) {
+                    points.add(random.nextGaussian() * 100);
+                }
+                break;
+            default:
+                for (int i = 0; i < size; i++) {
+                    points.add(random.nextGaussian() * 1000);
+                }
+                Collections.sort(points);
+                break;
+        }
+        return points;
+    }
+
+    private static Object randomValue(Random random, List<Double> splits) {
+        switch (random.nextInt(7)) {
+            case 0:
+                return SPECIAL[random.nextInt(SPECIAL.length)];
+            case 1:
+                return splits.isEmpty() ? 0.0 : splits.get(random.nextInt(splits.size()));
+            case 2:
+                return random.nextInt(60) - 20;
+            case 3:
+                return String.valueOf(random.nextInt(60) - 20);
+            case 4:
+                return random.nextInt(20) == 0 ? "abc" : String.valueOf(random.nextGaussian() * 10);
+            case 5:
+                return (double) (random.nextInt(60) - 20);
+            default:
+                return random.nextGaussian() * 1000;
+        }
+    }
+
+    /**
+     * 随机分裂点和随机取值下, 逐行和按列的结果都与改造前完全一致
+     */
+    @Test
+    public void testSameAsReference() {
+        Random random = new Random(7);
+        Context context = new BaseContext();
+        for (int round = 0; round < 50; round++) {
+            int columns = 40;
+            List<String> header = new ArrayList<>();
+            Map<String, List<Double>> splitPoints = new HashMap<>();
+            for (int i = 0; i < columns; i++) {
+                // 包含重复的列名
+                header.add("x" + random.nextInt(columns));
+                if (random.nextInt(5) > 0) {
+                    splitPoints.put("x" + i, randomSplits(random));
+                }
+            }
+            List<Long> transformCols = new ArrayList<>();
+            for (int i = 0; i < columns + 5; i++) {
+                if (random.nextInt(4) > 0) {
+                    transformCols.add((long) i);
+                }
+            }
+            HeteroFeatureBinning component = binning(header, transformCols, splitPoints);
+            Reference reference = new Reference(splitPoints, transformCols, header);
+
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (int r = 0; r < 20; r++) {
+                Map<String, Object> row = new HashMap<>();
+                for (int i = 0; i < columns + 2; i++) {
+                    if (random.nextInt(10) > 0) {
+                        List<Double> splits = splitPoints.getOrDefault("x" + i, Collections.emptyList());
+                        row.put("x" + i, randomValue(random, splits));
+                    }
+                }
+                rows.add(row);
+            }
+            ColumnarBatch batch = component.columnarInference(context,
+                    Collections.singletonList(ColumnarBatch.fromRows(rows, new Throwable[rows.size()])));
+            for (int r = 0; r < rows.size(); r++) {
+                Map<String, Object> expected = reference.inference(rows.get(r));
+                Map<String, Object> actual = component.localInference(context, Collections.singletonList(rows.get(r)));
+                Assert.assertEquals(expected, actual);
+                Map<String, Object> columnar = batch.row(r);
+                Assert.assertEquals(expected.keySet(), columnar.keySet());
+                for (Map.Entry<String, Object> entry : expected.entrySet()) {
+                    if (entry.getValue() instanceof Integer) {
+                        Assert.assertEquals(((Integer) entry.getValue()).doubleValue(), ((Number) columnar.get(entry.getKey())).doubleValue(), 0);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml;
+
+import com.webank.ai.fate.core.mlmodel.buffer.OneHotMetaProto.OneHotMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.OneHotParamProto.ColsMap;
+import com.webank.ai.fate.core.mlmodel.buffer.OneHotParamProto.OneHotParam;
+import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.common.model.OneHotEncoderMetrics;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import com.webank.ai.fate.serving.federatedml.model.OneHotEncoder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+
+@RunWith(JUnit4.class)
+public class OneHotEncoderTest {
+
+    private final Context context = new BaseContext();
+
+    private static ColsMap colsMap(String col, String... values) {
+        ColsMap.Builder colsMap = ColsMap.newBuilder();
+        for (String value : values) {
+            colsMap.addValues(value).addTransformedHeaders(col + "_" + value);
+        }
+        return colsMap.build();
+    }
+
+    /**
+     * int: 整数类别, dec: 小数类别, sex: 文本类别, lost: 在 transform 列中但模型里没有类别
+     */
+    private static OneHotEncoder encoder() {
+        OneHotMeta meta = OneHotMeta.newBuilder().setNeedRun(true).addTransformColNames("int").addTransformColNames("dec")
+                .addTransformColNames("sex").addTransformColNames("lost").build();
+        OneHotParam param = OneHotParam.newBuilder()
+                .putColMap("int", colsMap("int", "0", "1", "2"))
+                .putColMap("dec", colsMap("dec", "0.5", "1.25", "-3.0"))
+                .putColMap("sex", colsMap("sex", "male", "female"))
+                .build();
+        OneHotEncoder encoder = new OneHotEncoder();
+        encoder.setComponentName("onehot_0");
+        Assert.assertEquals(0, encoder.initModel(meta.toByteString().asReadOnlyByteBuffer(), param.toByteString().asReadOnlyByteBuffer()));
+        return encoder;
+    }
+
+    private Map<String, Object> encode(OneHotEncoder encoder, String col, Object value) {
+        Map<String, Object> input = new HashMap<>();
+        input.put(col, value);
+        input.put("other", 7);
+        Map<String, Object> output = encoder.localInference(context, Collections.singletonList(input));
+        Assert.assertEquals(7, output.get("other"));
+        return output;
+    }
+
+    private void assertHit(OneHotEncoder encoder, String col, Object value, String hit, String... categories) {
+        Map<String, Object> output = encode(encoder, col, value);
+        Assert.assertFalse(output.containsKey(col));
+        Assert.assertEquals(categories.length + 1, output.size());
+        for (String category : categories) {
+            Assert.assertEquals(category.equals(hit) ? 1.0 : 0.0, output.get(col + "_" + category));
+        }
+    }
+
+    @Test
+    public void testNumericStringCategories() {
+        OneHotEncoder encoder = encoder();
+        for (Object value : Arrays.asList(1, 1L, 1.0, "1", "1.0", "01")) {
+            assertHit(encoder, "int", value, "1", "0", "1", "2");
+        }
+        assertHit(encoder, "int", "-0", "0", "0", "1", "2");
+        assertHit(encoder, "int", -0.0, "0", "0", "1", "2");
+        assertHit(encoder, "int", 2, "2", "0", "1", "2");
+        // 整数类别的列中小数向上取整后命中, 单独计数
+        assertHit(encoder, "int", 1.5, "2", "0", "1", "2");
+        assertHit(encoder, "int", "1.2", "2", "0", "1", "2");
+        assertHit(encoder, "int", -0.5, "0", "0", "1", "2");
+        assertHit(encoder, "int", 2.5, null, "0", "1", "2");
+        assertHit(encoder, "int", 3, null, "0", "1", "2");
+        assertHit(encoder, "int", "abc", null, "0", "1", "2");
+        assertHit(encoder, "int", "", null, "0", "1", "2");
+        Assert.assertEquals(Long.valueOf(3), encoder.getCeiledCounts().get("int"));
+        Assert.assertEquals(Long.valueOf(2), encoder.getUnseenCounts().get("int"));
+        Assert.assertEquals(Long.valueOf(2), encoder.getMalformedCounts().get("int"));
+    }
+
+    @Test
+    public void testDecimalStringCategories() {
+        OneHotEncoder encoder = encoder();
+        for (Object value : Arrays.asList(0.5, "0.5", "0.50", ".5", 0.5f)) {
+            assertHit(encoder, "dec", value, "0.5", "0.5", "1.25", "-3.0");
+        }
+        assertHit(encoder, "dec", "1.25", "1.25", "0.5", "1.25", "-3.0");
+        for (Object value : Arrays.asList(-3, -3.0, "-3", "-3.0")) {
+            assertHit(encoder, "dec", value, "-3.0", "0.5", "1.25", "-3.0");
+        }
+        assertHit(encoder, "dec", 1, null, "0.5", "1.25", "-3.0");
+        assertHit(encoder, "dec", "x", null, "0.5", "1.25", "-3.0");
+        // 小数类别的列不取整
+        assertHit(encoder, "dec", 0.4, null, "0.5", "1.25", "-3.0");
+        Assert.assertEquals(Long.valueOf(2), encoder.getUnseenCounts().get("dec"));
+        Assert.assertEquals(Long.valueOf(1), encoder.getMalformedCounts().get("dec"));
+        Assert.assertEquals(Long.valueOf(0), encoder.getCeiledCounts().get("dec"));
+        Assert.assertEquals(Long.valueOf(0), encoder.getUnseenCounts().get("int"));
+    }
+
+    @Test
+    public void testTextCategories() {
+        OneHotEncoder encoder = encoder();
+        assertHit(encoder, "sex", "female", "female", "male", "female");
+        // 文本类别的列中未知取值记为 unseen 而不是 malformed
+        assertHit(encoder, "sex", "other", null, "male", "female");
+        Assert.assertEquals(Long.valueOf(1), encoder.getUnseenCounts().get("sex"));
+        Assert.assertEquals(Long.valueOf(0), encoder.getMalformedCounts().get("sex"));
+        Assert.assertFalse(encoder.getUnseenCounts().containsKey("lost"));
+    }
+
+    /**
+     * 加载后的组件通过 {@link OneHotEncoderMetrics#metrics()} 上报计数
+     */
+    @Test
+    public void testPublishedMetrics() {
+        OneHotEncoder encoder = encoder();
+        encoder.setComponentName("onehot_metrics");
+        assertHit(encoder, "sex", "other", null, "male", "female");
+        assertHit(encoder, "int", "abc", null, "0", "1", "2");
+        assertHit(encoder, "int", 0.5, "1", "0", "1", "2");
+        OneHotEncoderMetrics metrics = OneHotEncoderMetrics.metrics().stream()
+                .filter(m -> "onehot_metrics".equals(m.getComponentName())).findFirst().orElse(null);
+        Assert.assertNotNull(metrics);
+        Assert.assertEquals(Long.valueOf(1), metrics.getUnseenCounts().get("sex"));
+        Assert.assertEquals(Long.valueOf(0), metrics.getUnseenCounts().get("int"));
+        Assert.assertEquals(Long.valueOf(1), metrics.getMalformedCounts().get("int"));
+        Assert.assertEquals(Long.valueOf(1), metrics.getCeiledCounts().get("int"));
+    }
+
+    @Test
+    public void testMissingAndUnknownColumns() {
+        OneHotEncoder encoder = encoder();
+        Assert.assertEquals(1, encode(encoder, "lost", 1).size());
+        Assert.assertEquals(1, encode(encoder, "int", null).size());
+    }
+
+    @Test
+    public void testIllegalModel() {
+        OneHotMeta meta = OneHotMeta.newBuilder().setNeedRun(true).addTransformColNames("x").build();
+        OneHotParam param = OneHotParam.newBuilder()
+                .putColMap("x", ColsMap.newBuilder().addValues("0").addValues("1").addTransformedHeaders("x_0").build())
+                .build();
+        OneHotEncoder encoder = new OneHotEncoder();
+        Assert.assertNotEquals(0, encoder.initModel(meta.toByteString().asReadOnlyByteBuffer(), param.toByteString().asReadOnlyByteBuffer()));
+    }
+
+    @Test
+    public void testColumnarSameAsRowPath() {
+        OneHotEncoder encoder = encoder();
+        List<Object> ints = Arrays.asList(0, 1, 2, 3, 1.0, "1.5", "abc", null);
+        List<Object> decs = Arrays.asList(0.5, -3, "1.25", "0.50", 9.0, "y", null, 1.25);
+        List<Object> sexes = Arrays.asList("male", "female", "x", null, 1, "male", "female", "male");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int r = 0; r < ints.size(); r++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("int", ints.get(r));
+            row.put("dec", decs.get(r));
+            row.put("sex", sexes.get(r));
+            row.put("lost", r);
+            row.put("other", r * 0.5);
+            rows.add(row);
+        }
+        ColumnarBatch batch = encoder.columnarInference(context,
+                Collections.singletonList(ColumnarBatch.fromRows(rows, new Throwable[rows.size()])));
+        for (int r = 0; r < rows.size(); r++) {
+            Map<String, Object> expected = encoder.localInference(context, Collections.singletonList(rows.get(r)));
+            Assert.assertEquals(expected, batch.row(r));
+        }
+        // 每个值在两条路径上各统计一次
+        Assert.assertEquals(Long.valueOf(2 * 1), encoder.getUnseenCounts().get("int"));
+        Assert.assertEquals(Long.valueOf(2 * 1), encoder.getMalformedCounts().get("int"));
+        Assert.assertEquals(Long.valueOf(2 * 1), encoder.getCeiledCounts().get("int"));
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml.model;
+
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelMetaProto.BoostingTreeModelMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.BoostingTreeModelParam;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.DecisionTreeModelParam;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.NodeParam;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+
+@RunWith(JUnit4.class)
+public class FlatDecisionTreeTest {
+
+    private static final int FEATURES = 12;
+
+    /**
+     * 改造前 HeteroSecureBoost.gotoNextLevel 的逻辑, 作为对照
+     */
+    static int referenceNext(DecisionTreeModelParam tree, int treeNodeId, Map<String, Object> input) {
+        int fid = tree.getTree(treeNodeId).getFid();
+        double splitValue = tree.getSplitMaskdict().get(treeNodeId);
+        String fidStr = String.valueOf(fid);
+        if (input.containsKey(fidStr)) {
+            if (Double.parseDouble(input.get(fidStr).toString()) <= splitValue + 1e-20) {
+                return tree.getTree(treeNodeId).getLeftNodeid();
+            }
+            return tree.getTree(treeNodeId).getRightNodeid();
+        }
+        if (tree.getMissingDirMaskdict().containsKey(treeNodeId)) {
+            int missingDir = tree.getMissingDirMaskdict().get(treeNodeId);
+            return missingDir == 1 ? tree.getTree(treeNodeId).getRightNodeid() : tree.getTree(treeNodeId).getLeftNodeid();
+        }
+        return tree.getTree(treeNodeId).getRightNodeid();
+    }
+
+    /**
+     * 改造前 HeteroSecureBoostingTreeHost.extractHostNodeRoute 的逻辑, 作为对照
+     */
+    static Map<String, Object> referenceRoute(List<DecisionTreeModelParam> trees, Map<String, Object> input) {
+        Map<String, Object> result = new HashMap<>(8);
+        for (int i = 0; i < trees.size(); i++) {
+            DecisionTreeModelParam tree = trees.get(i);
+            Map<String, Boolean> treeRoute = new HashMap<>(8);
+            for (int j = 0; j < tree.getTreeCount(); j++) {
+                if (!tree.getTree(j).getSitename().split(":", -1)[0].equals("host")) {
+                    continue;
+                }
+                int fid = tree.getTree(j).getFid();
+                double splitValue = tree.getSplitMaskdict().get(j);
+                boolean direction = false;
+                if (input.containsKey(Integer.toString(fid))) {
+                    direction = Double.parseDouble(input.get(Integer.toString(fid)).toString()) <= splitValue + 1e-20;
+                } else if (tree.getMissingDirMaskdict().containsKey(j)) {
+                    direction = tree.getMissingDirMaskdict().get(j) != 1;
+                }
+                treeRoute.put(Integer.toString(j), direction);
+            }
+            result.put(Integer.toString(i), treeRoute);
+        }
+        return result;
+    }
+
+    /**
+     * 随机的完全二叉树, 内部节点随机属于 guest 或 host, 少数节点缺少分裂值或缺失方向
+     */
+    private static DecisionTreeModelParam randomTree(Random random, boolean allowMissingSplit) {
+        int depth = 1 + random.nextInt(5);
+        int internal = (1 << depth) - 1;
+        int total = (1 << (depth + 1)) - 1;
+        DecisionTreeModelParam.Builder tree = DecisionTreeModelParam.newBuilder();
+        for (int i = 0; i < total; i++) {
+            NodeParam.Builder node = NodeParam.newBuilder().setId(i);
+            if (i < internal) {
+                node.setSitename(random.nextBoolean() ? "guest:9999" : "host:10000").setFid(random.nextInt(FEATURES))
+                        .setLeftNodeid(2 * i + 1).setRightNodeid(2 * i + 2);
+                if (!allowMissingSplit || random.nextInt(30) > 0) {
+                    tree.putSplitMaskdict(i, Math.round(random.nextGaussian() * 40) / 4.0);
+                }
+                int dir = random.nextInt(3);
+                if (dir > 0) {
+                    tree.putMissingDirMaskdict(i, dir == 1 ? 1 : -1);
+                }
+            } else {
+                node.setSitename("guest:9999").setIsLeaf(true).setWeight(random.nextGaussian());
+            }
+            tree.addTree(node.build());
+        }
+        return tree.build();
+    }
+
+    /**
+     * fid 为 key 的样本, 包含缺失、Integer、Double、数值字符串、恰好等于分裂值的值, 可选包含无法解析和 null 的值
+     */
+    private static Map<String, Object> randomInput(Random random, boolean allowIllegal) {
+        Map<String, Object> input = new HashMap<>();
+        for (int f = 0; f < FEATURES; f++) {
+            switch (random.nextInt(allowIllegal ? 8 : 6)) {
+                case 0:
+                    break;
+                case 1:
+                    input.put(String.valueOf(f), random.nextInt(20) - 10);
+                    break;
+                case 2:
+                    input.put(String.valueOf(f), String.valueOf(random.nextGaussian() * 10));
+                    break;
+                case 3:
+                    input.put(String.valueOf(f), Math.round(random.nextGaussian() * 40) / 4.0);
+                    break;
+                case 6:
+                    input.put(String.valueOf(f), "abc");
+                    break;
+                case 7:
+                    input.put(String.valueOf(f), null);
+                    break;
+                default:
+                    input.put(String.valueOf(f), random.nextGaussian() * 10);
+                    break;
+            }
+        }
+        // 不是 fid 的 key 被忽略
+        input.put("name", "abc");
+        return input;
+    }
+
+    private interface Walk {
+        Object run();
+    }
+
+    /**
+     * 返回结果或异常类型
+     */
+    private static Object outcome(Walk walk) {
+        try {
+            return walk.run();
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    @Test
+    public void testWalkSameAsReference() {
+        Random random = new Random(5);
+        int failures = 0;
+        for (int t = 0; t < 300; t++) {
+            DecisionTreeModelParam treeParam = randomTree(random, true);
+            FlatDecisionTree tree = new FlatDecisionTree(treeParam);
+            for (int r = 0; r < 30; r++) {
+                Map<String, Object> input = randomInput(random, true);
+                double[] values = new double[FEATURES];
+                byte[] states = new byte[FEATURES];
+                FlatDecisionTree.encodeRow(input, values, states);
+                Object expected = outcome(() -> {
+                    int node = 0;
+                    while (!treeParam.getTree(node).getIsLeaf()) {
+                        node = referenceNext(treeParam, node, input);
+                    }
+                    return node;
+                });
+                Object actual = outcome(() -> {
+                    int node = 0;
+                    while (!tree.isLeaf[node]) {
+                        node = tree.next(node, values, states);
+                    }
+                    return node;
+                });
+                Assert.assertEquals(expected, actual);
+                if (expected instanceof Class) {
+                    failures++;
+                }
+            }
+        }
+        // 随机数据中确实覆盖了缺少分裂值、null 和无法解析的值
+        Assert.assertTrue(failures > 0);
+    }
+
+    private static DecisionTreeModelParam stump(boolean withSplit) {
+        DecisionTreeModelParam.Builder tree = DecisionTreeModelParam.newBuilder()
+                .addTree(NodeParam.newBuilder().setSitename("guest:9999").setFid(0).setLeftNodeid(1).setRightNodeid(2).build())
+                .addTree(NodeParam.newBuilder().setSitename("guest:9999").setIsLeaf(true).build())
+                .addTree(NodeParam.newBuilder().setSitename("guest:9999").setIsLeaf(true).build());
+        if (withSplit) {
+            tree.putSplitMaskdict(0, 1.0);
+        }
+        return tree.build();
+    }
+
+    @Test
+    public void testIllegalValues() {
+        FlatDecisionTree tree = new FlatDecisionTree(stump(true));
+        Map<Object, Class<?>> expected = new LinkedHashMap<>();
+        expected.put("abc", NumberFormatException.class);
+        expected.put("", NumberFormatException.class);
+        for (Map.Entry<Object, Class<?>> entry : expected.entrySet()) {
+            Map<String, Object> input = new HashMap<>();
+            input.put("0", entry.getKey());
+            double[] values = new double[1];
+            byte[] states = new byte[1];
+            FlatDecisionTree.encodeRow(input, values, states);
+            Assert.assertEquals(entry.getValue(), outcome(() -> tree.next(0, values, states)));
+        }
+        Map<String, Object> input = new HashMap<>();
+        input.put("0", null);
+        double[] values = new double[1];
+        byte[] states = new byte[1];
+        FlatDecisionTree.encodeRow(input, values, states);
+        Assert.assertEquals(NullPointerException.class, outcome(() -> tree.next(0, values, states)));
+        // 缺少分裂值的节点即使特征缺失也会失败
+        FlatDecisionTree noSplit = new FlatDecisionTree(stump(false));
+        Assert.assertEquals(NullPointerException.class, outcome(() -> noSplit.next(0, new double[1], new byte[1])));
+    }
+
+    @Test
+    public void testHostRouteSameAsReference() {
+        Random random = new Random(9);
+        for (int m = 0; m < 50; m++) {
+            boolean allowIllegal = m % 2 == 1;
+            BoostingTreeModelParam.Builder param = BoostingTreeModelParam.newBuilder().setTreeNum(5).setTreeDim(1).setNumClasses(2);
+            for (int f = 0; f < FEATURES; f++) {
+                param.putFeatureNameFidMapping(f, "x" + f);
+            }
+            for (int t = 0; t < 5; t++) {
+                param.addTrees(randomTree(random, allowIllegal));
+            }
+            BoostingTreeModelParam modelParam = param.build();
+            HeteroSecureBoostingTreeHost host = new HeteroSecureBoostingTreeHost();
+            host.setComponentName("secureboost_0");
+            BoostingTreeModelMeta meta = BoostingTreeModelMeta.newBuilder().setLearningRate(0.3).build();
+            Assert.assertEquals(0, host.initModel(meta.toByteString().asReadOnlyByteBuffer(), modelParam.toByteString().asReadOnlyByteBuffer()));
+            for (int r = 0; r < 30; r++) {
+                Map<String, Object> input = randomInput(random, allowIllegal);
+                Assert.assertEquals(outcome(() -> referenceRoute(modelParam.getTreesList(), input)),
+                        outcome(() -> host.extractHostNodeRoute(input)));
+            }
+        }
+    }
+}
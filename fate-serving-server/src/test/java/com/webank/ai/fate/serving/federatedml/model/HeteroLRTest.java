@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml.model;
+
+import com.webank.ai.fate.core.mlmodel.buffer.LRModelParamProto.LRModelParam;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.federatedml.columnar.ColumnarBatch;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+
+@RunWith(JUnit4.class)
+public class HeteroLRTest {
+
+    private static final int FEATURES = 60;
+
+    /**
+     * 改造前按 map 查找权重的前向计算, 作为对照
+     */
+    static Map<String, Double> referenceForward(LRModelParam param, Map<String, Object> inputData) {
+        Map<String, Double> weight = param.getWeightMap();
+        int modelWeightHitCount = 0;
+        int inputDataHitCount = 0;
+        double score = 0;
+        for (String key : inputData.keySet()) {
+            if (weight.containsKey(key)) {
+                Double x = new Double(inputData.get(key).toString());
+                Double w = new Double(weight.get(key).toString());
+                score += w * x;
+                modelWeightHitCount += 1;
+                inputDataHitCount += 1;
+            }
+        }
+        score += param.getIntercept();
+        Map<String, Double> ret = new HashMap<>(8);
+        ret.put(Dict.SCORE, score);
+        ret.put(Dict.MODEL_WRIGHT_HIT_RATE, (double) modelWeightHitCount / weight.size());
+        ret.put(Dict.INPUT_DATA_HIT_RATE, (double) inputDataHitCount / inputData.size());
+        return ret;
+    }
+
+    private static LRModelParam param(Random random, double intercept) {
+        LRModelParam.Builder param = LRModelParam.newBuilder().setIntercept(intercept);
+        for (int f = 0; f < FEATURES; f++) {
+            if (random.nextInt(3) > 0) {
+                param.putWeight("x" + f, random.nextGaussian() * 10);
+            }
+        }
+        return param.build();
+    }
+
+    private static <T extends HeteroLR> T init(T component, LRModelParam param) {
+        component.setComponentName("lr_0");
+        Assert.assertEquals(0, component.initModel(null, param.toByteString().asReadOnlyByteBuffer()));
+        return component;
+    }
+
+    /**
+     * 包含模型中没有的特征、缺失的特征, 以及 Integer/Long/String/Double 各种取值
+     */
+    private static Map<String, Object> row(Random random) {
+        Map<String, Object> row = new HashMap<>();
+        for (int f = 0; f < FEATURES + 10; f++) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    break;
+                case 1:
+                    row.put("x" + f, random.nextInt(100) - 50);
+                    break;
+                case 2:
+                    row.put("x" + f, (long) random.nextInt(1000));
+                    break;
+                case 3:
+                    row.put("x" + f, String.valueOf(random.nextGaussian() * 100));
+                    break;
+                default:
+                    row.put("x" + f, random.nextGaussian() * 100);
+                    break;
+            }
+        }
+        return row;
+    }
+
+    private static Class<?> thrown(Runnable runnable) {
+        try {
+            runnable.run();
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+        return null;
+    }
+
+    @Test
+    public void testSameAsReference() {
+        Random random = new Random(3);
+        for (double intercept : new double[]{0, -1.5, 3.25}) {
+            LRModelParam param = param(random, intercept);
+            HeteroLRGuest guest = init(new HeteroLRGuest(), param);
+            HeteroLRHost host = init(new HeteroLRHost(), param);
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (int r = 0; r < 100; r++) {
+                rows.add(row(random));
+            }
+            // 空的输入
+            rows.add(new HashMap<>());
+            double[] scores = guest.forward(ColumnarBatch.fromRows(rows, new Throwable[rows.size()]));
+            for (int r = 0; r < rows.size(); r++) {
+                Map<String, Double> expected = referenceForward(param, rows.get(r));
+                List<Map<String, Object>> input = Collections.singletonList(rows.get(r));
+                // 逐行计算的累加顺序与改造前相同, 结果完全一致
+                Assert.assertEquals(expected, guest.forward(input));
+                Assert.assertEquals(expected, host.forward(input));
+                // 按列计算按列顺序累加, 只差舍入误差
+                double score = expected.get(Dict.SCORE);
+                Assert.assertEquals(score, scores[r], 1e-12 * Math.max(1, Math.abs(score)));
+            }
+        }
+    }
+
+    @Test
+    public void testIllegalValue() {
+        LRModelParam param = LRModelParam.newBuilder().putWeight("x0", 1.0).putWeight("x1", 2.0).setIntercept(0.5).build();
+        HeteroLRGuest guest = init(new HeteroLRGuest(), param);
+        for (Object value : Arrays.asList("abc", "", null)) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("x0", 1);
+            row.put("x1", value);
+            List<Map<String, Object>> input = Collections.singletonList(row);
+            Class<?> expected = thrown(() -> referenceForward(param, row));
+            Assert.assertNotNull(expected);
+            Assert.assertEquals(expected, thrown(() -> guest.forward(input)));
+        }
+        // 不在模型中的特征即使无法解析也不影响结果
+        Map<String, Object> row = new HashMap<>();
+        row.put("x0", "2");
+        row.put("other", "abc");
+        Assert.assertEquals(referenceForward(param, row), guest.forward(Collections.singletonList(row)));
+        Assert.assertEquals(2.5, guest.forward(Collections.singletonList(row)).get(Dict.SCORE), 0);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.federatedml.model;
+
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelMetaProto.BoostingTreeModelMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.BoostingTreeModelParam;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.DecisionTreeModelParam;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.NodeParam;
+import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.core.bean.MetaInfo;
+import com.webank.ai.fate.serving.core.exceptions.GuestMergeException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.*;
+
+/**
+ * host 路由表的 bitset 格式与原 map 格式的一致性, 以及新旧版本 guest/host 混合部署时的兼容性
+ */
+@RunWith(JUnit4.class)
+public class SecureBoostRouteTest {
+
+    private static final int FEATURES = 8;
+    private static final int TREES = 6;
+    private static final double LEARNING_RATE = 0.3;
+    private static final String COMPONENT = "secureboost_0";
+    private static final String HOST_PARTY = "10000";
+
+    private final List<DecisionTreeModelParam> trees = new ArrayList<>();
+    private final HeteroSecureBoostingTreeGuest guest;
+    private final HeteroSecureBoostingTreeHost host;
+
+    public SecureBoostRouteTest() {
+        Random random = new Random(11);
+        for (int t = 0; t < TREES; t++) {
+            trees.add(randomTree(random));
+        }
+        guest = init(new HeteroSecureBoostingTreeGuest(), "g");
+        host = init(new HeteroSecureBoostingTreeHost(), "h");
+    }
+
+    private static DecisionTreeModelParam randomTree(Random random) {
+        int depth = 1 + random.nextInt(4);
+        int internal = (1 << depth) - 1;
+        int total = (1 << (depth + 1)) - 1;
+        DecisionTreeModelParam.Builder tree = DecisionTreeModelParam.newBuilder();
+        for (int i = 0; i < total; i++) {
+            NodeParam.Builder node = NodeParam.newBuilder().setId(i);
+            if (i < internal) {
+                node.setSitename(random.nextBoolean() ? "guest:9999" : "host:10000").setFid(random.nextInt(FEATURES))
+                        .setLeftNodeid(2 * i + 1).setRightNodeid(2 * i + 2);
+                tree.putSplitMaskdict(i, random.nextGaussian());
+                if (random.nextBoolean()) {
+                    tree.putMissingDirMaskdict(i, random.nextBoolean() ? 1 : -1);
+                }
+            } else {
+                node.setSitename("guest:9999").setIsLeaf(true).setWeight(random.nextGaussian());
+            }
+            tree.addTree(node.build());
+        }
+        return tree.build();
+    }
+
+    /**
+     * guest 与 host 使用相同的树结构, 各自的特征名分别以 g / h 开头
+     */
+    private <T extends HeteroSecureBoost> T init(T component, String prefix) {
+        BoostingTreeModelParam.Builder param = BoostingTreeModelParam.newBuilder().setTreeNum(TREES).setTreeDim(1).setNumClasses(2)
+                .addAllTrees(trees);
+        for (int f = 0; f < FEATURES; f++) {
+            param.putFeatureNameFidMapping(f, prefix + f);
+        }
+        BoostingTreeModelMeta meta = BoostingTreeModelMeta.newBuilder().setLearningRate(LEARNING_RATE).build();
+        component.setComponentName(COMPONENT);
+        Assert.assertEquals(0, component.initModel(meta.toByteString().asReadOnlyByteBuffer(), param.build().toByteString().asReadOnlyByteBuffer()));
+        return component;
+    }
+
+    private static Map<String, Object> randomInput(Random random, String prefix) {
+        Map<String, Object> input = new HashMap<>();
+        for (int f = 0; f < FEATURES; f++) {
+            if (random.nextInt(4) > 0) {
+                input.put(prefix + f, random.nextGaussian());
+            }
+        }
+        return input;
+    }
+
+    /**
+     * 两方特征都在本地时按原 gotoNextLevel 逻辑遍历整棵树得到的预测值
+     */
+    private double referenceScore(Map<String, Object> guestInput, Map<String, Object> hostInput) {
+        double sum = 0;
+        for (DecisionTreeModelParam tree : trees) {
+            int node = 0;
+            while (!tree.getTree(node).getIsLeaf()) {
+                boolean isHost = tree.getTree(node).getSitename().startsWith("host");
+                Map<String, Object> input = isHost ? hostInput : guestInput;
+                String name = (isHost ? "h" : "g") + tree.getTree(node).getFid();
+                double split = tree.getSplitMaskdict().get(node);
+                boolean left;
+                if (input.containsKey(name)) {
+                    left = Double.parseDouble(input.get(name).toString()) <= split + 1e-20;
+                } else {
+                    Integer dir = tree.getMissingDirMaskdict().get(node);
+                    left = dir != null && dir != 1;
+                }
+                node = left ? tree.getTree(node).getLeftNodeid() : tree.getTree(node).getRightNodeid();
+            }
+            sum += tree.getTree(node).getWeight() * LEARNING_RATE;
+        }
+        return 1. / (1. + Math.exp(-sum));
+    }
+
+    private static Context context(String version) {
+        Context context = new BaseContext();
+        context.setVersion(version);
+        context.setCaseId("case");
+        return context;
+    }
+
+    private double merge(Map<String, Object> guestInput, Map<String, Object> hostResult) {
+        Context context = context(String.valueOf(MetaInfo.CURRENT_VERSION));
+        Map<String, Object> local = new HashMap<>();
+        local.put(COMPONENT, guest.localInference(context, Collections.singletonList(guestInput)));
+        Map<String, Object> partyData = new HashMap<>();
+        partyData.put(COMPONENT, hostResult);
+        Map<String, Object> remote = new HashMap<>();
+        remote.put(HOST_PARTY, partyData);
+        Map<String, Object> result = guest.mergeRemoteInference(context, Collections.singletonList(local), remote);
+        return (Double) result.get(Dict.SCORE);
+    }
+
+    private Map<String, Object> hostInference(Map<String, Object> hostInput, String guestVersion) {
+        return host.localInference(context(guestVersion), Collections.singletonList(hostInput));
+    }
+
+    /**
+     * 经过 json 传输后 long[] 变为数字列表, 较小的数值可能被解析为 Integer
+     */
+    private static Map<String, Object> viaJson(Map<String, Object> hostResult) {
+        Map<String, Object> copy = new HashMap<>(hostResult);
+        List<Number> words = new ArrayList<>();
+        for (long word : (long[]) hostResult.get(Dict.SBT_HOST_ROUTE_BITS)) {
+            words.add(word == (int) word ? (Number) (int) word : (Number) word);
+        }
+        copy.put(Dict.SBT_HOST_ROUTE_BITS, words);
+        return copy;
+    }
+
+    @Test
+    public void testBitsEncodeSameRouteAsMap() {
+        Random random = new Random(1);
+        for (int r = 0; r < 200; r++) {
+            Map<String, Object> hostInput = randomInput(random, "h");
+            Map<String, Object> fidInput = new HashMap<>();
+            hostInput.forEach((name, value) -> fidInput.put(name.substring(1), value));
+            Map<String, Object> routeMap = host.extractHostNodeRoute(fidInput);
+            Map<String, Object> routeBits = host.extractHostNodeRouteBits(fidInput);
+            long[] bits = (long[]) routeBits.get(Dict.SBT_HOST_ROUTE_BITS);
+            int ordinal = 0;
+            for (int t = 0; t < TREES; t++) {
+                Map<String, Boolean> treeRoute = (Map<String, Boolean>) routeMap.get(String.valueOf(t));
+                for (int node = 0; node < trees.get(t).getTreeCount(); node++) {
+                    if (trees.get(t).getTree(node).getSitename().startsWith("host")) {
+                        Assert.assertEquals(treeRoute.get(String.valueOf(node)), FlatDecisionTree.testBit(bits, ordinal));
+                        ordinal++;
+                    } else {
+                        Assert.assertFalse(treeRoute.containsKey(String.valueOf(node)));
+                    }
+                }
+            }
+            Assert.assertEquals(ordinal, routeBits.get(Dict.SBT_HOST_ROUTE_SIZE));
+            Assert.assertEquals((ordinal + 63) >>> 6, bits.length);
+        }
+    }
+
+    @Test
+    public void testVersionNegotiation() {
+        Map<String, Object> hostInput = randomInput(new Random(2), "h");
+        // 205 及以上的 guest 收到 bitset
+        Map<String, Object> current = hostInference(hostInput, String.valueOf(MetaInfo.SBT_ROUTE_BITSET_VERSION));
+        Assert.assertTrue(current.get(Dict.SBT_HOST_ROUTE_BITS) instanceof long[]);
+        // 204 及没有版本号的旧 guest 收到原来按树编号组织的 map
+        for (String version : Arrays.asList("204", "", null)) {
+            Map<String, Object> legacy = hostInference(hostInput, version);
+            Assert.assertFalse(legacy.containsKey(Dict.SBT_HOST_ROUTE_BITS));
+            Assert.assertFalse(legacy.containsKey(Dict.SBT_HOST_ROUTE_SIZE));
+            for (int t = 0; t < TREES; t++) {
+                Assert.assertTrue(legacy.get(String.valueOf(t)) instanceof Map);
+            }
+        }
+    }
+
+    @Test
+    public void testGuestDecodesBothFormats() {
+        Random random = new Random(3);
+        for (int r = 0; r < 200; r++) {
+            Map<String, Object> guestInput = randomInput(random, "g");
+            Map<String, Object> hostInput = randomInput(random, "h");
+            double expected = referenceScore(guestInput, hostInput);
+            Map<String, Object> bits = hostInference(hostInput, String.valueOf(MetaInfo.CURRENT_VERSION));
+            // 新版本 host 的 bitset, 本地对象和经过 json 的数字列表两种形式
+            Assert.assertEquals(expected, merge(guestInput, bits), 0);
+            Assert.assertEquals(expected, merge(guestInput, viaJson(bits)), 0);
+            // 204 版本的 host 不认识新的版本号, 仍返回 map 格式
+            Assert.assertEquals(expected, merge(guestInput, hostInference(hostInput, "204")), 0);
+        }
+    }
+
+    @Test
+    public void testRouteSizeMismatch() {
+        Map<String, Object> hostResult = new HashMap<>(hostInference(randomInput(new Random(4), "h"), String.valueOf(MetaInfo.CURRENT_VERSION)));
+        hostResult.put(Dict.SBT_HOST_ROUTE_SIZE, ((Integer) hostResult.get(Dict.SBT_HOST_ROUTE_SIZE)) + 1);
+        try {
+            merge(randomInput(new Random(5), "g"), hostResult);
+            Assert.fail("route size mismatch should fail");
+        } catch (GuestMergeException e) {
+            // expected
+        }
+    }
+}
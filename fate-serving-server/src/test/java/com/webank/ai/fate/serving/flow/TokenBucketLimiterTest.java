@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.flow;
+
+import com.webank.ai.fate.serving.common.flow.TokenBucketLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+@RunWith(JUnit4.class)
+public class TokenBucketLimiterTest {
+
+    private static final long SECOND = 1000000000L;
+
+    /**
+     * 由测试推进时间的限流器
+     */
+    static class ManualClockLimiter extends TokenBucketLimiter {
+        static long now;
+
+        ManualClockLimiter(double qpsAllowed) {
+            super(qpsAllowed);
+        }
+
+        @Override
+        protected long nanoTime() {
+            return now;
+        }
+    }
+
+    /**
+     * 多线程在 durationMs 内持续申请单个 permit, 返回每次通过的 {调用前时间, 调用后时间}
+     */
+    private List<long[]> run(int threads, long durationMs, TokenBucketLimiter limiter) throws InterruptedException {
+        List<long[]> passed = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] begin = new long[1];
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                List<long[]> local = new ArrayList<>();
+                try {
+                    start.await();
+                    long deadline = begin[0] + durationMs * 1000000L;
+                    long before;
+                    while ((before = System.nanoTime()) < deadline) {
+                        if (limiter.tryAcquire(1)) {
+                            local.add(new long[]{before, System.nanoTime()});
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    synchronized (passed) {
+                        passed.addAll(local);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        begin[0] = System.nanoTime();
+        start.countDown();
+        done.await();
+        return passed;
+    }
+
+    /**
+     * 任意 1 秒窗口内通过数的上界检查: 最多为 1 秒的突发额度加上 1 秒的速率配额. 每次通过发生在 [调用前, 调用后] 之间,
+     * 只统计确定落在窗口内的通过, 因此线程调度造成的时间误差不会导致误报
+     */
+    private void assertSlidingWindow(List<long[]> passed, int qps) {
+        passed.sort(Comparator.comparingLong(p -> p[0]));
+        int end = 0;
+        for (int i = 0; i < passed.size(); i++) {
+            long windowEnd = passed.get(i)[0] + SECOND;
+            while (end < passed.size() && passed.get(end)[0] < windowEnd) {
+                end++;
+            }
+            int count = 0;
+            for (int j = i; j < end; j++) {
+                if (passed.get(j)[1] < windowEnd) {
+                    count++;
+                }
+            }
+            Assert.assertTrue("passed " + count + " in one second", count <= 2 * qps + 1);
+        }
+    }
+
+    @Test
+    public void testNoOvershoot() throws Exception {
+        int qps = 1000;
+        List<long[]> passed = run(16, 1500, new TokenBucketLimiter(qps));
+        Assert.assertFalse(passed.isEmpty());
+        assertSlidingWindow(passed, qps);
+    }
+
+    @Test
+    public void testContention() throws Exception {
+        int qps = 10000;
+        List<long[]> passed = run(64, 1200, new TokenBucketLimiter(qps));
+        Assert.assertFalse(passed.isEmpty());
+        assertSlidingWindow(passed, qps);
+    }
+
+    /**
+     * 空闲后同一时刻可通过 qps 个单 permit 申请, 突发额度不超过 1 秒配额, 之后按速率恢复
+     */
+    @Test
+    public void testBurstAfterIdle() {
+        ManualClockLimiter.now = 0;
+        int qps = 100;
+        TokenBucketLimiter limiter = new ManualClockLimiter(qps);
+        ManualClockLimiter.now = 10 * SECOND;
+        for (int i = 0; i < qps; i++) {
+            Assert.assertTrue(limiter.tryAcquire(1));
+        }
+        Assert.assertFalse(limiter.tryAcquire(1));
+        ManualClockLimiter.now += SECOND / qps - 1;
+        Assert.assertFalse(limiter.tryAcquire(1));
+        ManualClockLimiter.now += 1;
+        Assert.assertTrue(limiter.tryAcquire(1));
+        Assert.assertFalse(limiter.tryAcquire(1));
+    }
+
+    /**
+     * 以随机步长推进时间并持续申请, 总数不超过初始突发加上速率配额, 长期速率接近 qps
+     */
+    @Test
+    public void testRateWithManualClock() {
+        ManualClockLimiter.now = 0;
+        int qps = 500;
+        TokenBucketLimiter limiter = new ManualClockLimiter(qps);
+        Random random = new Random(7);
+        List<long[]> passed = new ArrayList<>();
+        while (ManualClockLimiter.now < 5 * SECOND) {
+            if (limiter.tryAcquire(1)) {
+                passed.add(new long[]{ManualClockLimiter.now, ManualClockLimiter.now});
+            }
+            ManualClockLimiter.now += random.nextInt(100000);
+        }
+        assertSlidingWindow(passed, qps);
+        Assert.assertTrue(passed.size() >= qps * 5 * 0.9);
+        Assert.assertTrue(passed.size() <= qps * 5 + qps + 1);
+    }
+
+    @Test
+    public void testBatchPermits() {
+        ManualClockLimiter.now = 0;
+        TokenBucketLimiter limiter = new ManualClockLimiter(100);
+        // 一次申请 60 个不会挤占随后的调用, 剩余 40 个额度仍可立即使用
+        Assert.assertTrue(limiter.tryAcquire(60));
+        Assert.assertTrue(limiter.tryAcquire(1));
+        Assert.assertTrue(limiter.tryAcquire(39));
+        Assert.assertFalse(limiter.tryAcquire(1));
+        // 额度用完后 0.6 秒恢复 60 个
+        ManualClockLimiter.now = SECOND * 6 / 10 - 1;
+        Assert.assertFalse(limiter.tryAcquire(60));
+        ManualClockLimiter.now = SECOND * 6 / 10;
+        Assert.assertTrue(limiter.tryAcquire(60));
+        Assert.assertFalse(limiter.tryAcquire(1));
+        // 空闲后一次申请整秒配额也能通过
+        ManualClockLimiter.now = 10 * SECOND;
+        Assert.assertTrue(limiter.tryAcquire(100));
+        Assert.assertFalse(limiter.tryAcquire(1));
+
+        Assert.assertFalse(new TokenBucketLimiter(100).tryAcquire(101));
+        Assert.assertFalse(new TokenBucketLimiter(0).tryAcquire(1));
+        Assert.assertTrue(new TokenBucketLimiter(Integer.MAX_VALUE).tryAcquire(1000000));
+        limiter.setQpsAllowed(Integer.MAX_VALUE);
+        Assert.assertTrue(limiter.tryAcquire(1));
+        limiter.setQpsAllowed(0);
+        Assert.assertFalse(limiter.tryAcquire(1));
+        Assert.assertEquals(0, limiter.getQpsAllowed(), 0);
+    }
+}
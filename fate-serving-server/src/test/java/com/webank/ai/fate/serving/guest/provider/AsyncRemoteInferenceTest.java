@@ -0,0 +1,326 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.guest.provider;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.ByteString;
+import com.webank.ai.fate.core.mlmodel.buffer.LRModelParamProto.LRModelParam;
+import com.webank.ai.fate.core.mlmodel.buffer.PipelineProto;
+import com.webank.ai.fate.serving.common.bean.ServingServerContext;
+import com.webank.ai.fate.serving.common.model.Model;
+import com.webank.ai.fate.serving.common.rpc.core.ErrorMessageUtil;
+import com.webank.ai.fate.serving.common.rpc.core.FederatedRpcInvoker;
+import com.webank.ai.fate.serving.common.rpc.core.InboundPackage;
+import com.webank.ai.fate.serving.common.rpc.core.OutboundPackage;
+import com.webank.ai.fate.serving.common.utils.FutureUtil;
+import com.webank.ai.fate.serving.core.bean.*;
+import com.webank.ai.fate.serving.core.constant.StatusCode;
+import com.webank.ai.fate.serving.core.exceptions.RemoteRpcException;
+import com.webank.ai.fate.serving.federatedml.PipelineModelProcessor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * guest 端 doServiceAsync: 远端结果由桩 FederatedRpcInvoker 给出, 本地推理与合并使用真实的 PipelineModelProcessor (HeteroLRGuest)
+ */
+@RunWith(JUnit4.class)
+public class AsyncRemoteInferenceTest {
+
+    private static final String COMPONENT = "hetero_lr_0";
+    private static final String DSL = "{\"components\":{\"" + COMPONENT + "\":{\"CodePath\":\"federatedml/logistic_regression/HeteroLRGuest\","
+            + "\"input\":{\"data\":{\"data\":[\"args.data\"]}}}}}";
+    private static final long TIMEOUT = 200;
+
+    private StubRpcInvoker invoker;
+
+    @Before
+    public void setUp() {
+        MetaInfo.PROPERTY_SINGLE_INFERENCE_RPC_TIMEOUT = 10000;
+        MetaInfo.PROPERTY_BATCH_INFERENCE_RPC_TIMEOUT = 10000;
+        MetaInfo.PROPERTY_REMOTE_MODEL_INFERENCE_RESULT_CACHE_SWITCH = false;
+        MetaInfo.PROPERTY_BATCH_SPLIT_SIZE = 2;
+        invoker = new StubRpcInvoker();
+    }
+
+    /**
+     * 单个组件 HeteroLRGuest, 权重 x0 = 1, 截距 0
+     */
+    private static Model guestModel(String... hostPartyIds) {
+        PipelineModelProcessor processor = new PipelineModelProcessor();
+        Map<String, byte[]> protos = Maps.newHashMap();
+        protos.put(Dict.PIPLELINE_IN_MODEL, PipelineProto.Pipeline.newBuilder().setInferenceDsl(ByteString.copyFromUtf8(DSL)).build().toByteArray());
+        protos.put(COMPONENT + ".Param", LRModelParam.newBuilder().putWeight("x0", 1.0).setIntercept(0).build().toByteArray());
+        Assert.assertEquals(StatusCode.SUCCESS, processor.initModel(protos));
+        Assert.assertNotNull(processor.getComponent(COMPONENT));
+        Model model = new Model();
+        model.setPartId("9999");
+        model.setTableName("guest_table");
+        model.setNamespace("guest_namespace");
+        model.setModelProcessor(processor);
+        for (String hostPartyId : hostPartyIds) {
+            Model hostModel = new Model();
+            hostModel.setPartId(hostPartyId);
+            hostModel.setTableName("host_table");
+            hostModel.setNamespace("host_namespace");
+            model.getFederationModelMap().put(hostPartyId, hostModel);
+        }
+        return model;
+    }
+
+    private static ServingServerContext context(Model model) {
+        ServingServerContext context = new ServingServerContext();
+        context.setCaseId("case_0");
+        context.setModel(model);
+        context.setDownstreamCost(-1);
+        return context;
+    }
+
+    private static Map<String, Object> features(double x0) {
+        Map<String, Object> features = Maps.newHashMap();
+        features.put("x0", x0);
+        return features;
+    }
+
+    private static Map<String, Object> hostScore(double score) {
+        Map<String, Object> componentData = Maps.newHashMap();
+        componentData.put(Dict.SCORE, score);
+        Map<String, Object> data = Maps.newHashMap();
+        data.put(COMPONENT, componentData);
+        return data;
+    }
+
+    private static ReturnResult hostResult(int retcode, double score) {
+        ReturnResult returnResult = new ReturnResult();
+        returnResult.setRetcode(retcode);
+        returnResult.setData(hostScore(score));
+        return returnResult;
+    }
+
+    /**
+     * host 对每行返回与 guest 得分相反的 score, 合并后 sigmoid(0) = 0.5
+     */
+    private static BatchInferenceResult hostBatchResult(int retcode, int rows) {
+        BatchInferenceResult result = new BatchInferenceResult();
+        result.setRetcode(retcode);
+        List<BatchInferenceResult.SingleInferenceResult> dataList = Lists.newArrayList();
+        for (int i = 0; i < rows; i++) {
+            dataList.add(new BatchInferenceResult.SingleInferenceResult(i, StatusCode.SUCCESS, "", hostScore(-i)));
+        }
+        result.setBatchDataList(dataList);
+        return result;
+    }
+
+    private CompletableFuture<ReturnResult> single(ServingServerContext context, double x0) {
+        GuestSingleInferenceProvider provider = new GuestSingleInferenceProvider();
+        provider.federatedRpcInvoker = invoker;
+        InferenceRequest request = new InferenceRequest();
+        request.setFeatureData(features(x0));
+        InboundPackage<InferenceRequest> inboundPackage = new InboundPackage<>();
+        inboundPackage.setBody(request);
+        return provider.doServiceAsync(context, inboundPackage, new OutboundPackage<>());
+    }
+
+    private CompletableFuture<BatchInferenceResult> batch(ServingServerContext context, int rows) {
+        GuestBatchInferenceProvider provider = new GuestBatchInferenceProvider();
+        provider.federatedRpcInvoker = invoker;
+        BatchInferenceRequest request = new BatchInferenceRequest();
+        request.setCaseId(context.getCaseId());
+        List<BatchInferenceRequest.SingleInferenceData> dataList = Lists.newArrayList();
+        for (int i = 0; i < rows; i++) {
+            BatchInferenceRequest.SingleInferenceData data = new BatchInferenceRequest.SingleInferenceData();
+            data.setIndex(i);
+            data.setFeatureData(features(i));
+            dataList.add(data);
+        }
+        request.setBatchDataList(dataList);
+        InboundPackage<BatchInferenceRequest> inboundPackage = new InboundPackage<>();
+        inboundPackage.setBody(request);
+        return provider.doServiceAsync(context, inboundPackage, new OutboundPackage<>());
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return FutureUtil.unwrap(e);
+        }
+        throw new AssertionError("should fail");
+    }
+
+    /**
+     * 超时任务先结束组合的 future 再取消原请求, 这里等待取消完成
+     */
+    private static void assertCancelled(ListenableFuture<?> future) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (CancellationException e) {
+            return;
+        }
+        throw new AssertionError("should be cancelled");
+    }
+
+    @Test
+    public void testSingleMerge() throws Exception {
+        ServingServerContext context = context(guestModel("10000"));
+        invoker.single.put("10000", Futures.immediateFuture(hostResult(StatusCode.SUCCESS, -2.0)));
+        ReturnResult result = single(context, 2.0).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(StatusCode.SUCCESS, result.getRetcode());
+        Assert.assertEquals(0.5, ((Number) result.getData().get(Dict.SCORE)).doubleValue(), 1e-12);
+        Assert.assertEquals("guest_namespace", result.getData().get(Dict.MODEL_ID));
+        Assert.assertEquals(StatusCode.SUCCESS, context.getReturnCode());
+        Assert.assertEquals(Lists.newArrayList("10000"), invoker.requested);
+        Assert.assertTrue(context.getDownstreamCost() >= 0);
+    }
+
+    @Test
+    public void testSingleHostError() throws Exception {
+        ServingServerContext context = context(guestModel("10000"));
+        invoker.single.put("10000", Futures.immediateFailedFuture(new IllegalStateException("host down")));
+        Throwable e = failure(single(context, 2.0));
+        Assert.assertTrue(e instanceof RemoteRpcException);
+        Assert.assertTrue(e.getMessage().contains("host down"));
+        Assert.assertTrue(context.getDownstreamCost() >= 0);
+    }
+
+    @Test
+    public void testSingleHostRetcode() throws Exception {
+        ServingServerContext context = context(guestModel("10000"));
+        invoker.single.put("10000", Futures.immediateFuture(hostResult(StatusCode.HOST_MODEL_NULL, -2.0)));
+        ReturnResult result = single(context, 2.0).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(ErrorMessageUtil.transformRemoteErrorCode(StatusCode.HOST_MODEL_NULL), result.getRetcode());
+        Assert.assertEquals(result.getRetcode(), context.getReturnCode());
+    }
+
+    /**
+     * 一个 host 立即返回, 另一个不返回: 超时后失败并取消原请求, 下游耗时按最慢的 host 计算
+     */
+    @Test
+    public void testSingleTimeout() throws Exception {
+        MetaInfo.PROPERTY_SINGLE_INFERENCE_RPC_TIMEOUT = (int) TIMEOUT;
+        ServingServerContext context = context(guestModel("10000", "10001"));
+        SettableFuture<ReturnResult> pending = SettableFuture.create();
+        invoker.single.put("10000", Futures.immediateFuture(hostResult(StatusCode.SUCCESS, -2.0)));
+        invoker.single.put("10001", pending);
+        Throwable e = failure(single(context, 2.0));
+        Assert.assertTrue(e instanceof RemoteRpcException);
+        Assert.assertTrue(e.getMessage().contains("10001"));
+        assertCancelled(pending);
+        Assert.assertTrue(context.getDownstreamCost() >= TIMEOUT / 2);
+    }
+
+    @Test
+    public void testBatchMerge() throws Exception {
+        int rows = 5;
+        ServingServerContext context = context(guestModel("10000"));
+        invoker.batch.put("10000", Futures.immediateFuture(hostBatchResult(StatusCode.SUCCESS, rows)));
+        BatchInferenceResult result = batch(context, rows).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(StatusCode.SUCCESS, result.getRetcode());
+        Assert.assertEquals("case_0", result.getCaseid());
+        Assert.assertEquals(rows, result.getBatchDataList().size());
+        for (BatchInferenceResult.SingleInferenceResult single : result.getBatchDataList()) {
+            Assert.assertEquals(StatusCode.SUCCESS, single.getRetcode());
+            Assert.assertEquals(0.5, ((Number) single.getData().get(Dict.SCORE)).doubleValue(), 1e-12);
+        }
+        Assert.assertEquals(Lists.newArrayList("10000"), invoker.requested);
+        Assert.assertTrue(context.getDownstreamCost() >= 0);
+    }
+
+    @Test
+    public void testBatchHostError() throws Exception {
+        ServingServerContext context = context(guestModel("10000"));
+        invoker.batch.put("10000", Futures.immediateFailedFuture(new IllegalStateException("host down")));
+        Throwable e = failure(batch(context, 3));
+        Assert.assertTrue(e instanceof RemoteRpcException);
+        Assert.assertTrue(e.getMessage().contains("10000"));
+    }
+
+    @Test
+    public void testBatchHostRetcode() throws Exception {
+        ServingServerContext context = context(guestModel("10000"));
+        invoker.batch.put("10000", Futures.immediateFuture(hostBatchResult(StatusCode.HOST_MODEL_NULL, 3)));
+        Throwable e = failure(batch(context, 3));
+        Assert.assertTrue(e instanceof RemoteRpcException);
+        Assert.assertEquals(ErrorMessageUtil.transformRemoteErrorCode(StatusCode.HOST_MODEL_NULL), ((RemoteRpcException) e).getRetcode());
+    }
+
+    @Test
+    public void testBatchTimeout() throws Exception {
+        MetaInfo.PROPERTY_BATCH_INFERENCE_RPC_TIMEOUT = (int) TIMEOUT;
+        ServingServerContext context = context(guestModel("10000", "10001"));
+        SettableFuture<BatchInferenceResult> pending = SettableFuture.create();
+        invoker.batch.put("10000", Futures.immediateFuture(hostBatchResult(StatusCode.SUCCESS, 3)));
+        invoker.batch.put("10001", pending);
+        Throwable e = failure(batch(context, 3));
+        Assert.assertTrue(e instanceof RemoteRpcException);
+        Assert.assertTrue(e.getMessage().contains("10001"));
+        assertCancelled(pending);
+        Assert.assertTrue(context.getDownstreamCost() >= TIMEOUT / 2);
+    }
+
+    /**
+     * 按 host 的 partId 返回预设的结果
+     */
+    private static class StubRpcInvoker implements FederatedRpcInvoker<Object> {
+
+        final Map<String, ListenableFuture<ReturnResult>> single = Maps.newHashMap();
+        final Map<String, ListenableFuture<BatchInferenceResult>> batch = Maps.newHashMap();
+        final List<String> requested = Lists.newArrayList();
+
+        @Override
+        public ListenableFuture<BatchInferenceResult> batchInferenceRpcWithCache(Context context, RpcDataWraper rpcDataWraper, boolean useCache) {
+            String partId = rpcDataWraper.getHostModel().getPartId();
+            Assert.assertEquals(Dict.REMOTE_METHOD_BATCH, rpcDataWraper.getRemoteMethodName());
+            requested.add(partId);
+            context.setDownstreamBegin(System.currentTimeMillis());
+            return batch.get(partId);
+        }
+
+        @Override
+        public ListenableFuture<ReturnResult> singleInferenceRpcWithCache(Context context, RpcDataWraper rpcDataWraper, boolean useCache) {
+            String partId = rpcDataWraper.getHostModel().getPartId();
+            Assert.assertEquals(Dict.FEDERATED_INFERENCE, rpcDataWraper.getRemoteMethodName());
+            requested.add(partId);
+            context.setDownstreamBegin(System.currentTimeMillis());
+            return single.get(partId);
+        }
+
+        @Override
+        public Object sync(Context context, RpcDataWraper rpcDataWraper, long timeout) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<Object> async(Context context, RpcDataWraper rpcDataWraper) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.model;
+
+import com.google.protobuf.ByteString;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelMetaProto.BoostingTreeModelMeta;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.BoostingTreeModelParam;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.DecisionTreeModelParam;
+import com.webank.ai.fate.core.mlmodel.buffer.BoostTreeModelParamProto.NodeParam;
+import com.webank.ai.fate.core.mlmodel.buffer.PipelineProto;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.core.constant.StatusCode;
+import com.webank.ai.fate.serving.core.utils.JsonUtil;
+import com.webank.ai.fate.serving.core.utils.ProtobufUtils;
+import com.webank.ai.fate.serving.federatedml.PipelineModelProcessor;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+@RunWith(JUnit4.class)
+public class ModelCacheFileTest {
+
+    private static final String COMPONENT = "secureboost_0";
+    private static final String DSL = "{\"components\":{\"" + COMPONENT + "\":{\"CodePath\":\"federatedml/tree/HeteroSecureBoostingTreeGuest\","
+            + "\"input\":{\"data\":{\"data\":[\"args.data\"]}}}}}";
+    private static final String META_KEY = COMPONENT + ".HeteroSecureBoostingTreeGuestMeta:meta";
+    private static final String PARAM_KEY = COMPONENT + ".HeteroSecureBoostingTreeGuestParam:param";
+    private static final int TREES = 10;
+    private static final int NODES_PER_TREE = 15;
+
+    private static ByteBuffer bytes(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, ByteBuffer> data = new LinkedHashMap<>();
+        data.put("pipeline.pipeline:Pipeline", bytes("pipeline"));
+        data.put("dataio_0.DataIOMeta:meta", bytes("meta"));
+        data.put("empty", ByteBuffer.allocate(0));
+        data.put("组件.Param:param", bytes("参数"));
+
+        File file = Files.createTempFile("model", "_cache").toFile();
+        Files.write(file.toPath(), ModelCacheFile.write(data));
+        Map<String, ByteBuffer> restored = ModelCacheFile.map(file);
+        Assert.assertNotNull(restored);
+        Assert.assertEquals(data.keySet(), restored.keySet());
+        for (Map.Entry<String, ByteBuffer> entry : data.entrySet()) {
+            Assert.assertEquals(string(entry.getValue()), string(restored.get(entry.getKey())));
+            Assert.assertTrue(restored.get(entry.getKey()).isReadOnly());
+        }
+
+        // 数据损坏时校验失败
+        byte[] content = Files.readAllBytes(file.toPath());
+        content[content.length - 8] ^= 1;
+        Files.write(file.toPath(), content);
+        try {
+            ModelCacheFile.map(file);
+            Assert.fail("checksum should mismatch");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("checksum"));
+        }
+
+        // 旧版格式不识别为二进制格式
+        Files.write(file.toPath(), "{\"a\":\"YQ==\"}".getBytes(StandardCharsets.UTF_8));
+        Assert.assertNull(ModelCacheFile.map(file));
+        file.delete();
+    }
+
+    /**
+     * 旧版 json + base64 格式和二进制内存映射格式恢复同一个 SecureBoost 模型, 均能初始化 pipeline 且树的数量一致
+     */
+    @Test
+    public void testSecureBoostRestore() throws Exception {
+        Random random = new Random(7);
+        BoostingTreeModelParam.Builder builder = BoostingTreeModelParam.newBuilder().setTreeNum(TREES).setTreeDim(1).setNumClasses(2);
+        for (int t = 0; t < TREES; t++) {
+            DecisionTreeModelParam.Builder tree = DecisionTreeModelParam.newBuilder();
+            for (int n = 0; n < NODES_PER_TREE; n++) {
+                boolean leaf = n >= NODES_PER_TREE / 2;
+                tree.addTree(NodeParam.newBuilder().setId(n).setSitename(n % 3 == 0 ? "host:10000" : "guest:9999")
+                        .setFid(random.nextInt(100)).setBid(random.nextDouble()).setWeight(random.nextDouble()).setIsLeaf(leaf)
+                        .setLeftNodeid(leaf ? -1 : 2 * n + 1).setRightNodeid(leaf ? -1 : 2 * n + 2));
+            }
+            builder.addTrees(tree);
+        }
+        BoostingTreeModelParam param = builder.build();
+        Map<String, byte[]> protos = new HashMap<>();
+        protos.put(Dict.PIPLELINE_IN_MODEL, PipelineProto.Pipeline.newBuilder().setInferenceDsl(ByteString.copyFromUtf8(DSL)).build().toByteArray());
+        protos.put(META_KEY, BoostingTreeModelMeta.newBuilder().setLearningRate(0.3).build().toByteArray());
+        protos.put(PARAM_KEY, param.toByteArray());
+
+        LocalCacheModelLoader loader = new LocalCacheModelLoader();
+        File legacyFile = Files.createTempFile("model_legacy", "_cache").toFile();
+        Map<String, String> legacy = new HashMap<>();
+        Map<String, ByteBuffer> data = new HashMap<>();
+        protos.forEach((k, v) -> {
+            legacy.put(k, Base64.getEncoder().encodeToString(v));
+            data.put(k, ByteBuffer.wrap(v));
+        });
+        Files.write(legacyFile.toPath(), JsonUtil.object2Json(legacy).getBytes(StandardCharsets.UTF_8));
+        File binaryFile = Files.createTempFile("model_binary", "_cache").toFile();
+        Files.write(binaryFile.toPath(), loader.serialize(null, data));
+
+        for (File file : new File[]{legacyFile, binaryFile}) {
+            Map<String, ByteBuffer> restored = loader.restore(null, file);
+            Assert.assertEquals(protos.keySet(), restored.keySet());
+            BoostingTreeModelParam restoredParam = ProtobufUtils.parseProtoObject(BoostingTreeModelParam.parser(), restored.get(PARAM_KEY));
+            Assert.assertEquals(TREES, restoredParam.getTreesCount());
+            Assert.assertEquals(param, restoredParam);
+            PipelineModelProcessor processor = new PipelineModelProcessor();
+            Assert.assertEquals(StatusCode.SUCCESS, processor.initModelFromBuffers(restored));
+            Assert.assertNotNull(processor.getComponent(COMPONENT));
+        }
+        legacyFile.delete();
+        binaryFile.delete();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.model;
+
+import com.webank.ai.fate.serving.common.model.Model;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(JUnit4.class)
+public class ModelRegistryTest {
+
+    private static final int STABLE = 64;
+    private static final int FLAPPING = 16;
+    private static final int READERS = 4;
+    private static final int VERSIONS = 2000;
+
+    private static Model newModel(String tableName) {
+        Model model = new Model();
+        model.setTableName(tableName);
+        model.setNamespace("namespace");
+        model.setRole(Dict.HOST);
+        model.setPartId("10000");
+        Model guest = new Model();
+        guest.setTableName("guest_" + tableName);
+        guest.setNamespace("namespace");
+        model.getFederationModelMap().put("9999", guest);
+        return model;
+    }
+
+    private static ModelRegistry newRegistry() {
+        ModelRegistry registry = new ModelRegistry();
+        for (int i = 0; i < STABLE; i++) {
+            String namespaceKey = ModelRegistry.getNameSpaceKey("stable" + i, "namespace");
+            registry.putModel(namespaceKey, newModel("stable" + i));
+            registry.bind("stable_svc" + i, namespaceKey);
+        }
+        return registry;
+    }
+
+    /**
+     * 读线程持续查询, 写线程不断地加载/卸载模型和绑定/解绑服务, 读到的快照始终自洽
+     */
+    @Test
+    public void testConcurrentReadWrite() throws Exception {
+        ModelRegistry registry = newRegistry();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(READERS + 2);
+
+        for (int t = 0; t < READERS; t++) {
+            int seed = t;
+            start(done, error, () -> {
+                long count = 0;
+                while (running.get()) {
+                    int i = (int) (count++ + seed) % STABLE;
+                    Model model = registry.snapshot().getModelByServiceId("stable_svc" + i);
+                    Assert.assertNotNull(model);
+                    Assert.assertEquals("stable" + i, model.getTableName());
+
+                    ModelRegistry.Snapshot snapshot = registry.snapshot();
+                    String serviceId = "flap_svc" + (i % FLAPPING);
+                    Model flapping = snapshot.getModelByServiceId(serviceId);
+                    if (flapping != null) {
+                        String namespaceKey = snapshot.getNamespaceKey(serviceId);
+                        Assert.assertSame(flapping, snapshot.getModel(namespaceKey));
+                        Assert.assertTrue(snapshot.getServiceIds(namespaceKey).contains(serviceId));
+                        Assert.assertSame(flapping, snapshot.getPartnerModel(
+                                ModelRegistry.getNameSpaceKey("guest_" + flapping.getTableName(), "namespace")));
+                    } else {
+                        Assert.assertFalse(snapshot.isBound(serviceId));
+                    }
+                }
+            });
+        }
+        // 加载/卸载
+        start(done, error, () -> {
+            int i = 0;
+            while (running.get()) {
+                String namespaceKey = ModelRegistry.getNameSpaceKey("flap" + (i % FLAPPING), "namespace");
+                if (registry.snapshot().getModel(namespaceKey) == null) {
+                    registry.putModel(namespaceKey, newModel("flap" + (i % FLAPPING)));
+                } else {
+                    registry.removeModel(namespaceKey);
+                }
+                i++;
+            }
+        });
+        // 绑定/解绑
+        start(done, error, () -> {
+            int i = 0;
+            while (running.get()) {
+                String serviceId = "flap_svc" + (i % FLAPPING);
+                String namespaceKey = ModelRegistry.getNameSpaceKey("flap" + (i % FLAPPING), "namespace");
+                registry.update(builder -> {
+                    if (builder.getNamespaceKey(serviceId) != null) {
+                        return builder.unbind(serviceId);
+                    }
+                    return builder.getModel(namespaceKey) != null ? builder.bind(serviceId, namespaceKey) : null;
+                });
+                i++;
+            }
+        });
+
+        Thread.sleep(2000);
+        running.set(false);
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(error.get());
+
+        // 卸载模型同时清理其服务绑定
+        ModelRegistry.Snapshot snapshot = registry.snapshot();
+        for (String serviceId : snapshot.getServiceIdNamespaceMap().keySet()) {
+            Assert.assertNotNull(snapshot.getModel(snapshot.getNamespaceKey(serviceId)));
+        }
+    }
+
+    /**
+     * 服务不断切换到新版本模型 (加载新模型, 绑定, 卸载旧模型), 读到的始终是旧模型或新模型, 绑定与模型一一对应且版本不回退
+     */
+    @Test
+    public void testRebindDuringLoad() throws Exception {
+        ModelRegistry registry = newRegistry();
+        List<Model> versions = new ArrayList<>();
+        for (int v = 0; v <= VERSIONS; v++) {
+            versions.add(newModel("version" + v));
+        }
+        registry.putModel(ModelRegistry.getNameSpaceKey("version0", "namespace"), versions.get(0));
+        registry.bind("svc", ModelRegistry.getNameSpaceKey("version0", "namespace"));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(READERS);
+        for (int t = 0; t < READERS; t++) {
+            start(done, error, () -> {
+                int last = 0;
+                long count = 0;
+                while (running.get()) {
+                    ModelRegistry.Snapshot snapshot = registry.snapshot();
+                    Model model = snapshot.getModelByServiceId("svc");
+                    Assert.assertNotNull(model);
+                    Assert.assertSame(model, snapshot.getModel(snapshot.getNamespaceKey("svc")));
+                    int version = versions.indexOf(model);
+                    Assert.assertTrue(version >= last);
+                    last = version;
+
+                    int i = (int) (count++ % STABLE);
+                    Assert.assertEquals("stable" + i, registry.snapshot().getModelByServiceId("stable_svc" + i).getTableName());
+                }
+            });
+        }
+        for (int v = 1; v <= VERSIONS; v++) {
+            String namespaceKey = ModelRegistry.getNameSpaceKey("version" + v, "namespace");
+            registry.putModel(namespaceKey, versions.get(v));
+            registry.bind("svc", namespaceKey);
+            registry.removeModel(ModelRegistry.getNameSpaceKey("version" + (v - 1), "namespace"));
+        }
+        running.set(false);
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(error.get());
+        Assert.assertSame(versions.get(VERSIONS), registry.snapshot().getModelByServiceId("svc"));
+    }
+
+    private static void start(CountDownLatch done, AtomicReference<Throwable> error, Runnable task) {
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                error.compareAndSet(null, e);
+            } finally {
+                done.countDown();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.model;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.common.model.Model;
+import com.webank.ai.fate.serving.common.model.ModelProcessor;
+import com.webank.ai.fate.serving.core.bean.*;
+import com.webank.ai.fate.serving.core.exceptions.ModelNullException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.util.SerializationUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class ModelRestoreTest {
+
+    private static final int MODELS = 16;
+    private static final long LOAD_MILLIS = 100;
+
+    private static Model newModel(String tableName, long timestamp) {
+        Model model = new Model();
+        model.setTableName(tableName);
+        model.setNamespace("namespace");
+        model.setRole(Dict.GUEST);
+        model.setPartId("9999");
+        model.setTimestamp(timestamp);
+        return model;
+    }
+
+    @Test
+    public void testRestoreOrder() {
+        Map<String, Model> models = new HashMap<>();
+        models.put("a_namespace", newModel("a", 1));
+        models.put("b_namespace", newModel("b", 2));
+        models.put("c_namespace", newModel("c", 3));
+        models.put("d_namespace", newModel("d", 4));
+        Map<String, List<String>> serviceIds = new HashMap<>();
+        serviceIds.put("a_namespace", Lists.newArrayList("svc_a"));
+        Map<String, Long> access = new HashMap<>();
+        access.put("M_b_namespace", 100L);
+        access.put("M_c_namespace", 200L);
+
+        // 优先 > 最近访问 > 加载时间
+        List<String> order = ModelManager.getRestoreOrder(models, serviceIds, Sets.newHashSet("svc_a"), access);
+        Assert.assertEquals(Arrays.asList("a_namespace", "c_namespace", "b_namespace", "d_namespace"), order);
+        order = ModelManager.getRestoreOrder(models, serviceIds, Sets.newHashSet("d_namespace"), access);
+        Assert.assertEquals(Arrays.asList("d_namespace", "c_namespace", "b_namespace", "a_namespace"), order);
+    }
+
+    /**
+     * 模型并行恢复, 优先的模型先就绪, 未就绪的服务直接返回失败, 恢复失败的服务标记为 FAILED
+     */
+    @Test
+    public void testParallelRestore() throws Exception {
+        File root = Files.createTempDirectory("model-restore").toFile();
+        MetaInfo.PROPERTY_MODEL_CACHE_PATH = root.getAbsolutePath();
+        MetaInfo.PROPERTY_MODEL_RESTORE_THREADS = 4;
+        MetaInfo.PROPERTY_MODEL_RESTORE_PRIORITY = "svc_7";
+
+        ModelManager modelManager = new ModelManager();
+        modelManager.afterPropertiesSet();
+        ConcurrentMap<String, Model> namespaceMap = new ConcurrentHashMap<>();
+        ConcurrentMap<String, String> serviceIdMap = new ConcurrentHashMap<>();
+        for (int i = 0; i < MODELS; i++) {
+            namespaceMap.put("model" + i + "_namespace", newModel("model" + i, i));
+            serviceIdMap.put("svc_" + i, "model" + i + "_namespace");
+        }
+        modelManager.doSaveCache(namespaceMap, modelManager.namespaceFile, 0);
+        modelManager.doSaveCache(serviceIdMap, modelManager.serviceIdFile, 0);
+
+        List<String> loaded = new CopyOnWriteArrayList<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        modelManager.modelLoaderFactory = (context, type) -> new ModelLoader() {
+            @Override
+            public ModelProcessor loadModel(Context context, ModelLoaderParam modelLoaderParam) {
+                return null;
+            }
+
+            @Override
+            public ModelProcessor restoreModel(Context context, ModelLoaderParam modelLoaderParam) {
+                loaded.add(modelLoaderParam.getTableName());
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(LOAD_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                return "model3".equals(modelLoaderParam.getTableName()) ? null : new EmptyModelProcessor();
+            }
+        };
+
+        Future<Void> future = modelManager.restore(new BaseContext());
+        Assert.assertEquals(ModelManager.RestoreState.LOADING, modelManager.getRestoreState("svc_0"));
+        try {
+            modelManager.getModelByServiceId("svc_0");
+            Assert.fail("model should be restoring");
+        } catch (ModelNullException e) {
+            Assert.assertTrue(e.getMessage().contains("restoring"));
+        }
+        future.get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals("model7", loaded.get(0));
+        Assert.assertTrue(maxInFlight.get() >= 2);
+        for (int i = 0; i < MODELS; i++) {
+            String serviceId = "svc_" + i;
+            if (i == 3) {
+                Assert.assertEquals(ModelManager.RestoreState.FAILED, modelManager.getRestoreState(serviceId));
+            } else {
+                Assert.assertEquals(ModelManager.RestoreState.READY, modelManager.getRestoreState(serviceId));
+                Assert.assertNotNull(modelManager.getModelByServiceId(serviceId).getModelProcessor());
+            }
+        }
+    }
+
+    @Test
+    public void testFlushAccessOnDestroy() throws Exception {
+        File root = Files.createTempDirectory("model-access").toFile();
+        MetaInfo.PROPERTY_MODEL_CACHE_PATH = root.getAbsolutePath();
+        ModelManager modelManager = new ModelManager();
+        modelManager.afterPropertiesSet();
+        modelManager.recordAccess(newModel("a", 1));
+        modelManager.destroy();
+
+        // 不足一个写入周期的访问记录也在停机时写入
+        Map access = (Map) SerializationUtils.deserialize(Files.readAllBytes(modelManager.modelAccessFile.toPath()));
+        Assert.assertTrue(access.containsKey("M_a_namespace"));
+    }
+
+    private static class EmptyModelProcessor implements ModelProcessor {
+        @Override
+        public BatchInferenceResult guestBatchInference(Context context, BatchInferenceRequest batchInferenceRequest, Map<String, Future> remoteFutureMap, long timeout) {
+            return null;
+        }
+
+        @Override
+        public BatchInferenceResult hostBatchInference(Context context, BatchHostFederatedParams batchHostFederatedParams) {
+            return null;
+        }
+
+        @Override
+        public ReturnResult guestInference(Context context, InferenceRequest inferenceRequest, Map<String, Future> remoteFutureMap, long timeout) {
+            return null;
+        }
+
+        @Override
+        public ReturnResult hostInference(Context context, InferenceRequest inferenceRequest) {
+            return null;
+        }
+
+        @Override
+        public Object getComponent(String name) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.router;
+
+import com.webank.ai.fate.register.loadbalance.DefaultLoadBalanceFactory;
+import com.webank.ai.fate.register.loadbalance.LoadBalanceModel;
+import com.webank.ai.fate.register.loadbalance.LoadBalancer;
+import com.webank.ai.fate.register.url.URL;
+import com.webank.ai.fate.serving.core.rpc.router.EndpointStats;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class LoadBalanceSimulationTest {
+
+    /**
+     * 每个模拟服务的处理耗时 (毫秒), 最后一个明显偏慢
+     */
+    private static final long[] SERVICE_MILLIS = {2, 2, 2, 4, 20};
+    private static final int SLOW = SERVICE_MILLIS.length - 1;
+    private static final int SERVER_CONCURRENCY = 2;
+    private static final int CLIENTS = 12;
+    private static final int REQUESTS = 6000;
+    private static final long SEED = 20201018L;
+
+    private static final AtomicInteger PORT = new AtomicInteger(20000);
+
+    /**
+     * 单线程离散事件模拟, 使用虚拟时钟: CLIENTS 个客户端各自收到响应后立即发下一个请求,
+     * 每个服务端最多并发处理 SERVER_CONCURRENCY 个请求, 其余排队, 处理耗时在基准值的 0.5 ~ 1.5 倍之间按种子随机.
+     * 返回每个服务端被选中的次数
+     */
+    private static int[] simulate(LoadBalanceModel model, long seed) {
+        LoadBalancer loadBalancer = new DefaultLoadBalanceFactory().getLoaderBalancer(model);
+        Random random = new Random(seed);
+        int basePort = PORT.getAndAdd(SERVICE_MILLIS.length);
+        List<URL> urls = new ArrayList<>();
+        EndpointStats[] stats = new EndpointStats[SERVICE_MILLIS.length];
+        for (int i = 0; i < SERVICE_MILLIS.length; i++) {
+            urls.add(URL.valueOf("grpc://127.0.0.1:" + (basePort + i) + "/serving/online/inference"));
+            stats[i] = EndpointStats.get("127.0.0.1", basePort + i);
+        }
+        // 每个服务端各并发槽位的空闲时间
+        long[][] freeAt = new long[SERVICE_MILLIS.length][SERVER_CONCURRENCY];
+        // {结束时间, 序号, 服务端, 开始时间}
+        PriorityQueue<long[]> completions = new PriorityQueue<>(
+                Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+        int[] picks = new int[SERVICE_MILLIS.length];
+        long seq = 0;
+        int issued = 0;
+        long now = 0;
+        try {
+            while (true) {
+                while (issued < REQUESTS && completions.size() < CLIENTS) {
+                    int server = urls.indexOf(loadBalancer.select(urls).get(0));
+                    picks[server]++;
+                    stats[server].begin();
+                    long[] slots = freeAt[server];
+                    int slot = 0;
+                    for (int i = 1; i < slots.length; i++) {
+                        if (slots[i] < slots[slot]) {
+                            slot = i;
+                        }
+                    }
+                    long cost = (long) (SERVICE_MILLIS[server] * 1000000L * (0.5 + random.nextDouble()));
+                    slots[slot] = Math.max(now, slots[slot]) + cost;
+                    completions.add(new long[]{slots[slot], seq++, server, now});
+                    issued++;
+                }
+                long[] done = completions.poll();
+                if (done == null) {
+                    break;
+                }
+                now = done[0];
+                stats[(int) done[2]].end(done[3], now, true);
+            }
+        } finally {
+            for (int i = 0; i < SERVICE_MILLIS.length; i++) {
+                EndpointStats.remove(stats[i].getAddress());
+            }
+        }
+        return picks;
+    }
+
+    private static double slowShare(int[] picks) {
+        int total = 0;
+        for (int count : picks) {
+            total += count;
+        }
+        return (double) picks[SLOW] / total;
+    }
+
+    /**
+     * 服务端耗时不均时, 随机选址按 1 / 服务端数 的比例把请求发给慢节点,
+     * 按在途请求数/延迟选址时慢节点的占比明显下降
+     */
+    @Test
+    public void testSlowEndpointShare() {
+        Assert.assertTrue(slowShare(simulate(LoadBalanceModel.random, SEED)) > 0.15);
+        Assert.assertTrue(slowShare(simulate(LoadBalanceModel.least_request, SEED)) < 0.1);
+        Assert.assertTrue(slowShare(simulate(LoadBalanceModel.power_of_two_choices, SEED)) < 0.1);
+        Assert.assertTrue(slowShare(simulate(LoadBalanceModel.peak_ewma, SEED)) < 0.1);
+    }
+
+    @Test
+    public void testRemove() {
+        String address = "127.0.0.1:" + PORT.getAndIncrement();
+        EndpointStats stats = EndpointStats.get(address);
+        stats.end(stats.begin(), true);
+        Assert.assertSame(stats, EndpointStats.get(address));
+        EndpointStats.remove(address);
+        EndpointStats fresh = EndpointStats.get(address);
+        Assert.assertNotSame(stats, fresh);
+        Assert.assertEquals(0, fresh.getEwmaNanos());
+        EndpointStats.remove(address);
+    }
+
+    @Test
+    public void testPeakEwma() {
+        EndpointStats stats = EndpointStats.get("127.0.0.1", PORT.getAndIncrement());
+        Assert.assertEquals(0, stats.getPeakEwmaCost(), 0);
+        long begin = stats.begin();
+        // 无样本但有在途请求时按失败惩罚计算
+        Assert.assertTrue(stats.getPeakEwmaCost() >= EndpointStats.FAILURE_PENALTY_NANOS);
+        stats.end(begin, true);
+        Assert.assertEquals(0, stats.getInFlight());
+        long ewma = stats.getEwmaNanos();
+        Assert.assertTrue(ewma > 0);
+
+        // 失败请求至少按惩罚耗时计入, 峰值立即生效
+        stats.end(stats.begin(), false);
+        Assert.assertTrue(stats.getEwmaNanos() >= EndpointStats.FAILURE_PENALTY_NANOS);
+    }
+}
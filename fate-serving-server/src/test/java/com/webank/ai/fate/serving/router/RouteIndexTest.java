@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.router;
+
+import com.webank.ai.fate.register.common.RouteIndex;
+import com.webank.ai.fate.register.url.URL;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+@RunWith(JUnit4.class)
+public class RouteIndexTest {
+
+    private static final int SERVICES = 1000;
+
+    private static Properties buildProperties() {
+        Properties properties = new Properties();
+        for (int i = 0; i < SERVICES; i++) {
+            String serviceName = "service" + i;
+            StringBuilder value = new StringBuilder();
+            for (int j = 0; j < 3; j++) {
+                if (value.length() > 0) {
+                    value.append(' ');
+                }
+                value.append("grpc://127.0.0.").append(j).append(":8000/serving/online/").append(serviceName)
+                        .append("?router_mode=VERSION_BIGTHAN_OR_EQUAL&version=").append(100 + j);
+            }
+            properties.setProperty("serving/online/" + serviceName, value.toString());
+        }
+        return properties;
+    }
+
+    /**
+     * 修改前的实现: 遍历 Properties 并在每次调用时解析 url
+     */
+    private static List<URL> scan(Properties properties, URL url) {
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            String key = (String) entry.getKey();
+            String value = (String) entry.getValue();
+            if (key.equals(url.getServiceKey()) && value != null && value.length() > 0) {
+                List<URL> urls = new ArrayList<>();
+                for (String u : value.trim().split("\\s+")) {
+                    urls.add(URL.valueOf(u));
+                }
+                return urls;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testLookup() {
+        Properties properties = buildProperties();
+        RouteIndex index = RouteIndex.build(properties);
+        for (int i = 0; i < SERVICES; i++) {
+            URL url = URL.valueOf("serving/online/service" + i);
+            RouteIndex.Entry entry = index.get("serving", "online", "service" + i);
+            Assert.assertNotNull(entry);
+            Assert.assertEquals(scan(properties, url), entry.getUrls());
+            Assert.assertSame(entry, index.get(url));
+        }
+        Assert.assertNull(index.get("serving", "online", "service" + SERVICES));
+        Assert.assertNull(index.get("serving", "offline", "service0"));
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        RouteIndex index = RouteIndex.build(buildProperties());
+        RouteIndex.Entry before = index.get("serving", "online", "service1");
+
+        RouteIndex updated = index.with("serving/online/service1",
+                "empty://127.0.0.1:8000/serving/online/service1 grpc://127.0.0.9:8000/serving/online/service1?version=200");
+        Assert.assertSame(before, index.get("serving", "online", "service1"));
+        Assert.assertSame(index.get("serving", "online", "service2"), updated.get("serving", "online", "service2"));
+
+        RouteIndex.Entry after = updated.get("serving", "online", "service1");
+        Assert.assertEquals(2, after.getUrls().size());
+        Assert.assertEquals(1, after.getAvailableUrls().size());
+        Assert.assertEquals("127.0.0.9", after.getAvailableUrls().get(0).getHost());
+        Assert.assertEquals(Collections.singleton("127.0.0.9:8000"), after.getAddresses());
+        Assert.assertTrue(updated.getAddresses().contains("127.0.0.9:8000"));
+        Assert.assertFalse(index.getAddresses().contains("127.0.0.9:8000"));
+
+        Assert.assertNull(updated.with("serving/online/service1", "").get("serving", "online", "service1"));
+    }
+
+    @Test
+    public void testVersionCache() {
+        RouteIndex.Entry entry = RouteIndex.build(buildProperties()).get("serving", "online", "service0");
+        List<URL> first = entry.getVersionUrls(101, v -> new ArrayList<>(entry.getAvailableUrls().subList(0, 2)));
+        List<URL> second = entry.getVersionUrls(101, v -> {
+            throw new AssertionError("should be cached");
+        });
+        Assert.assertSame(first, second);
+        Assert.assertEquals(2, first.size());
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.webank.ai.fate.serving.rpc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.protobuf.ByteString;
+import com.webank.ai.fate.api.networking.proxy.Proxy;
+import com.webank.ai.fate.serving.common.bean.ServingServerContext;
+import com.webank.ai.fate.serving.common.model.Model;
+import com.webank.ai.fate.serving.common.rpc.core.FederatedRpcInvoker;
+import com.webank.ai.fate.serving.core.bean.BatchHostFederatedParams;
+import com.webank.ai.fate.serving.core.bean.BatchInferenceResult;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.core.bean.MetaInfo;
+import com.webank.ai.fate.serving.core.exceptions.RemoteRpcException;
+import com.webank.ai.fate.serving.core.utils.JsonUtil;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+@RunWith(JUnit4.class)
+public class BatchInferenceCodecTest {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int FEATURE_NUM = 50;
+
+    private BatchHostFederatedParams buildParams() {
+        Random random = new Random(7);
+        BatchHostFederatedParams params = new BatchHostFederatedParams();
+        params.setCaseId("case-1");
+        params.setHostTableName("table");
+        params.setHostNamespace("namespace");
+        params.setGuestPartyId("9999");
+        params.setHostPartyId("10000");
+        List<BatchHostFederatedParams.SingleInferenceData> rows = Lists.newArrayList();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            BatchHostFederatedParams.SingleInferenceData row = new BatchHostFederatedParams.SingleInferenceData();
+            row.setIndex(i);
+            Map<String, Object> features = Maps.newHashMap();
+            for (int j = 0; j < FEATURE_NUM; j++) {
+                features.put("x" + j, random.nextDouble());
+            }
+            features.put("device_id", "device-" + random.nextInt(100000));
+            features.put("age", random.nextInt(100));
+            features.put("ts", System.currentTimeMillis() + Integer.MAX_VALUE);
+            row.setSendToRemoteFeatureData(features);
+            rows.add(row);
+        }
+        params.setBatchDataList(rows);
+        return params;
+    }
+
+    private BatchInferenceResult buildResult() {
+        Random random = new Random(7);
+        BatchInferenceResult result = new BatchInferenceResult();
+        result.setRetcode(0);
+        result.setCaseid("case-1");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Map<String, Object> score = Maps.newHashMap();
+            score.put(Dict.SCORE, random.nextDouble());
+            Map<String, Object> data = Maps.newHashMap();
+            data.put("hetero_lr_0", score);
+            data.put(Dict.SBT_HOST_ROUTE_BITS, new long[]{random.nextLong(), random.nextLong()});
+            result.getBatchDataList().add(new BatchInferenceResult.SingleInferenceResult(i, 0, "", data));
+        }
+        return result;
+    }
+
+    @Test
+    public void testRequestRoundTrip() throws Exception {
+        BatchHostFederatedParams params = buildParams();
+        BatchHostFederatedParams decoded = BatchInferenceCodec.decodeRequest(BatchInferenceCodec.encodeRequest(params));
+        BatchHostFederatedParams fromJson = JsonUtil.json2Object(JsonUtil.object2Json(params), BatchHostFederatedParams.class);
+        Assert.assertEquals(params.getHostTableName(), decoded.getHostTableName());
+        Assert.assertEquals(params.getCaseId(), decoded.getCaseId());
+        Assert.assertEquals(fromJson.getBatchDataList().size(), decoded.getBatchDataList().size());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Assert.assertEquals(fromJson.getBatchDataList().get(i).getIndex(), decoded.getBatchDataList().get(i).getIndex());
+            Assert.assertEquals(fromJson.getBatchDataList().get(i).getSendToRemoteFeatureData(), decoded.getBatchDataList().get(i).getSendToRemoteFeatureData());
+        }
+    }
+
+    @Test
+    public void testResultRoundTrip() throws Exception {
+        BatchInferenceResult result = buildResult();
+        BatchInferenceResult decoded = BatchInferenceCodec.decodeResult(BatchInferenceCodec.encodeResult(result));
+        assertSameResult(result, decoded);
+    }
+
+    @Test
+    public void testSmallerThanJson() {
+        BatchHostFederatedParams params = buildParams();
+        BatchInferenceResult result = buildResult();
+        Assert.assertTrue(BatchInferenceCodec.encodeRequest(params).length < JsonUtil.object2Json(params).getBytes().length);
+        Assert.assertTrue(BatchInferenceCodec.encodeResult(result).length < JsonUtil.object2Json(result).getBytes().length);
+    }
+
+    @Test
+    public void testNegotiation() {
+        String bodyCodec = MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC;
+        try {
+            MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC = Dict.BODY_CODEC_PROTOBUF;
+            // 未收到过响应的 host 版本未知, 使用 json
+            Assert.assertFalse(BatchInferenceCodec.useProtobuf("negotiate-new"));
+            BatchInferenceCodec.recordHostVersion("negotiate-new", Long.toString(MetaInfo.CURRENT_VERSION));
+            Assert.assertTrue(BatchInferenceCodec.useProtobuf("negotiate-new"));
+            // 旧版本 host 的响应头中没有版本, 或版本低于支持 protobuf 的版本
+            BatchInferenceCodec.recordHostVersion("negotiate-old", "");
+            Assert.assertFalse(BatchInferenceCodec.useProtobuf("negotiate-old"));
+            BatchInferenceCodec.recordHostVersion("negotiate-old", "200");
+            Assert.assertFalse(BatchInferenceCodec.useProtobuf("negotiate-old"));
+            // host 回退后重新使用 json
+            BatchInferenceCodec.recordHostVersion("negotiate-new", null);
+            Assert.assertFalse(BatchInferenceCodec.useProtobuf("negotiate-new"));
+
+            MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC = Dict.BODY_CODEC_JSON;
+            BatchInferenceCodec.recordHostVersion("negotiate-new", Long.toString(MetaInfo.CURRENT_VERSION));
+            Assert.assertFalse(BatchInferenceCodec.useProtobuf("negotiate-new"));
+        } finally {
+            MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC = bodyCodec;
+        }
+    }
+
+    /**
+     * 新 guest 发给旧 host 的请求, 以及旧 host 返回的结果, 都与原来的 json 格式一致
+     */
+    @Test
+    public void testNewGuestWithOldHost() throws Exception {
+        String bodyCodec = MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC;
+        try {
+            MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC = Dict.BODY_CODEC_PROTOBUF;
+            FederatedRpcInvoker.RpcDataWraper wraper = buildWraper("interop-old");
+            BatchHostFederatedParams params = (BatchHostFederatedParams) wraper.getData();
+
+            Proxy.Packet request = new DefaultFederatedRpcInvoker().build(buildContext(), wraper, 0);
+            Assert.assertEquals("", request.getHeader().getBodyCodec());
+            BatchHostFederatedParams received = JsonUtil.json2Object(request.getBody().getValue().toByteArray(), BatchHostFederatedParams.class);
+            Assert.assertEquals(params.getBatchDataList().size(), received.getBatchDataList().size());
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Assert.assertEquals(params.getBatchDataList().get(i).getSendToRemoteFeatureData(), received.getBatchDataList().get(i).getSendToRemoteFeatureData());
+            }
+
+            // 旧 host 只返回 json 且不带响应头
+            BatchInferenceResult result = buildResult();
+            Proxy.Packet response = Proxy.Packet.newBuilder()
+                    .setBody(Proxy.Data.newBuilder().setValue(ByteString.copyFromUtf8(JsonUtil.object2Json(result))))
+                    .build();
+            BatchInferenceResult parsed = new BatchInferenceFuture(Futures.immediateFuture(response), wraper,
+                    params, false, Maps.newHashMap()).get();
+            assertSameResult(result, parsed);
+            Assert.assertFalse(BatchInferenceCodec.useProtobuf("interop-old"));
+        } finally {
+            MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC = bodyCodec;
+        }
+    }
+
+    /**
+     * host 在响应中声明版本后, 后续请求改用 protobuf; 结果无法解析时退回 json
+     */
+    @Test
+    public void testNewGuestWithNewHost() throws Exception {
+        String bodyCodec = MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC;
+        try {
+            MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC = Dict.BODY_CODEC_PROTOBUF;
+            FederatedRpcInvoker.RpcDataWraper wraper = buildWraper("interop-new");
+            BatchHostFederatedParams params = (BatchHostFederatedParams) wraper.getData();
+            BatchInferenceResult result = buildResult();
+
+            Proxy.Packet jsonResponse = Proxy.Packet.newBuilder()
+                    .setHeader(Proxy.Metadata.newBuilder().setOperator(Long.toString(MetaInfo.CURRENT_VERSION)))
+                    .setBody(Proxy.Data.newBuilder().setValue(ByteString.copyFromUtf8(JsonUtil.object2Json(result))))
+                    .build();
+            new BatchInferenceFuture(Futures.immediateFuture(jsonResponse), wraper, params, false, Maps.newHashMap()).get();
+            Assert.assertTrue(BatchInferenceCodec.useProtobuf("interop-new"));
+
+            Proxy.Packet request = new DefaultFederatedRpcInvoker().build(buildContext(), wraper, 0);
+            Assert.assertEquals(Dict.BODY_CODEC_PROTOBUF, request.getHeader().getBodyCodec());
+            BatchHostFederatedParams received = BatchInferenceCodec.decodeRequest(request.getBody().getValue().toByteArray());
+            Assert.assertEquals(params.getBatchDataList().size(), received.getBatchDataList().size());
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Assert.assertEquals(params.getBatchDataList().get(i).getSendToRemoteFeatureData(), received.getBatchDataList().get(i).getSendToRemoteFeatureData());
+            }
+
+            Proxy.Packet pbResponse = Proxy.Packet.newBuilder()
+                    .setHeader(Proxy.Metadata.newBuilder().setOperator(Long.toString(MetaInfo.CURRENT_VERSION)).setBodyCodec(Dict.BODY_CODEC_PROTOBUF))
+                    .setBody(Proxy.Data.newBuilder().setValue(ByteString.copyFrom(BatchInferenceCodec.encodeResult(result))))
+                    .build();
+            BatchInferenceResult parsed = new BatchInferenceFuture(Futures.immediateFuture(pbResponse), wraper,
+                    params, false, Maps.newHashMap()).get();
+            assertSameResult(result, parsed);
+
+            Proxy.Packet badResponse = Proxy.Packet.newBuilder()
+                    .setHeader(Proxy.Metadata.newBuilder().setOperator(Long.toString(MetaInfo.CURRENT_VERSION)).setBodyCodec(Dict.BODY_CODEC_PROTOBUF))
+                    .setBody(Proxy.Data.newBuilder().setValue(ByteString.copyFromUtf8("{\"retcode\":0}")))
+                    .build();
+            try {
+                new BatchInferenceFuture(Futures.immediateFuture(badResponse), wraper, params, false, Maps.newHashMap()).get();
+                Assert.fail("bad protobuf body should fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RemoteRpcException);
+            }
+            Assert.assertFalse(BatchInferenceCodec.useProtobuf("interop-new"));
+        } finally {
+            MetaInfo.PROPERTY_BATCH_INFERENCE_BODY_CODEC = bodyCodec;
+        }
+    }
+
+    private void assertSameResult(BatchInferenceResult expected, BatchInferenceResult actual) {
+        // 按 json 树比较, 与 map 的遍历顺序无关
+        Assert.assertEquals(JsonUtil.json2Object(JsonUtil.object2Json(expected), Map.class),
+                JsonUtil.json2Object(JsonUtil.object2Json(actual), Map.class));
+    }
+
+    private FederatedRpcInvoker.RpcDataWraper buildWraper(String hostPartyId) {
+        Model hostModel = new Model();
+        hostModel.setPartId(hostPartyId);
+        hostModel.setNamespace("namespace");
+        hostModel.setTableName("table");
+        FederatedRpcInvoker.RpcDataWraper wraper = new FederatedRpcInvoker.RpcDataWraper();
+        wraper.setGuestModel(buildGuestModel());
+        wraper.setHostModel(hostModel);
+        wraper.setRemoteMethodName(Dict.REMOTE_METHOD_BATCH);
+        wraper.setData(buildParams());
+        return wraper;
+    }
+
+    private Model buildGuestModel() {
+        Model guestModel = new Model();
+        guestModel.setPartId("9999");
+        guestModel.setNamespace("namespace");
+        guestModel.setTableName("table");
+        return guestModel;
+    }
+
+    private ServingServerContext buildContext() {
+        ServingServerContext context = new ServingServerContext();
+        context.setModel(buildGuestModel());
+        context.setCaseId("case-1");
+        return context;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.rpc;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.webank.ai.fate.api.networking.proxy.DataTransferServiceGrpc;
+import com.webank.ai.fate.api.networking.proxy.Proxy;
+import com.webank.ai.fate.serving.common.bean.BaseContext;
+import com.webank.ai.fate.serving.common.bean.ServingServerContext;
+import com.webank.ai.fate.serving.common.model.Model;
+import com.webank.ai.fate.serving.common.rpc.core.FederatedRpcInvoker;
+import com.webank.ai.fate.serving.common.utils.DeadlineUtil;
+import com.webank.ai.fate.serving.core.bean.Context;
+import com.webank.ai.fate.serving.core.bean.Dict;
+import com.webank.ai.fate.serving.core.bean.MetaInfo;
+import com.webank.ai.fate.serving.core.constant.StatusCode;
+import com.webank.ai.fate.serving.core.exceptions.DeadlineExceededException;
+import io.grpc.Deadline;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class DeadlinePropagationTest {
+
+    private static final String SERVER_NAME = "deadline-propagation-test";
+
+    /**
+     * 进程内 proxy 收到的请求, 以及服务端看到的 grpc deadline 剩余毫秒数, 没有 deadline 时为 -1
+     */
+    private static final BlockingQueue<Proxy.Packet> received = new LinkedBlockingQueue<>();
+    private static final BlockingQueue<Long> receivedDeadlines = new LinkedBlockingQueue<>();
+    private static Server server;
+    private static ManagedChannel channel;
+
+    private DefaultFederatedRpcInvoker invoker;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = InProcessServerBuilder.forName(SERVER_NAME).directExecutor().addService(new DataTransferServiceGrpc.DataTransferServiceImplBase() {
+            @Override
+            public void unaryCall(Proxy.Packet request, StreamObserver<Proxy.Packet> responseObserver) {
+                Deadline deadline = io.grpc.Context.current().getDeadline();
+                receivedDeadlines.add(deadline != null ? deadline.timeRemaining(TimeUnit.MILLISECONDS) : -1L);
+                received.add(request);
+                responseObserver.onNext(Proxy.Packet.getDefaultInstance());
+                responseObserver.onCompleted();
+            }
+        }).build().start();
+        channel = InProcessChannelBuilder.forName(SERVER_NAME).directExecutor().build();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Before
+    public void setUp() {
+        MetaInfo.PROPERTY_USE_ZK_ROUTER = false;
+        MetaInfo.PROPERTY_PROXY_ADDRESS = "127.0.0.1:8000";
+        received.clear();
+        receivedDeadlines.clear();
+        invoker = new DefaultFederatedRpcInvoker() {
+            @Override
+            ManagedChannel getManagedChannel(String address) {
+                return channel;
+            }
+        };
+    }
+
+    private static Model guestModel() {
+        Model model = new Model();
+        model.setPartId("9999");
+        model.setTableName("guest_table");
+        model.setNamespace("guest_namespace");
+        return model;
+    }
+
+    private static ServingServerContext context(long deadline) {
+        ServingServerContext context = new ServingServerContext();
+        context.setCaseId("case_0");
+        context.setModel(guestModel());
+        if (deadline > 0) {
+            context.setDeadline(deadline);
+        }
+        return context;
+    }
+
+    private static FederatedRpcInvoker.RpcDataWraper wraper() {
+        Model hostModel = new Model();
+        hostModel.setPartId("10000");
+        hostModel.setTableName("host_table");
+        hostModel.setNamespace("host_namespace");
+        Map<String, Object> data = Maps.newHashMap();
+        data.put("x0", 1.0);
+        FederatedRpcInvoker.RpcDataWraper rpcDataWraper = new FederatedRpcInvoker.RpcDataWraper();
+        rpcDataWraper.setGuestModel(guestModel());
+        rpcDataWraper.setHostModel(hostModel);
+        rpcDataWraper.setData(data);
+        rpcDataWraper.setRemoteMethodName(Dict.REMOTE_METHOD_BATCH);
+        return rpcDataWraper;
+    }
+
+    /**
+     * 剩余时间写入请求头的 overallTimeout, 同时作为 grpc deadline 发出
+     */
+    @Test
+    public void testNearExpiredDeadlineIsPropagated() throws Exception {
+        long budget = 300;
+        ListenableFuture<Proxy.Packet> future = invoker.async(context(System.currentTimeMillis() + budget), wraper());
+        Assert.assertNotNull(future.get(1, TimeUnit.SECONDS));
+        Proxy.Packet packet = received.poll(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(packet);
+        Assert.assertTrue(packet.getHeader().hasConf());
+        long overallTimeout = packet.getHeader().getConf().getOverallTimeout();
+        Assert.assertTrue("overallTimeout " + overallTimeout, overallTimeout > 0 && overallTimeout <= budget);
+        long grpcDeadline = receivedDeadlines.poll(1, TimeUnit.SECONDS);
+        Assert.assertTrue("grpc deadline " + grpcDeadline, grpcDeadline > 0 && grpcDeadline <= overallTimeout);
+    }
+
+    /**
+     * 已过期的请求不发给 proxy, 直接以 DeadlineExceededException 失败
+     */
+    @Test
+    public void testExpiredDeadlineIsNotSent() throws Exception {
+        ListenableFuture<Proxy.Packet> future = invoker.async(context(System.currentTimeMillis() - 1), wraper());
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            Assert.fail("deadline should be exceeded");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DeadlineExceededException);
+            Assert.assertEquals(StatusCode.DEADLINE_EXCEEDED_ERROR, ((DeadlineExceededException) e.getCause()).getRetcode());
+        }
+        Assert.assertTrue(received.isEmpty());
+    }
+
+    /**
+     * 上游没有截止时间时不设置 overallTimeout, 也不设置 grpc deadline
+     */
+    @Test
+    public void testNoDeadlineIsNotSent() throws Exception {
+        Assert.assertNotNull(invoker.async(context(0), wraper()).get(1, TimeUnit.SECONDS));
+        Proxy.Packet packet = received.poll(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(packet);
+        Assert.assertFalse(packet.getHeader().hasConf());
+        Assert.assertEquals(-1L, (long) receivedDeadlines.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testNoDeadline() {
+        Context context = new BaseContext();
+        Assert.assertEquals(Long.MAX_VALUE, context.getRemainingTime());
+        DeadlineUtil.check(context, "test");
+        // 没有上游截止时间时以配置的超时为准
+        long remaining = DeadlineUtil.limit(context, 3000);
+        Assert.assertTrue(remaining > 2900 && remaining <= 3000);
+        Assert.assertTrue(context.getDeadline() > 0);
+    }
+
+    /**
+     * guest -> proxy -> host, 每一跳用上一跳发出时的剩余时间作为预算, 并扣除本跳耗时
+     */
+    @Test
+    public void testBudgetShrinksPerHop() throws Exception {
+        Context guest = new BaseContext();
+        guest.setDeadline(System.currentTimeMillis() + 500);
+        Thread.sleep(50);
+        long guestBudget = DeadlineUtil.limit(guest, 3000);
+        Assert.assertTrue(guestBudget > 0 && guestBudget <= 450);
+
+        Context proxy = new BaseContext();
+        proxy.setDeadline(DeadlineUtil.earliest(0, DeadlineUtil.fromBudget(proxy.getTimeStamp(), guestBudget)));
+        Thread.sleep(50);
+        long proxyBudget = DeadlineUtil.limit(proxy, 3000);
+        Assert.assertTrue(proxyBudget > 0 && proxyBudget <= guestBudget - 50);
+
+        Context host = new BaseContext();
+        host.setDeadline(DeadlineUtil.fromBudget(host.getTimeStamp(), proxyBudget));
+        Assert.assertTrue(host.getRemainingTime() <= proxyBudget);
+        DeadlineUtil.check(host, "host inference");
+    }
+
+    @Test
+    public void testExpiredRequestIsRejected() {
+        Context context = new BaseContext();
+        context.setDeadline(DeadlineUtil.fromBudget(System.currentTimeMillis() - 100, 50));
+        try {
+            DeadlineUtil.check(context, "feature adaptation");
+            Assert.fail("deadline should be exceeded");
+        } catch (DeadlineExceededException e) {
+            Assert.assertEquals(StatusCode.DEADLINE_EXCEEDED_ERROR, e.getRetcode());
+        }
+        Assert.assertTrue(DeadlineUtil.limit(context, 3000) <= 0);
+    }
+
+    @Test
+    public void testEarliest() {
+        Assert.assertEquals(0, DeadlineUtil.earliest(0, 0));
+        Assert.assertEquals(5, DeadlineUtil.earliest(0, 5));
+        Assert.assertEquals(5, DeadlineUtil.earliest(5, 0));
+        Assert.assertEquals(3, DeadlineUtil.earliest(5, 3));
+        Assert.assertEquals(0, DeadlineUtil.fromBudget(100, 0));
+        Assert.assertEquals(150, DeadlineUtil.fromBudget(100, 50));
+    }
+}
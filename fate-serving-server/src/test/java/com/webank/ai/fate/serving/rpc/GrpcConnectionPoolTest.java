@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 The FATE Authors. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.webank.ai.fate.serving.rpc;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.webank.ai.fate.api.networking.proxy.DataTransferServiceGrpc;
+import com.webank.ai.fate.api.networking.proxy.Proxy;
+import com.webank.ai.fate.serving.core.bean.ChannelMetrics;
+import com.webank.ai.fate.serving.core.bean.GrpcConnectionPool;
+import com.webank.ai.fate.serving.core.bean.NettyServerInfo;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 进程内 grpc 服务端挂起请求, 检查连接池的 channel 数随并发流数扩缩, 以及故障 channel 的替换
+ */
+@RunWith(JUnit4.class)
+public class GrpcConnectionPoolTest {
+
+    private static final String SERVER_NAME = "grpc-connection-pool-test";
+    private static final int MAX_STREAMS = 4;
+    private static final int MAX_CHANNELS = 8;
+    private static final long CHECK_INTERVAL_MS = 50;
+    private static final long REPLACE_MS = 300;
+
+    private static final ConcurrentLinkedQueue<StreamObserver<Proxy.Packet>> pending = new ConcurrentLinkedQueue<>();
+    private static Server server;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = InProcessServerBuilder.forName(SERVER_NAME).directExecutor().addService(new DataTransferServiceGrpc.DataTransferServiceImplBase() {
+            @Override
+            public void unaryCall(Proxy.Packet request, StreamObserver<Proxy.Packet> responseObserver) {
+                pending.add(responseObserver);
+            }
+        }).build().start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.shutdownNow();
+    }
+
+    private static void releaseAll() {
+        StreamObserver<Proxy.Packet> observer;
+        while ((observer = pending.poll()) != null) {
+            observer.onNext(Proxy.Packet.getDefaultInstance());
+            observer.onCompleted();
+        }
+    }
+
+    private static List<ChannelMetrics> channels(GrpcConnectionPool pool, String address) {
+        List<ChannelMetrics> result = Lists.newArrayList();
+        for (ChannelMetrics metrics : pool.metrics()) {
+            if (metrics.getAddress().equals(address)) {
+                result.add(metrics);
+            }
+        }
+        return result;
+    }
+
+    private static Map<Long, Integer> activeStreams(GrpcConnectionPool pool, String address) {
+        Map<Long, Integer> result = new HashMap<>();
+        for (ChannelMetrics metrics : channels(pool, address)) {
+            result.put(metrics.getId(), metrics.getActiveStreams());
+        }
+        return result;
+    }
+
+    private static boolean await(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.get()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return condition.get();
+    }
+
+    @Test
+    public void testChannelCountTracksLoad() throws Exception {
+        InProcessPool pool = new InProcessPool(SERVER_NAME, REPLACE_MS);
+        String address = "127.0.0.1:1";
+        List<ListenableFuture<Proxy.Packet>> futures = Lists.newArrayList();
+        futures.add(DataTransferServiceGrpc.newFutureStub(pool.getManagedChannel(address)).unaryCall(Proxy.Packet.getDefaultInstance()));
+        Assert.assertEquals(1, channels(pool, address).size());
+
+        // 20 个并发流, 每个 channel 按 4 * 0.8 计算需要 7 个
+        for (int i = 1; i < 20; i++) {
+            futures.add(DataTransferServiceGrpc.newFutureStub(pool.getManagedChannel(address)).unaryCall(Proxy.Packet.getDefaultInstance()));
+        }
+        Assert.assertTrue(await(() -> pending.size() == 20));
+        Assert.assertTrue(await(() -> channels(pool, address).size() == 7));
+
+        // 新请求落到活跃流最少的 channel 上
+        for (int i = 0; i < 6; i++) {
+            Map<Long, Integer> before = activeStreams(pool, address);
+            int least = Collections.min(before.values());
+            futures.add(DataTransferServiceGrpc.newFutureStub(pool.getManagedChannel(address)).unaryCall(Proxy.Packet.getDefaultInstance()));
+            int expected = 21 + i;
+            Assert.assertTrue(await(() -> pending.size() == expected));
+            for (Map.Entry<Long, Integer> entry : activeStreams(pool, address).entrySet()) {
+                int previous = before.getOrDefault(entry.getKey(), 0);
+                if (entry.getValue() > previous) {
+                    Assert.assertTrue(previous <= least);
+                }
+            }
+        }
+
+        // 负载消失后逐个缩容到 1 个
+        releaseAll();
+        for (ListenableFuture<Proxy.Packet> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        Assert.assertTrue(await(() -> channels(pool, address).size() == 1));
+    }
+
+    private static void callMissingServer(InProcessPool pool, String address) {
+        try {
+            DataTransferServiceGrpc.newBlockingStub(pool.getManagedChannel(address)).unaryCall(Proxy.Packet.getDefaultInstance());
+            Assert.fail("server should be missing");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReplaceFailedChannel() throws Exception {
+        // 服务端不存在, 请求失败后 channel 进入 TRANSIENT_FAILURE, 持续 REPLACE_MS 后才替换
+        InProcessPool pool = new InProcessPool(SERVER_NAME + "-missing", REPLACE_MS);
+        String address = "127.0.0.1:2";
+        long id = channels(pool, address).get(0).getId();
+        long begin = System.currentTimeMillis();
+        callMissingServer(pool, address);
+        Assert.assertTrue(await(() -> channels(pool, address).get(0).getId() != id));
+        Assert.assertTrue(System.currentTimeMillis() - begin >= REPLACE_MS);
+        Assert.assertEquals(1, channels(pool, address).size());
+    }
+
+    @Test
+    public void testFailedChannelBacksOff() throws Exception {
+        // 未到替换时间前由 grpc 自行退避重连, 不新建 channel
+        InProcessPool pool = new InProcessPool(SERVER_NAME + "-missing", Long.MAX_VALUE);
+        String address = "127.0.0.1:3";
+        long id = channels(pool, address).get(0).getId();
+        callMissingServer(pool, address);
+        Thread.sleep(CHECK_INTERVAL_MS * 10);
+        Assert.assertEquals(id, channels(pool, address).get(0).getId());
+        Assert.assertEquals(1, channels(pool, address).size());
+    }
+
+    static class InProcessPool extends GrpcConnectionPool {
+        private final String serverName;
+        private final long replaceMillis;
+
+        InProcessPool(String serverName, long replaceMillis) {
+            super(CHECK_INTERVAL_MS);
+            this.serverName = serverName;
+            this.replaceMillis = replaceMillis;
+        }
+
+        @Override
+        protected int getMaxStreamsPerChannel() {
+            return MAX_STREAMS;
+        }
+
+        @Override
+        protected int getMaxChannelsPerAddress() {
+            return MAX_CHANNELS;
+        }
+
+        @Override
+        protected long getTransientFailureReplaceMillis() {
+            return replaceMillis;
+        }
+
+        @Override
+        protected ManagedChannelBuilder<?> newChannelBuilder(String ip, int port, NettyServerInfo nettyServerInfo) {
+            return InProcessChannelBuilder.forName(serverName).directExecutor();
+        }
+    }
+}